@@ -0,0 +1,147 @@
+package fr.diginamic.gestiondestransports.cache;
+
+import fr.diginamic.gestiondestransports.dto.InscriptionListeAttenteDto;
+import fr.diginamic.gestiondestransports.repositories.ListeAttenteCovoiturageRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index en mémoire des listes d'attente des covoiturages : pour chaque annonce, les utilisateurs
+ * inscrits dans l'ordre d'arrivée. La base reste la référence ; l'index évite de l'interroger
+ * pour connaître une position ou savoir si une annonce a des inscrits, notamment à chaque annulation.
+ *
+ * Une inscription est ajoutée avant la validation de sa transaction (et retirée si celle-ci est annulée),
+ * une désinscription n'est retirée qu'après validation : l'index peut signaler brièvement une inscription
+ * qui n'existe pas encore ou plus, jamais en omettre une validée. Il est propre à l'instance,
+ * comme le modèle de lecture des annonces, et chargé depuis la base au premier usage.
+ */
+@Component
+public class IndexListeAttente {
+
+    private final ListeAttenteCovoiturageRepository listeAttenteRepository;
+    private final Map<Long, Set<Long>> inscritsParAnnonce = new HashMap<>();
+    private volatile boolean charge;
+
+    public IndexListeAttente(ListeAttenteCovoiturageRepository listeAttenteRepository) {
+        this.listeAttenteRepository = listeAttenteRepository;
+    }
+
+    /**
+     * Indique si la liste d'attente d'une annonce a (peut-être) des inscrits
+     * @param idAnnonce l'identifiant de l'annonce
+     * @return false si la liste est vide de façon certaine
+     */
+    public synchronized boolean aDesInscrits(Long idAnnonce) {
+        assurerCharge();
+        return inscritsParAnnonce.containsKey(idAnnonce);
+    }
+
+    /**
+     * Rang d'un utilisateur dans la liste d'attente d'une annonce
+     * @return la position (1 = prochain promu) ou 0 si l'utilisateur n'est pas inscrit
+     */
+    public synchronized int position(Long idAnnonce, Long idUtilisateur) {
+        assurerCharge();
+        int position = 1;
+        for (Long inscrit : inscritsParAnnonce.getOrDefault(idAnnonce, Set.of())) {
+            if (inscrit.equals(idUtilisateur)) {
+                return position;
+            }
+            position++;
+        }
+        return 0;
+    }
+
+    /**
+     * Nombre d'inscrits sur la liste d'attente d'une annonce
+     */
+    public synchronized int taille(Long idAnnonce) {
+        assurerCharge();
+        return inscritsParAnnonce.getOrDefault(idAnnonce, Set.of()).size();
+    }
+
+    /**
+     * Ajoute un utilisateur en fin de liste, immédiatement ; l'ajout est défait si la transaction en cours est annulée
+     * @return false si l'utilisateur était déjà inscrit (rien n'est modifié)
+     */
+    public boolean ajouter(Long idAnnonce, Long idUtilisateur) {
+        synchronized (this) {
+            assurerCharge();
+            if (!inscritsParAnnonce.computeIfAbsent(idAnnonce, id -> new LinkedHashSet<>()).add(idUtilisateur)) {
+                return false;
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int statut) {
+                    if (statut != STATUS_COMMITTED) {
+                        retirerMaintenant(idAnnonce, idUtilisateur);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Retire un utilisateur de la liste, après validation de la transaction en cours s'il y en a une
+     */
+    public void retirer(Long idAnnonce, Long idUtilisateur) {
+        apresValidation(() -> retirerMaintenant(idAnnonce, idUtilisateur));
+    }
+
+    /**
+     * Retire toute la liste d'une annonce (annonce supprimée ou archivée), après validation de la transaction en cours
+     */
+    public void retirerAnnonce(Long idAnnonce) {
+        apresValidation(() -> {
+            synchronized (this) {
+                inscritsParAnnonce.remove(idAnnonce);
+            }
+        });
+    }
+
+    /**
+     * Recharge l'index depuis la base
+     */
+    public synchronized void charger() {
+        inscritsParAnnonce.clear();
+        for (InscriptionListeAttenteDto inscription : listeAttenteRepository.findToutesInscriptions()) {
+            inscritsParAnnonce.computeIfAbsent(inscription.idAnnonce(), id -> new LinkedHashSet<>()).add(inscription.idUtilisateur());
+        }
+        charge = true;
+    }
+
+    private void assurerCharge() {
+        if (!charge) {
+            charger();
+        }
+    }
+
+    private synchronized void retirerMaintenant(Long idAnnonce, Long idUtilisateur) {
+        Set<Long> inscrits = inscritsParAnnonce.get(idAnnonce);
+        if (inscrits != null && inscrits.remove(idUtilisateur) && inscrits.isEmpty()) {
+            inscritsParAnnonce.remove(idAnnonce);
+        }
+    }
+
+    private void apresValidation(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package fr.diginamic.gestiondestransports.cache;
+
+import fr.diginamic.gestiondestransports.dto.EtatIndexOccupationsDto;
+import fr.diginamic.gestiondestransports.dto.OccupationVehiculeDto;
+import fr.diginamic.gestiondestransports.enums.TypeOccupationVehicule;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.evenements.ReservationVehiculeEvenement;
+import fr.diginamic.gestiondestransports.repositories.PlanningFlotteJdbcRepository;
+import fr.diginamic.gestiondestransports.tools.ArbreIntervalles;
+import fr.diginamic.gestiondestransports.tools.OccupationsFlotte;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index en mémoire des occupations à venir des véhicules de service : un arbre d'intervalles par véhicule
+ * contenant ses réservations et ses trajets de covoiturage, pour répondre aux questions de disponibilité
+ * (chevauchement, créneau libre autour d'une période) en O(log n) sans requête.
+ *
+ * Mise à jour :
+ * - chargement complet au démarrage de l'application ; les mises à jour par événement reçues pendant la lecture
+ *   sont rejouées après le remplacement, sans quoi elles seraient écrasées par une lecture antérieure
+ * - relecture des réservations ou de l'annonce concernées à chaque événement publié par leurs services, après validation
+ * - balayage périodique des occupations terminées
+ * - vérification périodique de la cohérence avec la base ; en cas d'écart (par exemple suppression d'un véhicule
+ *   ou d'un utilisateur, qui ne publient pas d'événement), l'index est entièrement rechargé
+ * Tant que l'index n'est pas chargé, les lectures restent servies par la base.
+ * L'index est propre à chaque instance et mis à jour après validation : il sert les consultations,
+ * les vérifications faites avant une écriture restent en base sous le verrou du véhicule.
+ */
+@Component
+public class IndexOccupationsVehicules implements OccupationsFlotte {
+
+    private static final Logger log = LogManager.getLogger(IndexOccupationsVehicules.class);
+
+    /**
+     * Identifiant d'une occupation : départage deux occupations d'un véhicule qui commencent au même instant
+     */
+    private record CleOccupation(TypeOccupationVehicule type, Long id) implements Comparable<CleOccupation> {
+        @Override
+        public int compareTo(CleOccupation autre) {
+            int comparaison = type.compareTo(autre.type);
+            return comparaison != 0 ? comparaison : id.compareTo(autre.id);
+        }
+    }
+
+    // Arbre d'un véhicule sans occupation, jamais modifié
+    private static final ArbreIntervalles<CleOccupation> AUCUNE_OCCUPATION = new ArbreIntervalles<>();
+
+    private final PlanningFlotteJdbcRepository planningRepo;
+
+    // Protégés par le verrou : les arbres ne supportent pas les lectures pendant une modification
+    private final Map<CleOccupation, OccupationVehiculeDto> occupations = new HashMap<>();
+    private final Map<Long, ArbreIntervalles<CleOccupation>> arbresParVehicule = new HashMap<>();
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    // Mises à jour par événement à rejouer pour chaque chargement en cours
+    private final List<List<Runnable>> chargementsEnCours = new ArrayList<>();
+
+    // Incrémenté à chaque mise à jour par événement, pour ignorer une vérification concurrente
+    private final AtomicLong modifications = new AtomicLong();
+    private final AtomicLong resynchronisations = new AtomicLong();
+
+    private volatile boolean charge = false;
+    private volatile EtatIndexOccupationsDto derniereVerification;
+
+    public IndexOccupationsVehicules(PlanningFlotteJdbcRepository planningRepo) {
+        this.planningRepo = planningRepo;
+    }
+
+    /**
+     * Charge les occupations à venir une fois l'application démarrée.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void charger() {
+        List<Runnable> aRejouer = new ArrayList<>();
+        verrou.writeLock().lock();
+        try {
+            chargementsEnCours.add(aRejouer);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+        List<OccupationVehiculeDto> lues;
+        try {
+            lues = planningRepo.findOccupationsTerminantApres(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            terminerChargement(aRejouer);
+            throw e;
+        }
+        verrou.writeLock().lock();
+        try {
+            remplacer(lues);
+            // Dans l'ordre où elles ont été appliquées : chacune a relu la base après la validation qui l'a produite
+            aRejouer.forEach(Runnable::run);
+            terminerChargement(aRejouer);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+        charge = true;
+        log.info("Index des occupations chargé avec {} occupation(s) à venir de véhicules de service", lues.size());
+    }
+
+    /**
+     * Indique si l'index est chargé et peut servir les lectures
+     */
+    public boolean estCharge() {
+        return charge;
+    }
+
+    /**
+     * Met à jour l'index une fois la modification d'une annonce validée en base
+     * Les réservations et annulations de places ne changent pas l'occupation du véhicule et sont ignorées.
+     * @param evenement l'événement publié par le service des annonces
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void surEvenementAnnonce(AnnonceCovoiturageEvenement evenement) {
+        switch (evenement.type()) {
+            case RESERVATION, ANNULATION -> {
+            }
+            case SUPPRESSION -> retirer(TypeOccupationVehicule.COVOITURAGE, evenement.idAnnonce());
+            default -> actualiser(TypeOccupationVehicule.COVOITURAGE, List.of(evenement.idAnnonce()),
+                    planningRepo.findOccupationsCovoiturages(List.of(evenement.idAnnonce())));
+        }
+    }
+
+    /**
+     * Met à jour l'index une fois la création, la modification ou la suppression de réservations validée en base
+     * @param evenement l'événement publié par le service des réservations
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void surEvenementReservation(ReservationVehiculeEvenement evenement) {
+        actualiser(TypeOccupationVehicule.RESERVATION, evenement.idsReservations(),
+                planningRepo.findOccupationsReservations(evenement.idsReservations()));
+    }
+
+    /**
+     * Remplace les occupations d'un type par celles relues en base ; un identifiant absent des occupations lues est retiré
+     *
+     * @param type le type des occupations
+     * @param ids les identifiants relus
+     * @param lues les occupations trouvées en base pour ces identifiants
+     */
+    public void actualiser(TypeOccupationVehicule type, List<Long> ids, List<OccupationVehiculeDto> lues) {
+        verrou.writeLock().lock();
+        try {
+            modifications.incrementAndGet();
+            appliquer(() -> {
+                LocalDateTime maintenant = LocalDateTime.now();
+                for (Long id : ids) {
+                    retirerOccupation(new CleOccupation(type, id));
+                }
+                for (OccupationVehiculeDto occupation : lues) {
+                    if (occupation.fin().isAfter(maintenant)) {
+                        ajouterOccupation(occupation);
+                    }
+                }
+            });
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire une occupation de l'index
+     */
+    public void retirer(TypeOccupationVehicule type, Long id) {
+        verrou.writeLock().lock();
+        try {
+            modifications.incrementAndGet();
+            appliquer(() -> retirerOccupation(new CleOccupation(type, id)));
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retire périodiquement les occupations terminées
+     */
+    @Scheduled(fixedDelayString = "${vehicules.index-occupations.balayage-ms:60000}")
+    public void balayer() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        int retirees = 0;
+        verrou.writeLock().lock();
+        try {
+            Iterator<OccupationVehiculeDto> iterateur = occupations.values().iterator();
+            while (iterateur.hasNext()) {
+                OccupationVehiculeDto occupation = iterateur.next();
+                if (!occupation.fin().isAfter(maintenant)) {
+                    iterateur.remove();
+                    retirerDeLArbre(occupation);
+                    retirees++;
+                }
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+        if (retirees > 0) {
+            log.debug("{} occupation(s) terminée(s) retirée(s) de l'index des véhicules", retirees);
+        }
+    }
+
+    /**
+     * Compare périodiquement l'index à la base et le recharge en cas d'écart
+     * La vérification est ignorée si une mise à jour par événement a eu lieu pendant la lecture en base
+     * @return l'état de la vérification, ou le précédent si elle a été ignorée
+     */
+    @Scheduled(initialDelayString = "${vehicules.index-occupations.verification-ms:300000}",
+            fixedDelayString = "${vehicules.index-occupations.verification-ms:300000}")
+    @Transactional(readOnly = true)
+    public EtatIndexOccupationsDto verifierCoherence() {
+        if (!charge) {
+            return etat();
+        }
+        long modificationsAvant = modifications.get();
+        LocalDateTime maintenant = LocalDateTime.now();
+        List<OccupationVehiculeDto> enBase = planningRepo.findOccupationsTerminantApres(maintenant);
+
+        verrou.writeLock().lock();
+        try {
+            if (modifications.get() != modificationsAvant) {
+                return etat();
+            }
+            Map<CleOccupation, OccupationVehiculeDto> enMemoire = new HashMap<>();
+            occupations.forEach((cle, occupation) -> {
+                if (occupation.fin().isAfter(maintenant)) {
+                    enMemoire.put(cle, occupation);
+                }
+            });
+
+            int ecarts = 0;
+            for (OccupationVehiculeDto occupation : enBase) {
+                if (!Objects.equals(enMemoire.remove(cle(occupation)), occupation)) {
+                    ecarts++;
+                }
+            }
+            // Occupations encore en mémoire mais absentes de la base
+            ecarts += enMemoire.size();
+
+            int total = Math.max(enBase.size(), 1);
+            double tauxCoherence = ecarts == 0 ? 1.0 : Math.max(0.0, 1.0 - (double) ecarts / total);
+            if (ecarts > 0) {
+                log.warn("Index des occupations incohérent : {} écart(s) sur {} occupation(s) à venir, rechargement", ecarts, enBase.size());
+                remplacer(enBase);
+                resynchronisations.incrementAndGet();
+            }
+            derniereVerification = new EtatIndexOccupationsDto(true, occupations.size(), arbresParVehicule.size(),
+                    maintenant, enBase.size(), ecarts, tauxCoherence, resynchronisations.get());
+            return derniereVerification;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * État courant de l'index et résultat de la dernière vérification de cohérence
+     */
+    public EtatIndexOccupationsDto etat() {
+        int enMemoire;
+        int vehicules;
+        verrou.readLock().lock();
+        try {
+            enMemoire = occupations.size();
+            vehicules = arbresParVehicule.size();
+        } finally {
+            verrou.readLock().unlock();
+        }
+        EtatIndexOccupationsDto verification = derniereVerification;
+        if (verification == null) {
+            return new EtatIndexOccupationsDto(charge, enMemoire, vehicules, null, 0, 0, 1.0, resynchronisations.get());
+        }
+        return new EtatIndexOccupationsDto(charge, enMemoire, vehicules, verification.derniereVerification(),
+                verification.occupationsEnBase(), verification.ecarts(), verification.tauxCoherence(), resynchronisations.get());
+    }
+
+    @Override
+    public boolean chevauche(Long vehiculeId, LocalDateTime debut, LocalDateTime fin) {
+        verrou.readLock().lock();
+        try {
+            return arbresParVehicule.getOrDefault(vehiculeId, AUCUNE_OCCUPATION).chevauche(debut, fin);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long minutesLibresAutour(Long vehiculeId, LocalDateTime debut, LocalDateTime fin,
+                                    LocalDateTime horizonDebut, LocalDateTime horizonFin) {
+        verrou.readLock().lock();
+        try {
+            return arbresParVehicule.getOrDefault(vehiculeId, AUCUNE_OCCUPATION)
+                    .minutesLibresAutour(debut, fin, horizonDebut, horizonFin);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applique une mise à jour par événement et la conserve pour les chargements en cours ; sous le verrou en écriture
+     */
+    private void appliquer(Runnable miseAJour) {
+        miseAJour.run();
+        for (List<Runnable> aRejouer : chargementsEnCours) {
+            aRejouer.add(miseAJour);
+        }
+    }
+
+    private void terminerChargement(List<Runnable> aRejouer) {
+        verrou.writeLock().lock();
+        try {
+            // Comparaison par identité : deux chargements sans mise à jour ont des listes égales
+            chargementsEnCours.removeIf(chargement -> chargement == aRejouer);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void remplacer(List<OccupationVehiculeDto> lues) {
+        occupations.clear();
+        arbresParVehicule.clear();
+        for (OccupationVehiculeDto occupation : lues) {
+            ajouterOccupation(occupation);
+        }
+    }
+
+    private void ajouterOccupation(OccupationVehiculeDto occupation) {
+        CleOccupation cle = cle(occupation);
+        retirerOccupation(cle);
+        occupations.put(cle, occupation);
+        arbresParVehicule.computeIfAbsent(occupation.vehiculeId(), id -> new ArbreIntervalles<>())
+                .inserer(cle, occupation.debut(), occupation.fin());
+    }
+
+    private void retirerOccupation(CleOccupation cle) {
+        OccupationVehiculeDto ancienne = occupations.remove(cle);
+        if (ancienne != null) {
+            retirerDeLArbre(ancienne);
+        }
+    }
+
+    private void retirerDeLArbre(OccupationVehiculeDto occupation) {
+        ArbreIntervalles<CleOccupation> arbre = arbresParVehicule.get(occupation.vehiculeId());
+        if (arbre != null) {
+            arbre.retirer(cle(occupation), occupation.debut());
+            if (arbre.taille() == 0) {
+                arbresParVehicule.remove(occupation.vehiculeId());
+            }
+        }
+    }
+
+    private static CleOccupation cle(OccupationVehiculeDto occupation) {
+        return new CleOccupation(occupation.type(), occupation.id());
+    }
+}
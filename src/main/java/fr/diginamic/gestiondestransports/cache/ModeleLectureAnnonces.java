@@ -0,0 +1,389 @@
+package fr.diginamic.gestiondestransports.cache;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.EtatModeleLectureDto;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Modèle de lecture en mémoire des annonces de covoiturage à venir.
+ * Les annonces sont conservées sous forme de lignes immuables (annonce, adresses, compteurs de places)
+ * triées par (heure de départ, id), ce qui permet de servir la liste et la recherche paginée sans requête.
+ *
+ * Mise à jour :
+ * - chargement complet au démarrage de l'application
+ * - rechargement de l'annonce concernée à chaque événement publié par le service des annonces, après validation
+ * - balayage périodique des annonces parties
+ * - vérification périodique de la cohérence avec la base ; chaque annonce en écart est corrigée
+ * Les annonces mises à jour par événement pendant une lecture complète (chargement, vérification) sont relues
+ * une par une ensuite : la ligne de la lecture complète peut être antérieure à l'événement.
+ * Tant que le modèle n'est pas chargé, les lectures restent servies par la base.
+ */
+@Component
+public class ModeleLectureAnnonces {
+
+    private static final Logger log = LogManager.getLogger(ModeleLectureAnnonces.class);
+
+    /**
+     * Clé de tri des annonces : heure de départ puis identifiant (même ordre que la pagination en base)
+     */
+    private record CleDepart(LocalDateTime heureDepart, Long id) implements Comparable<CleDepart> {
+        @Override
+        public int compareTo(CleDepart autre) {
+            int comparaison = heureDepart.compareTo(autre.heureDepart);
+            return comparaison != 0 ? comparaison : id.compareTo(autre.id);
+        }
+    }
+
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    private final ConcurrentSkipListMap<CleDepart, AnnonceCovoiturageLigneDto> annoncesParDepart = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, CleDepart> clesParId = new ConcurrentHashMap<>();
+
+    // Annonces mises à jour pendant chaque lecture complète en cours, protégé par le verrou du modèle
+    private final List<Set<Long>> lecturesEnCours = new ArrayList<>();
+    private final AtomicLong resynchronisations = new AtomicLong();
+
+    private volatile boolean charge = false;
+    private volatile EtatModeleLectureDto derniereVerification;
+
+    public ModeleLectureAnnonces(AnnonceCovoiturageRepository annonceCovoiturageRepository) {
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+    }
+
+    /**
+     * Charge les annonces à venir une fois l'application démarrée.
+     * Sans transaction englobante : la relecture des annonces modifiées pendant le chargement
+     * ne doit pas voir le même instantané que la lecture complète.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void charger() {
+        Set<Long> modifiees = commencerLecture();
+        List<AnnonceCovoiturageLigneDto> lignes = lire(modifiees,
+                () -> annonceCovoiturageRepository.findFuturesAvecPlaces(LocalDateTime.now()));
+        synchronized (this) {
+            terminerLecture(modifiees);
+            remplacer(lignes);
+            charge = true;
+        }
+        relire(modifiees);
+        log.info("Modèle de lecture chargé avec {} annonce(s) de covoiturage à venir", lignes.size());
+    }
+
+    /**
+     * Indique si le modèle est chargé et peut servir les lectures
+     */
+    public boolean estCharge() {
+        return charge;
+    }
+
+    /**
+     * Met à jour le modèle une fois la modification d'une annonce validée en base
+     * @param evenement l'événement publié par le service des annonces
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void surEvenement(AnnonceCovoiturageEvenement evenement) {
+        if (evenement.type() == TypeEvenementAnnonce.SUPPRESSION) {
+            retirer(evenement.idAnnonce());
+            return;
+        }
+        List<AnnonceCovoiturageLigneDto> lignes = annonceCovoiturageRepository.findAvecPlacesParIds(List.of(evenement.idAnnonce()));
+        if (lignes.isEmpty()) {
+            retirer(evenement.idAnnonce());
+        } else {
+            mettreAJour(lignes.get(0));
+        }
+    }
+
+    /**
+     * Ajoute ou remplace une annonce ; une annonce déjà partie est retirée
+     */
+    public synchronized void mettreAJour(AnnonceCovoiturageLigneDto ligne) {
+        noterModification(ligne.id());
+        CleDepart ancienneCle = clesParId.remove(ligne.id());
+        if (ancienneCle != null) {
+            annoncesParDepart.remove(ancienneCle);
+        }
+        if (ligne.heureDepart() != null && ligne.heureDepart().isAfter(LocalDateTime.now())) {
+            CleDepart cle = new CleDepart(ligne.heureDepart(), ligne.id());
+            annoncesParDepart.put(cle, ligne);
+            clesParId.put(ligne.id(), cle);
+        }
+    }
+
+    /**
+     * Retire une annonce du modèle
+     */
+    public synchronized void retirer(Long idAnnonce) {
+        noterModification(idAnnonce);
+        CleDepart cle = clesParId.remove(idAnnonce);
+        if (cle != null) {
+            annoncesParDepart.remove(cle);
+        }
+    }
+
+    /**
+     * Retire périodiquement les annonces dont l'heure de départ est passée
+     */
+    @Scheduled(fixedDelayString = "${covoit.modele-lecture.balayage-ms:60000}")
+    public void balayer() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        int retirees = 0;
+        synchronized (this) {
+            NavigableMap<CleDepart, AnnonceCovoiturageLigneDto> parties =
+                    annoncesParDepart.headMap(new CleDepart(maintenant, Long.MAX_VALUE), true);
+            for (CleDepart cle : new ArrayList<>(parties.keySet())) {
+                annoncesParDepart.remove(cle);
+                clesParId.remove(cle.id(), cle);
+                retirees++;
+            }
+        }
+        if (retirees > 0) {
+            log.debug("{} annonce(s) partie(s) retirée(s) du modèle de lecture", retirees);
+        }
+    }
+
+    /**
+     * Compare périodiquement le modèle à la base et corrige chaque annonce en écart
+     * Les annonces mises à jour par événement pendant la lecture en base sont exclues de la comparaison
+     * complète puis relues et comparées une par une.
+     * Sans transaction englobante, pour la même raison que charger().
+     * @return l'état de la vérification
+     */
+    @Scheduled(initialDelayString = "${covoit.modele-lecture.verification-ms:300000}",
+            fixedDelayString = "${covoit.modele-lecture.verification-ms:300000}")
+    public EtatModeleLectureDto verifierCoherence() {
+        if (!charge) {
+            return etat();
+        }
+        Set<Long> modifiees = commencerLecture();
+        LocalDateTime maintenant = LocalDateTime.now();
+        List<AnnonceCovoiturageLigneDto> enBase = lire(modifiees,
+                () -> annonceCovoiturageRepository.findFuturesAvecPlaces(maintenant));
+
+        int ecarts = 0;
+        synchronized (this) {
+            terminerLecture(modifiees);
+            Map<Long, AnnonceCovoiturageLigneDto> enMemoire = new HashMap<>();
+            annoncesParDepart.tailMap(new CleDepart(maintenant, Long.MAX_VALUE), false)
+                    .values()
+                    .forEach(ligne -> enMemoire.put(ligne.id(), ligne));
+
+            for (AnnonceCovoiturageLigneDto ligne : enBase) {
+                if (modifiees.contains(ligne.id())) {
+                    continue;
+                }
+                if (!Objects.equals(enMemoire.remove(ligne.id()), ligne)) {
+                    mettreAJour(ligne);
+                    ecarts++;
+                }
+            }
+            // Annonces encore en mémoire mais absentes de la base
+            for (Long idAnnonce : enMemoire.keySet()) {
+                if (!modifiees.contains(idAnnonce)) {
+                    retirer(idAnnonce);
+                    ecarts++;
+                }
+            }
+        }
+        ecarts += relire(modifiees);
+
+        int total = Math.max(enBase.size(), 1);
+        double tauxCoherence = ecarts == 0 ? 1.0 : Math.max(0.0, 1.0 - (double) ecarts / total);
+        if (ecarts > 0) {
+            log.warn("Modèle de lecture incohérent : {} écart(s) sur {} annonce(s) à venir, corrigé(s)", ecarts, enBase.size());
+            resynchronisations.incrementAndGet();
+        }
+        derniereVerification = new EtatModeleLectureDto(true, annoncesParDepart.size(), maintenant,
+                enBase.size(), ecarts, tauxCoherence, resynchronisations.get());
+        return derniereVerification;
+    }
+
+    /**
+     * État courant du modèle et résultat de la dernière vérification de cohérence
+     */
+    public EtatModeleLectureDto etat() {
+        EtatModeleLectureDto verification = derniereVerification;
+        if (verification == null) {
+            return new EtatModeleLectureDto(charge, annoncesParDepart.size(), null, 0, 0, 1.0, resynchronisations.get());
+        }
+        return new EtatModeleLectureDto(charge, annoncesParDepart.size(), verification.derniereVerification(),
+                verification.annoncesEnBase(), verification.ecarts(), verification.tauxCoherence(), resynchronisations.get());
+    }
+
+    /**
+     * Liste les annonces à venir triées par heure de départ
+     */
+    public List<AnnonceCovoiturageLigneDto> annoncesAVenir() {
+        return new ArrayList<>(annoncesParDepart
+                .tailMap(new CleDepart(LocalDateTime.now(), Long.MAX_VALUE), false)
+                .values());
+    }
+
+    /**
+     * Recherche paginée par curseur, avec la même sémantique que AnnonceCovoiturageRepository.rechercherAvecCurseur
+     * Les villes sont comparées sans tenir compte de la casse, comme le fait la collation MySQL.
+     * Ne doit être utilisée que pour une borne inférieure (dateDebut ou curseur) non antérieure à maintenant.
+     * @return au plus "limite" lignes triées par (heure de départ, id)
+     */
+    public List<AnnonceCovoiturageLigneDto> rechercher(String villeDepart, String codePostalDepart,
+                                                       String villeArrivee, String codePostalArrivee,
+                                                       LocalDateTime dateDebut, LocalDateTime dateFin,
+                                                       Integer placesMin,
+                                                       LocalDateTime curseurHeureDepart, Long curseurId,
+                                                       int limite) {
+        NavigableMap<CleDepart, AnnonceCovoiturageLigneDto> plage = annoncesParDepart;
+        if (curseurHeureDepart != null) {
+            plage = plage.tailMap(new CleDepart(curseurHeureDepart, curseurId), false);
+        }
+        if (dateDebut != null) {
+            plage = plage.tailMap(new CleDepart(dateDebut, Long.MIN_VALUE), true);
+        }
+        if (dateFin != null) {
+            plage = plage.headMap(new CleDepart(dateFin, Long.MAX_VALUE), true);
+        }
+
+        List<AnnonceCovoiturageLigneDto> resultat = new ArrayList<>();
+        for (AnnonceCovoiturageLigneDto ligne : plage.values()) {
+            if (correspond(ligne, villeDepart, codePostalDepart, villeArrivee, codePostalArrivee, placesMin)) {
+                resultat.add(ligne);
+                if (resultat.size() >= limite) {
+                    break;
+                }
+            }
+        }
+        return resultat;
+    }
+
+    private boolean correspond(AnnonceCovoiturageLigneDto ligne, String villeDepart, String codePostalDepart,
+                               String villeArrivee, String codePostalArrivee, Integer placesMin) {
+        if (villeDepart != null && !villeDepart.equalsIgnoreCase(ligne.adresseDepartVille())) {
+            return false;
+        }
+        if (codePostalDepart != null && !codePostalDepart.equals(ligne.adresseDepartCodePostal())) {
+            return false;
+        }
+        if (villeArrivee != null && !villeArrivee.equalsIgnoreCase(ligne.adresseArriveeVille())) {
+            return false;
+        }
+        if (codePostalArrivee != null && !codePostalArrivee.equals(ligne.adresseArriveeCodePostal())) {
+            return false;
+        }
+        // Annonce sans véhicule retrouvable : exclue, comme en base
+        if (!ligne.aUnVehicule()) {
+            return false;
+        }
+        if (placesMin != null) {
+            long placesOccupees = ligne.placesOccupees() == null ? 0 : ligne.placesOccupees();
+            return ligne.placesTotales() - 1 - placesOccupees >= placesMin;
+        }
+        return true;
+    }
+
+    /**
+     * Relit une à une les annonces mises à jour pendant une lecture complète et corrige celles en écart
+     * Une annonce de nouveau mise à jour pendant cette relecture est ignorée : l'événement est plus récent.
+     * @return le nombre d'annonces corrigées
+     */
+    private int relire(Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Set<Long> encoreModifiees = commencerLecture();
+        List<AnnonceCovoiturageLigneDto> lignes = lire(encoreModifiees,
+                () -> annonceCovoiturageRepository.findAvecPlacesParIds(ids));
+        Map<Long, AnnonceCovoiturageLigneDto> enBase = new HashMap<>();
+        lignes.forEach(ligne -> enBase.put(ligne.id(), ligne));
+        LocalDateTime maintenant = LocalDateTime.now();
+
+        int ecarts = 0;
+        synchronized (this) {
+            terminerLecture(encoreModifiees);
+            for (Long idAnnonce : ids) {
+                if (encoreModifiees.contains(idAnnonce)) {
+                    continue;
+                }
+                AnnonceCovoiturageLigneDto ligne = enBase.get(idAnnonce);
+                CleDepart cle = clesParId.get(idAnnonce);
+                AnnonceCovoiturageLigneDto enMemoire = cle == null ? null : annoncesParDepart.get(cle);
+                if (ligne == null || ligne.heureDepart() == null || !ligne.heureDepart().isAfter(maintenant)) {
+                    if (enMemoire != null) {
+                        retirer(idAnnonce);
+                        ecarts++;
+                    }
+                } else if (!Objects.equals(enMemoire, ligne)) {
+                    mettreAJour(ligne);
+                    ecarts++;
+                }
+            }
+        }
+        return ecarts;
+    }
+
+    /**
+     * Enregistre une lecture complète : les annonces mises à jour jusqu'à terminerLecture y sont notées
+     */
+    private synchronized Set<Long> commencerLecture() {
+        Set<Long> modifiees = new HashSet<>();
+        lecturesEnCours.add(modifiees);
+        return modifiees;
+    }
+
+    private synchronized void terminerLecture(Set<Long> modifiees) {
+        // Comparaison par identité : deux lectures sans modification ont des ensembles égaux
+        lecturesEnCours.removeIf(lecture -> lecture == modifiees);
+    }
+
+    private List<AnnonceCovoiturageLigneDto> lire(Set<Long> modifiees, Supplier<List<AnnonceCovoiturageLigneDto>> lecture) {
+        try {
+            return lecture.get();
+        } catch (RuntimeException e) {
+            terminerLecture(modifiees);
+            throw e;
+        }
+    }
+
+    private void noterModification(Long idAnnonce) {
+        for (Set<Long> modifiees : lecturesEnCours) {
+            modifiees.add(idAnnonce);
+        }
+    }
+
+    private synchronized void remplacer(List<AnnonceCovoiturageLigneDto> lignes) {
+        annoncesParDepart.clear();
+        clesParId.clear();
+        for (AnnonceCovoiturageLigneDto ligne : lignes) {
+            if (ligne.heureDepart() == null) {
+                continue;
+            }
+            CleDepart cle = new CleDepart(ligne.heureDepart(), ligne.id());
+            annoncesParDepart.put(cle, ligne);
+            clesParId.put(ligne.id(), cle);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package fr.diginamic.gestiondestransports.cache;
+
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compteurs de version des données listées par l'API, utilisés pour produire des ETag forts.
+ * Chaque écriture passant par les services incrémente le compteur de l'ensemble concerné,
+ * une fois la transaction validée : un client qui renvoie l'ETag courant reçoit 304 Not Modified
+ * sans lecture en base ni sérialisation.
+ *
+ * L'ETag doit être calculé avant la lecture des données : une écriture validée entre les deux
+ * produit alors un ETag plus ancien que les données renvoyées, jamais l'inverse.
+ * Les compteurs sont propres à l'instance ; l'instant de démarrage fait partie de l'ETag
+ * pour qu'un redémarrage ne réutilise pas une version déjà distribuée.
+ */
+@Component
+public class VersionsAgregats {
+
+    private final String demarrage = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<AgregatVersionne, AtomicLong> versions = new EnumMap<>(AgregatVersionne.class);
+
+    public VersionsAgregats() {
+        for (AgregatVersionne agregat : AgregatVersionne.values()) {
+            versions.put(agregat, new AtomicLong());
+        }
+    }
+
+    /**
+     * Incrémente la version d'un ensemble de données, après validation de la transaction en cours s'il y en a une
+     * Une transaction annulée ne change pas la version.
+     * @param agregat l'ensemble de données modifié
+     */
+    public void incrementer(AgregatVersionne agregat) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.get(agregat).incrementAndGet();
+                }
+            });
+        } else {
+            versions.get(agregat).incrementAndGet();
+        }
+    }
+
+    /**
+     * Toute modification d'annonce (création, modification, suppression, réservation, annulation)
+     * change la version des données de covoiturage
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void surEvenementAnnonce(AnnonceCovoiturageEvenement evenement) {
+        versions.get(AgregatVersionne.COVOITURAGE).incrementAndGet();
+    }
+
+    /**
+     * Version courante d'un ensemble de données
+     */
+    public long version(AgregatVersionne agregat) {
+        return versions.get(agregat).get();
+    }
+
+    /**
+     * ETag fort (entre guillemets) d'une liste dépendant d'un seul ensemble de données
+     * @param agregat l'ensemble de données listé
+     * @return l'ETag de la version courante
+     */
+    public String etag(AgregatVersionne agregat) {
+        return "\"" + prefixe(agregat) + "\"";
+    }
+
+    /**
+     * ETag fort d'une liste propre à un utilisateur (par exemple ses réservations)
+     * La clé est l'identifiant technique de l'utilisateur : deux utilisateurs n'obtiennent jamais le même ETag.
+     * @param agregat l'ensemble de données listé
+     * @param idUtilisateur l'identifiant de l'utilisateur
+     * @return l'ETag de la version courante pour cet utilisateur
+     */
+    public String etag(AgregatVersionne agregat, Long idUtilisateur) {
+        return "\"" + prefixe(agregat) + "-u" + Long.toString(idUtilisateur, 36) + "\"";
+    }
+
+    private String prefixe(AgregatVersionne agregat) {
+        return agregat.name().toLowerCase() + "-" + demarrage + "-" + version(agregat);
+    }
+}
@@ -0,0 +1,36 @@
+package fr.diginamic.gestiondestransports.config;
+
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+/**
+ * Initialise au démarrage les compteurs de places (places_totales / places_occupees)
+ * des annonces de covoiturage créées avant leur introduction.
+ * Les annonces déjà initialisées ne sont pas modifiées.
+ */
+@Component
+public class InitialisationCompteursPlaces {
+
+    private static final Logger log = LogManager.getLogger(InitialisationCompteursPlaces.class);
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    public InitialisationCompteursPlaces(AnnonceCovoiturageRepository annonceCovoiturageRepository) {
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+    }
+
+    /**
+     * Calcule les compteurs manquants une fois l'application démarrée.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialiser() {
+        int annoncesInitialisees = annonceCovoiturageRepository.initialiserCompteursPlaces();
+        if (annoncesInitialisees > 0) {
+            log.info("Compteurs de places initialisés pour {} annonce(s) de covoiturage", annoncesInitialisees);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package fr.diginamic.gestiondestransports.config;
+
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+/**
+ * Calcule au démarrage le corridor des annonces de covoiturage à venir créées avant son introduction,
+ * afin qu'elles apparaissent dans la recherche de trajets compatibles.
+ * Les annonces disposant déjà d'un corridor ne sont pas modifiées.
+ */
+@Component
+public class InitialisationCorridors {
+
+    private static final Logger log = LogManager.getLogger(InitialisationCorridors.class);
+    private final CorridorCovoiturageService corridorCovoiturageService;
+
+    public InitialisationCorridors(CorridorCovoiturageService corridorCovoiturageService) {
+        this.corridorCovoiturageService = corridorCovoiturageService;
+    }
+
+    /**
+     * Calcule les corridors manquants une fois l'application démarrée.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiser() {
+        int annoncesIndexees = corridorCovoiturageService.indexerAnnoncesSansCorridor();
+        if (annoncesIndexees > 0) {
+            log.info("Corridor calculé pour {} annonce(s) de covoiturage à venir", annoncesIndexees);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package fr.diginamic.gestiondestransports.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+/**
+ * Active l'exécution des tâches planifiées (@Scheduled) de l'application.
+ */
+@Configuration
+@EnableScheduling
+public class PlanificationConfig {
+}
@@ -1,21 +1,54 @@
 package fr.diginamic.gestiondestransports.controllers;
 
+import fr.diginamic.gestiondestransports.cache.ModeleLectureAnnonces;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageAvecPlacesDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageCompatibleDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageProximiteDto;
+import fr.diginamic.gestiondestransports.dto.EtatModeleLectureDto;
+import fr.diginamic.gestiondestransports.dto.LigneImportCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.ListeAttenteDto;
+import fr.diginamic.gestiondestransports.dto.PageAnnoncesCovoiturageDto;
 import fr.diginamic.gestiondestransports.dto.ParticipantsCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.RechercheAnnonceCovoiturageDto;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.evenements.DiffuseurPlacesCovoiturage;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
 import fr.diginamic.gestiondestransports.services.AnnonceCovoiturageService;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ArchivageCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ExportCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ImportCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ListeAttenteCovoiturageService;
 import fr.diginamic.gestiondestransports.services.UtilisateurService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Contrôleur REST pour la gestion des annonces de covoiturage
@@ -25,15 +58,42 @@ import java.util.List;
 @Tag(name = "Annonces de covoiturage", description = "Gestion des annonces de covoiturage et des réservations")
 public class AnnonceCovoiturageController {
 
+    // Listes avec ETag : le navigateur conserve la réponse mais la revalide à chaque appel
+    private static final CacheControl REVALIDATION = CacheControl.noCache().cachePrivate();
+
     private final AnnonceCovoiturageService annonceCovoiturageService;
     private final UtilisateurService utilisateurService;
+    private final CorridorCovoiturageService corridorCovoiturageService;
+    private final ModeleLectureAnnonces modeleLectureAnnonces;
+    private final VersionsAgregats versionsAgregats;
+    private final DiffuseurPlacesCovoiturage diffuseurPlaces;
+    private final ExportCovoiturageService exportCovoiturageService;
+    private final ArchivageCovoiturageService archivageCovoiturageService;
+    private final ImportCovoiturageService importCovoiturageService;
+    private final ListeAttenteCovoiturageService listeAttenteService;
 
     @Autowired
     public AnnonceCovoiturageController(
             AnnonceCovoiturageService annonceCovoiturageService,
-            UtilisateurService utilisateurService) {
+            UtilisateurService utilisateurService,
+            CorridorCovoiturageService corridorCovoiturageService,
+            ModeleLectureAnnonces modeleLectureAnnonces,
+            VersionsAgregats versionsAgregats,
+            DiffuseurPlacesCovoiturage diffuseurPlaces,
+            ExportCovoiturageService exportCovoiturageService,
+            ArchivageCovoiturageService archivageCovoiturageService,
+            ImportCovoiturageService importCovoiturageService,
+            ListeAttenteCovoiturageService listeAttenteService) {
         this.annonceCovoiturageService = annonceCovoiturageService;
         this.utilisateurService = utilisateurService;
+        this.corridorCovoiturageService = corridorCovoiturageService;
+        this.modeleLectureAnnonces = modeleLectureAnnonces;
+        this.versionsAgregats = versionsAgregats;
+        this.diffuseurPlaces = diffuseurPlaces;
+        this.exportCovoiturageService = exportCovoiturageService;
+        this.archivageCovoiturageService = archivageCovoiturageService;
+        this.importCovoiturageService = importCovoiturageService;
+        this.listeAttenteService = listeAttenteService;
     }
 
     /**
@@ -71,8 +131,10 @@ public class AnnonceCovoiturageController {
      * @param id l'identifiant unique de l'annonce à modifier
      * @param annonceDto les nouvelles données de l'annonce
      * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
-     * @return ResponseEntity contenant l'annonce modifiée (200 OK) ou vide (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
-     * @throws IllegalArgumentException si l'annonce n'existe pas, si l'utilisateur n'est pas le responsable, ou si des réservations existent
+     * @return ResponseEntity contenant l'annonce modifiée (200 OK) ou vide (400 BAD REQUEST /
+     *         409 CONFLICT si une autre occurrence du trajet récurrent a pris ce départ entre-temps / 500 INTERNAL SERVER ERROR)
+     * @throws IllegalArgumentException si l'annonce n'existe pas, si l'utilisateur n'est pas le responsable, si des réservations existent
+     *         ou si une autre occurrence du même trajet récurrent part déjà à cette heure
      */
     @PutMapping("/{id}")
     @Operation(
@@ -94,6 +156,9 @@ public class AnnonceCovoiturageController {
 
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
+        } catch (DataIntegrityViolationException e) {
+            // Occurrence créée au même départ entre la vérification et la validation de la transaction
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -170,7 +235,8 @@ public class AnnonceCovoiturageController {
      *
      * @param id l'identifiant unique de l'annonce de covoiturage
      * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
-     * @return ResponseEntity avec message de confirmation (200 OK) ou message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     * @return ResponseEntity avec message de confirmation (200 OK) ou message d'erreur
+     *         (400 BAD REQUEST / 409 CONFLICT si une réservation simultanée l'a emporté / 500 INTERNAL SERVER ERROR)
      * @throws IllegalArgumentException si les conditions de réservation ne sont pas remplies
      */
     @PostMapping("/reserve/{id}")
@@ -191,6 +257,9 @@ public class AnnonceCovoiturageController {
 
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (ConcurrencyFailureException e) {
+            // Interblocage ou délai de verrou dépassé face à une réservation simultanée : rien n'a été enregistré
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Réservation simultanée en cours sur ce covoiturage, veuillez réessayer");
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur lors de la réservation");
         }
@@ -232,50 +301,380 @@ public class AnnonceCovoiturageController {
         }
     }
 
+    /**
+     * Inscrit l'utilisateur connecté sur la liste d'attente d'un covoiturage complet.
+     * Lorsqu'une place se libère, elle est attribuée automatiquement au premier inscrit, prévenu par email.
+     *
+     * @param id l'identifiant unique de l'annonce de covoiturage
+     * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
+     * @return ResponseEntity contenant l'inscription et sa position (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @PostMapping("/attente/{id}")
+    @Operation(summary = "S'inscrire sur la liste d'attente d'un covoiturage complet. La première place libérée est attribuée au premier inscrit.")
+    public ResponseEntity<?> inscrireListeAttente(@PathVariable Long id, Authentication authentication) {
+        try {
+            Long idUtilisateurConnecte = utilisateurService.obtenirUtilisateurParEmail(authentication.getName()).getId();
+            ListeAttenteDto inscription = listeAttenteService.inscrire(id, idUtilisateurConnecte);
+            return ResponseEntity.ok(inscription);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur lors de l'inscription sur la liste d'attente");
+        }
+    }
+
+    /**
+     * Retire l'utilisateur connecté de la liste d'attente d'un covoiturage.
+     *
+     * @param id l'identifiant unique de l'annonce de covoiturage
+     * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
+     * @return ResponseEntity avec message de confirmation (200 OK) ou message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @DeleteMapping("/attente/{id}")
+    @Operation(summary = "Quitter la liste d'attente d'un covoiturage")
+    public ResponseEntity<String> desinscrireListeAttente(@PathVariable Long id, Authentication authentication) {
+        try {
+            Long idUtilisateurConnecte = utilisateurService.obtenirUtilisateurParEmail(authentication.getName()).getId();
+            listeAttenteService.desinscrire(id, idUtilisateurConnecte);
+            return ResponseEntity.ok("Vous avez quitté la liste d'attente");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur lors de la désinscription de la liste d'attente");
+        }
+    }
+
+    /**
+     * Récupère les listes d'attente sur lesquelles l'utilisateur connecté est inscrit, avec sa position dans chacune.
+     *
+     * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
+     * @return ResponseEntity contenant les inscriptions (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/mes-attentes")
+    @Operation(summary = "Récupérer les listes d'attente de l'utilisateur connecté et sa position dans chacune")
+    public ResponseEntity<?> obtenirListesAttenteUtilisateur(Authentication authentication) {
+        try {
+            Long idUtilisateurConnecte = utilisateurService.obtenirUtilisateurParEmail(authentication.getName()).getId();
+            return ResponseEntity.ok(listeAttenteService.obtenirListesAttenteUtilisateur(idUtilisateurConnecte));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
 
     /**
      * Récupère la liste complète de toutes les annonces de covoiturage disponibles.
      * Pour chaque annonce, affiche le nombre total de places et le nombre de places occupées.
+     * La réponse porte un ETag : si le client renvoie celui de la version courante (If-None-Match),
+     * la réponse est 304 NOT MODIFIED sans lecture des annonces.
+     * La liste comprend les trajets passés (non archivés) : elle ne peut pas être servie par le modèle de lecture,
+     * qui ne contient que les trajets à venir. Pour les seuls trajets à venir, utiliser GET /a-venir (servi en mémoire).
      *
-     * @return ResponseEntity contenant la liste de toutes les annonces avec leurs informations de places (200 OK) ou vide (500 INTERNAL SERVER ERROR)
+     * @param requete la requête HTTP (en-tête If-None-Match)
+     * @return ResponseEntity contenant la liste de toutes les annonces avec leurs informations de places (200 OK / 304 NOT MODIFIED) ou vide (500 INTERNAL SERVER ERROR)
      */
     @GetMapping("/")
     @Operation(
             summary = "Récupérer toutes les annonces de covoiturage. L'affichage indique également le nombre total de places et leur occupation.")
 
 
-    public ResponseEntity<List<AnnonceCovoiturageAvecPlacesDto>> obtenirToutesLesAnnonces() {
+    public ResponseEntity<StreamingResponseBody> obtenirToutesLesAnnonces(WebRequest requete) {
+        try {
+            // ETag calculé avant la lecture : une écriture concurrente ne peut pas être masquée
+            String etag = versionsAgregats.etag(AgregatVersionne.COVOITURAGE);
+            if (requete.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATION).build();
+            }
+            // Liste écrite en flux, lot par lot : la mémoire utilisée ne dépend pas du nombre d'annonces.
+            // L'en-tête ETag est déjà posé par checkNotModified (le recopier le dupliquerait en flux)
+            StreamingResponseBody corps = exportCovoiturageService::ecrireAnnoncesJson;
+            return ResponseEntity.ok().cacheControl(REVALIDATION)
+                    .contentType(MediaType.APPLICATION_JSON).body(corps);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Exporte toutes les annonces de covoiturage avec leur conducteur et leurs passagers (réservé aux administrateurs).
+     * Le fichier est écrit en flux, lot par lot, et peut donc couvrir tout l'historique.
+     * Format ndjson : une annonce JSON par ligne. Format csv : une ligne par passager (séparateur point-virgule).
+     *
+     * @param format "ndjson" (par défaut) ou "csv"
+     * @return ResponseEntity contenant le fichier d'export (200 OK) ou vide (400 BAD REQUEST si le format est inconnu)
+     */
+    @GetMapping("/export")
+    @Operation(summary = "Exporter toutes les annonces avec conducteur et passagers (ADMIN). format = ndjson ou csv")
+    public ResponseEntity<StreamingResponseBody> exporterAnnonces(
+            @RequestParam(defaultValue = "ndjson") String format) {
+        String horodatage = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        if ("csv".equalsIgnoreCase(format)) {
+            StreamingResponseBody corps = exportCovoiturageService::ecrireExportCsv;
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"covoiturages-" + horodatage + ".csv\"")
+                    .body(corps);
+        }
+        if ("ndjson".equalsIgnoreCase(format)) {
+            StreamingResponseBody corps = exportCovoiturageService::ecrireExportNdjson;
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"covoiturages-" + horodatage + ".ndjson\"")
+                    .body(corps);
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * Importe en masse des annonces de covoiturage au format JSON (réservé aux administrateurs).
+     * Chaque ligne désigne son conducteur par email ; une ligne invalide est rejetée sans bloquer les autres.
+     *
+     * @param lignes les annonces à créer
+     * @return ResponseEntity contenant le rapport d'import ligne par ligne (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Importer des annonces en masse depuis un tableau JSON (ADMIN)")
+    public ResponseEntity<?> importerAnnonces(@RequestBody List<LigneImportCovoiturageDto> lignes) {
+        try {
+            return ResponseEntity.ok(importCovoiturageService.importerAnnonces(lignes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur interne: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Importe en masse des annonces de covoiturage depuis un fichier CSV UTF-8 (réservé aux administrateurs).
+     * Séparateur point-virgule, première ligne d'en-tête : emailConducteur;heureDepart;dureeTrajet;distance;
+     * numeroDepart;libelleDepart;codePostalDepart;villeDepart;numeroArrivee;libelleArrivee;codePostalArrivee;
+     * villeArrivee;vehiculeServiceId (dureeTrajet, distance, numéros et véhicule sont optionnels).
+     *
+     * @param csv le contenu du fichier
+     * @return ResponseEntity contenant le rapport d'import, numéroté selon les lignes du fichier (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "Importer des annonces en masse depuis un fichier CSV (ADMIN)")
+    public ResponseEntity<?> importerAnnoncesCsv(InputStream csv) {
+        try (Reader lecteur = new InputStreamReader(csv, StandardCharsets.UTF_8)) {
+            return ResponseEntity.ok(importCovoiturageService.importerAnnoncesCsv(lecteur));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur interne: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Statistiques mensuelles des trajets archivés (réservé aux administrateurs) : nombre de trajets,
+     * de passagers transportés et kilomètres parcourus. Les trajets sont archivés quelques mois après leur départ.
+     *
+     * @param debut premier jour de la période (optionnel, par défaut un an avant la fin)
+     * @param fin dernier jour de la période (optionnel, par défaut aujourd'hui)
+     * @return ResponseEntity contenant une ligne par mois (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/archives/statistiques")
+    @Operation(summary = "Statistiques mensuelles des trajets archivés (ADMIN)")
+    public ResponseEntity<?> obtenirStatistiquesArchives(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate debut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fin) {
+        try {
+            return ResponseEntity.ok(archivageCovoiturageService.obtenirStatistiquesArchives(debut, fin));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur interne: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Récupère les annonces de covoiturage à venir, triées par heure de départ.
+     * Pour chaque annonce, affiche le nombre total de places et le nombre de places occupées.
+     * Servie par le modèle de lecture en mémoire dès qu'il est chargé : c'est la liste à interroger pour l'affichage
+     * des trajets réservables, GET / restant la liste complète (historique compris) lue en base.
+     *
+     * @return ResponseEntity contenant la liste des annonces à venir (200 OK) ou vide (500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/a-venir")
+    @Operation(
+            summary = "Récupérer les annonces de covoiturage à venir, triées par heure de départ, avec le nombre total de places et leur occupation.")
+    public ResponseEntity<List<AnnonceCovoiturageAvecPlacesDto>> obtenirAnnoncesAVenir() {
+        try {
+            return ResponseEntity.ok(annonceCovoiturageService.obtenirAnnoncesAVenir());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Ouvre un flux Server-Sent Events poussant l'évolution des places des annonces de covoiturage.
+     * Événements "places" (réservation, annulation, modification) et "suppression", au format JSON :
+     * identifiant de l'annonce, type de modification, places totales, occupées et disponibles.
+     * Les messages manqués pendant une déconnexion ne sont pas rejoués : relire les annonces à la reconnexion.
+     *
+     * @param annonces identifiants des annonces suivies (optionnel, toutes par défaut)
+     * @return ResponseEntity contenant le flux (200 OK) ou vide (503 SERVICE UNAVAILABLE si trop de clients sont connectés)
+     */
+    @GetMapping(value = "/places/flux", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Flux SSE des places disponibles : réservations, annulations, modifications et suppressions d'annonces en temps réel")
+    public ResponseEntity<SseEmitter> fluxPlaces(@RequestParam(required = false) List<Long> annonces) {
+        try {
+            return ResponseEntity.ok(diffuseurPlaces.abonner(annonces));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    /**
+     * Retourne l'état du modèle de lecture en mémoire des annonces à venir
+     * (taille, dernière vérification de cohérence avec la base, nombre d'écarts et de rechargements).
+     * Réservé aux administrateurs.
+     *
+     * @return ResponseEntity contenant l'état du modèle de lecture (200 OK)
+     */
+    @GetMapping("/modele-lecture/etat")
+    @Operation(summary = "ADMIN : état et cohérence du modèle de lecture en mémoire des annonces à venir")
+    public ResponseEntity<EtatModeleLectureDto> obtenirEtatModeleLecture() {
+        return ResponseEntity.ok(modeleLectureAnnonces.etat());
+    }
+
+
+    /**
+     * Recherche les annonces de covoiturage avec filtres optionnels et pagination par curseur.
+     * Sans date de début, seules les annonces à venir sont renvoyées, triées par heure de départ.
+     * Pour obtenir la page suivante, renvoyer le curseurSuivant reçu dans le paramètre curseur.
+     *
+     * @param villeDepart ville de départ (optionnelle)
+     * @param codePostalDepart code postal de départ (optionnel)
+     * @param villeArrivee ville d'arrivée (optionnelle)
+     * @param codePostalArrivee code postal d'arrivée (optionnel)
+     * @param dateDebut heure de départ minimale au format ISO (optionnelle)
+     * @param dateFin heure de départ maximale au format ISO (optionnelle)
+     * @param placesMin nombre minimal de places libres (optionnel)
+     * @param curseur curseur renvoyé par la page précédente (optionnel)
+     * @param taille nombre d'annonces par page (20 par défaut, 100 maximum)
+     * @return ResponseEntity contenant la page d'annonces et le curseur suivant (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/recherche")
+    @Operation(
+            summary = "Rechercher des annonces de covoiturage (ville ou code postal de départ/arrivée, période, places libres minimum) avec pagination par curseur.")
+    public ResponseEntity<?> rechercherAnnonces(
+            @RequestParam(required = false) String villeDepart,
+            @RequestParam(required = false) String codePostalDepart,
+            @RequestParam(required = false) String villeArrivee,
+            @RequestParam(required = false) String codePostalArrivee,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateDebut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFin,
+            @RequestParam(required = false) Integer placesMin,
+            @RequestParam(required = false) String curseur,
+            @RequestParam(required = false) Integer taille) {
+        try {
+            RechercheAnnonceCovoiturageDto criteres = RechercheAnnonceCovoiturageDto.of(
+                    villeDepart, codePostalDepart, villeArrivee, codePostalArrivee,
+                    dateDebut, dateFin, placesMin, curseur, taille);
+            PageAnnoncesCovoiturageDto page = annonceCovoiturageService.rechercherAnnonces(criteres);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Recherche les annonces de covoiturage à venir partant à proximité d'un point (par exemple le domicile).
+     * La distance est calculée à vol d'oiseau à partir des coordonnées enregistrées des adresses de départ.
+     *
+     * @param latitude latitude du point de recherche
+     * @param longitude longitude du point de recherche
+     * @param rayonKm rayon de recherche en kilomètres (10 par défaut, 100 maximum)
+     * @param taille nombre maximal d'annonces renvoyées (20 par défaut, 100 maximum)
+     * @return ResponseEntity contenant les annonces triées par distance (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/proximite")
+    @Operation(
+            summary = "Rechercher les annonces de covoiturage à venir partant dans un rayon donné autour d'un point, triées par distance.")
+    public ResponseEntity<?> rechercherAnnoncesProximite(
+            @RequestParam Double latitude,
+            @RequestParam Double longitude,
+            @RequestParam(required = false) Double rayonKm,
+            @RequestParam(required = false) Integer taille) {
         try {
-            List<AnnonceCovoiturageAvecPlacesDto> annonces = annonceCovoiturageService.obtenirToutesLesAnnonces();
+            List<AnnonceCovoiturageProximiteDto> annonces =
+                    annonceCovoiturageService.rechercherAnnoncesProximite(latitude, longitude, rayonKm, taille);
             return ResponseEntity.ok(annonces);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Recherche les annonces de covoiturage à venir dont le trajet passe près du point de prise en charge
+     * puis du point de dépose d'un passager, et pas seulement celles partant et arrivant aux mêmes adresses.
+     * Le trajet est le tracé routier calculé à la création de l'annonce, ou la ligne droite départ/arrivée à défaut.
+     *
+     * @param latitudePriseEnCharge latitude du point de prise en charge
+     * @param longitudePriseEnCharge longitude du point de prise en charge
+     * @param latitudeDepose latitude du point de dépose
+     * @param longitudeDepose longitude du point de dépose
+     * @param detourKm distance maximale entre chaque point et le trajet (5 km par défaut, 30 maximum)
+     * @param taille nombre maximal d'annonces renvoyées (20 par défaut, 100 maximum)
+     * @return ResponseEntity contenant les annonces triées par détour croissant (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/trajets-compatibles")
+    @Operation(
+            summary = "Rechercher les annonces de covoiturage à venir dont le trajet passe près d'un point de prise en charge puis d'un point de dépose.")
+    public ResponseEntity<?> rechercherTrajetsCompatibles(
+            @RequestParam Double latitudePriseEnCharge,
+            @RequestParam Double longitudePriseEnCharge,
+            @RequestParam Double latitudeDepose,
+            @RequestParam Double longitudeDepose,
+            @RequestParam(required = false) Double detourKm,
+            @RequestParam(required = false) Integer taille) {
+        try {
+            List<AnnonceCovoiturageCompatibleDto> annonces = corridorCovoiturageService.rechercherTrajetsCompatibles(
+                    latitudePriseEnCharge, longitudePriseEnCharge, latitudeDepose, longitudeDepose, detourKm, taille);
+            return ResponseEntity.ok(annonces);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 
     /**
      * Récupère toutes les réservations de covoiturage de l'utilisateur connecté en tant que passager.
      * N'inclut pas les annonces où l'utilisateur est conducteur.
      * Pour chaque réservation, affiche le nombre total de places et le nombre de places occupées.
+     * La réponse porte un ETag propre à l'utilisateur : s'il est inchangé, la réponse est 304 NOT MODIFIED
+     * sans aucune lecture en base.
      *
      * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
-     * @return ResponseEntity contenant la liste des réservations (200 OK) ou message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     * @param requete la requête HTTP (en-tête If-None-Match)
+     * @return ResponseEntity contenant la liste des réservations (200 OK / 304 NOT MODIFIED) ou message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
      * @throws IllegalArgumentException si l'utilisateur n'existe pas
      */
     @GetMapping("/mes-reservations")
     @Operation(
             summary = "Récupérer toutes les réservations de covoiturage de l'utilisateur connecté en tant que passager. L'affichage indique également le nombre total de places et leur occupation.")
-    public ResponseEntity<?> obtenirToutesLesReservationsUtilisateur(Authentication authentication) {
+    public ResponseEntity<?> obtenirToutesLesReservationsUtilisateur(Authentication authentication, WebRequest requete) {
         try {
             // Récupérer l'ID de l'utilisateur connecté depuis le JWT
             String emailUtilisateurConnecte = authentication.getName();
             Utilisateur utilisateur = utilisateurService.obtenirUtilisateurParEmail(emailUtilisateurConnecte);
+            String etag = versionsAgregats.etag(AgregatVersionne.COVOITURAGE, utilisateur.getId());
+            if (requete.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATION).build();
+            }
 
             // Récupérer les réservations de l'utilisateur
             List<AnnonceCovoiturageAvecPlacesDto> reservations = annonceCovoiturageService.obtenirReservationsUtilisateur(utilisateur.getId());
 
-            return ResponseEntity.ok(reservations);
+            return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATION).body(reservations);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -307,6 +706,30 @@ public class AnnonceCovoiturageController {
         }
     }
 
+    /**
+     * Récupère en une seule requête les participants de plusieurs annonces de covoiturage,
+     * pour afficher une liste de cartes sans appeler /{id}/participants pour chacune.
+     *
+     * @param ids les identifiants des annonces (au plus 100), ex. ?ids=1,2,3
+     * @return ResponseEntity contenant les participants indexés par identifiant d'annonce (200 OK),
+     * les annonces inconnues étant absentes, ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/participants")
+    @Operation(
+            summary = "Récupérer les participants de plusieurs covoiturages",
+            description = "Retourne, pour chaque annonce demandée (100 au plus), le conducteur et la liste des passagers"
+    )
+    public ResponseEntity<?> obtenirParticipantsParAnnonces(@RequestParam(required = false) List<Long> ids) {
+        try {
+            Map<Long, ParticipantsCovoiturageDto> participants = annonceCovoiturageService.obtenirParticipantsParAnnonces(ids);
+            return ResponseEntity.ok(participants);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur interne: " + e.getMessage());
+        }
+    }
+
     /**
      * Récupère les participants d'une annonce de covoiturage.
      * Retourne le conducteur (responsable) et la liste complète de tous les passagers ayant réservé.
@@ -1,6 +1,9 @@
 package fr.diginamic.gestiondestransports.controllers;
 
+import fr.diginamic.gestiondestransports.dto.PlanningVehiculeDto;
+import fr.diginamic.gestiondestransports.dto.RapportReservationRecurrenteDto;
 import fr.diginamic.gestiondestransports.dto.ReservationVehiculeDTO;
+import fr.diginamic.gestiondestransports.dto.ReservationVehiculeRecurrenteDto;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
 import fr.diginamic.gestiondestransports.services.ReservationVehiculeService;
 import fr.diginamic.gestiondestransports.services.UtilisateurService;
@@ -91,6 +94,24 @@ public class ReservationVehiculeController {
                 .buildAndExpand(created.id()).toUri();
         return ResponseEntity.created(location).body(created);
     }
+    /**
+     * Réserve un véhicule de service pour chaque occurrence d'une récurrence (ex. chaque mardi pendant un trimestre)
+     * pour l'utilisateur authentifié, en une seule requête au lieu d'un POST par occurrence.
+     * Les occurrences libres sont réservées ; celles qui chevauchent une réservation du véhicule
+     * ou de l'utilisateur sont renvoyées avec le motif du conflit (aucune n'est réservée si toutOuRien vaut true).
+     *
+     * @param userDetails les détails de l'utilisateur authentifié
+     * @param dto la récurrence (vehiculeId, joursSemaine, dateDebut, dateFin, heureDebut, dureeMinutes, toutOuRien)
+     * @return ResponseEntity contenant les réservations créées et les occurrences en conflit (200 OK) ou erreur (400 BAD REQUEST, 404 NOT FOUND)
+     */
+    @PostMapping("/recurrentes")
+    @Operation(summary = "Réserver un véhicule d'entreprise pour chaque occurrence d'une récurrence")
+    public ResponseEntity<RapportReservationRecurrenteDto> createRecurrentes(@AuthenticationPrincipal UserDetails userDetails,
+                                                                             @Valid @RequestBody ReservationVehiculeRecurrenteDto dto) {
+        Utilisateur user = getUtilisateur(userDetails);
+
+        return ResponseEntity.ok(service.createRecurrentes(user, dto));
+    }
     /**
      * Modifie une réservation de véhicule existante.
      * Seul le propriétaire de la réservation peut la modifier.
@@ -189,6 +210,24 @@ public class ReservationVehiculeController {
 
         return ResponseEntity.ok(service.findByVehiculeId(vehiculeId));
     }
+    /**
+     * Récupère le planning d'occupation de toute la flotte de véhicules de service sur une période.
+     * Pour chaque véhicule, renvoie les créneaux occupés (réservations et covoiturages fusionnés), tronqués à la période.
+     * Remplace un appel par véhicule à /vehicule/{vehiculeId} pour construire le tableau de planning.
+     * Réservé aux administrateurs.
+     *
+     * @param dateDebut la date et heure de début de la période
+     * @param dateFin la date et heure de fin de la période (93 jours au plus après le début)
+     * @return ResponseEntity contenant une ligne par véhicule (200 OK) ou erreur (400 BAD REQUEST si la période est invalide)
+     */
+    @GetMapping("/planning")
+    @Operation(summary = "Planning d'occupation de tous les véhicules d'entreprise sur une période (admin)")
+    public ResponseEntity<List<PlanningVehiculeDto>> getPlanningFlotte(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateDebut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateFin) {
+
+        return ResponseEntity.ok(service.planningFlotte(dateDebut, dateFin));
+    }
     /**
      * Méthode utilitaire privée pour récupérer l'entité Utilisateur à partir des détails d'authentification.
      * Extrait l'email du UserDetails et charge l'utilisateur complet depuis la base de données.
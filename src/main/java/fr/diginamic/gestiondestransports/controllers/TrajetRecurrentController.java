@@ -0,0 +1,141 @@
+package fr.diginamic.gestiondestransports.controllers;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.TrajetRecurrentDto;
+import fr.diginamic.gestiondestransports.services.TrajetRecurrentService;
+import fr.diginamic.gestiondestransports.services.UtilisateurService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Contrôleur REST pour les trajets de covoiturage récurrents
+ */
+@RestController
+@RequestMapping("/api/covoit/recurrents")
+@Tag(name = "Trajets récurrents", description = "Trajets de covoiturage répétés chaque semaine sur une période")
+public class TrajetRecurrentController {
+
+    private final TrajetRecurrentService trajetRecurrentService;
+    private final UtilisateurService utilisateurService;
+
+    public TrajetRecurrentController(TrajetRecurrentService trajetRecurrentService, UtilisateurService utilisateurService) {
+        this.trajetRecurrentService = trajetRecurrentService;
+        this.utilisateurService = utilisateurService;
+    }
+
+    /**
+     * Crée un trajet récurrent pour l'utilisateur authentifié (ex. du lundi au vendredi à 08:00 pendant 3 mois).
+     * Les occurrences des prochains jours sont publiées comme des annonces ordinaires ; les suivantes
+     * sont créées au fil du temps ou lorsqu'un passager réserve une date plus lointaine.
+     *
+     * Les occurrences utilisent le véhicule personnel du conducteur : un véhicule de service se réserve
+     * créneau par créneau, vehiculeServiceId doit donc être null.
+     *
+     * @param trajetDto les jours, l'heure, la période et les adresses
+     * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
+     * @return ResponseEntity contenant le trajet créé (201 CREATED) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @PostMapping
+    @Operation(summary = "Créer un trajet récurrent. joursSemaine = MONDAY..SUNDAY, période de 12 mois au plus")
+    public ResponseEntity<?> creerTrajetRecurrent(@Valid @RequestBody TrajetRecurrentDto trajetDto,
+                                                  Authentication authentication) {
+        try {
+            Long idUtilisateurConnecte = utilisateurService.obtenirUtilisateurParEmail(authentication.getName()).getId();
+            TrajetRecurrentDto trajetCree = trajetRecurrentService.creerTrajetRecurrent(trajetDto, idUtilisateurConnecte);
+            return ResponseEntity.status(HttpStatus.CREATED).body(trajetCree);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur interne: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Récupère les trajets récurrents en cours ou à venir.
+     *
+     * @return ResponseEntity contenant la liste des trajets (200 OK) ou vide (500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping
+    @Operation(summary = "Récupérer les trajets récurrents en cours ou à venir")
+    public ResponseEntity<List<TrajetRecurrentDto>> obtenirTrajetsRecurrents() {
+        try {
+            return ResponseEntity.ok(trajetRecurrentService.obtenirTrajetsRecurrents());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Récupère les trajets récurrents de l'utilisateur authentifié, y compris terminés ou arrêtés.
+     *
+     * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
+     * @return ResponseEntity contenant la liste des trajets (200 OK) ou vide (500 INTERNAL SERVER ERROR)
+     */
+    @GetMapping("/mes-trajets")
+    @Operation(summary = "Récupérer mes trajets récurrents")
+    public ResponseEntity<List<TrajetRecurrentDto>> obtenirMesTrajetsRecurrents(Authentication authentication) {
+        try {
+            Long idUtilisateurConnecte = utilisateurService.obtenirUtilisateurParEmail(authentication.getName()).getId();
+            return ResponseEntity.ok(trajetRecurrentService.obtenirTrajetsRecurrentsUtilisateur(idUtilisateurConnecte));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Arrête un trajet récurrent : plus aucune occurrence n'est créée.
+     * Les annonces déjà publiées restent en place et se suppriment individuellement.
+     *
+     * @param id l'identifiant du trajet récurrent
+     * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
+     * @return ResponseEntity vide (204 NO CONTENT) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Arrêter un trajet récurrent (les annonces déjà publiées sont conservées)")
+    public ResponseEntity<?> arreterTrajetRecurrent(@PathVariable Long id, Authentication authentication) {
+        try {
+            Long idUtilisateurConnecte = utilisateurService.obtenirUtilisateurParEmail(authentication.getName()).getId();
+            trajetRecurrentService.arreterTrajetRecurrent(id, idUtilisateurConnecte);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur interne: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Réserve une place sur un trajet récurrent à une date donnée.
+     * L'annonce de cette date est créée si elle n'a pas encore été publiée.
+     *
+     * @param id l'identifiant du trajet récurrent
+     * @param date la date du trajet (ex. 2026-12-01)
+     * @param authentication l'authentification JWT contenant l'email de l'utilisateur connecté
+     * @return ResponseEntity contenant l'annonce réservée (200 OK) ou un message d'erreur (400 BAD REQUEST / 500 INTERNAL SERVER ERROR)
+     */
+    @PostMapping("/{id}/reserve")
+    @Operation(summary = "Réserver une place sur un trajet récurrent à une date donnée")
+    public ResponseEntity<?> reserverOccurrence(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            Authentication authentication) {
+        try {
+            Long idUtilisateurConnecte = utilisateurService.obtenirUtilisateurParEmail(authentication.getName()).getId();
+            AnnonceCovoiturageDto annonce = trajetRecurrentService.reserverOccurrence(id, date, idUtilisateurConnecte);
+            return ResponseEntity.ok(annonce);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erreur interne: " + e.getMessage());
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package fr.diginamic.gestiondestransports.controllers;
 
+import fr.diginamic.gestiondestransports.cache.IndexOccupationsVehicules;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
+import fr.diginamic.gestiondestransports.dto.EtatIndexOccupationsDto;
 import fr.diginamic.gestiondestransports.dto.VehiculeDTO;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.enums.Categorie;
+import fr.diginamic.gestiondestransports.enums.Motorisation;
 import fr.diginamic.gestiondestransports.services.VehiculeEntrepriseService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
@@ -28,29 +37,43 @@ import java.util.List;
 @Tag(name = "Véhicules d'entreprise", description = "Gestion des véhicules de la société")
 public class VehiculeEntrepriseController {
 
+    // Listes avec ETag : le navigateur conserve la réponse mais la revalide à chaque appel
+    private static final CacheControl REVALIDATION = CacheControl.noCache().cachePrivate();
+
     private final VehiculeEntrepriseService service;
+    private final VersionsAgregats versionsAgregats;
+    private final IndexOccupationsVehicules indexOccupations;
 
-    public VehiculeEntrepriseController(VehiculeEntrepriseService service) {
+    public VehiculeEntrepriseController(VehiculeEntrepriseService service, VersionsAgregats versionsAgregats,
+                                        IndexOccupationsVehicules indexOccupations) {
         this.service = service;
+        this.versionsAgregats = versionsAgregats;
+        this.indexOccupations = indexOccupations;
     }
     /**
      * Récupère la liste complète de tous les véhicules d'entreprise.
      * Accessible à tous les utilisateurs authentifiés.
      * Affiche tous les véhicules quel que soit leur statut (en service, en réparation, hors service).
+     * Si le client renvoie l'ETag de la version courante, la réponse est 304 NOT MODIFIED sans lecture en base.
      *
-     * @return ResponseEntity contenant la liste de tous les véhicules d'entreprise (200 OK)
+     * @param requete la requête HTTP (en-tête If-None-Match)
+     * @return ResponseEntity contenant la liste de tous les véhicules d'entreprise (200 OK / 304 NOT MODIFIED)
      */
     @GetMapping
     @Operation(summary = "Récupérer tous les véhicules d'entreprise")
-    public ResponseEntity<List<VehiculeDTO>> getAll() {
-        return ResponseEntity.ok(service.findAll());
+    public ResponseEntity<List<VehiculeDTO>> getAll(WebRequest requete) {
+        String etag = versionsAgregats.etag(AgregatVersionne.VEHICULES_ENTREPRISE);
+        if (requete.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATION).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATION).body(service.findAll());
     }
 
     /**
      * Récupère les véhicules d'entreprise disponibles pour une période donnée.
      * Un véhicule est disponible si :
      * - Son statut est "en service"
-     * - Il n'a aucune réservation sur la période demandée
+     * - Il n'a aucune réservation ni aucun trajet de covoiturage sur la période demandée
      * Utile pour afficher les véhicules réservables dans le carrousel lors de la création d'une réservation.
      *
      * @param dateDebut la date et heure de début de la période recherchée (format ISO 8601)
@@ -71,6 +94,46 @@ public class VehiculeEntrepriseController {
         return ResponseEntity.ok(vehiculesDisponibles);
     }
 
+    /**
+     * Propose le véhicule d'entreprise le mieux adapté à une demande de réservation.
+     * Parmi les véhicules en service, libres sur la période et ayant assez de places, retient en priorité
+     * celui qui respecte les préférences, puis celui dont le planning est le moins morcelé par la réservation,
+     * puis celui qui émet le moins de CO2 par km.
+     * Le véhicule n'est pas réservé : la réservation se fait ensuite par POST /api/reservations-vehicules.
+     *
+     * @param nbPlaces nombre de places nécessaires
+     * @param categorie catégorie souhaitée (optionnelle)
+     * @param motorisation motorisation souhaitée (optionnelle)
+     * @param dateDebut la date et heure de début de la période (format ISO 8601)
+     * @param dateFin la date et heure de fin de la période (format ISO 8601)
+     * @return ResponseEntity contenant le véhicule proposé (200 OK) ou erreur (400 BAD REQUEST, 404 NOT FOUND)
+     */
+    @GetMapping("/attribution")
+    @Operation(summary = "Proposer le véhicule d'entreprise le mieux adapté à une demande de réservation")
+    public ResponseEntity<VehiculeDTO> attribuer(
+            @RequestParam int nbPlaces,
+            @RequestParam(required = false) Categorie categorie,
+            @RequestParam(required = false) Motorisation motorisation,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime dateDebut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime dateFin) {
+        return ResponseEntity.ok(service.attribuer(nbPlaces, categorie, motorisation, dateDebut, dateFin));
+    }
+
+    /**
+     * Retourne l'état de l'index en mémoire des occupations des véhicules de service
+     * (taille, dernière vérification de cohérence avec la base, nombre d'écarts et de rechargements).
+     * Réservé aux administrateurs.
+     *
+     * @return ResponseEntity contenant l'état de l'index (200 OK)
+     */
+    @GetMapping("/occupations/etat")
+    @Operation(summary = "ADMIN : état et cohérence de l'index en mémoire des occupations des véhicules")
+    public ResponseEntity<EtatIndexOccupationsDto> obtenirEtatIndexOccupations() {
+        return ResponseEntity.ok(indexOccupations.etat());
+    }
+
     /**
      * Récupère un véhicule d'entreprise spécifique par son identifiant.
      * Accessible à tous les utilisateurs authentifiés.
@@ -0,0 +1,34 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * DTO représentant une annonce de covoiturage dont le trajet passe à proximité
+ * des points de prise en charge et de dépose d'un passager
+ * Les distances sont mesurées à vol d'oiseau entre chaque point et le trajet du conducteur ;
+ * traceRoutier indique si elles ont été calculées sur le tracé routier ou sur la ligne droite départ/arrivée
+ */
+public record AnnonceCovoiturageCompatibleDto(
+        AnnonceCovoiturageAvecPlacesDto annonce,
+        Double distancePriseEnChargeKm,
+        Double distanceDeposeKm,
+        boolean traceRoutier
+) {
+
+    /**
+     * Fabrique pour créer un résultat de recherche de trajets compatibles
+     */
+    public static AnnonceCovoiturageCompatibleDto of(
+            AnnonceCovoiturageAvecPlacesDto annonce,
+            Double distancePriseEnChargeKm,
+            Double distanceDeposeKm,
+            boolean traceRoutier
+    ) {
+        return new AnnonceCovoiturageCompatibleDto(annonce, distancePriseEnChargeKm, distanceDeposeKm, traceRoutier);
+    }
+
+    /**
+     * Détour total approximatif pour le conducteur
+     */
+    public double detourKm() {
+        return distancePriseEnChargeKm + distanceDeposeKm;
+    }
+}
@@ -0,0 +1,24 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.util.List;
+
+/**
+ * Ligne de l'export administrateur des annonces de covoiturage :
+ * l'annonce avec ses places, son conducteur et ses passagers
+ */
+public record AnnonceCovoiturageExportDto(
+        AnnonceCovoiturageAvecPlacesDto annonce,
+        ParticipantsCovoiturageDto.PersonneDto conducteur,
+        List<ParticipantsCovoiturageDto.PersonneDto> passagers
+) {
+    /**
+     * Fabrique pour créer un AnnonceCovoiturageExportDto
+     */
+    public static AnnonceCovoiturageExportDto of(
+            AnnonceCovoiturageAvecPlacesDto annonce,
+            ParticipantsCovoiturageDto.PersonneDto conducteur,
+            List<ParticipantsCovoiturageDto.PersonneDto> passagers
+    ) {
+        return new AnnonceCovoiturageExportDto(annonce, conducteur, passagers);
+    }
+}
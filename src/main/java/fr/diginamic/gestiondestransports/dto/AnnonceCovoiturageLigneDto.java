@@ -0,0 +1,78 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection "à plat" d'une annonce de covoiturage produite directement par une requête JPQL agrégée.
+ * Contient l'annonce, ses deux adresses, la capacité du véhicule et le nombre de passagers,
+ * ce qui permet de construire un {@link AnnonceCovoiturageAvecPlacesDto} sans requête supplémentaire.
+ */
+public record AnnonceCovoiturageLigneDto(
+        Long id,
+        LocalDateTime heureDepart,
+        Integer dureeTrajet,
+        Integer distance,
+
+        Long adresseDepartId,
+        Integer adresseDepartNumero,
+        String adresseDepartLibelle,
+        String adresseDepartCodePostal,
+        String adresseDepartVille,
+
+        Long adresseArriveeId,
+        Integer adresseArriveeNumero,
+        String adresseArriveeLibelle,
+        String adresseArriveeCodePostal,
+        String adresseArriveeVille,
+
+        Long vehiculeServiceId,
+
+        // Nombre de places du véhicule (service ou personnel), null si aucun véhicule
+        Integer placesTotales,
+
+        Long placesOccupees
+) {
+
+    /**
+     * Indique si la capacité du véhicule a pu être déterminée
+     */
+    public boolean aUnVehicule() {
+        return placesTotales != null;
+    }
+
+    /**
+     * Convertit la ligne en DTO d'annonce avec informations sur les places
+     */
+    public AnnonceCovoiturageAvecPlacesDto versAvecPlacesDto() {
+        AdresseDto depart = adresseDepartId == null ? null : AdresseDto.of(
+                adresseDepartId,
+                adresseDepartNumero,
+                adresseDepartLibelle,
+                adresseDepartCodePostal,
+                adresseDepartVille
+        );
+        AdresseDto arrivee = adresseArriveeId == null ? null : AdresseDto.of(
+                adresseArriveeId,
+                adresseArriveeNumero,
+                adresseArriveeLibelle,
+                adresseArriveeCodePostal,
+                adresseArriveeVille
+        );
+
+        AnnonceCovoiturageDto annonce = AnnonceCovoiturageDto.of(
+                id,
+                heureDepart,
+                dureeTrajet,
+                distance,
+                depart,
+                arrivee,
+                vehiculeServiceId
+        );
+
+        return AnnonceCovoiturageAvecPlacesDto.of(
+                annonce,
+                placesTotales,
+                placesOccupees == null ? 0 : placesOccupees.intValue()
+        );
+    }
+}
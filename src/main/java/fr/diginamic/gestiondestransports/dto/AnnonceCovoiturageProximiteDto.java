@@ -0,0 +1,21 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * DTO représentant une annonce de covoiturage trouvée par recherche de proximité
+ * avec la distance à vol d'oiseau entre le point recherché et l'adresse de départ
+ */
+public record AnnonceCovoiturageProximiteDto(
+        AnnonceCovoiturageAvecPlacesDto annonce,
+        Double distanceKm
+) {
+
+    /**
+     * Fabrique pour créer un résultat de recherche de proximité
+     */
+    public static AnnonceCovoiturageProximiteDto of(
+            AnnonceCovoiturageAvecPlacesDto annonce,
+            Double distanceKm
+    ) {
+        return new AnnonceCovoiturageProximiteDto(annonce, distanceKm);
+    }
+}
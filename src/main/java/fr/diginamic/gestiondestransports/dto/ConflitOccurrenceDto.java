@@ -0,0 +1,19 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Occurrence d'une réservation récurrente qui n'a pas pu être réservée, avec le motif du conflit
+ */
+public record ConflitOccurrenceDto(
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        LocalDateTime dateDebut,
+
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        LocalDateTime dateFin,
+
+        String motif
+) {
+}
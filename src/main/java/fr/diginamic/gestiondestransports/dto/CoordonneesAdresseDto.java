@@ -0,0 +1,15 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * Projection légère d'une adresse géocodée : composants de l'adresse et coordonnées
+ * Utilisée par l'import en masse pour réutiliser des coordonnées connues sans charger chaque ligne d'adresse
+ */
+public record CoordonneesAdresseDto(
+        Integer numero,
+        String libelle,
+        String codePostal,
+        String ville,
+        Double latitude,
+        Double longitude
+) {
+}
@@ -0,0 +1,17 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Créneau pendant lequel un véhicule de service est occupé (réservations et covoiturages fusionnés)
+ */
+public record CreneauOccupeDto(
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        LocalDateTime debut,
+
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        LocalDateTime fin
+) {
+}
@@ -0,0 +1,28 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO représentant le résultat de la dernière vérification de cohérence de l'index en mémoire
+ * des occupations à venir des véhicules de service par rapport à la base de données
+ *
+ * @param charge indique si l'index est chargé et utilisé pour les lectures
+ * @param occupationsEnMemoire nombre d'occupations (réservations et trajets de covoiturage) en mémoire
+ * @param vehiculesIndexes nombre de véhicules ayant au moins une occupation en mémoire
+ * @param derniereVerification date de la dernière vérification, null si aucune
+ * @param occupationsEnBase nombre d'occupations à venir en base lors de la dernière vérification
+ * @param ecarts nombre d'occupations absentes, en trop ou différentes lors de la dernière vérification
+ * @param tauxCoherence part des occupations identiques en mémoire et en base (1.0 si aucun écart)
+ * @param resynchronisations nombre de rechargements complets déclenchés par des écarts depuis le démarrage
+ */
+public record EtatIndexOccupationsDto(
+        boolean charge,
+        int occupationsEnMemoire,
+        int vehiculesIndexes,
+        LocalDateTime derniereVerification,
+        int occupationsEnBase,
+        int ecarts,
+        double tauxCoherence,
+        long resynchronisations
+) {
+}
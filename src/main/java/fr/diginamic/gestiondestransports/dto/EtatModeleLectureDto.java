@@ -0,0 +1,26 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO représentant le résultat de la dernière vérification de cohérence du modèle en mémoire
+ * des annonces de covoiturage à venir par rapport à la base de données
+ *
+ * @param charge indique si le modèle est chargé et utilisé pour les lectures
+ * @param annoncesEnMemoire nombre d'annonces à venir en mémoire
+ * @param derniereVerification date de la dernière vérification, null si aucune
+ * @param annoncesEnBase nombre d'annonces à venir en base lors de la dernière vérification
+ * @param ecarts nombre d'annonces absentes, en trop ou différentes lors de la dernière vérification
+ * @param tauxCoherence part des annonces identiques en mémoire et en base (1.0 si aucun écart)
+ * @param resynchronisations nombre de rechargements complets déclenchés par des écarts depuis le démarrage
+ */
+public record EtatModeleLectureDto(
+        boolean charge,
+        int annoncesEnMemoire,
+        LocalDateTime derniereVerification,
+        int annoncesEnBase,
+        int ecarts,
+        double tauxCoherence,
+        long resynchronisations
+) {
+}
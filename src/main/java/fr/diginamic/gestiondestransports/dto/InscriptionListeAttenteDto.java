@@ -0,0 +1,11 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * Projection légère d'une inscription sur liste d'attente : annonce et utilisateur
+ * Utilisée pour charger l'index en mémoire des listes d'attente
+ */
+public record InscriptionListeAttenteDto(
+        Long idAnnonce,
+        Long idUtilisateur
+) {
+}
@@ -0,0 +1,41 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ligne d'un import en masse d'annonces de covoiturage : le conducteur est désigné par son email.
+ * Distance et durée sont optionnelles (calculées si absentes) ; sans véhicule de service,
+ * le véhicule personnel du conducteur est utilisé.
+ */
+public record LigneImportCovoiturageDto(
+        @NotBlank(message = "L'email du conducteur est obligatoire")
+        @Email(message = "L'email du conducteur est invalide")
+        String emailConducteur,
+
+        @NotNull(message = "L'heure de départ est obligatoire")
+        @Future(message = "L'heure de départ doit être dans le futur")
+        LocalDateTime heureDepart,
+
+        @Min(value = 1, message = "La durée du trajet doit être d'au moins 1 minute")
+        @Max(value = 1440, message = "La durée du trajet ne peut pas dépasser 24 heures")
+        Integer dureeTrajet,
+
+        @Min(value = 1, message = "La distance doit être d'au moins 1 km")
+        @Max(value = 2000, message = "La distance ne peut pas dépasser 2000 km")
+        Integer distance,
+
+        @NotNull(message = "L'adresse de départ est obligatoire")
+        @Valid
+        AdresseDto adresseDepart,
+
+        @NotNull(message = "L'adresse d'arrivée est obligatoire")
+        @Valid
+        AdresseDto adresseArrivee,
+
+        // ID du véhicule de service (optionnel - si null, utilisera véhicule personnel)
+        Long vehiculeServiceId
+) {
+}
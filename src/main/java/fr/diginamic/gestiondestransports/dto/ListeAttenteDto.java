@@ -0,0 +1,18 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inscription d'un utilisateur sur la liste d'attente d'un covoiturage complet
+ * position : rang dans la liste (1 = prochain passager promu), enAttente : nombre d'inscrits sur la liste
+ */
+public record ListeAttenteDto(
+        Long idAnnonce,
+        LocalDateTime heureDepart,
+        String villeDepart,
+        String villeArrivee,
+        LocalDateTime dateInscription,
+        int position,
+        int enAttente
+) {
+}
@@ -0,0 +1,34 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+
+/**
+ * Message poussé aux clients abonnés au flux des places de covoiturage
+ * Les compteurs sont null lorsque l'annonce a été supprimée.
+ */
+public record MiseAJourPlacesDto(
+        Long idAnnonce,
+        TypeEvenementAnnonce type,
+        Integer placesTotales,
+        Integer placesOccupees,
+        Integer placesDisponibles
+) {
+
+    /**
+     * Fabrique à partir de la ligne relue après validation de la modification
+     */
+    public static MiseAJourPlacesDto of(AnnonceCovoiturageLigneDto ligne, TypeEvenementAnnonce type) {
+        Integer placesOccupees = ligne.placesOccupees() == null ? 0 : ligne.placesOccupees().intValue();
+        // Le conducteur occupe une place du véhicule
+        Integer placesDisponibles = ligne.placesTotales() == null ? null
+                : Math.max(0, ligne.placesTotales() - 1 - placesOccupees);
+        return new MiseAJourPlacesDto(ligne.id(), type, ligne.placesTotales(), placesOccupees, placesDisponibles);
+    }
+
+    /**
+     * Fabrique pour une annonce supprimée
+     */
+    public static MiseAJourPlacesDto suppression(Long idAnnonce) {
+        return new MiseAJourPlacesDto(idAnnonce, TypeEvenementAnnonce.SUPPRESSION, null, null, null);
+    }
+}
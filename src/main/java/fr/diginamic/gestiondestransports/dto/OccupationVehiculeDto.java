@@ -0,0 +1,24 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import fr.diginamic.gestiondestransports.enums.TypeOccupationVehicule;
+
+import java.time.LocalDateTime;
+
+/**
+ * Occupation identifiée d'un véhicule de service : réservation ou trajet de covoiturage
+ * Ligne brute lue pour construire l'index en mémoire des occupations de la flotte
+ *
+ * @param type l'origine de l'occupation
+ * @param id l'identifiant de la réservation ou de l'annonce de covoiturage
+ * @param vehiculeId l'identifiant du véhicule de service occupé
+ * @param debut début de l'occupation
+ * @param fin fin de l'occupation (fin de réservation, ou départ + durée du trajet)
+ */
+public record OccupationVehiculeDto(
+        TypeOccupationVehicule type,
+        Long id,
+        Long vehiculeId,
+        LocalDateTime debut,
+        LocalDateTime fin
+) {
+}
@@ -0,0 +1,30 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.util.List;
+
+/**
+ * DTO représentant une page de résultats de recherche d'annonces de covoiturage
+ * Le curseur suivant est null lorsqu'il n'y a plus de résultats
+ */
+public record PageAnnoncesCovoiturageDto(
+        List<AnnonceCovoiturageAvecPlacesDto> annonces,
+        String curseurSuivant
+) {
+
+    /**
+     * Fabrique pour créer une page de résultats
+     */
+    public static PageAnnoncesCovoiturageDto of(
+            List<AnnonceCovoiturageAvecPlacesDto> annonces,
+            String curseurSuivant
+    ) {
+        return new PageAnnoncesCovoiturageDto(annonces, curseurSuivant);
+    }
+
+    /**
+     * Indique s'il existe une page suivante
+     */
+    public boolean aUneSuite() {
+        return curseurSuivant != null;
+    }
+}
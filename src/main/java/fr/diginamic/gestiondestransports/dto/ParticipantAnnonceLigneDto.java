@@ -0,0 +1,48 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Projection JPQL à plat des participants d'une annonce : une ligne par passager,
+ * répétant le conducteur (colonnes passager nulles si l'annonce n'a aucun passager).
+ * Permet de charger en une seule requête les participants de plusieurs annonces.
+ */
+public record ParticipantAnnonceLigneDto(
+        Long idAnnonce,
+
+        Long conducteurId,
+        String conducteurNom,
+        String conducteurPrenom,
+
+        Long passagerId,
+        String passagerNom,
+        String passagerPrenom
+) {
+    /**
+     * Regroupe les lignes par annonce, dans l'ordre des lignes reçues
+     * @param lignes les lignes renvoyées par la requête
+     * @return les participants de chaque annonce, indexés par identifiant d'annonce
+     */
+    public static Map<Long, ParticipantsCovoiturageDto> regrouperParAnnonce(Collection<ParticipantAnnonceLigneDto> lignes) {
+        Map<Long, ParticipantsCovoiturageDto.PersonneDto> conducteurs = new LinkedHashMap<>();
+        Map<Long, List<ParticipantsCovoiturageDto.PersonneDto>> passagers = new LinkedHashMap<>();
+        for (ParticipantAnnonceLigneDto ligne : lignes) {
+            conducteurs.putIfAbsent(ligne.idAnnonce(), ligne.conducteurId() == null ? null
+                    : ParticipantsCovoiturageDto.PersonneDto.of(ligne.conducteurId(), ligne.conducteurNom(), ligne.conducteurPrenom()));
+            List<ParticipantsCovoiturageDto.PersonneDto> passagersAnnonce =
+                    passagers.computeIfAbsent(ligne.idAnnonce(), id -> new ArrayList<>());
+            if (ligne.passagerId() != null) {
+                passagersAnnonce.add(ParticipantsCovoiturageDto.PersonneDto.of(
+                        ligne.passagerId(), ligne.passagerNom(), ligne.passagerPrenom()));
+            }
+        }
+        Map<Long, ParticipantsCovoiturageDto> resultat = new LinkedHashMap<>();
+        conducteurs.forEach((idAnnonce, conducteur) ->
+                resultat.put(idAnnonce, ParticipantsCovoiturageDto.of(conducteur, List.copyOf(passagers.get(idAnnonce)))));
+        return resultat;
+    }
+}
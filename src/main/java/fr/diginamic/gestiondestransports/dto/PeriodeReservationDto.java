@@ -0,0 +1,13 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection légère d'une période de réservation de véhicule : début et fin
+ * Utilisée pour signaler une réservation en conflit sans charger l'utilisateur ni le véhicule
+ */
+public record PeriodeReservationDto(
+        LocalDateTime dateDebut,
+        LocalDateTime dateFin
+) {
+}
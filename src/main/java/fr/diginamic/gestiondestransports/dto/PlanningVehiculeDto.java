@@ -0,0 +1,19 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+
+import java.util.List;
+
+/**
+ * Ligne du planning de la flotte : un véhicule de service et ses créneaux occupés sur la période demandée
+ * Les créneaux sont triés, disjoints et limités à la période
+ */
+public record PlanningVehiculeDto(
+        Long vehiculeId,
+        String immatriculation,
+        String marque,
+        String modele,
+        StatutVehicule statut,
+        List<CreneauOccupeDto> creneauxOccupes
+) {
+}
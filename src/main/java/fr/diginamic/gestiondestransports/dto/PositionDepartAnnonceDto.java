@@ -0,0 +1,12 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * Projection légère d'une annonce de covoiturage : identifiant et coordonnées de l'adresse de départ
+ * Utilisée pour filtrer les annonces par distance avant de charger leur détail
+ */
+public record PositionDepartAnnonceDto(
+        Long id,
+        Double latitude,
+        Double longitude
+) {
+}
@@ -0,0 +1,15 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.util.List;
+
+/**
+ * Rapport d'un import en masse d'annonces de covoiturage : totaux et résultat de chaque ligne
+ */
+public record RapportImportCovoiturageDto(
+        int lignes,
+        int importees,
+        int rejetees,
+        long dureeMs,
+        List<ResultatLigneImportDto> resultats
+) {
+}
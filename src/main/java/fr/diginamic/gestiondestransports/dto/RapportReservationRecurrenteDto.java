@@ -0,0 +1,15 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.util.List;
+
+/**
+ * Résultat d'une réservation récurrente : totaux, réservations créées et occurrences en conflit
+ */
+public record RapportReservationRecurrenteDto(
+        int occurrences,
+        int reservees,
+        int enConflit,
+        List<ReservationVehiculeDTO> reservations,
+        List<ConflitOccurrenceDto> conflits
+) {
+}
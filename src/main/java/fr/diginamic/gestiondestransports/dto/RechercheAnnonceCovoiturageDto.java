@@ -0,0 +1,47 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO regroupant les critères de recherche paginée des annonces de covoiturage
+ * Tous les filtres sont optionnels ; le curseur est celui renvoyé par la page précédente
+ */
+public record RechercheAnnonceCovoiturageDto(
+        String villeDepart,
+        String codePostalDepart,
+        String villeArrivee,
+        String codePostalArrivee,
+        LocalDateTime dateDebut,
+        LocalDateTime dateFin,
+        Integer placesMin,
+        String curseur,
+        Integer taille
+) {
+
+    /**
+     * Fabrique pour créer des critères de recherche
+     */
+    public static RechercheAnnonceCovoiturageDto of(
+            String villeDepart,
+            String codePostalDepart,
+            String villeArrivee,
+            String codePostalArrivee,
+            LocalDateTime dateDebut,
+            LocalDateTime dateFin,
+            Integer placesMin,
+            String curseur,
+            Integer taille
+    ) {
+        return new RechercheAnnonceCovoiturageDto(
+                villeDepart,
+                codePostalDepart,
+                villeArrivee,
+                codePostalArrivee,
+                dateDebut,
+                dateFin,
+                placesMin,
+                curseur,
+                taille
+        );
+    }
+}
@@ -0,0 +1,39 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import jakarta.validation.constraints.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+/**
+ * Demande de réservation récurrente d'un véhicule de service (ex. chaque mardi de 08:00 à 18:00 pendant un trimestre).
+ * Chaque jour choisi de la période donne une occurrence de dureeMinutes minutes à partir de heureDebut.
+ * Si toutOuRien vaut true, aucune occurrence n'est réservée dès que l'une d'elles est en conflit ;
+ * sinon les occurrences libres sont réservées et les autres signalées.
+ */
+public record ReservationVehiculeRecurrenteDto(
+        @NotNull(message = "Le vehiculeId est obligatoire")
+        Long vehiculeId,
+
+        @NotEmpty(message = "Au moins un jour de réservation est obligatoire")
+        Set<DayOfWeek> joursSemaine,
+
+        @NotNull(message = "La date de début est obligatoire")
+        LocalDate dateDebut,
+
+        @NotNull(message = "La date de fin est obligatoire")
+        LocalDate dateFin,
+
+        @NotNull(message = "L'heure de début est obligatoire")
+        LocalTime heureDebut,
+
+        @NotNull(message = "La durée est obligatoire")
+        @Min(value = 1, message = "La durée doit être d'au moins 1 minute")
+        @Max(value = 1440, message = "La durée ne peut pas dépasser 24 heures")
+        Integer dureeMinutes,
+
+        Boolean toutOuRien
+) {
+}
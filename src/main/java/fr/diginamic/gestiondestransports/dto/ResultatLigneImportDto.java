@@ -0,0 +1,21 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * Résultat de l'import d'une ligne : identifiant de l'annonce créée, ou motif du rejet.
+ * Le numéro de ligne est celui du fichier CSV (en-tête = ligne 1) ou la position dans le tableau JSON (à partir de 1).
+ */
+public record ResultatLigneImportDto(
+        int ligne,
+        boolean importee,
+        Long idAnnonce,
+        String erreur
+) {
+
+    public static ResultatLigneImportDto succes(int ligne, Long idAnnonce) {
+        return new ResultatLigneImportDto(ligne, true, idAnnonce, null);
+    }
+
+    public static ResultatLigneImportDto echec(int ligne, String erreur) {
+        return new ResultatLigneImportDto(ligne, false, null, erreur);
+    }
+}
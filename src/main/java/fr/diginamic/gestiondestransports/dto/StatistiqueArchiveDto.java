@@ -0,0 +1,13 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * Statistiques mensuelles des trajets de covoiturage archivés
+ */
+public record StatistiqueArchiveDto(
+        Integer annee,
+        Integer mois,
+        Long trajets,
+        Long passagers,
+        Long distanceTotale
+) {
+}
@@ -0,0 +1,15 @@
+package fr.diginamic.gestiondestransports.dto;
+
+/**
+ * Projection de la géométrie d'une annonce de covoiturage : tracé de la route et coordonnées des extrémités
+ * Utilisée par la recherche de trajets compatibles pour calculer les détours
+ */
+public record TraceAnnonceDto(
+        Long id,
+        String traceItineraire,
+        Double latitudeDepart,
+        Double longitudeDepart,
+        Double latitudeArrivee,
+        Double longitudeArrivee
+) {
+}
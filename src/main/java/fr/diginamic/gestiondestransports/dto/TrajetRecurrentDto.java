@@ -0,0 +1,52 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import jakarta.validation.constraints.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+/**
+ * DTO d'un trajet de covoiturage récurrent (ex. du lundi au vendredi à 08:00 pendant 3 mois).
+ * Distance et durée sont optionnelles : elles sont calculées une seule fois si elles ne sont pas saisies.
+ * materialiseJusquAu est renseigné par le serveur.
+ */
+public record TrajetRecurrentDto(
+        Long id,
+
+        @NotNull(message = "L'heure de départ est obligatoire")
+        LocalTime heureDepart,
+
+        @NotEmpty(message = "Au moins un jour de circulation est obligatoire")
+        Set<DayOfWeek> joursSemaine,
+
+        @NotNull(message = "La date de début est obligatoire")
+        LocalDate dateDebut,
+
+        @NotNull(message = "La date de fin est obligatoire")
+        LocalDate dateFin,
+
+        @Min(value = 1, message = "La durée du trajet doit être d'au moins 1 minute")
+        @Max(value = 1440, message = "La durée du trajet ne peut pas dépasser 24 heures")
+        Integer dureeTrajet,
+
+        @Min(value = 1, message = "La distance doit être d'au moins 1 km")
+        @Max(value = 2000, message = "La distance ne peut pas dépasser 2000 km")
+        Integer distance,
+
+        @NotNull(message = "L'adresse de départ est obligatoire")
+        AdresseDto adresseDepart,
+
+        @NotNull(message = "L'adresse d'arrivée est obligatoire")
+        AdresseDto adresseArrivee,
+
+        // ID du véhicule de service : refusé à la création, un trajet récurrent utilise le véhicule personnel
+        // (renseigné en lecture pour les trajets créés avant cette règle)
+        Long vehiculeServiceId,
+
+        Boolean actif,
+
+        LocalDate materialiseJusquAu
+) {
+}
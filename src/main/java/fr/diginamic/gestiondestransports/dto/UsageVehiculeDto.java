@@ -0,0 +1,14 @@
+package fr.diginamic.gestiondestransports.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Occupation d'un véhicule de service sur une période : réservation ou trajet de covoiturage
+ * Ligne brute lue pour construire le planning de la flotte
+ */
+public record UsageVehiculeDto(
+        Long vehiculeId,
+        LocalDateTime debut,
+        LocalDateTime fin
+) {
+}
@@ -1,5 +1,6 @@
 package fr.diginamic.gestiondestransports.entites;
 
+import fr.diginamic.gestiondestransports.tools.GrilleGeographique;
 import jakarta.persistence.*;
 
 /**
@@ -7,7 +8,13 @@ import jakarta.persistence.*;
  * Cette classe est mappée à la table 'adresse' dans la base de données.
  */
 @Entity
-@Table(name = "adresse")
+@Table(name = "adresse", indexes = {
+        // Index pour la recherche d'annonces par ville ou code postal
+        @Index(name = "idx_adresse_ville", columnList = "ville"),
+        @Index(name = "idx_adresse_code_postal", columnList = "code_postal"),
+        // Index spatial simplifié pour la recherche par proximité
+        @Index(name = "idx_adresse_cellule_grille", columnList = "cellule_grille")
+})
 public class Adresse {
 
     @Id
@@ -26,6 +33,17 @@ public class Adresse {
     @Column(name = "ville")
     private String ville;
 
+    // Coordonnées géographiques, renseignées une seule fois par géocodage (Nominatim)
+    @Column(name = "latitude")
+    private Double latitude;
+
+    @Column(name = "longitude")
+    private Double longitude;
+
+    // Cellule de la grille géographique contenant l'adresse, calculée à partir des coordonnées
+    @Column(name = "cellule_grille")
+    private Long celluleGrille;
+
     // Default constructor
     public Adresse() {}
 
@@ -124,4 +142,72 @@ public class Adresse {
     public void setVille(String ville) {
         this.ville = ville;
     }
-}
\ No newline at end of file
+    /**
+     * Récupère la latitude de l'adresse.
+     *
+     * @return la latitude en degrés décimaux, null si l'adresse n'a pas encore été géocodée
+     */
+    public Double getLatitude() {
+        return latitude;
+    }
+    /**
+     * Définit la latitude de l'adresse.
+     *
+     * @param latitude la latitude en degrés décimaux
+     */
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+        mettreAJourCelluleGrille();
+    }
+    /**
+     * Récupère la longitude de l'adresse.
+     *
+     * @return la longitude en degrés décimaux, null si l'adresse n'a pas encore été géocodée
+     */
+    public Double getLongitude() {
+        return longitude;
+    }
+    /**
+     * Définit la longitude de l'adresse.
+     *
+     * @param longitude la longitude en degrés décimaux
+     */
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+        mettreAJourCelluleGrille();
+    }
+    /**
+     * Indique si l'adresse a déjà été géocodée.
+     *
+     * @return true si la latitude et la longitude sont renseignées
+     */
+    public boolean aDesCoordonnees() {
+        return latitude != null && longitude != null;
+    }
+    /**
+     * Récupère la cellule de la grille géographique contenant l'adresse.
+     *
+     * @return l'identifiant de la cellule, null si l'adresse n'est pas géocodée
+     */
+    public Long getCelluleGrille() {
+        return celluleGrille;
+    }
+
+    /**
+     * Copie l'adresse, coordonnées et cellule de la grille comprises, sans son identifiant.
+     * Permet à une annonce de disposer de sa propre ligne d'adresse, modifiable sans toucher aux autres.
+     *
+     * @return une nouvelle adresse, non enregistrée
+     */
+    public Adresse copie() {
+        Adresse copie = new Adresse(numero, libelle, codePostal, ville);
+        copie.latitude = latitude;
+        copie.longitude = longitude;
+        copie.celluleGrille = celluleGrille;
+        return copie;
+    }
+
+    private void mettreAJourCelluleGrille() {
+        this.celluleGrille = aDesCoordonnees() ? GrilleGeographique.cellule(latitude, longitude) : null;
+    }
+}
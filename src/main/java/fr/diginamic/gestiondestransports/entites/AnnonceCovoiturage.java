@@ -9,7 +9,13 @@ import java.util.Set;
  * Cette classe est mappée à la table 'annonce_covoiturage' dans la base de données.
  */
 @Entity
-@Table(name = "annonce_covoiturage")
+@Table(name = "annonce_covoiturage", indexes = {
+        // Index de pagination par curseur (heure_depart, id) pour la recherche d'annonces
+        @Index(name = "idx_annonce_heure_depart_id", columnList = "heure_depart, id")
+}, uniqueConstraints = {
+        // Une seule occurrence d'un trajet récurrent par départ
+        @UniqueConstraint(name = "uk_annonce_trajet_recurrent_depart", columnNames = {"trajet_recurrent_id", "heure_depart"})
+})
 public class AnnonceCovoiturage {
 
     @Id
@@ -25,6 +31,19 @@ public class AnnonceCovoiturage {
     @Column(name = "distance")
     private Integer distance;
 
+    // Capacité du véhicule (conducteur compris), copiée depuis le véhicule utilisé
+    @Column(name = "places_totales")
+    private Integer placesTotales;
+
+    // Nombre de passagers inscrits, modifié uniquement par des UPDATE conditionnels (réservation/annulation)
+    @Column(name = "places_occupees", updatable = false)
+    private Integer placesOccupees = 0;
+
+    // Tracé simplifié de la route (format polyline) fourni par OSRM, null si non calculé
+    @Lob
+    @Column(name = "trace_itineraire")
+    private String traceItineraire;
+
     @ManyToOne
     @JoinColumn(name = "adresse_depart")
     private Adresse adresseDepart;
@@ -41,6 +60,11 @@ public class AnnonceCovoiturage {
     @JoinColumn(name = "vehicule_service_id")
     private VehiculeEntreprise vehiculeService;
 
+    // Trajet récurrent dont l'annonce est une occurrence, null pour une annonce ponctuelle
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "trajet_recurrent_id")
+    private TrajetRecurrent trajetRecurrent;
+
     // Relation avec les passagers via la table de jointure CovoituragePassagers
     @OneToMany(mappedBy = "annonceCovoiturage", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<CovoituragePassagers> passagers;
@@ -136,6 +160,43 @@ public class AnnonceCovoiturage {
         this.distance = distance;
     }
 
+    /**
+     * Récupère la capacité du véhicule utilisé pour ce covoiturage.
+     *
+     * @return le nombre total de places, conducteur compris
+     */
+    public Integer getPlacesTotales() {
+        return placesTotales;
+    }
+
+    /**
+     * Définit la capacité du véhicule utilisé pour ce covoiturage.
+     *
+     * @param placesTotales le nombre total de places à définir
+     */
+    public void setPlacesTotales(Integer placesTotales) {
+        this.placesTotales = placesTotales;
+    }
+
+    /**
+     * Récupère le nombre de places occupées par des passagers.
+     *
+     * @return le nombre de passagers inscrits
+     */
+    public Integer getPlacesOccupees() {
+        return placesOccupees;
+    }
+
+    /**
+     * Définit le nombre de places occupées par des passagers.
+     * Seule la valeur initiale est persistée, les modifications passent par le repository.
+     *
+     * @param placesOccupees le nombre de passagers inscrits à définir
+     */
+    public void setPlacesOccupees(Integer placesOccupees) {
+        this.placesOccupees = placesOccupees;
+    }
+
     /**
      * Récupère l'adresse de départ du covoiturage.
      *
@@ -219,4 +280,40 @@ public class AnnonceCovoiturage {
     public void setPassagers(Set<CovoituragePassagers> passagers) {
         this.passagers = passagers;
     }
-}
\ No newline at end of file
+
+    /**
+     * Récupère le tracé simplifié de la route.
+     *
+     * @return le tracé au format polyline, null si l'itinéraire n'a pas été calculé
+     */
+    public String getTraceItineraire() {
+        return traceItineraire;
+    }
+
+    /**
+     * Définit le tracé simplifié de la route.
+     *
+     * @param traceItineraire le tracé au format polyline
+     */
+    public void setTraceItineraire(String traceItineraire) {
+        this.traceItineraire = traceItineraire;
+    }
+
+    /**
+     * Récupère le trajet récurrent dont l'annonce est une occurrence.
+     *
+     * @return le trajet récurrent, null pour une annonce ponctuelle
+     */
+    public TrajetRecurrent getTrajetRecurrent() {
+        return trajetRecurrent;
+    }
+
+    /**
+     * Définit le trajet récurrent dont l'annonce est une occurrence.
+     *
+     * @param trajetRecurrent le trajet récurrent
+     */
+    public void setTrajetRecurrent(TrajetRecurrent trajetRecurrent) {
+        this.trajetRecurrent = trajetRecurrent;
+    }
+}
@@ -0,0 +1,146 @@
+package fr.diginamic.gestiondestransports.entites;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+/**
+ * Entité représentant une annonce de covoiturage archivée (trajet passé retiré de la table des annonces).
+ * Conserve l'identifiant d'origine et les données utiles au reporting ; les références (adresses,
+ * responsable, véhicule) sont de simples identifiants, sans contrainte de clé étrangère, afin que
+ * l'historique ne bloque pas la suppression de ces données.
+ * Les lignes sont écrites uniquement par l'archivage (INSERT ... SELECT) et ne sont jamais modifiées.
+ * Cette classe est mappée à la table 'annonce_covoiturage_archive' dans la base de données.
+ */
+@Entity
+@Table(name = "annonce_covoiturage_archive", indexes = {
+        // Reporting par période
+        @Index(name = "idx_annonce_archive_heure_depart", columnList = "heure_depart"),
+        @Index(name = "idx_annonce_archive_responsable", columnList = "responsable_id")
+})
+public class AnnonceCovoiturageArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "heure_depart")
+    private LocalDateTime heureDepart;
+
+    @Column(name = "duree_trajet")
+    private Integer dureeTrajet;
+
+    @Column(name = "distance")
+    private Integer distance;
+
+    @Column(name = "places_totales")
+    private Integer placesTotales;
+
+    @Column(name = "places_occupees")
+    private Integer placesOccupees;
+
+    @Column(name = "adresse_depart_id")
+    private Long adresseDepartId;
+
+    @Column(name = "adresse_arrivee_id")
+    private Long adresseArriveeId;
+
+    @Column(name = "responsable_id")
+    private Long responsableId;
+
+    @Column(name = "vehicule_service_id")
+    private Long vehiculeServiceId;
+
+    @Column(name = "date_archivage", nullable = false)
+    private LocalDateTime dateArchivage;
+
+    // Constructeur par défaut
+    public AnnonceCovoiturageArchive() {}
+
+    /**
+     * Récupère l'identifiant d'origine de l'annonce.
+     *
+     * @return l'identifiant
+     */
+    public Long getId() {
+        return id;
+    }
+    /**
+     * Récupère la date et l'heure de départ du trajet.
+     *
+     * @return l'heure de départ
+     */
+    public LocalDateTime getHeureDepart() {
+        return heureDepart;
+    }
+    /**
+     * Récupère la durée du trajet en minutes.
+     *
+     * @return la durée du trajet
+     */
+    public Integer getDureeTrajet() {
+        return dureeTrajet;
+    }
+    /**
+     * Récupère la distance du trajet en kilomètres.
+     *
+     * @return la distance
+     */
+    public Integer getDistance() {
+        return distance;
+    }
+    /**
+     * Récupère la capacité du véhicule (conducteur compris) au moment de l'archivage.
+     *
+     * @return le nombre de places totales
+     */
+    public Integer getPlacesTotales() {
+        return placesTotales;
+    }
+    /**
+     * Récupère le nombre de passagers inscrits au moment de l'archivage.
+     *
+     * @return le nombre de places occupées
+     */
+    public Integer getPlacesOccupees() {
+        return placesOccupees;
+    }
+    /**
+     * Récupère l'identifiant de l'adresse de départ.
+     *
+     * @return l'identifiant de l'adresse de départ
+     */
+    public Long getAdresseDepartId() {
+        return adresseDepartId;
+    }
+    /**
+     * Récupère l'identifiant de l'adresse d'arrivée.
+     *
+     * @return l'identifiant de l'adresse d'arrivée
+     */
+    public Long getAdresseArriveeId() {
+        return adresseArriveeId;
+    }
+    /**
+     * Récupère l'identifiant de l'utilisateur responsable (conducteur).
+     *
+     * @return l'identifiant du responsable
+     */
+    public Long getResponsableId() {
+        return responsableId;
+    }
+    /**
+     * Récupère l'identifiant du véhicule de service utilisé, ou null pour un véhicule personnel.
+     *
+     * @return l'identifiant du véhicule de service
+     */
+    public Long getVehiculeServiceId() {
+        return vehiculeServiceId;
+    }
+    /**
+     * Récupère la date d'archivage de l'annonce.
+     *
+     * @return la date d'archivage
+     */
+    public LocalDateTime getDateArchivage() {
+        return dateArchivage;
+    }
+}
@@ -0,0 +1,92 @@
+package fr.diginamic.gestiondestransports.entites;
+
+import jakarta.persistence.*;
+/**
+ * Entité représentant une cellule de la grille géographique traversée par le trajet d'une annonce de covoiturage.
+ * L'ensemble des cellules d'une annonce forme son corridor, indexé pour retrouver rapidement
+ * les trajets passant à proximité d'un point de prise en charge ou de dépose.
+ * Cette classe est mappée à la table 'cellule_corridor' dans la base de données.
+ */
+@Entity
+@Table(name = "cellule_corridor", indexes = {
+        // Recherche des annonces traversant une cellule donnée
+        @Index(name = "idx_cellule_corridor_cellule", columnList = "cellule_grille, annonce_covoiturage_id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cellule_corridor", columnNames = {"annonce_covoiturage_id", "cellule_grille"})
+})
+public class CelluleCorridor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "annonce_covoiturage_id", nullable = false)
+    private AnnonceCovoiturage annonceCovoiturage;
+
+    @Column(name = "cellule_grille", nullable = false)
+    private Long celluleGrille;
+
+    // Constructeur par défaut
+    public CelluleCorridor() {}
+
+    /**
+     * Constructeur avec paramètres pour rattacher une cellule au corridor d'une annonce.
+     *
+     * @param annonceCovoiturage l'annonce de covoiturage
+     * @param celluleGrille l'identifiant de la cellule de la grille géographique
+     */
+    public CelluleCorridor(AnnonceCovoiturage annonceCovoiturage, Long celluleGrille) {
+        this.annonceCovoiturage = annonceCovoiturage;
+        this.celluleGrille = celluleGrille;
+    }
+
+    /**
+     * Récupère l'identifiant unique de la cellule de corridor.
+     *
+     * @return l'identifiant
+     */
+    public Long getId() {
+        return id;
+    }
+    /**
+     * Définit l'identifiant unique de la cellule de corridor.
+     *
+     * @param id l'identifiant à définir
+     */
+    public void setId(Long id) {
+        this.id = id;
+    }
+    /**
+     * Récupère l'annonce de covoiturage à laquelle appartient la cellule.
+     *
+     * @return l'annonce de covoiturage
+     */
+    public AnnonceCovoiturage getAnnonceCovoiturage() {
+        return annonceCovoiturage;
+    }
+    /**
+     * Définit l'annonce de covoiturage à laquelle appartient la cellule.
+     *
+     * @param annonceCovoiturage l'annonce de covoiturage à définir
+     */
+    public void setAnnonceCovoiturage(AnnonceCovoiturage annonceCovoiturage) {
+        this.annonceCovoiturage = annonceCovoiturage;
+    }
+    /**
+     * Récupère l'identifiant de la cellule de la grille géographique.
+     *
+     * @return l'identifiant de la cellule
+     */
+    public Long getCelluleGrille() {
+        return celluleGrille;
+    }
+    /**
+     * Définit l'identifiant de la cellule de la grille géographique.
+     *
+     * @param celluleGrille l'identifiant de la cellule à définir
+     */
+    public void setCelluleGrille(Long celluleGrille) {
+        this.celluleGrille = celluleGrille;
+    }
+}
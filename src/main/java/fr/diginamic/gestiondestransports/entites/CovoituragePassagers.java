@@ -7,7 +7,10 @@ import jakarta.persistence.*;
  * Cette classe est mappée à la table 'covoiturage_passagers' dans la base de données.
  */
 @Entity
-@Table(name = "covoiturage_passagers")
+@Table(name = "covoiturage_passagers", uniqueConstraints = {
+        // Un utilisateur ne peut réserver qu'une seule place par covoiturage
+        @UniqueConstraint(name = "uk_covoiturage_passager", columnNames = {"utilisateur_id", "annonce_covoiturage_id"})
+})
 public class CovoituragePassagers {
 
     @Id
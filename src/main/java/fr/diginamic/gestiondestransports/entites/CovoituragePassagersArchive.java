@@ -0,0 +1,53 @@
+package fr.diginamic.gestiondestransports.entites;
+
+import jakarta.persistence.*;
+/**
+ * Entité représentant une réservation de covoiturage archivée avec son annonce.
+ * Conserve l'identifiant d'origine de la réservation ; l'annonce et le passager sont référencés
+ * par leur identifiant, sans contrainte de clé étrangère.
+ * Cette classe est mappée à la table 'covoiturage_passagers_archive' dans la base de données.
+ */
+@Entity
+@Table(name = "covoiturage_passagers_archive", indexes = {
+        @Index(name = "idx_passagers_archive_annonce", columnList = "annonce_covoiturage_id"),
+        @Index(name = "idx_passagers_archive_utilisateur", columnList = "utilisateur_id")
+})
+public class CovoituragePassagersArchive {
+
+    @Id
+    private Long id;
+
+    @Column(name = "annonce_covoiturage_id", nullable = false)
+    private Long annonceCovoiturageId;
+
+    @Column(name = "utilisateur_id")
+    private Long utilisateurId;
+
+    // Constructeur par défaut
+    public CovoituragePassagersArchive() {}
+
+    /**
+     * Récupère l'identifiant d'origine de la réservation.
+     *
+     * @return l'identifiant
+     */
+    public Long getId() {
+        return id;
+    }
+    /**
+     * Récupère l'identifiant de l'annonce archivée.
+     *
+     * @return l'identifiant de l'annonce
+     */
+    public Long getAnnonceCovoiturageId() {
+        return annonceCovoiturageId;
+    }
+    /**
+     * Récupère l'identifiant de l'utilisateur passager.
+     *
+     * @return l'identifiant du passager
+     */
+    public Long getUtilisateurId() {
+        return utilisateurId;
+    }
+}
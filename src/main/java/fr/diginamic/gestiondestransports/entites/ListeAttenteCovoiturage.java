@@ -0,0 +1,116 @@
+package fr.diginamic.gestiondestransports.entites;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+/**
+ * Entité représentant l'inscription d'un utilisateur sur la liste d'attente d'un covoiturage complet.
+ * L'ordre d'inscription (identifiant croissant) détermine l'ordre de promotion : lorsqu'une place se libère,
+ * le premier inscrit devient passager et son inscription est supprimée.
+ * Cette classe est mappée à la table 'liste_attente_covoiturage' dans la base de données.
+ */
+@Entity
+@Table(name = "liste_attente_covoiturage", uniqueConstraints = {
+        // Un utilisateur ne peut être inscrit qu'une fois sur la liste d'attente d'un covoiturage
+        @UniqueConstraint(name = "uk_liste_attente_utilisateur_annonce", columnNames = {"utilisateur_id", "annonce_covoiturage_id"})
+}, indexes = {
+        // Recherche du premier inscrit d'une annonce
+        @Index(name = "idx_liste_attente_annonce", columnList = "annonce_covoiturage_id, id")
+})
+public class ListeAttenteCovoiturage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "utilisateur_id", nullable = false)
+    private Utilisateur utilisateur;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "annonce_covoiturage_id", nullable = false)
+    private AnnonceCovoiturage annonceCovoiturage;
+
+    @Column(name = "date_inscription", nullable = false)
+    private LocalDateTime dateInscription;
+
+    // Constructeur par défaut
+    public ListeAttenteCovoiturage() {}
+
+    /**
+     * Constructeur avec paramètres pour inscrire un utilisateur sur la liste d'attente.
+     *
+     * @param utilisateur l'utilisateur en attente d'une place
+     * @param annonceCovoiturage l'annonce de covoiturage complète
+     */
+    public ListeAttenteCovoiturage(Utilisateur utilisateur, AnnonceCovoiturage annonceCovoiturage) {
+        this.utilisateur = utilisateur;
+        this.annonceCovoiturage = annonceCovoiturage;
+        this.dateInscription = LocalDateTime.now();
+    }
+
+    /**
+     * Récupère l'identifiant unique de l'inscription.
+     *
+     * @return l'identifiant de l'inscription
+     */
+    public Long getId() {
+        return id;
+    }
+    /**
+     * Définit l'identifiant unique de l'inscription.
+     *
+     * @param id l'identifiant à définir
+     */
+    public void setId(Long id) {
+        this.id = id;
+    }
+    /**
+     * Récupère l'utilisateur en attente.
+     *
+     * @return l'utilisateur inscrit
+     */
+    public Utilisateur getUtilisateur() {
+        return utilisateur;
+    }
+    /**
+     * Définit l'utilisateur en attente.
+     *
+     * @param utilisateur l'utilisateur à définir
+     */
+    public void setUtilisateur(Utilisateur utilisateur) {
+        this.utilisateur = utilisateur;
+    }
+    /**
+     * Récupère l'annonce de covoiturage attendue.
+     *
+     * @return l'annonce de covoiturage
+     */
+    public AnnonceCovoiturage getAnnonceCovoiturage() {
+        return annonceCovoiturage;
+    }
+    /**
+     * Définit l'annonce de covoiturage attendue.
+     *
+     * @param annonceCovoiturage l'annonce à définir
+     */
+    public void setAnnonceCovoiturage(AnnonceCovoiturage annonceCovoiturage) {
+        this.annonceCovoiturage = annonceCovoiturage;
+    }
+    /**
+     * Récupère la date d'inscription sur la liste d'attente.
+     *
+     * @return la date d'inscription
+     */
+    public LocalDateTime getDateInscription() {
+        return dateInscription;
+    }
+    /**
+     * Définit la date d'inscription sur la liste d'attente.
+     *
+     * @param dateInscription la date à définir
+     */
+    public void setDateInscription(LocalDateTime dateInscription) {
+        this.dateInscription = dateInscription;
+    }
+}
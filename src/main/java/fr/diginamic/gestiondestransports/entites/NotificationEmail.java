@@ -0,0 +1,202 @@
+package fr.diginamic.gestiondestransports.entites;
+
+import fr.diginamic.gestiondestransports.enums.StatutNotification;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+/**
+ * Entité représentant un email à envoyer (boîte d'envoi transactionnelle).
+ * La notification est enregistrée dans la même transaction que l'opération métier qui la déclenche :
+ * elle n'existe que si cette opération est validée, et l'envoi (appel à Mailjet) a lieu plus tard,
+ * hors transaction, avec de nouvelles tentatives espacées en cas d'échec.
+ * Cette classe est mappée à la table 'notification_email' dans la base de données.
+ */
+@Entity
+@Table(name = "notification_email", indexes = {
+        // Recherche des notifications dont l'envoi est dû
+        @Index(name = "idx_notification_email_statut_tentative", columnList = "statut, prochaine_tentative")
+})
+public class NotificationEmail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "destinataire", nullable = false)
+    private String destinataire;
+
+    @Column(name = "sujet", nullable = false)
+    private String sujet;
+
+    @Column(name = "titre")
+    private String titre;
+
+    @Column(name = "message", length = 4000)
+    private String message;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false, length = 20)
+    private StatutNotification statut = StatutNotification.EN_ATTENTE;
+
+    @Column(name = "tentatives", nullable = false)
+    private Integer tentatives = 0;
+
+    @Column(name = "date_creation", nullable = false)
+    private LocalDateTime dateCreation;
+
+    @Column(name = "prochaine_tentative", nullable = false)
+    private LocalDateTime prochaineTentative;
+
+    @Column(name = "date_envoi")
+    private LocalDateTime dateEnvoi;
+
+    @Column(name = "derniere_erreur", length = 500)
+    private String derniereErreur;
+
+    // Constructeur par défaut
+    public NotificationEmail() {}
+
+    /**
+     * Constructeur avec paramètres pour créer une notification à envoyer dès que possible.
+     *
+     * @param destinataire l'adresse email du destinataire
+     * @param sujet le sujet de l'email
+     * @param titre le titre affiché dans le modèle Mailjet
+     * @param message le texte affiché dans le modèle Mailjet
+     * @param dateCreation la date de création de la notification
+     */
+    public NotificationEmail(String destinataire, String sujet, String titre, String message, LocalDateTime dateCreation) {
+        this.destinataire = destinataire;
+        this.sujet = sujet;
+        this.titre = titre;
+        this.message = message;
+        this.dateCreation = dateCreation;
+        this.prochaineTentative = dateCreation;
+    }
+
+    /**
+     * Marque la notification comme envoyée.
+     *
+     * @param date la date d'envoi
+     */
+    public void marquerEnvoyee(LocalDateTime date) {
+        this.tentatives++;
+        this.statut = StatutNotification.ENVOYEE;
+        this.dateEnvoi = date;
+        this.derniereErreur = null;
+    }
+
+    /**
+     * Enregistre un échec d'envoi : la notification est reprogrammée, ou abandonnée
+     * si le nombre maximal de tentatives est atteint.
+     *
+     * @param erreur la cause de l'échec
+     * @param prochaineTentative la date de la prochaine tentative, ou null pour abandonner
+     */
+    public void enregistrerEchec(String erreur, LocalDateTime prochaineTentative) {
+        this.tentatives++;
+        this.derniereErreur = erreur == null || erreur.length() <= 500 ? erreur : erreur.substring(0, 500);
+        if (prochaineTentative == null) {
+            this.statut = StatutNotification.ECHEC;
+        } else {
+            this.prochaineTentative = prochaineTentative;
+        }
+    }
+
+    /**
+     * Récupère l'identifiant unique de la notification.
+     *
+     * @return l'identifiant
+     */
+    public Long getId() {
+        return id;
+    }
+    /**
+     * Définit l'identifiant unique de la notification.
+     *
+     * @param id l'identifiant à définir
+     */
+    public void setId(Long id) {
+        this.id = id;
+    }
+    /**
+     * Récupère l'adresse email du destinataire.
+     *
+     * @return l'adresse email
+     */
+    public String getDestinataire() {
+        return destinataire;
+    }
+    /**
+     * Récupère le sujet de l'email.
+     *
+     * @return le sujet
+     */
+    public String getSujet() {
+        return sujet;
+    }
+    /**
+     * Récupère le titre affiché dans le modèle Mailjet.
+     *
+     * @return le titre
+     */
+    public String getTitre() {
+        return titre;
+    }
+    /**
+     * Récupère le texte affiché dans le modèle Mailjet.
+     *
+     * @return le texte
+     */
+    public String getMessage() {
+        return message;
+    }
+    /**
+     * Récupère l'état de la notification.
+     *
+     * @return l'état
+     */
+    public StatutNotification getStatut() {
+        return statut;
+    }
+    /**
+     * Récupère le nombre de tentatives d'envoi effectuées.
+     *
+     * @return le nombre de tentatives
+     */
+    public Integer getTentatives() {
+        return tentatives;
+    }
+    /**
+     * Récupère la date de création de la notification.
+     *
+     * @return la date de création
+     */
+    public LocalDateTime getDateCreation() {
+        return dateCreation;
+    }
+    /**
+     * Récupère la date à partir de laquelle l'envoi doit être tenté.
+     *
+     * @return la date de la prochaine tentative
+     */
+    public LocalDateTime getProchaineTentative() {
+        return prochaineTentative;
+    }
+    /**
+     * Récupère la date d'envoi effectif.
+     *
+     * @return la date d'envoi, ou null si la notification n'a pas été envoyée
+     */
+    public LocalDateTime getDateEnvoi() {
+        return dateEnvoi;
+    }
+    /**
+     * Récupère la cause du dernier échec d'envoi.
+     *
+     * @return la dernière erreur, ou null
+     */
+    public String getDerniereErreur() {
+        return derniereErreur;
+    }
+}
@@ -8,7 +8,13 @@ import java.time.LocalDateTime;
  * Cette classe est mappée à la table 'vehicule_entreprise_reservations' dans la base de données.
  */
 @Entity
-@Table(name = "vehicule_entreprise_reservations")
+@Table(name = "vehicule_entreprise_reservations", indexes = {
+        @Index(name = "idx_reservation_vehicule_periode", columnList = "vehicule_entreprise_id, date_debut, date_fin"),
+        @Index(name = "idx_reservation_utilisateur_periode", columnList = "utilisateur_id, date_debut, date_fin"),
+        // Occupations de toute la flotte (planning, index en mémoire) : bornées par la fin, seules les réservations
+        // non terminées au début de la période sont parcourues
+        @Index(name = "idx_reservation_fin_debut", columnList = "date_fin, date_debut")
+})
 public class ReservationVehicule {
 
     @Id
@@ -0,0 +1,272 @@
+package fr.diginamic.gestiondestransports.entites;
+
+import jakarta.persistence.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+/**
+ * Entité représentant un trajet de covoiturage récurrent (par exemple du lundi au vendredi à 8h pendant 3 mois).
+ * Le trajet sert de modèle : ses occurrences sont des annonces de covoiturage ordinaires, créées au fur et à mesure
+ * sur un horizon glissant, ou à la demande lorsqu'un passager réserve une date plus lointaine.
+ * L'itinéraire (distance, durée, tracé) est calculé une seule fois et recopié dans chaque occurrence.
+ * Cette classe est mappée à la table 'trajet_recurrent' dans la base de données.
+ */
+@Entity
+@Table(name = "trajet_recurrent", indexes = {
+        @Index(name = "idx_trajet_recurrent_responsable", columnList = "responsable_id")
+})
+public class TrajetRecurrent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "heure_depart", nullable = false)
+    private LocalTime heureDepart;
+
+    // Jours de circulation : un bit par jour, du lundi (bit 0) au dimanche (bit 6)
+    @Column(name = "jours_semaine", nullable = false)
+    private Integer joursSemaine;
+
+    @Column(name = "date_debut", nullable = false)
+    private LocalDate dateDebut;
+
+    @Column(name = "date_fin", nullable = false)
+    private LocalDate dateFin;
+
+    @Column(name = "duree_trajet")
+    private Integer dureeTrajet;
+
+    @Column(name = "distance")
+    private Integer distance;
+
+    // Tracé de la route calculé une fois pour toutes les occurrences, null si non calculé
+    @Lob
+    @Column(name = "trace_itineraire")
+    private String traceItineraire;
+
+    @ManyToOne
+    @JoinColumn(name = "adresse_depart")
+    private Adresse adresseDepart;
+
+    @ManyToOne
+    @JoinColumn(name = "adresse_arrivee")
+    private Adresse adresseArrivee;
+
+    @ManyToOne
+    @JoinColumn(name = "responsable_id", nullable = false)
+    private Utilisateur responsable;
+
+    @ManyToOne
+    @JoinColumn(name = "vehicule_service_id")
+    private VehiculeEntreprise vehiculeService;
+
+    // Dernière date dont l'occurrence a été créée par la matérialisation planifiée
+    @Column(name = "materialise_jusqu_au")
+    private LocalDate materialiseJusquAu;
+
+    @Column(name = "actif", nullable = false)
+    private Boolean actif = true;
+
+    // Constructeur par défaut
+    public TrajetRecurrent() {}
+
+    /**
+     * Crée un trajet récurrent à partir de sa première occurrence, dont il reprend le véhicule et l'itinéraire.
+     * Les adresses sont des copies, à enregistrer avec le trajet : modifier la première occurrence
+     * ne change pas les occurrences suivantes.
+     *
+     * @param premiereOccurrence l'annonce de la première occurrence, déjà enregistrée
+     * @param jours les jours de circulation
+     * @param dateDebut le premier jour de la période
+     * @param dateFin le dernier jour de la période
+     */
+    public TrajetRecurrent(AnnonceCovoiturage premiereOccurrence, Collection<DayOfWeek> jours,
+                           LocalDate dateDebut, LocalDate dateFin) {
+        this.heureDepart = premiereOccurrence.getHeureDepart().toLocalTime();
+        this.joursSemaine = masque(jours);
+        this.dateDebut = dateDebut;
+        this.dateFin = dateFin;
+        this.dureeTrajet = premiereOccurrence.getDureeTrajet();
+        this.distance = premiereOccurrence.getDistance();
+        this.traceItineraire = premiereOccurrence.getTraceItineraire();
+        this.adresseDepart = premiereOccurrence.getAdresseDepart().copie();
+        this.adresseArrivee = premiereOccurrence.getAdresseArrivee().copie();
+        this.responsable = premiereOccurrence.getResponsable();
+        this.vehiculeService = premiereOccurrence.getVehiculeService();
+    }
+
+    /**
+     * Convertit des jours de la semaine en masque de bits.
+     *
+     * @param jours les jours de circulation
+     * @return le masque, un bit par jour du lundi (bit 0) au dimanche (bit 6)
+     */
+    public static int masque(Collection<DayOfWeek> jours) {
+        int masque = 0;
+        for (DayOfWeek jour : jours) {
+            masque |= 1 << (jour.getValue() - 1);
+        }
+        return masque;
+    }
+
+    /**
+     * Indique si le trajet circule à une date : période, jour de la semaine et trajet actif.
+     *
+     * @param date la date
+     * @return true si une occurrence existe (ou peut exister) à cette date
+     */
+    public boolean circuleLe(LocalDate date) {
+        return Boolean.TRUE.equals(actif)
+                && !date.isBefore(dateDebut) && !date.isAfter(dateFin)
+                && (joursSemaine & (1 << (date.getDayOfWeek().getValue() - 1))) != 0;
+    }
+
+    /**
+     * Récupère les jours de circulation.
+     *
+     * @return les jours de la semaine, du lundi au dimanche
+     */
+    public Set<DayOfWeek> getJours() {
+        Set<DayOfWeek> jours = EnumSet.noneOf(DayOfWeek.class);
+        for (DayOfWeek jour : DayOfWeek.values()) {
+            if ((joursSemaine & (1 << (jour.getValue() - 1))) != 0) {
+                jours.add(jour);
+            }
+        }
+        return jours;
+    }
+
+    /**
+     * Récupère l'identifiant unique du trajet récurrent.
+     *
+     * @return l'identifiant
+     */
+    public Long getId() {
+        return id;
+    }
+    /**
+     * Définit l'identifiant unique du trajet récurrent.
+     *
+     * @param id l'identifiant à définir
+     */
+    public void setId(Long id) {
+        this.id = id;
+    }
+    /**
+     * Récupère l'heure de départ commune aux occurrences.
+     *
+     * @return l'heure de départ
+     */
+    public LocalTime getHeureDepart() {
+        return heureDepart;
+    }
+    /**
+     * Récupère le premier jour de la période.
+     *
+     * @return la date de début
+     */
+    public LocalDate getDateDebut() {
+        return dateDebut;
+    }
+    /**
+     * Récupère le dernier jour de la période.
+     *
+     * @return la date de fin
+     */
+    public LocalDate getDateFin() {
+        return dateFin;
+    }
+    /**
+     * Récupère la durée du trajet en minutes.
+     *
+     * @return la durée du trajet
+     */
+    public Integer getDureeTrajet() {
+        return dureeTrajet;
+    }
+    /**
+     * Récupère la distance du trajet en kilomètres.
+     *
+     * @return la distance
+     */
+    public Integer getDistance() {
+        return distance;
+    }
+    /**
+     * Récupère le tracé de la route partagé par les occurrences.
+     *
+     * @return le tracé au format polyline, null si l'itinéraire n'a pas été calculé
+     */
+    public String getTraceItineraire() {
+        return traceItineraire;
+    }
+    /**
+     * Récupère l'adresse de départ.
+     *
+     * @return l'adresse de départ
+     */
+    public Adresse getAdresseDepart() {
+        return adresseDepart;
+    }
+    /**
+     * Récupère l'adresse d'arrivée.
+     *
+     * @return l'adresse d'arrivée
+     */
+    public Adresse getAdresseArrivee() {
+        return adresseArrivee;
+    }
+    /**
+     * Récupère le conducteur responsable du trajet.
+     *
+     * @return le responsable
+     */
+    public Utilisateur getResponsable() {
+        return responsable;
+    }
+    /**
+     * Récupère le véhicule de service utilisé, null pour un véhicule personnel.
+     *
+     * @return le véhicule de service
+     */
+    public VehiculeEntreprise getVehiculeService() {
+        return vehiculeService;
+    }
+    /**
+     * Récupère la dernière date matérialisée par la tâche planifiée.
+     *
+     * @return la date, null si aucune occurrence n'a encore été créée
+     */
+    public LocalDate getMaterialiseJusquAu() {
+        return materialiseJusquAu;
+    }
+    /**
+     * Définit la dernière date matérialisée par la tâche planifiée.
+     *
+     * @param materialiseJusquAu la date
+     */
+    public void setMaterialiseJusquAu(LocalDate materialiseJusquAu) {
+        this.materialiseJusquAu = materialiseJusquAu;
+    }
+    /**
+     * Indique si le trajet est actif (de nouvelles occurrences peuvent être créées).
+     *
+     * @return true si le trajet est actif
+     */
+    public Boolean getActif() {
+        return actif;
+    }
+    /**
+     * Active ou arrête le trajet récurrent.
+     *
+     * @param actif false pour ne plus créer d'occurrence
+     */
+    public void setActif(Boolean actif) {
+        this.actif = actif;
+    }
+}
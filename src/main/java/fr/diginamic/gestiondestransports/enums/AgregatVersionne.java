@@ -0,0 +1,11 @@
+package fr.diginamic.gestiondestransports.enums;
+
+/**
+ * Ensembles de données dont la version est suivie pour produire les ETag des listes
+ * - COVOITURAGE : annonces, réservations de places et adresses affichées dans les annonces
+ * - VEHICULES_ENTREPRISE : parc des véhicules de service
+ */
+public enum AgregatVersionne {
+    COVOITURAGE,
+    VEHICULES_ENTREPRISE
+}
@@ -0,0 +1,11 @@
+package fr.diginamic.gestiondestransports.enums;
+/**
+ * Énumération représentant l'état d'une notification email de la boîte d'envoi.
+ * Une notification en attente est envoyée puis marquée envoyée, ou abandonnée
+ * (échec) après un nombre maximal de tentatives.
+ */
+public enum StatutNotification {
+    EN_ATTENTE,
+    ENVOYEE,
+    ECHEC
+}
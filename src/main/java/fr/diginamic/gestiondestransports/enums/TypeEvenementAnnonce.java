@@ -0,0 +1,12 @@
+package fr.diginamic.gestiondestransports.enums;
+
+/**
+ * Types de modifications d'une annonce de covoiturage publiées sous forme d'événements
+ */
+public enum TypeEvenementAnnonce {
+    CREATION,
+    MODIFICATION,
+    SUPPRESSION,
+    RESERVATION,
+    ANNULATION
+}
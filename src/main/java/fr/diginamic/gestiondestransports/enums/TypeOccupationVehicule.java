@@ -0,0 +1,9 @@
+package fr.diginamic.gestiondestransports.enums;
+
+/**
+ * Origine d'une occupation d'un véhicule de service : réservation ou trajet de covoiturage
+ */
+public enum TypeOccupationVehicule {
+    RESERVATION,
+    COVOITURAGE
+}
@@ -0,0 +1,17 @@
+package fr.diginamic.gestiondestransports.evenements;
+
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+
+/**
+ * Événement publié par le service des annonces après chaque modification d'une annonce de covoiturage
+ * (création, modification, suppression, réservation ou annulation d'une place)
+ * Les abonnés le reçoivent une fois la transaction validée.
+ *
+ * @param idAnnonce l'identifiant de l'annonce concernée
+ * @param type la nature de la modification
+ */
+public record AnnonceCovoiturageEvenement(
+        Long idAnnonce,
+        TypeEvenementAnnonce type
+) {
+}
@@ -0,0 +1,224 @@
+package fr.diginamic.gestiondestransports.evenements;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.MiseAJourPlacesDto;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffuse aux clients abonnés (Server-Sent Events) l'évolution des places des annonces de covoiturage.
+ * Une mise à jour est poussée après chaque réservation, annulation, modification ou suppression validée.
+ *
+ * Les connexions inactives ne mobilisent aucun thread (traitement asynchrone des servlets).
+ * Chaque abonné dispose de sa propre file de messages, vidée par un thread virtuel uniquement
+ * lorsqu'elle contient des messages : un client lent ne retarde pas les autres et l'ordre
+ * des messages est conservé pour chaque client. Un client trop en retard est déconnecté ;
+ * à la reconnexion, il doit relire les annonces (les messages manqués ne sont pas rejoués).
+ */
+@Component
+public class DiffuseurPlacesCovoiturage {
+
+    private static final Logger log = LogManager.getLogger(DiffuseurPlacesCovoiturage.class);
+    private static final int MAX_MESSAGES_EN_ATTENTE = 500;
+
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    private final long delaiConnexionMs;
+    private final int maxAbonnes;
+
+    private final Set<Abonne> abonnes = ConcurrentHashMap.newKeySet();
+    private final ExecutorService envois = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public DiffuseurPlacesCovoiturage(AnnonceCovoiturageRepository annonceCovoiturageRepository,
+                                      @Value("${covoit.flux-places.delai-connexion-ms:1800000}") long delaiConnexionMs,
+                                      @Value("${covoit.flux-places.max-abonnes:10000}") int maxAbonnes) {
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+        this.delaiConnexionMs = delaiConnexionMs;
+        this.maxAbonnes = maxAbonnes;
+    }
+
+    /**
+     * Ouvre un flux pour un client
+     * @param idsAnnonces les annonces suivies, ou null/vide pour toutes les annonces
+     * @return l'émetteur SSE à renvoyer par le contrôleur
+     * @throws IllegalStateException si le nombre maximal d'abonnés est atteint
+     */
+    public SseEmitter abonner(List<Long> idsAnnonces) {
+        if (abonnes.size() >= maxAbonnes) {
+            throw new IllegalStateException("Trop de clients connectés au flux des places, réessayez plus tard");
+        }
+        SseEmitter emetteur = new SseEmitter(delaiConnexionMs);
+        Abonne abonne = new Abonne(emetteur, idsAnnonces == null ? Set.of() : Set.copyOf(idsAnnonces));
+        emetteur.onCompletion(() -> abonnes.remove(abonne));
+        // Fin normale du flux à l'expiration : le client se reconnecte automatiquement
+        emetteur.onTimeout(() -> {
+            abonnes.remove(abonne);
+            emetteur.complete();
+        });
+        emetteur.onError(erreur -> abonnes.remove(abonne));
+        abonnes.add(abonne);
+        return emetteur;
+    }
+
+    /**
+     * Nombre de clients connectés
+     */
+    public int nombreAbonnes() {
+        return abonnes.size();
+    }
+
+    /**
+     * Relit les compteurs de l'annonce modifiée une fois la transaction validée et les pousse aux abonnés
+     * @param evenement l'événement publié par le service des annonces
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void surEvenement(AnnonceCovoiturageEvenement evenement) {
+        // Une nouvelle annonce n'a pas encore de place réservée ; sans abonné, rien à relire
+        if (evenement.type() == TypeEvenementAnnonce.CREATION || abonnes.isEmpty()) {
+            return;
+        }
+        MiseAJourPlacesDto miseAJour;
+        if (evenement.type() == TypeEvenementAnnonce.SUPPRESSION) {
+            miseAJour = MiseAJourPlacesDto.suppression(evenement.idAnnonce());
+        } else {
+            List<AnnonceCovoiturageLigneDto> lignes = annonceCovoiturageRepository.findAvecPlacesParIds(List.of(evenement.idAnnonce()));
+            if (lignes.isEmpty()) {
+                return;
+            }
+            miseAJour = MiseAJourPlacesDto.of(lignes.get(0), evenement.type());
+        }
+        diffuser(miseAJour);
+    }
+
+    /**
+     * Pousse une mise à jour aux abonnés qui suivent l'annonce concernée
+     */
+    public void diffuser(MiseAJourPlacesDto miseAJour) {
+        Set<ResponseBodyEmitter.DataWithMediaType> message = SseEmitter.event()
+                .id(Long.toString(sequence.incrementAndGet()))
+                .name(miseAJour.type() == TypeEvenementAnnonce.SUPPRESSION ? "suppression" : "places")
+                .data(miseAJour, MediaType.APPLICATION_JSON)
+                .build();
+        for (Abonne abonne : abonnes) {
+            if (abonne.suit(miseAJour.idAnnonce())) {
+                abonne.publier(message);
+            }
+        }
+    }
+
+    /**
+     * Envoie périodiquement un commentaire à chaque abonné pour maintenir les connexions
+     * ouvertes à travers les proxys et détecter les clients partis
+     */
+    @Scheduled(fixedDelayString = "${covoit.flux-places.battement-ms:30000}")
+    public void battement() {
+        if (abonnes.isEmpty()) {
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> message = SseEmitter.event().comment("battement").build();
+        abonnes.forEach(abonne -> abonne.publier(message));
+    }
+
+    @PreDestroy
+    public void fermer() {
+        for (Abonne abonne : abonnes) {
+            try {
+                abonne.emetteur.complete();
+            } catch (RuntimeException e) {
+                // Réponse déjà libérée par le serveur web à l'arrêt
+            }
+        }
+        abonnes.clear();
+        envois.shutdown();
+    }
+
+    /**
+     * Client connecté au flux et sa file de messages en attente d'envoi
+     */
+    private final class Abonne {
+        private final SseEmitter emetteur;
+        private final Set<Long> annonces;
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> aEnvoyer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger enAttente = new AtomicInteger();
+        private final AtomicBoolean envoiEnCours = new AtomicBoolean();
+
+        private Abonne(SseEmitter emetteur, Set<Long> annonces) {
+            this.emetteur = emetteur;
+            this.annonces = annonces;
+        }
+
+        private boolean suit(Long idAnnonce) {
+            return annonces.isEmpty() || annonces.contains(idAnnonce);
+        }
+
+        private void publier(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+            if (enAttente.incrementAndGet() > MAX_MESSAGES_EN_ATTENTE) {
+                log.warn("Client du flux des places trop lent, déconnexion");
+                deconnecter();
+                return;
+            }
+            aEnvoyer.add(message);
+            planifier();
+        }
+
+        private void planifier() {
+            if (envoiEnCours.compareAndSet(false, true)) {
+                try {
+                    envois.execute(this::vider);
+                } catch (RuntimeException e) {
+                    // Arrêt de l'application en cours
+                    envoiEnCours.set(false);
+                }
+            }
+        }
+
+        private void vider() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> message;
+                while ((message = aEnvoyer.poll()) != null) {
+                    enAttente.decrementAndGet();
+                    emetteur.send(message);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client déconnecté ou flux déjà terminé
+                deconnecter();
+            } finally {
+                envoiEnCours.set(false);
+                if (!aEnvoyer.isEmpty() && abonnes.contains(this)) {
+                    planifier();
+                }
+            }
+        }
+
+        private void deconnecter() {
+            abonnes.remove(this);
+            aEnvoyer.clear();
+            emetteur.complete();
+        }
+    }
+}
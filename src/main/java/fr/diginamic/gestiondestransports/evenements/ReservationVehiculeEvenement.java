@@ -0,0 +1,16 @@
+package fr.diginamic.gestiondestransports.evenements;
+
+import java.util.List;
+
+/**
+ * Événement publié par le service des réservations de véhicules après chaque création, modification
+ * ou suppression de réservations
+ * Les abonnés le reçoivent une fois la transaction validée et relisent les réservations concernées :
+ * une réservation absente de la base a été supprimée.
+ *
+ * @param idsReservations les identifiants des réservations concernées
+ */
+public record ReservationVehiculeEvenement(
+        List<Long> idsReservations
+) {
+}
@@ -1,10 +1,14 @@
 package fr.diginamic.gestiondestransports.repositories;
 
+import fr.diginamic.gestiondestransports.dto.CoordonneesAdresseDto;
 import fr.diginamic.gestiondestransports.entites.Adresse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 /**
@@ -56,4 +60,55 @@ public interface AdresseRepository extends JpaRepository<Adresse, Long> {
      */
     @Query("SELECT a FROM Adresse a WHERE a.ville = :ville AND a.codePostal = :codePostal")
     List<Adresse> findByVilleAndCodePostal(@Param("ville") String ville, @Param("codePostal") String codePostal);
+    /**
+     * Recherche les adresses déjà géocodées identiques à l'adresse fournie (mêmes numéro, libellé, code postal et ville).
+     * Permet de réutiliser des coordonnées connues pour une nouvelle adresse sans nouvel appel à Nominatim.
+     *
+     * @param numero le numéro de voie (peut être null)
+     * @param libelle le libellé de la voie
+     * @param codePostal le code postal
+     * @param ville le nom de la ville
+     * @return liste des adresses géocodées correspondantes, de la plus ancienne à la plus récente
+     */
+    @Query("SELECT a FROM Adresse a WHERE a.latitude IS NOT NULL AND a.longitude IS NOT NULL " +
+            "AND (a.numero = :numero OR (:numero IS NULL AND a.numero IS NULL)) " +
+            "AND a.libelle = :libelle AND a.codePostal = :codePostal AND a.ville = :ville " +
+            "ORDER BY a.id ASC")
+    List<Adresse> findGeocodeesIdentiques(@Param("numero") Integer numero,
+                                          @Param("libelle") String libelle,
+                                          @Param("codePostal") String codePostal,
+                                          @Param("ville") String ville);
+    /**
+     * Recherche en une requête les coordonnées connues des adresses géocodées dont le libellé et le code postal
+     * figurent dans les listes fournies, une ligne par adresse et coordonnées distinctes.
+     * Utilisée par l'import en masse à la place d'une recherche par adresse ; le numéro et la ville
+     * sont comparés ensuite, adresse par adresse.
+     *
+     * @param libelles les libellés de voie recherchés
+     * @param codesPostaux les codes postaux recherchés
+     * @return les composants et coordonnées des adresses géocodées correspondantes
+     */
+    @Query("SELECT DISTINCT new fr.diginamic.gestiondestransports.dto.CoordonneesAdresseDto(" +
+            "a.numero, a.libelle, a.codePostal, a.ville, a.latitude, a.longitude) " +
+            "FROM Adresse a WHERE a.latitude IS NOT NULL AND a.longitude IS NOT NULL " +
+            "AND a.libelle IN :libelles AND a.codePostal IN :codesPostaux")
+    List<CoordonneesAdresseDto> findCoordonneesConnues(@Param("libelles") Collection<String> libelles,
+                                                       @Param("codesPostaux") Collection<String> codesPostaux);
+    /**
+     * Recherche, par identifiant croissant, les adresses sans coordonnées utilisées comme départ ou arrivée
+     * d'une annonce de covoiturage à venir (adresses antérieures au géocodage, ou non trouvées par Nominatim).
+     * Permet de les géocoder par lots en reprenant après le dernier identifiant traité.
+     *
+     * @param apresId identifiant à partir duquel reprendre (exclu), 0 pour commencer au début
+     * @param dateDebut heure de départ minimale (incluse) des annonces concernées
+     * @param pageable taille du lot
+     * @return les adresses à géocoder
+     */
+    @Query("SELECT ad FROM Adresse ad WHERE ad.id > :apresId AND (ad.latitude IS NULL OR ad.longitude IS NULL) " +
+            "AND EXISTS (SELECT a.id FROM AnnonceCovoiturage a " +
+            "WHERE (a.adresseDepart = ad OR a.adresseArrivee = ad) AND a.heureDepart >= :dateDebut) " +
+            "ORDER BY ad.id ASC")
+    List<Adresse> findSansCoordonneesPourAnnoncesAVenir(@Param("apresId") Long apresId,
+                                                        @Param("dateDebut") LocalDateTime dateDebut,
+                                                        Pageable pageable);
 }
@@ -0,0 +1,52 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.dto.StatistiqueArchiveDto;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturageArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+/**
+ * Repository JPA pour l'historique des annonces de covoiturage (annonces archivées).
+ * Permet de copier un lot d'annonces dans l'historique et d'interroger cet historique pour le reporting.
+ */
+@Repository
+public interface AnnonceCovoiturageArchiveRepository extends JpaRepository<AnnonceCovoiturageArchive, Long> {
+
+    /**
+     * Copie en une requête (INSERT ... SELECT) les annonces demandées dans l'historique.
+     *
+     * @param ids les identifiants des annonces à archiver
+     * @param dateArchivage la date d'archivage à enregistrer
+     * @return le nombre d'annonces copiées
+     */
+    @Modifying
+    @Query("INSERT INTO AnnonceCovoiturageArchive (id, heureDepart, dureeTrajet, distance, placesTotales, placesOccupees, " +
+            "adresseDepartId, adresseArriveeId, responsableId, vehiculeServiceId, dateArchivage) " +
+            "SELECT a.id, a.heureDepart, a.dureeTrajet, a.distance, a.placesTotales, a.placesOccupees, " +
+            "a.adresseDepart.id, a.adresseArrivee.id, a.responsable.id, a.vehiculeService.id, :dateArchivage " +
+            "FROM AnnonceCovoiturage a WHERE a.id IN :ids")
+    int archiverAnnonces(@Param("ids") Collection<Long> ids, @Param("dateArchivage") LocalDateTime dateArchivage);
+
+    /**
+     * Calcule par mois le nombre de trajets archivés, de passagers transportés et de kilomètres parcourus.
+     *
+     * @param debut début de la période (inclus)
+     * @param fin fin de la période (exclue)
+     * @return une ligne par mois ayant au moins un trajet, dans l'ordre chronologique
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.StatistiqueArchiveDto(" +
+            "YEAR(a.heureDepart), MONTH(a.heureDepart), COUNT(a), " +
+            "SUM(COALESCE(a.placesOccupees, 0)), SUM(COALESCE(a.distance, 0))) " +
+            "FROM AnnonceCovoiturageArchive a " +
+            "WHERE a.heureDepart >= :debut AND a.heureDepart < :fin " +
+            "GROUP BY YEAR(a.heureDepart), MONTH(a.heureDepart) " +
+            "ORDER BY YEAR(a.heureDepart) ASC, MONTH(a.heureDepart) ASC")
+    List<StatistiqueArchiveDto> calculerStatistiquesMensuelles(@Param("debut") LocalDateTime debut,
+                                                               @Param("fin") LocalDateTime fin);
+}
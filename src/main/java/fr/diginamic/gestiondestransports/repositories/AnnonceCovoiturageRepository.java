@@ -1,14 +1,24 @@
 package fr.diginamic.gestiondestransports.repositories;
 
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantAnnonceLigneDto;
+import fr.diginamic.gestiondestransports.dto.PositionDepartAnnonceDto;
+import fr.diginamic.gestiondestransports.dto.TraceAnnonceDto;
 import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
 import fr.diginamic.gestiondestransports.entites.Adresse;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 /**
  * Repository JPA pour la gestion des entités AnnonceCovoiturage.
  * Fournit les opérations CRUD standard et des requêtes personnalisées pour rechercher et filtrer les annonces.
@@ -125,4 +135,357 @@ public interface AnnonceCovoiturageRepository extends JpaRepository<AnnonceCovoi
             @Param("dateDebut") LocalDateTime dateDebut,
             @Param("dateFin") LocalDateTime dateFin
     );
-}
\ No newline at end of file
+
+    /**
+     * Lit un lot d'annonces avec leurs adresses, la capacité du véhicule et le nombre de passagers, situées strictement après
+     * l'identifiant donné. Permet de parcourir tout le catalogue par lots de taille fixe (keyset sur
+     * la clé primaire) sans jamais charger l'ensemble des annonces en mémoire.
+     *
+     * @param dernierId identifiant de la dernière annonce du lot précédent (0 pour le premier lot)
+     * @param pageable taille du lot (seule la taille est utilisée, la page doit être 0)
+     * @return les lignes d'annonces du lot, triées par identifiant
+     */
+    @Query(SELECT_LIGNE_AVEC_PLACES + "WHERE a.id > :dernierId ORDER BY a.id ASC")
+    List<AnnonceCovoiturageLigneDto> findAvecPlacesApres(@Param("dernierId") Long dernierId, Pageable pageable);
+
+    /**
+     * Récupère en une seule requête les annonces auxquelles un utilisateur participe en tant que passager,
+     * avec leurs adresses, la capacité du véhicule et le nombre de passagers (même projection que findAvecPlacesApres).
+     * Le nombre de requêtes ne dépend pas du nombre de réservations de l'utilisateur.
+     *
+     * @param utilisateurId l'identifiant de l'utilisateur passager
+     * @return les lignes des annonces réservées, triées par identifiant
+     */
+    @Query(SELECT_LIGNE_AVEC_PLACES +
+            "WHERE EXISTS (SELECT 1 FROM CovoituragePassagers cp " +
+            "WHERE cp.annonceCovoiturage = a AND cp.utilisateur.id = :utilisateurId) " +
+            "ORDER BY a.id ASC")
+    List<AnnonceCovoiturageLigneDto> findAvecPlacesParPassager(@Param("utilisateurId") Long utilisateurId);
+
+    /**
+     * Récupère en une seule requête les annonces organisées par un utilisateur (conducteur),
+     * avec leurs adresses, la capacité du véhicule et le nombre de passagers (même projection que findAvecPlacesApres).
+     *
+     * @param responsableId l'identifiant de l'utilisateur organisateur
+     * @return les lignes des annonces organisées, triées par identifiant
+     */
+    @Query(SELECT_LIGNE_AVEC_PLACES + "WHERE a.responsable.id = :responsableId ORDER BY a.id ASC")
+    List<AnnonceCovoiturageLigneDto> findAvecPlacesParResponsable(@Param("responsableId") Long responsableId);
+
+    /**
+     * Charge en une seule requête le conducteur et les passagers des annonces demandées,
+     * sans charger les entités (une ligne par passager, une ligne sans passager pour les annonces non réservées).
+     * Les lignes sont à regrouper avec ParticipantAnnonceLigneDto.regrouperParAnnonce.
+     *
+     * @param ids les identifiants des annonces
+     * @return les lignes de participants triées par annonce puis par ordre de réservation
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.ParticipantAnnonceLigneDto(" +
+            "a.id, r.id, r.nom, r.prenom, u.id, u.nom, u.prenom) " +
+            "FROM AnnonceCovoiturage a " +
+            "LEFT JOIN a.responsable r " +
+            "LEFT JOIN a.passagers cp " +
+            "LEFT JOIN cp.utilisateur u " +
+            "WHERE a.id IN :ids " +
+            "ORDER BY a.id ASC, cp.id ASC")
+    List<ParticipantAnnonceLigneDto> findParticipantsParAnnonces(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Recherche paginée par curseur (keyset) des annonces de covoiturage, avec filtres optionnels.
+     * Les annonces sont triées par (heureDepart, id) ; la page suivante démarre strictement après
+     * le couple (curseurHeureDepart, curseurId) de la dernière annonce reçue, ce qui évite les OFFSET
+     * coûteux et s'appuie sur l'index idx_annonce_heure_depart_id.
+     * Chaque paramètre de filtre à null est ignoré. Les places libres sont calculées comme
+     * capacité du véhicule - 1 (conducteur) - nombre de passagers, comme lors d'une réservation.
+     * Les annonces sans véhicule retrouvable (capacité nulle) sont exclues avant la limite :
+     * une page n'est jamais raccourcie par un filtre appliqué ensuite.
+     *
+     * @param villeDepart ville de départ recherchée
+     * @param codePostalDepart code postal de départ recherché
+     * @param villeArrivee ville d'arrivée recherchée
+     * @param codePostalArrivee code postal d'arrivée recherché
+     * @param dateDebut heure de départ minimale (incluse)
+     * @param dateFin heure de départ maximale (incluse)
+     * @param placesMin nombre minimal de places libres pour les passagers
+     * @param curseurHeureDepart heure de départ de la dernière annonce de la page précédente
+     * @param curseurId identifiant de la dernière annonce de la page précédente
+     * @param pageable taille de la page (seule la taille est utilisée, la page doit être 0)
+     * @return les lignes d'annonces de la page demandée
+     */
+    @Query(SELECT_LIGNE_AVEC_PLACES +
+            "WHERE (:villeDepart IS NULL OR ad.ville = :villeDepart) " +
+            "AND (:codePostalDepart IS NULL OR ad.codePostal = :codePostalDepart) " +
+            "AND (:villeArrivee IS NULL OR aa.ville = :villeArrivee) " +
+            "AND (:codePostalArrivee IS NULL OR aa.codePostal = :codePostalArrivee) " +
+            "AND (:dateDebut IS NULL OR a.heureDepart >= :dateDebut) " +
+            "AND (:dateFin IS NULL OR a.heureDepart <= :dateFin) " +
+            "AND (:curseurHeureDepart IS NULL " +
+            "OR a.heureDepart > :curseurHeureDepart " +
+            "OR (a.heureDepart = :curseurHeureDepart AND a.id > :curseurId)) " +
+            "AND " + EXPR_CAPACITE + " IS NOT NULL " +
+            "AND (:placesMin IS NULL OR " + EXPR_CAPACITE + " - 1 - " + EXPR_PASSAGERS + " >= :placesMin) " +
+            "ORDER BY a.heureDepart ASC, a.id ASC")
+    List<AnnonceCovoiturageLigneDto> rechercherAvecCurseur(
+            @Param("villeDepart") String villeDepart,
+            @Param("codePostalDepart") String codePostalDepart,
+            @Param("villeArrivee") String villeArrivee,
+            @Param("codePostalArrivee") String codePostalArrivee,
+            @Param("dateDebut") LocalDateTime dateDebut,
+            @Param("dateFin") LocalDateTime dateFin,
+            @Param("placesMin") Integer placesMin,
+            @Param("curseurHeureDepart") LocalDateTime curseurHeureDepart,
+            @Param("curseurId") Long curseurId,
+            Pageable pageable);
+
+    /**
+     * Recherche la position de départ des annonces partant d'une des cellules de grille données
+     * à partir d'une heure donnée. Utilise l'index sur adresse.cellule_grille pour ne parcourir
+     * que les adresses proches avant le calcul exact des distances.
+     *
+     * @param cellules les cellules de la grille géographique à explorer
+     * @param dateDebut heure de départ minimale (incluse)
+     * @return l'identifiant et les coordonnées de départ des annonces candidates
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.PositionDepartAnnonceDto(a.id, ad.latitude, ad.longitude) " +
+            "FROM AnnonceCovoiturage a JOIN a.adresseDepart ad " +
+            "WHERE ad.celluleGrille IN :cellules AND a.heureDepart >= :dateDebut")
+    List<PositionDepartAnnonceDto> findPositionsDepartDansCellules(@Param("cellules") Collection<Long> cellules,
+                                                                   @Param("dateDebut") LocalDateTime dateDebut);
+
+    /**
+     * Charge les annonces à venir avec leurs adresses et compteurs de places, triées par heure de départ.
+     * Utilisée pour construire et vérifier le modèle en mémoire des annonces à venir.
+     *
+     * @param maintenant date/heure de référence (exclue)
+     * @return les lignes des annonces dont le départ est postérieur à maintenant
+     */
+    @Query(SELECT_LIGNE_AVEC_PLACES +
+            "WHERE a.heureDepart > :maintenant " +
+            "ORDER BY a.heureDepart ASC, a.id ASC")
+    List<AnnonceCovoiturageLigneDto> findFuturesAvecPlaces(@Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Charge en une seule requête les annonces demandées avec leurs adresses et compteurs de places.
+     *
+     * @param ids les identifiants des annonces
+     * @return une ligne par annonce trouvée, dans un ordre quelconque
+     */
+    @Query(SELECT_LIGNE_AVEC_PLACES + "WHERE a.id IN :ids")
+    List<AnnonceCovoiturageLigneDto> findAvecPlacesParIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Charge la géométrie (tracé et coordonnées de départ/arrivée) des annonces demandées.
+     *
+     * @param ids les identifiants des annonces
+     * @return une projection par annonce trouvée
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.TraceAnnonceDto(a.id, a.traceItineraire, " +
+            "ad.latitude, ad.longitude, aa.latitude, aa.longitude) " +
+            "FROM AnnonceCovoiturage a JOIN a.adresseDepart ad JOIN a.adresseArrivee aa " +
+            "WHERE a.id IN :ids")
+    List<TraceAnnonceDto> findTracesParIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Recherche les annonces à venir géocodées dont le corridor n'a pas encore été calculé.
+     *
+     * @param dateDebut heure de départ minimale (incluse)
+     * @return les annonces à indexer
+     */
+    @Query("SELECT a FROM AnnonceCovoiturage a JOIN a.adresseDepart ad JOIN a.adresseArrivee aa " +
+            "WHERE a.heureDepart >= :dateDebut " +
+            "AND ad.latitude IS NOT NULL AND aa.latitude IS NOT NULL " +
+            "AND NOT EXISTS (SELECT c.id FROM CelluleCorridor c WHERE c.annonceCovoiturage = a)")
+    List<AnnonceCovoiturage> findAVenirSansCorridor(@Param("dateDebut") LocalDateTime dateDebut);
+
+    /**
+     * Charge une annonce en verrouillant sa ligne jusqu'à la fin de la transaction.
+     * Sérialise l'inscription en liste d'attente avec les réservations et annulations de la même annonce,
+     * dont les UPDATE de compteur posent le même verrou.
+     *
+     * @param id l'identifiant de l'annonce
+     * @return l'annonce verrouillée, lue dans son dernier état validé
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM AnnonceCovoiturage a WHERE a.id = :id")
+    Optional<AnnonceCovoiturage> findPourMiseAJour(@Param("id") Long id);
+
+    /**
+     * Réserve atomiquement une place : incrémente le compteur uniquement s'il reste une place
+     * pour un passager (la place du conducteur est exclue). Le verrou de ligne posé par l'UPDATE
+     * sérialise les réservations concurrentes sur une même annonce.
+     *
+     * @param idAnnonce l'identifiant de l'annonce
+     * @return 1 si la place a été réservée, 0 si l'annonce est complète
+     */
+    @Modifying
+    @Query("UPDATE AnnonceCovoiturage a SET a.placesOccupees = a.placesOccupees + 1 " +
+            "WHERE a.id = :idAnnonce AND a.placesOccupees < a.placesTotales - 1")
+    int occuperPlace(@Param("idAnnonce") Long idAnnonce);
+
+    /**
+     * Libère atomiquement une place après une annulation de réservation.
+     *
+     * @param idAnnonce l'identifiant de l'annonce
+     * @return le nombre de lignes modifiées
+     */
+    @Modifying
+    @Query("UPDATE AnnonceCovoiturage a SET a.placesOccupees = a.placesOccupees - 1 " +
+            "WHERE a.id = :idAnnonce AND a.placesOccupees > 0")
+    int libererPlace(@Param("idAnnonce") Long idAnnonce);
+
+    /**
+     * Calcule les compteurs de places des annonces qui n'en ont pas encore (annonces antérieures
+     * à leur introduction) à partir du véhicule et de la table covoiturage_passagers.
+     *
+     * @return le nombre d'annonces initialisées
+     */
+    @Modifying
+    @Query(UPDATE_COMPTEURS_PLACES + "WHERE a.placesTotales IS NULL OR a.placesOccupees IS NULL")
+    int initialiserCompteursPlaces();
+
+    /**
+     * Calcule les compteurs de places d'une seule annonce qui n'en a pas encore, comme initialiserCompteursPlaces.
+     * Utilisée lors d'une réservation : seule la ligne de l'annonce réservée est verrouillée.
+     *
+     * @param idAnnonce l'identifiant de l'annonce
+     * @return 1 si l'annonce a été initialisée, 0 sinon
+     */
+    @Modifying
+    @Query(UPDATE_COMPTEURS_PLACES + "WHERE a.id = :idAnnonce AND (a.placesTotales IS NULL OR a.placesOccupees IS NULL)")
+    int initialiserCompteursPlaces(@Param("idAnnonce") Long idAnnonce);
+
+    /**
+     * Reporte la nouvelle capacité d'un véhicule de service sur les annonces qui l'utilisent.
+     *
+     * @param vehiculeServiceId l'identifiant du véhicule de service
+     * @param nbPlaces la nouvelle capacité du véhicule
+     * @return le nombre d'annonces mises à jour
+     */
+    @Modifying
+    @Query("UPDATE AnnonceCovoiturage a SET a.placesTotales = :nbPlaces WHERE a.vehiculeService.id = :vehiculeServiceId")
+    int mettreAJourPlacesTotalesVehiculeService(@Param("vehiculeServiceId") Long vehiculeServiceId,
+                                                @Param("nbPlaces") Integer nbPlaces);
+
+    /**
+     * Reporte la nouvelle capacité du véhicule personnel d'un utilisateur sur ses annonces
+     * sans véhicule de service.
+     *
+     * @param responsableId l'identifiant du propriétaire du véhicule personnel
+     * @param nbPlaces la nouvelle capacité du véhicule
+     * @return le nombre d'annonces mises à jour
+     */
+    @Modifying
+    @Query("UPDATE AnnonceCovoiturage a SET a.placesTotales = :nbPlaces " +
+            "WHERE a.responsable.id = :responsableId AND a.vehiculeService IS NULL")
+    int mettreAJourPlacesTotalesVehiculePersonnel(@Param("responsableId") Long responsableId,
+                                                  @Param("nbPlaces") Integer nbPlaces);
+
+    /**
+     * Identifiants des annonces à venir utilisant un véhicule de service, pour notifier le report de sa capacité.
+     *
+     * @param vehiculeServiceId l'identifiant du véhicule de service
+     * @param maintenant date à partir de laquelle une annonce est à venir
+     * @return les identifiants des annonces
+     */
+    @Query("SELECT a.id FROM AnnonceCovoiturage a WHERE a.vehiculeService.id = :vehiculeServiceId AND a.heureDepart > :maintenant")
+    List<Long> findIdsAVenirParVehiculeService(@Param("vehiculeServiceId") Long vehiculeServiceId,
+                                               @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Identifiants des annonces à venir d'un utilisateur sans véhicule de service,
+     * pour notifier le report de la capacité de son véhicule personnel.
+     *
+     * @param responsableId l'identifiant du propriétaire du véhicule personnel
+     * @param maintenant date à partir de laquelle une annonce est à venir
+     * @return les identifiants des annonces
+     */
+    @Query("SELECT a.id FROM AnnonceCovoiturage a " +
+            "WHERE a.responsable.id = :responsableId AND a.vehiculeService IS NULL AND a.heureDepart > :maintenant")
+    List<Long> findIdsAVenirSansVehiculeService(@Param("responsableId") Long responsableId,
+                                                @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Identifiants des annonces à venir partant de ou arrivant à une adresse, pour notifier sa modification.
+     *
+     * @param adresseId l'identifiant de l'adresse
+     * @param maintenant date à partir de laquelle une annonce est à venir
+     * @return les identifiants des annonces
+     */
+    @Query("SELECT a.id FROM AnnonceCovoiturage a " +
+            "WHERE (a.adresseDepart.id = :adresseId OR a.adresseArrivee.id = :adresseId) AND a.heureDepart > :maintenant")
+    List<Long> findIdsAVenirParAdresse(@Param("adresseId") Long adresseId,
+                                       @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Identifiant de l'occurrence d'un trajet récurrent pour un départ donné.
+     *
+     * @param trajetRecurrentId l'identifiant du trajet récurrent
+     * @param heureDepart la date et l'heure de départ de l'occurrence
+     * @return l'identifiant de l'annonce, si l'occurrence a été créée
+     */
+    @Query("SELECT a.id FROM AnnonceCovoiturage a WHERE a.trajetRecurrent.id = :trajetRecurrentId AND a.heureDepart = :heureDepart")
+    Optional<Long> findIdOccurrence(@Param("trajetRecurrentId") Long trajetRecurrentId,
+                                    @Param("heureDepart") LocalDateTime heureDepart);
+
+    /**
+     * Identifiants des annonces dont le départ est antérieur à la date limite, à archiver.
+     * Les annonces d'un lot étant supprimées après archivage, la première page suffit à chaque lot.
+     *
+     * @param limite la date de départ en dessous de laquelle une annonce est archivée
+     * @param pageable la taille du lot
+     * @return les identifiants par ordre croissant
+     */
+    @Query("SELECT a.id FROM AnnonceCovoiturage a WHERE a.heureDepart < :limite ORDER BY a.id ASC")
+    List<Long> findIdsPartiesAvant(@Param("limite") LocalDateTime limite, Pageable pageable);
+
+    /**
+     * Supprime en une seule requête un lot d'annonces, après archivage de leurs réservations et corridors.
+     *
+     * @param ids les identifiants des annonces
+     * @return le nombre d'annonces supprimées
+     */
+    @Modifying
+    @Query("DELETE FROM AnnonceCovoiturage a WHERE a.id IN :ids")
+    int supprimerParIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Capacité du véhicule d'une annonce : compteur dénormalisé, sinon véhicule de service,
+     * sinon premier véhicule personnel du responsable.
+     */
+    String EXPR_CAPACITE = "COALESCE(a.placesTotales, vs.nbPlaces, (SELECT vp.nbPlaces FROM VehiculePersonnel vp WHERE vp.id = " +
+            "(SELECT MIN(vp2.id) FROM VehiculePersonnel vp2 WHERE vp2.utilisateur.id = a.responsable.id)))";
+
+    /**
+     * Nombre de passagers inscrits sur une annonce : compteur dénormalisé, sinon comptage des passagers.
+     */
+    String EXPR_PASSAGERS = "CAST(COALESCE(a.placesOccupees, " +
+            "(SELECT COUNT(cp.id) FROM CovoituragePassagers cp WHERE cp.annonceCovoiturage.id = a.id)) AS Long)";
+
+    /**
+     * Calcul des compteurs de places à partir du véhicule et de la table covoiturage_passagers,
+     * complété par la clause WHERE des requêtes d'initialisation
+     */
+    String UPDATE_COMPTEURS_PLACES = "UPDATE AnnonceCovoiturage a SET " +
+            "a.placesTotales = COALESCE(" +
+            "(SELECT v.nbPlaces FROM VehiculeEntreprise v WHERE v.id = a.vehiculeService.id), " +
+            "(SELECT vp.nbPlaces FROM VehiculePersonnel vp WHERE vp.id = " +
+            "(SELECT MIN(vp2.id) FROM VehiculePersonnel vp2 WHERE vp2.utilisateur.id = a.responsable.id))), " +
+            "a.placesOccupees = (SELECT COUNT(cp.id) FROM CovoituragePassagers cp WHERE cp.annonceCovoiturage.id = a.id) ";
+
+    /**
+     * Début commun des requêtes renvoyant des {@link AnnonceCovoiturageLigneDto}, en une seule requête agrégée.
+     * La capacité est celle stockée sur l'annonce, sinon celle du véhicule de service ou du premier
+     * véhicule personnel du responsable (même règle que le calcul unitaire des places totales).
+     * Le nombre de passagers est lu dans le compteur de l'annonce, ou à défaut compté dans covoiturage_passagers.
+     * Une annonce sans véhicule retrouvable est renvoyée avec une capacité nulle.
+     */
+    String SELECT_LIGNE_AVEC_PLACES = "SELECT new fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto(" +
+            "a.id, a.heureDepart, a.dureeTrajet, a.distance, " +
+            "ad.id, ad.numero, ad.libelle, ad.codePostal, ad.ville, " +
+            "aa.id, aa.numero, aa.libelle, aa.codePostal, aa.ville, " +
+            "vs.id, " + EXPR_CAPACITE + ", " + EXPR_PASSAGERS + ") " +
+            "FROM AnnonceCovoiturage a " +
+            "LEFT JOIN a.adresseDepart ad " +
+            "LEFT JOIN a.adresseArrivee aa " +
+            "LEFT JOIN a.vehiculeService vs ";
+}
@@ -0,0 +1,57 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.entites.CelluleCorridor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+/**
+ * Repository JPA pour la gestion des cellules de corridor des annonces de covoiturage.
+ * Le corridor d'une annonce est l'ensemble des cellules de grille traversées par son trajet.
+ * Permet de retrouver sans parcourir toutes les annonces celles qui passent près de deux points.
+ */
+@Repository
+public interface CelluleCorridorRepository extends JpaRepository<CelluleCorridor, Long> {
+
+    /**
+     * Recherche les annonces à venir dont le corridor traverse à la fois une des cellules proches
+     * du point de prise en charge et une des cellules proches du point de dépose.
+     *
+     * @param cellulesPriseEnCharge cellules couvrant la zone de prise en charge
+     * @param cellulesDepose cellules couvrant la zone de dépose
+     * @param dateDebut heure de départ minimale (incluse)
+     * @return les identifiants des annonces candidates
+     */
+    @Query("SELECT DISTINCT c.annonceCovoiturage.id FROM CelluleCorridor c " +
+            "WHERE c.celluleGrille IN :cellulesPriseEnCharge " +
+            "AND c.annonceCovoiturage.heureDepart >= :dateDebut " +
+            "AND EXISTS (SELECT c2.id FROM CelluleCorridor c2 " +
+            "WHERE c2.annonceCovoiturage = c.annonceCovoiturage AND c2.celluleGrille IN :cellulesDepose)")
+    List<Long> findAnnoncesTraversant(@Param("cellulesPriseEnCharge") Collection<Long> cellulesPriseEnCharge,
+                                      @Param("cellulesDepose") Collection<Long> cellulesDepose,
+                                      @Param("dateDebut") LocalDateTime dateDebut);
+
+    /**
+     * Supprime le corridor d'une annonce.
+     *
+     * @param idAnnonce l'identifiant de l'annonce
+     * @return le nombre de cellules supprimées
+     */
+    @Modifying
+    @Query("DELETE FROM CelluleCorridor c WHERE c.annonceCovoiturage.id = :idAnnonce")
+    int supprimerParAnnonce(@Param("idAnnonce") Long idAnnonce);
+
+    /**
+     * Supprime les corridors d'un lot d'annonces (archivage).
+     *
+     * @param idsAnnonces les identifiants des annonces
+     * @return le nombre de cellules supprimées
+     */
+    @Modifying
+    @Query("DELETE FROM CelluleCorridor c WHERE c.annonceCovoiturage.id IN :idsAnnonces")
+    int supprimerParAnnonces(@Param("idsAnnonces") Collection<Long> idsAnnonces);
+}
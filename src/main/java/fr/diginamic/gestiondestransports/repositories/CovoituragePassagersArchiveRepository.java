@@ -0,0 +1,28 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.entites.CovoituragePassagersArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+/**
+ * Repository JPA pour l'historique des réservations de covoiturage (réservations des annonces archivées).
+ */
+@Repository
+public interface CovoituragePassagersArchiveRepository extends JpaRepository<CovoituragePassagersArchive, Long> {
+
+    /**
+     * Copie en une requête (INSERT ... SELECT) les réservations des annonces demandées dans l'historique.
+     *
+     * @param idsAnnonces les identifiants des annonces archivées
+     * @return le nombre de réservations copiées
+     */
+    @Modifying
+    @Query("INSERT INTO CovoituragePassagersArchive (id, annonceCovoiturageId, utilisateurId) " +
+            "SELECT cp.id, cp.annonceCovoiturage.id, cp.utilisateur.id " +
+            "FROM CovoituragePassagers cp WHERE cp.annonceCovoiturage.id IN :idsAnnonces")
+    int archiverPassagers(@Param("idsAnnonces") Collection<Long> idsAnnonces);
+}
@@ -4,9 +4,11 @@ import fr.diginamic.gestiondestransports.entites.CovoituragePassagers;
 import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 /**
@@ -93,4 +95,37 @@ public interface CovoituragePassagersRepository extends JpaRepository<Covoiturag
      * @return liste de toutes les relations passagers pour cette annonce
      */
     List<CovoituragePassagers> findByAnnonceCovoiturageId(Long idAnnonce);
-}
\ No newline at end of file
+
+    /**
+     * Vérifie si un utilisateur est passager d'une annonce, à partir des identifiants.
+     *
+     * @param idUtilisateur l'identifiant de l'utilisateur
+     * @param idAnnonce l'identifiant de l'annonce de covoiturage
+     * @return true si l'utilisateur a réservé une place
+     */
+    boolean existsByUtilisateurIdAndAnnonceCovoiturageId(Long idUtilisateur, Long idAnnonce);
+
+    /**
+     * Supprime en une seule requête la réservation d'un passager pour une annonce.
+     * Contrairement à deleteByUtilisateurAndAnnonceCovoiturage, ne charge pas l'entité avant suppression
+     * et renvoie le nombre de lignes supprimées, ce qui permet de savoir si une réservation existait.
+     *
+     * @param utilisateurId l'identifiant de l'utilisateur passager
+     * @param annonceId l'identifiant de l'annonce de covoiturage
+     * @return le nombre de réservations supprimées (0 ou 1)
+     */
+    @Modifying
+    @Query("DELETE FROM CovoituragePassagers cp " +
+            "WHERE cp.utilisateur.id = :utilisateurId AND cp.annonceCovoiturage.id = :annonceId")
+    int supprimerReservation(@Param("utilisateurId") Long utilisateurId, @Param("annonceId") Long annonceId);
+
+    /**
+     * Supprime en une seule requête les réservations d'un lot d'annonces (archivage).
+     *
+     * @param idsAnnonces les identifiants des annonces
+     * @return le nombre de réservations supprimées
+     */
+    @Modifying
+    @Query("DELETE FROM CovoituragePassagers cp WHERE cp.annonceCovoiturage.id IN :idsAnnonces")
+    int supprimerParAnnonces(@Param("idsAnnonces") Collection<Long> idsAnnonces);
+}
@@ -0,0 +1,143 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Écritures JDBC par lots pour l'import en masse des annonces de covoiturage.
+ * Les identifiants des annonces et des adresses étant générés par la base (IDENTITY), Hibernate ne regroupe pas leurs insertions :
+ * les lignes sont donc envoyées ici en un seul lot JDBC, les identifiants générés étant relus dans la réponse du pilote
+ * (avec rewriteBatchedStatements, le pilote MySQL réécrit le lot en INSERT multi-lignes).
+ */
+@Repository
+public class ImportCovoiturageJdbcRepository {
+
+    private static final String INSERT_ANNONCE = "INSERT INTO annonce_covoiturage (heure_depart, duree_trajet, distance, " +
+            "places_totales, places_occupees, trace_itineraire, adresse_depart, adresse_arrivee, responsable_id, vehicule_service_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ADRESSE = "INSERT INTO adresse (numero, libelle, code_postal, ville, " +
+            "latitude, longitude, cellule_grille) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CELLULE = "INSERT INTO cellule_corridor (annonce_covoiturage_id, cellule_grille) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImportCovoiturageJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insère un lot d'adresses, coordonnées et cellule de la grille comprises, et renseigne leur identifiant
+     *
+     * @param adresses les adresses à insérer
+     */
+    public void insererAdresses(List<Adresse> adresses) {
+        if (adresses.isEmpty()) {
+            return;
+        }
+        KeyHolder cles = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connexion -> connexion.prepareStatement(INSERT_ADRESSE, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Adresse adresse = adresses.get(i);
+                        ps.setObject(1, adresse.getNumero(), Types.INTEGER);
+                        ps.setString(2, adresse.getLibelle());
+                        ps.setString(3, adresse.getCodePostal());
+                        ps.setString(4, adresse.getVille());
+                        ps.setObject(5, adresse.getLatitude(), Types.DOUBLE);
+                        ps.setObject(6, adresse.getLongitude(), Types.DOUBLE);
+                        ps.setObject(7, adresse.getCelluleGrille(), Types.BIGINT);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return adresses.size();
+                    }
+                }, cles);
+        List<Long> ids = identifiants(cles, adresses.size());
+        for (int i = 0; i < adresses.size(); i++) {
+            adresses.get(i).setId(ids.get(i));
+        }
+    }
+
+    /**
+     * Insère un lot d'annonces (adresses, responsable et véhicule déjà enregistrés) et renseigne leur identifiant
+     *
+     * @param annonces les annonces à insérer
+     */
+    public void insererAnnonces(List<AnnonceCovoiturage> annonces) {
+        if (annonces.isEmpty()) {
+            return;
+        }
+        KeyHolder cles = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connexion -> connexion.prepareStatement(INSERT_ANNONCE, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        AnnonceCovoiturage annonce = annonces.get(i);
+                        ps.setTimestamp(1, Timestamp.valueOf(annonce.getHeureDepart()));
+                        ps.setObject(2, annonce.getDureeTrajet(), Types.INTEGER);
+                        ps.setObject(3, annonce.getDistance(), Types.INTEGER);
+                        ps.setObject(4, annonce.getPlacesTotales(), Types.INTEGER);
+                        ps.setInt(5, 0);
+                        ps.setObject(6, annonce.getTraceItineraire(), Types.CLOB);
+                        ps.setLong(7, annonce.getAdresseDepart().getId());
+                        ps.setLong(8, annonce.getAdresseArrivee().getId());
+                        ps.setLong(9, annonce.getResponsable().getId());
+                        ps.setObject(10, annonce.getVehiculeService() == null ? null : annonce.getVehiculeService().getId(), Types.BIGINT);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return annonces.size();
+                    }
+                }, cles);
+        List<Long> ids = identifiants(cles, annonces.size());
+        for (int i = 0; i < annonces.size(); i++) {
+            annonces.get(i).setId(ids.get(i));
+        }
+    }
+
+    /**
+     * Insère en un lot les cellules de corridor d'annonces enregistrées
+     *
+     * @param cellulesParAnnonce les cellules de chaque annonce, indexées par identifiant d'annonce
+     */
+    public void insererCellulesCorridor(Map<Long, Set<Long>> cellulesParAnnonce) {
+        List<Object[]> lignes = new ArrayList<>();
+        cellulesParAnnonce.forEach((idAnnonce, cellules) -> cellules.forEach(cellule -> lignes.add(new Object[]{idAnnonce, cellule})));
+        if (!lignes.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_CELLULE, lignes);
+        }
+    }
+
+    /**
+     * Identifiants générés par un lot, dans l'ordre des lignes envoyées
+     */
+    private static List<Long> identifiants(KeyHolder cles, int attendus) {
+        List<Map<String, Object>> lignesCles = cles.getKeyList();
+        if (lignesCles.size() != attendus) {
+            throw new IllegalStateException("Identifiants générés incomplets : " + lignesCles.size() + " pour " + attendus + " lignes");
+        }
+        List<Long> ids = new ArrayList<>(attendus);
+        for (Map<String, Object> ligne : lignesCles) {
+            ids.add(((Number) ligne.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,76 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.dto.InscriptionListeAttenteDto;
+import fr.diginamic.gestiondestransports.entites.ListeAttenteCovoiturage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+/**
+ * Repository JPA des listes d'attente des covoiturages complets.
+ * Les inscriptions sont ordonnées par identifiant croissant (premier inscrit, premier promu).
+ */
+@Repository
+public interface ListeAttenteCovoiturageRepository extends JpaRepository<ListeAttenteCovoiturage, Long> {
+
+    /**
+     * Premiers inscrits de la liste d'attente d'une annonce, verrouillés pour leur promotion.
+     * La lecture verrouillante voit les inscriptions validées par les autres transactions.
+     *
+     * @param idAnnonce l'identifiant de l'annonce
+     * @param page nombre d'inscriptions à lire (en pratique, une)
+     * @return les inscriptions dans l'ordre d'arrivée, avec leur utilisateur
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM ListeAttenteCovoiturage l JOIN FETCH l.utilisateur " +
+            "WHERE l.annonceCovoiturage.id = :idAnnonce ORDER BY l.id")
+    List<ListeAttenteCovoiturage> findPremiersPourPromotion(@Param("idAnnonce") Long idAnnonce, Pageable page);
+
+    /**
+     * Inscriptions d'un utilisateur, avec l'annonce et ses adresses, par heure de départ
+     *
+     * @param idUtilisateur l'identifiant de l'utilisateur
+     * @return les inscriptions de l'utilisateur
+     */
+    @Query("SELECT l FROM ListeAttenteCovoiturage l JOIN FETCH l.annonceCovoiturage a " +
+            "JOIN FETCH a.adresseDepart JOIN FETCH a.adresseArrivee " +
+            "WHERE l.utilisateur.id = :idUtilisateur ORDER BY a.heureDepart, a.id")
+    List<ListeAttenteCovoiturage> findParUtilisateur(@Param("idUtilisateur") Long idUtilisateur);
+
+    /**
+     * Toutes les inscriptions dans l'ordre d'arrivée, pour charger l'index en mémoire
+     *
+     * @return les couples (annonce, utilisateur)
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.InscriptionListeAttenteDto(l.annonceCovoiturage.id, l.utilisateur.id) " +
+            "FROM ListeAttenteCovoiturage l ORDER BY l.id")
+    List<InscriptionListeAttenteDto> findToutesInscriptions();
+
+    /**
+     * Désinscrit un utilisateur de la liste d'attente d'une annonce
+     *
+     * @param idUtilisateur l'identifiant de l'utilisateur
+     * @param idAnnonce l'identifiant de l'annonce
+     * @return le nombre d'inscriptions supprimées (0 ou 1)
+     */
+    @Modifying
+    @Query("DELETE FROM ListeAttenteCovoiturage l WHERE l.utilisateur.id = :idUtilisateur AND l.annonceCovoiturage.id = :idAnnonce")
+    int supprimerInscription(@Param("idUtilisateur") Long idUtilisateur, @Param("idAnnonce") Long idAnnonce);
+
+    /**
+     * Supprime les listes d'attente d'annonces supprimées ou archivées
+     *
+     * @param idsAnnonces les identifiants des annonces
+     * @return le nombre d'inscriptions supprimées
+     */
+    @Modifying
+    @Query("DELETE FROM ListeAttenteCovoiturage l WHERE l.annonceCovoiturage.id IN :idsAnnonces")
+    int supprimerParAnnonces(@Param("idsAnnonces") Collection<Long> idsAnnonces);
+}
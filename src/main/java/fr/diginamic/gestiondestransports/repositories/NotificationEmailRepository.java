@@ -0,0 +1,55 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.entites.NotificationEmail;
+import fr.diginamic.gestiondestransports.enums.StatutNotification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+/**
+ * Repository JPA pour la gestion des entités NotificationEmail (boîte d'envoi des emails).
+ * Permet de retrouver les notifications dont l'envoi est dû et de purger les notifications envoyées.
+ */
+@Repository
+public interface NotificationEmailRepository extends JpaRepository<NotificationEmail, Long> {
+
+    /**
+     * Recherche les notifications dans un état donné dont la prochaine tentative est échue,
+     * les plus anciennes d'abord. S'appuie sur l'index idx_notification_email_statut_tentative.
+     *
+     * @param statut l'état recherché (EN_ATTENTE pour le répartiteur)
+     * @param maintenant la date courante
+     * @param pageable taille du lot (seule la taille est utilisée, la page doit être 0)
+     * @return les notifications à envoyer
+     */
+    @Query("SELECT n FROM NotificationEmail n " +
+            "WHERE n.statut = :statut AND n.prochaineTentative <= :maintenant " +
+            "ORDER BY n.prochaineTentative ASC, n.id ASC")
+    List<NotificationEmail> findAEnvoyer(@Param("statut") StatutNotification statut,
+                                         @Param("maintenant") LocalDateTime maintenant,
+                                         Pageable pageable);
+
+    /**
+     * Compte les notifications dans un état donné.
+     *
+     * @param statut l'état recherché
+     * @return le nombre de notifications
+     */
+    long countByStatut(StatutNotification statut);
+
+    /**
+     * Supprime les notifications envoyées avant une date donnée.
+     *
+     * @param statut l'état des notifications à supprimer (ENVOYEE)
+     * @param avant la date limite d'envoi (exclue)
+     * @return le nombre de notifications supprimées
+     */
+    @Modifying
+    @Query("DELETE FROM NotificationEmail n WHERE n.statut = :statut AND n.dateEnvoi < :avant")
+    int supprimerEnvoyeesAvant(@Param("statut") StatutNotification statut, @Param("avant") LocalDateTime avant);
+}
@@ -0,0 +1,155 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.dto.OccupationVehiculeDto;
+import fr.diginamic.gestiondestransports.dto.UsageVehiculeDto;
+import fr.diginamic.gestiondestransports.enums.TypeOccupationVehicule;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lecture JDBC des occupations des véhicules de service pour le planning de la flotte.
+ * Réservations et trajets de covoiturage sont lus en une seule requête (UNION ALL), bornée par la période :
+ * la fin d'un trajet (départ + durée) n'étant pas une colonne, elle est calculée par TIMESTAMPADD,
+ * fonction commune à MySQL et H2. Comme elle ne peut pas servir d'index, les trajets sont aussi bornés par leur départ,
+ * au plus DUREE_TRAJET_MAX_MINUTES avant la période : la borne est servie par l'index (heure_depart, id).
+ * Les réservations sont bornées par leur fin, servie par l'index (date_fin, date_debut).
+ * Fournit aussi les occupations identifiées (réservation ou annonce) qui alimentent l'index en mémoire de la flotte.
+ */
+@Repository
+public class PlanningFlotteJdbcRepository {
+
+    // Durée maximale d'un trajet, validée à la saisie (AnnonceCovoiturageDto, TrajetRecurrentDto, LigneImportCovoiturageDto)
+    private static final int DUREE_TRAJET_MAX_MINUTES = 1440;
+
+    private static final String SELECT_USAGES =
+            "SELECT r.vehicule_entreprise_id, r.date_debut, r.date_fin " +
+            "FROM vehicule_entreprise_reservations r " +
+            "WHERE r.vehicule_entreprise_id IS NOT NULL AND r.date_debut < ? AND r.date_fin > ? " +
+            "UNION ALL " +
+            "SELECT a.vehicule_service_id, a.heure_depart, TIMESTAMPADD(MINUTE, a.duree_trajet, a.heure_depart) " +
+            "FROM annonce_covoiturage a " +
+            "WHERE a.vehicule_service_id IS NOT NULL AND a.heure_depart < ? AND a.heure_depart > ? " +
+            "AND TIMESTAMPADD(MINUTE, a.duree_trajet, a.heure_depart) > ?";
+
+    private static final String SELECT_VEHICULES_EN_COVOITURAGE =
+            "SELECT DISTINCT a.vehicule_service_id " +
+            "FROM annonce_covoiturage a " +
+            "WHERE a.vehicule_service_id IS NOT NULL AND a.heure_depart < ? AND a.heure_depart > ? " +
+            "AND TIMESTAMPADD(MINUTE, a.duree_trajet, a.heure_depart) > ?";
+
+    private static final String SELECT_OCCUPATIONS_RESERVATIONS =
+            "SELECT r.id, r.vehicule_entreprise_id, r.date_debut, r.date_fin " +
+            "FROM vehicule_entreprise_reservations r " +
+            "WHERE r.vehicule_entreprise_id IS NOT NULL ";
+
+    private static final String SELECT_OCCUPATIONS_COVOITURAGES =
+            "SELECT a.id, a.vehicule_service_id, a.heure_depart, TIMESTAMPADD(MINUTE, a.duree_trajet, a.heure_depart) " +
+            "FROM annonce_covoiturage a " +
+            "WHERE a.vehicule_service_id IS NOT NULL ";
+
+    private static final RowMapper<OccupationVehiculeDto> RESERVATION = (rs, i) ->
+            new OccupationVehiculeDto(TypeOccupationVehicule.RESERVATION, rs.getLong(1), rs.getLong(2),
+                    rs.getTimestamp(3).toLocalDateTime(), rs.getTimestamp(4).toLocalDateTime());
+
+    private static final RowMapper<OccupationVehiculeDto> COVOITURAGE = (rs, i) ->
+            new OccupationVehiculeDto(TypeOccupationVehicule.COVOITURAGE, rs.getLong(1), rs.getLong(2),
+                    rs.getTimestamp(3).toLocalDateTime(), rs.getTimestamp(4).toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PlanningFlotteJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Occupations de tous les véhicules de service qui chevauchent une période, non triées
+     *
+     * @param debut début de la période
+     * @param fin fin de la période
+     * @return les réservations et trajets de covoiturage, bornes non tronquées
+     */
+    public List<UsageVehiculeDto> findUsages(LocalDateTime debut, LocalDateTime fin) {
+        Timestamp tDebut = Timestamp.valueOf(debut);
+        Timestamp tFin = Timestamp.valueOf(fin);
+        return jdbcTemplate.query(SELECT_USAGES,
+                (rs, i) -> new UsageVehiculeDto(rs.getLong(1),
+                        rs.getTimestamp(2).toLocalDateTime(), rs.getTimestamp(3).toLocalDateTime()),
+                tFin, tDebut, tFin, departMin(debut), tDebut);
+    }
+
+    /**
+     * Véhicules de service utilisés par un trajet de covoiturage qui chevauche une période
+     *
+     * @param debut début de la période
+     * @param fin fin de la période
+     * @return les identifiants des véhicules
+     */
+    public Set<Long> findVehiculesEnCovoiturage(LocalDateTime debut, LocalDateTime fin) {
+        return new HashSet<>(jdbcTemplate.queryForList(SELECT_VEHICULES_EN_COVOITURAGE, Long.class,
+                Timestamp.valueOf(fin), departMin(debut), Timestamp.valueOf(debut)));
+    }
+
+    /**
+     * Occupations de tous les véhicules de service qui se terminent après un instant
+     *
+     * @param depuis l'instant à partir duquel les occupations sont lues (en général maintenant)
+     * @return les réservations puis les trajets de covoiturage, non triés
+     */
+    public List<OccupationVehiculeDto> findOccupationsTerminantApres(LocalDateTime depuis) {
+        Timestamp tDepuis = Timestamp.valueOf(depuis);
+        List<OccupationVehiculeDto> occupations = new ArrayList<>(jdbcTemplate.query(
+                SELECT_OCCUPATIONS_RESERVATIONS + "AND r.date_fin > ?", RESERVATION, tDepuis));
+        occupations.addAll(jdbcTemplate.query(
+                SELECT_OCCUPATIONS_COVOITURAGES + "AND a.heure_depart > ? AND TIMESTAMPADD(MINUTE, a.duree_trajet, a.heure_depart) > ?",
+                COVOITURAGE, departMin(depuis), tDepuis));
+        return occupations;
+    }
+
+    /**
+     * Occupations correspondant à des réservations ; une réservation supprimée ou sans véhicule est absente
+     *
+     * @param idsReservations les identifiants des réservations
+     * @return les occupations trouvées
+     */
+    public List<OccupationVehiculeDto> findOccupationsReservations(List<Long> idsReservations) {
+        if (idsReservations.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_OCCUPATIONS_RESERVATIONS + "AND r.id IN (" + parametres(idsReservations.size()) + ")",
+                RESERVATION, idsReservations.toArray());
+    }
+
+    /**
+     * Occupations correspondant à des annonces de covoiturage ; une annonce supprimée ou sans véhicule de service est absente
+     *
+     * @param idsAnnonces les identifiants des annonces
+     * @return les occupations trouvées
+     */
+    public List<OccupationVehiculeDto> findOccupationsCovoiturages(List<Long> idsAnnonces) {
+        if (idsAnnonces.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_OCCUPATIONS_COVOITURAGES + "AND a.id IN (" + parametres(idsAnnonces.size()) + ")",
+                COVOITURAGE, idsAnnonces.toArray());
+    }
+
+    /**
+     * Départ le plus ancien d'un trajet encore en cours à cet instant
+     */
+    private static Timestamp departMin(LocalDateTime instant) {
+        return Timestamp.valueOf(instant.minusMinutes(DUREE_TRAJET_MAX_MINUTES));
+    }
+
+    private static String parametres(int nombre) {
+        return String.join(", ", Collections.nCopies(nombre, "?"));
+    }
+}
@@ -0,0 +1,75 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.dto.PeriodeReservationDto;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Écritures JDBC par lots des réservations récurrentes de véhicules de service.
+ * Comme pour l'import des annonces, les identifiants étant générés par la base (IDENTITY), Hibernate insérerait
+ * les occurrences une à une : elles sont envoyées ici en un seul lot, les identifiants générés étant relus
+ * dans la réponse du pilote.
+ */
+@Repository
+public class ReservationVehiculeJdbcRepository {
+
+    private static final String INSERT_RESERVATION = "INSERT INTO vehicule_entreprise_reservations " +
+            "(utilisateur_id, vehicule_entreprise_id, date_debut, date_fin) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReservationVehiculeJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insère en un lot les réservations d'un utilisateur sur un véhicule
+     *
+     * @param utilisateurId l'identifiant de l'utilisateur
+     * @param vehiculeId l'identifiant du véhicule d'entreprise
+     * @param periodes les périodes à réserver
+     * @return les identifiants générés, dans l'ordre des périodes
+     */
+    public List<Long> insererReservations(Long utilisateurId, Long vehiculeId, List<PeriodeReservationDto> periodes) {
+        if (periodes.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder cles = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connexion -> connexion.prepareStatement(INSERT_RESERVATION, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PeriodeReservationDto periode = periodes.get(i);
+                        ps.setLong(1, utilisateurId);
+                        ps.setLong(2, vehiculeId);
+                        ps.setTimestamp(3, Timestamp.valueOf(periode.dateDebut()));
+                        ps.setTimestamp(4, Timestamp.valueOf(periode.dateFin()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return periodes.size();
+                    }
+                }, cles);
+        List<Map<String, Object>> lignesCles = cles.getKeyList();
+        if (lignesCles.size() != periodes.size()) {
+            throw new IllegalStateException("Identifiants générés incomplets : " + lignesCles.size() + " pour " + periodes.size() + " réservations");
+        }
+        List<Long> ids = new ArrayList<>(periodes.size());
+        for (Map<String, Object> ligne : lignesCles) {
+            ids.add(((Number) ligne.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+}
@@ -1,7 +1,10 @@
 package fr.diginamic.gestiondestransports.repositories;
 
+import fr.diginamic.gestiondestransports.dto.PeriodeReservationDto;
+import fr.diginamic.gestiondestransports.dto.UsageVehiculeDto;
 import fr.diginamic.gestiondestransports.entites.ReservationVehicule;
 import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -73,7 +76,82 @@ public interface ReservationVehiculeRepository extends JpaRepository<Reservation
             @Param("dateFinRecherche") LocalDateTime dateFinRecherche
     );
 
+    /**
+     * Recherche les réservations d'un véhicule qui chevauchent une période.
+     * Deux périodes se chevauchent si chacune commence avant la fin de l'autre (les périodes qui se touchent sont permises).
+     * Requête servie par l'index (vehicule_entreprise_id, date_debut, date_fin) : son coût ne dépend pas de l'historique du véhicule.
+     * Règle métier : un véhicule ne peut pas être réservé deux fois sur la même période.
+     *
+     * @param vehiculeEntrepriseId l'identifiant du véhicule d'entreprise
+     * @param debut début de la période à vérifier
+     * @param fin fin de la période à vérifier
+     * @param reservationIdAExclure réservation ignorée (celle en cours de modification), null pour une création
+     * @param page nombre de conflits à lire (en pratique, le premier suffit)
+     * @return les périodes en conflit, par date de début
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.PeriodeReservationDto(r.dateDebut, r.dateFin) " +
+            "FROM ReservationVehicule r WHERE r.vehiculeEntreprise.id = :vehiculeEntrepriseId " +
+            "AND r.dateDebut < :fin AND r.dateFin > :debut " +
+            "AND (:reservationIdAExclure IS NULL OR r.id <> :reservationIdAExclure) " +
+            "ORDER BY r.dateDebut")
+    List<PeriodeReservationDto> findConflitsVehicule(
+            @Param("vehiculeEntrepriseId") Long vehiculeEntrepriseId,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin,
+            @Param("reservationIdAExclure") Long reservationIdAExclure,
+            Pageable page
+    );
 
+    /**
+     * Recherche les réservations d'un utilisateur qui chevauchent une période.
+     * Requête servie par l'index (utilisateur_id, date_debut, date_fin) : son coût ne dépend pas de l'historique de l'utilisateur.
+     * Règle métier : un utilisateur ne peut avoir qu'une seule réservation de véhicule à la fois.
+     *
+     * @param utilisateurId l'identifiant de l'utilisateur
+     * @param debut début de la période à vérifier
+     * @param fin fin de la période à vérifier
+     * @param reservationIdAExclure réservation ignorée (celle en cours de modification), null pour une création
+     * @param page nombre de conflits à lire (en pratique, le premier suffit)
+     * @return les périodes en conflit, par date de début
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.PeriodeReservationDto(r.dateDebut, r.dateFin) " +
+            "FROM ReservationVehicule r WHERE r.utilisateur.id = :utilisateurId " +
+            "AND r.dateDebut < :fin AND r.dateFin > :debut " +
+            "AND (:reservationIdAExclure IS NULL OR r.id <> :reservationIdAExclure) " +
+            "ORDER BY r.dateDebut")
+    List<PeriodeReservationDto> findConflitsUtilisateur(
+            @Param("utilisateurId") Long utilisateurId,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin,
+            @Param("reservationIdAExclure") Long reservationIdAExclure,
+            Pageable page
+    );
 
-
+    /**
+     * Recherche en une seule requête les réservations d'un véhicule ou d'un utilisateur qui chevauchent une période.
+     * Utilisé pour vérifier d'un coup toutes les occurrences d'une réservation récurrente :
+     * la période couvre de la première à la dernière occurrence, chaque occurrence étant ensuite vérifiée en mémoire.
+     * Union de deux lectures, l'une servie par l'index (vehicule_entreprise_id, date_debut, date_fin),
+     * l'autre par l'index (utilisateur_id, date_debut, date_fin) ; le véhicule est lu dans la clé étrangère, sans jointure.
+     * Une réservation de l'utilisateur sur ce véhicule n'est renvoyée qu'une fois.
+     *
+     * @param vehiculeEntrepriseId l'identifiant du véhicule d'entreprise
+     * @param utilisateurId l'identifiant de l'utilisateur
+     * @param debut début de la période
+     * @param fin fin de la période
+     * @return les réservations trouvées (véhicule réservé et période), non triées
+     */
+    @Query("SELECT new fr.diginamic.gestiondestransports.dto.UsageVehiculeDto(r.vehiculeEntreprise.id, r.dateDebut, r.dateFin) " +
+            "FROM ReservationVehicule r WHERE r.vehiculeEntreprise.id = :vehiculeEntrepriseId " +
+            "AND r.dateDebut < :fin AND r.dateFin > :debut " +
+            "UNION " +
+            "SELECT new fr.diginamic.gestiondestransports.dto.UsageVehiculeDto(r.vehiculeEntreprise.id, r.dateDebut, r.dateFin) " +
+            "FROM ReservationVehicule r WHERE r.utilisateur.id = :utilisateurId " +
+            "AND r.dateDebut < :fin AND r.dateFin > :debut")
+    List<UsageVehiculeDto> findReservationsVehiculeOuUtilisateur(
+            @Param("vehiculeEntrepriseId") Long vehiculeEntrepriseId,
+            @Param("utilisateurId") Long utilisateurId,
+            @Param("debut") LocalDateTime debut,
+            @Param("fin") LocalDateTime fin
+    );
 }
@@ -0,0 +1,59 @@
+package fr.diginamic.gestiondestransports.repositories;
+
+import fr.diginamic.gestiondestransports.entites.TrajetRecurrent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+/**
+ * Repository JPA pour les trajets de covoiturage récurrents.
+ */
+@Repository
+public interface TrajetRecurrentRepository extends JpaRepository<TrajetRecurrent, Long> {
+
+    /**
+     * Charge un trajet récurrent en verrouillant sa ligne jusqu'à la fin de la transaction,
+     * afin qu'une même occurrence ne soit pas créée deux fois (tâche planifiée et réservation simultanées).
+     *
+     * @param id l'identifiant du trajet
+     * @return le trajet verrouillé, s'il existe
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM TrajetRecurrent t WHERE t.id = :id")
+    Optional<TrajetRecurrent> findPourMaterialisation(@Param("id") Long id);
+
+    /**
+     * Identifiants des trajets actifs dont des occurrences restent à créer avant la fin de l'horizon.
+     *
+     * @param aujourdhui la date du jour
+     * @param horizon la dernière date de l'horizon glissant
+     * @return les identifiants des trajets
+     */
+    @Query("SELECT t.id FROM TrajetRecurrent t WHERE t.actif = true AND t.dateFin >= :aujourdhui " +
+            "AND (t.materialiseJusquAu IS NULL OR (t.materialiseJusquAu < :horizon AND t.materialiseJusquAu < t.dateFin)) " +
+            "ORDER BY t.id ASC")
+    List<Long> findIdsAMaterialiser(@Param("aujourdhui") LocalDate aujourdhui, @Param("horizon") LocalDate horizon);
+
+    /**
+     * Trajets récurrents actifs non terminés, par date de début.
+     *
+     * @param aujourdhui la date du jour
+     * @return les trajets
+     */
+    @Query("SELECT t FROM TrajetRecurrent t WHERE t.actif = true AND t.dateFin >= :aujourdhui ORDER BY t.dateDebut ASC, t.id ASC")
+    List<TrajetRecurrent> findActifs(@Param("aujourdhui") LocalDate aujourdhui);
+
+    /**
+     * Trajets récurrents d'un conducteur, du plus récent au plus ancien.
+     *
+     * @param responsableId l'identifiant du conducteur
+     * @return les trajets
+     */
+    List<TrajetRecurrent> findByResponsableIdOrderByIdDesc(Long responsableId);
+}
@@ -3,10 +3,13 @@ package fr.diginamic.gestiondestransports.repositories;
 
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
 import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 /**
@@ -29,6 +32,26 @@ public interface UtilisateurRepository extends JpaRepository<Utilisateur, Long>
      * @return Optional contenant l'utilisateur si trouvé, vide sinon
      */
     Optional<Utilisateur> findByEmail(String email) ;
+    /**
+     * Recherche en une requête les utilisateurs correspondant à une liste d'emails.
+     * Utilisé par l'import en masse des annonces pour résoudre les conducteurs.
+     *
+     * @param emails les adresses email recherchées
+     * @return les utilisateurs trouvés (les emails inconnus sont ignorés)
+     */
+    List<Utilisateur> findByEmailIn(Collection<String> emails);
+
+    /**
+     * Charge un utilisateur en verrouillant sa ligne jusqu'à la fin de la transaction (SELECT ... FOR UPDATE).
+     * Sérialise les réservations de véhicule d'un même utilisateur entre la vérification de ses chevauchements
+     * et l'insertion. Toujours pris après le verrou du véhicule, dans le même ordre pour toutes les transactions.
+     *
+     * @param id l'identifiant de l'utilisateur
+     * @return l'utilisateur verrouillé
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM Utilisateur u WHERE u.id = :id")
+    Optional<Utilisateur> findPourMiseAJour(@Param("id") Long id);
     /**
      * Recherche tous les utilisateurs ayant un rôle spécifique.
      * Rôles possibles : COLLABORATEUR, ADMINISTRATEUR.
@@ -2,8 +2,15 @@ package fr.diginamic.gestiondestransports.repositories;
 
 import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
 import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 /**
  * Repository JPA pour la gestion des entités VehiculeEntreprise (véhicules de service).
  * Fournit les opérations CRUD standard et des requêtes personnalisées pour gérer le parc automobile de l'entreprise.
@@ -23,5 +30,54 @@ public interface VehiculeEntrepriseRepository extends JpaRepository<VehiculeEntr
      */
     List<VehiculeEntreprise> findByStatut(StatutVehicule statut);
 
+    /**
+     * Recherche les véhicules d'entreprise ayant un statut spécifique, par identifiant
+     * (même ordre que findDisponibles, pour filtrer les disponibilités en mémoire).
+     *
+     * @param statut le statut recherché (StatutVehicule enum)
+     * @return liste des véhicules ayant ce statut, par identifiant
+     */
+    List<VehiculeEntreprise> findByStatutOrderById(StatutVehicule statut);
 
+    /**
+     * Indique si au moins un véhicule d'entreprise a le statut donné.
+     * Utilisé pour distinguer « aucun véhicule en service » de « aucun véhicule disponible ».
+     *
+     * @param statut le statut recherché (StatutVehicule enum)
+     * @return true si un véhicule a ce statut
+     */
+    boolean existsByStatut(StatutVehicule statut);
+
+    /**
+     * Charge un véhicule en verrouillant sa ligne jusqu'à la fin de la transaction (SELECT ... FOR UPDATE).
+     * Sérialise les créations et modifications de réservations d'un même véhicule entre la vérification
+     * des chevauchements et l'insertion ; les réservations d'autres véhicules ne sont pas bloquées.
+     *
+     * @param id l'identifiant du véhicule
+     * @return le véhicule verrouillé, lu dans son dernier état validé
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM VehiculeEntreprise v WHERE v.id = :id")
+    Optional<VehiculeEntreprise> findPourMiseAJour(@Param("id") Long id);
+
+    /**
+     * Recherche en une seule requête les véhicules ayant un statut donné et sans réservation sur une période.
+     * Anti-jointure (NOT EXISTS) servie par l'index (vehicule_entreprise_id, date_debut, date_fin) des réservations.
+     * Une réservation bloque le véhicule si elle commence avant la fin de la période et finit après son début :
+     * une réservation qui se termine exactement au début de la période (ou commence exactement à sa fin) ne la bloque pas.
+     *
+     * @param statut le statut des véhicules recherchés (EN_SERVICE pour une réservation)
+     * @param dateDebut début de la période recherchée
+     * @param dateFin fin de la période recherchée
+     * @return liste des véhicules disponibles, par identifiant
+     */
+    @Query("SELECT v FROM VehiculeEntreprise v WHERE v.statut = :statut " +
+            "AND NOT EXISTS (SELECT r.id FROM ReservationVehicule r WHERE r.vehiculeEntreprise = v " +
+            "AND r.dateDebut < :dateFin AND r.dateFin > :dateDebut) " +
+            "ORDER BY v.id")
+    List<VehiculeEntreprise> findDisponibles(
+            @Param("statut") StatutVehicule statut,
+            @Param("dateDebut") LocalDateTime dateDebut,
+            @Param("dateFin") LocalDateTime dateFin
+    );
 }
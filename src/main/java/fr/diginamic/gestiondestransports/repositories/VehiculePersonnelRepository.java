@@ -4,6 +4,7 @@ import fr.diginamic.gestiondestransports.entites.Utilisateur;
 import fr.diginamic.gestiondestransports.entites.VehiculePersonnel;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 /**
@@ -36,6 +37,15 @@ public interface VehiculePersonnelRepository extends JpaRepository<VehiculePerso
      */
     List<VehiculePersonnel> findByUtilisateur(Utilisateur utilisateur); // this must be here //
 
+    /**
+     * Recherche en une requête les véhicules personnels de plusieurs utilisateurs.
+     * Utilisé par l'import en masse des annonces pour déterminer la capacité des véhicules.
+     *
+     * @param utilisateurIds les identifiants des utilisateurs
+     * @return les véhicules trouvés, par identifiant croissant
+     */
+    List<VehiculePersonnel> findByUtilisateurIdInOrderByIdAsc(Collection<Long> utilisateurIds);
+
     /**
      * Vérifie si une immatriculation existe déjà dans la base de données.
      * Utilisé lors de la création ou modification d'un véhicule personnel pour garantir l'unicité.
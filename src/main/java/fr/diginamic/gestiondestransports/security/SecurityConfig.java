@@ -1,5 +1,6 @@
 package fr.diginamic.gestiondestransports.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -63,6 +64,9 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource)) // Add CORS configuration
                 .authorizeHttpRequests(authorize -> authorize
 
+                        // Fin des réponses asynchrones (flux SSE) : la requête initiale a déjà été autorisée
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // API Auth endpoints
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/utilisateurs/passwordreset").permitAll()
@@ -76,12 +80,18 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST,   "/api/vehicules-entreprise").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT,    "/api/vehicules-entreprise/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.DELETE, "/api/vehicules-entreprise/**").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET,    "/api/vehicules-entreprise/occupations/**").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET,    "/api/reservations-vehicules/planning").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT,    "/api/utilisateurs/*/verifier").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT,  "api/utilisateurs/*/supprimer").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.PUT,    "/api/utilisateurs/*/bannir").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET,    "/api/utilisateurs/non-verifies").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET,    "/api/utilisateurs/by-role").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET,    "/api/utilisateurs").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET,    "/api/covoit/modele-lecture/**").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET,    "/api/covoit/export").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST,   "/api/covoit/import").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET,    "/api/covoit/archives/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 );
 
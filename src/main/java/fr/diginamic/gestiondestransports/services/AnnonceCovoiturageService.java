@@ -2,9 +2,13 @@ package fr.diginamic.gestiondestransports.services;
 
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageAvecPlacesDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageProximiteDto;
+import fr.diginamic.gestiondestransports.dto.PageAnnoncesCovoiturageDto;
 import fr.diginamic.gestiondestransports.dto.ParticipantsCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.RechercheAnnonceCovoiturageDto;
 
 import java.util.List;
+import java.util.Map;
 /**
  * Interface de service pour la gestion des annonces de covoiturage.
  * Définit les opérations métier principales du système de covoiturage :
@@ -41,12 +45,20 @@ public interface AnnonceCovoiturageService  {
     void annulerReservation(Long idAnnonce, Long idUtilisateur);
 
 
-    List<AnnonceCovoiturageAvecPlacesDto> obtenirToutesLesAnnonces();
+    List<AnnonceCovoiturageAvecPlacesDto> obtenirAnnoncesAVenir();
+
+
+    PageAnnoncesCovoiturageDto rechercherAnnonces(RechercheAnnonceCovoiturageDto criteres);
+
+
+    List<AnnonceCovoiturageProximiteDto> rechercherAnnoncesProximite(Double latitude, Double longitude, Double rayonKm, Integer taille);
 
 
     List<AnnonceCovoiturageAvecPlacesDto> obtenirReservationsUtilisateur(Long idUtilisateur);
 
     ParticipantsCovoiturageDto obtenirParticipants(Long id);
 
+    Map<Long, ParticipantsCovoiturageDto> obtenirParticipantsParAnnonces(List<Long> idsAnnonces);
+
     List<AnnonceCovoiturageAvecPlacesDto> obtenirAnnoncesOrganiseesParUtilisateur(Long id);
 }
@@ -0,0 +1,19 @@
+package fr.diginamic.gestiondestransports.services;
+
+import fr.diginamic.gestiondestransports.dto.StatistiqueArchiveDto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Interface de service pour l'archivage des trajets de covoiturage passés.
+ * Les annonces anciennes et leurs réservations sont déplacées dans des tables d'historique,
+ * qui restent interrogeables pour le reporting.
+ * Implémentée par ArchivageCovoiturageServiceImpl.
+ */
+public interface ArchivageCovoiturageService {
+
+    int archiverAnnoncesPassees();
+
+    List<StatistiqueArchiveDto> obtenirStatistiquesArchives(LocalDate debut, LocalDate fin);
+}
@@ -0,0 +1,27 @@
+package fr.diginamic.gestiondestransports.services;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageCompatibleDto;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+
+import java.util.List;
+import java.util.Set;
+/**
+ * Interface de service pour la mise en correspondance des passagers avec les trajets des conducteurs.
+ * Chaque annonce dispose d'un corridor (cellules de grille traversées par sa route, ou par la ligne droite
+ * départ/arrivée à défaut de tracé) permettant de retrouver les trajets passant près d'un passager.
+ * Implémentée par CorridorCovoiturageServiceImpl.
+ */
+public interface CorridorCovoiturageService {
+
+    void indexerAnnonce(AnnonceCovoiturage annonce);
+
+    Set<Long> calculerCellules(AnnonceCovoiturage annonce);
+
+    void supprimerCorridor(Long idAnnonce);
+
+    int indexerAnnoncesSansCorridor();
+
+    List<AnnonceCovoiturageCompatibleDto> rechercherTrajetsCompatibles(Double latitudePriseEnCharge, Double longitudePriseEnCharge,
+                                                                       Double latitudeDepose, Double longitudeDepose,
+                                                                       Double detourKm, Integer taille);
+}
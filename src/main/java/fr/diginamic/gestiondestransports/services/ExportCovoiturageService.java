@@ -0,0 +1,19 @@
+package fr.diginamic.gestiondestransports.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface de service pour l'écriture en flux du catalogue complet des annonces de covoiturage.
+ * Les annonces sont lues par lots et écrites au fur et à mesure : la mémoire utilisée ne dépend pas
+ * du nombre d'annonces en base.
+ * Implémentée par ExportCovoiturageServiceImpl.
+ */
+public interface ExportCovoiturageService {
+
+    void ecrireAnnoncesJson(OutputStream sortie) throws IOException;
+
+    void ecrireExportNdjson(OutputStream sortie) throws IOException;
+
+    void ecrireExportCsv(OutputStream sortie) throws IOException;
+}
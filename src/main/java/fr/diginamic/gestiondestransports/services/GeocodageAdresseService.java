@@ -0,0 +1,15 @@
+package fr.diginamic.gestiondestransports.services;
+
+/**
+ * Interface de service pour le géocodage différé des adresses des annonces de covoiturage.
+ * Les appels à Nominatim sont faits hors de la transaction qui crée ou modifie l'annonce,
+ * afin que son enregistrement ne dépende pas de la latence d'OSM.
+ * Les adresses antérieures au géocodage sont rattrapées par lots planifiés.
+ * Implémentée par GeocodageAdresseServiceImpl.
+ */
+public interface GeocodageAdresseService {
+
+    void geocoderAnnonce(Long idAnnonce);
+
+    int geocoderAdressesSansCoordonnees();
+}
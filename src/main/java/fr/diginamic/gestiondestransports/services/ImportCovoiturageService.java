@@ -0,0 +1,20 @@
+package fr.diginamic.gestiondestransports.services;
+
+import fr.diginamic.gestiondestransports.dto.LigneImportCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.RapportImportCovoiturageDto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Interface de service pour l'import en masse d'annonces de covoiturage (JSON ou CSV).
+ * Chaque ligne est importée ou rejetée indépendamment des autres.
+ * Implémentée par ImportCovoiturageServiceImpl.
+ */
+public interface ImportCovoiturageService {
+
+    RapportImportCovoiturageDto importerAnnonces(List<LigneImportCovoiturageDto> lignes);
+
+    RapportImportCovoiturageDto importerAnnoncesCsv(Reader csv) throws IOException;
+}
@@ -0,0 +1,26 @@
+package fr.diginamic.gestiondestransports.services;
+
+import fr.diginamic.gestiondestransports.dto.ListeAttenteDto;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface de service pour les listes d'attente des covoiturages complets.
+ * Lorsqu'une place se libère, le premier inscrit devient passager dans la même transaction.
+ * Implémentée par ListeAttenteCovoiturageServiceImpl.
+ */
+public interface ListeAttenteCovoiturageService {
+
+    ListeAttenteDto inscrire(Long idAnnonce, Long idUtilisateur);
+
+    void desinscrire(Long idAnnonce, Long idUtilisateur);
+
+    List<ListeAttenteDto> obtenirListesAttenteUtilisateur(Long idUtilisateur);
+
+    int promouvoir(Long idAnnonce);
+
+    void retirerDeLaListe(Long idAnnonce, Long idUtilisateur);
+
+    void supprimerListes(Collection<Long> idsAnnonces);
+}
@@ -0,0 +1,16 @@
+package fr.diginamic.gestiondestransports.services;
+
+/**
+ * Interface de service pour la boîte d'envoi transactionnelle des emails.
+ * Les notifications sont enregistrées dans la transaction de l'opération métier,
+ * puis envoyées en arrière-plan avec de nouvelles tentatives en cas d'échec.
+ * Implémentée par NotificationEmailServiceImpl.
+ */
+public interface NotificationEmailService {
+
+    void planifier(String destinataire, String message, String titre, String sujet);
+
+    int envoyerNotificationsEnAttente();
+
+    int purgerNotificationsEnvoyees();
+}
@@ -1,6 +1,9 @@
 package fr.diginamic.gestiondestransports.services;
 
+import fr.diginamic.gestiondestransports.dto.PlanningVehiculeDto;
+import fr.diginamic.gestiondestransports.dto.RapportReservationRecurrenteDto;
 import fr.diginamic.gestiondestransports.dto.ReservationVehiculeDTO;
+import fr.diginamic.gestiondestransports.dto.ReservationVehiculeRecurrenteDto;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
 
 import java.time.LocalDateTime;
@@ -9,9 +12,11 @@ import java.util.List;
  * Interface de service pour la gestion des réservations de véhicules d'entreprise.
  * Définit les opérations métier pour :
  * - Créer, modifier, supprimer des réservations
+ * - Créer en une fois les réservations d'une récurrence (ex. chaque mardi pendant un trimestre)
  * - Consulter les réservations par utilisateur ou par véhicule
  * - Vérifier la disponibilité des véhicules
  * - Valider les périodes de réservation
+ * - Construire le planning d'occupation de la flotte
  * Applique les règles métier du cahier des charges concernant les réservations de véhicules de service.
  * Implémentée par ReservationVehiculeServiceImpl.
  */
@@ -19,9 +24,11 @@ public interface ReservationVehiculeService {
     List<ReservationVehiculeDTO> findAll();
     ReservationVehiculeDTO findById(Utilisateur user, Long id);
     ReservationVehiculeDTO create(Utilisateur user, ReservationVehiculeDTO dto);
+    RapportReservationRecurrenteDto createRecurrentes(Utilisateur user, ReservationVehiculeRecurrenteDto dto);
     ReservationVehiculeDTO update(Utilisateur user, Long id, ReservationVehiculeDTO dto);
     void delete(Utilisateur user, Long id);
     List<ReservationVehiculeDTO> findByUtilisateurId(Utilisateur user);
     List<ReservationVehiculeDTO> findByVehiculeId(Long vehiculeId);
     ReservationVehiculeDTO findByUtilisateurAndPeriode(Utilisateur user, LocalDateTime dateDebut, Integer dureeMinutes);
+    List<PlanningVehiculeDto> planningFlotte(LocalDateTime dateDebut, LocalDateTime dateFin);
 }
@@ -0,0 +1,27 @@
+package fr.diginamic.gestiondestransports.services;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.TrajetRecurrentDto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Interface de service pour les trajets de covoiturage récurrents.
+ * Les occurrences sont des annonces ordinaires, créées sur un horizon glissant ou lors d'une réservation.
+ * Implémentée par TrajetRecurrentServiceImpl.
+ */
+public interface TrajetRecurrentService {
+
+    TrajetRecurrentDto creerTrajetRecurrent(TrajetRecurrentDto trajetDto, Long idUtilisateurResponsable);
+
+    void arreterTrajetRecurrent(Long idTrajet, Long idUtilisateurResponsable);
+
+    List<TrajetRecurrentDto> obtenirTrajetsRecurrents();
+
+    List<TrajetRecurrentDto> obtenirTrajetsRecurrentsUtilisateur(Long idUtilisateur);
+
+    AnnonceCovoiturageDto reserverOccurrence(Long idTrajet, LocalDate date, Long idUtilisateur);
+
+    int materialiserOccurrences();
+}
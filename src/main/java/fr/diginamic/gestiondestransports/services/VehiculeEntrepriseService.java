@@ -1,6 +1,8 @@
 package fr.diginamic.gestiondestransports.services;
 
 import fr.diginamic.gestiondestransports.dto.VehiculeDTO;
+import fr.diginamic.gestiondestransports.enums.Categorie;
+import fr.diginamic.gestiondestransports.enums.Motorisation;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -9,6 +11,7 @@ import java.util.List;
  * Définit les opérations métier pour :
  * - Créer, modifier, supprimer des véhicules (ADMIN uniquement)
  * - Consulter les véhicules disponibles pour une période donnée
+ * - Attribuer le véhicule le mieux adapté à une demande (places, préférences, période)
  * - Filtrer les véhicules par statut (EN_SERVICE, EN_REPARATION, HORS_SERVICE)
  * - Gérer le cycle de vie des véhicules
  * Applique les règles métier du cahier des charges concernant le parc de véhicules de service.
@@ -18,6 +21,8 @@ import java.util.List;
 public interface VehiculeEntrepriseService {
     List<VehiculeDTO> findAll();
     List<VehiculeDTO> findByAvailability(LocalDateTime dateDebut, LocalDateTime dateFin);
+    VehiculeDTO attribuer(int nbPlaces, Categorie categorie, Motorisation motorisation,
+                          LocalDateTime dateDebut, LocalDateTime dateFin);
     VehiculeDTO findById(Long id);
     VehiculeDTO create(VehiculeDTO dto);
     VehiculeDTO update(Long id, VehiculeDTO dto);
@@ -1,13 +1,21 @@
 package fr.diginamic.gestiondestransports.services.impl;
 
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
 import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
 import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
 import fr.diginamic.gestiondestransports.services.AdresseService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 /**
  * Implémentation du service de gestion des adresses.
@@ -24,6 +32,15 @@ public class AdresseServiceImpl implements AdresseService {
     @Autowired
     private AdresseRepository adresseRepository;
 
+    @Autowired
+    private VersionsAgregats versionsAgregats;
+
+    @Autowired
+    private AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    @Autowired
+    private ApplicationEventPublisher evenements;
+
     /**
      * Créer une nouvelle adresse
      * @param adresse L'adresse à créer
@@ -74,11 +91,26 @@ public class AdresseServiceImpl implements AdresseService {
         Optional<Adresse> adresseExistante = adresseRepository.findById(id);
         if (adresseExistante.isPresent()) {
             Adresse adresse = adresseExistante.get();
+            // Les coordonnées ne correspondent plus si l'adresse change : elles seront recalculées
+            if (!Objects.equals(adresse.getNumero(), adresseModifiee.getNumero())
+                    || !Objects.equals(adresse.getLibelle(), adresseModifiee.getLibelle())
+                    || !Objects.equals(adresse.getCodePostal(), adresseModifiee.getCodePostal())
+                    || !Objects.equals(adresse.getVille(), adresseModifiee.getVille())) {
+                adresse.setLatitude(null);
+                adresse.setLongitude(null);
+            }
             adresse.setNumero(adresseModifiee.getNumero());
             adresse.setLibelle(adresseModifiee.getLibelle());
             adresse.setCodePostal(adresseModifiee.getCodePostal());
             adresse.setVille(adresseModifiee.getVille());
-            return adresseRepository.save(adresse);
+            // L'adresse peut être celle d'annonces de covoiturage listées
+            versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
+            Adresse sauvegardee = adresseRepository.save(adresse);
+            // Le modèle de lecture recharge les annonces à venir concernées, le géocodage recalcule les coordonnées
+            for (Long idAnnonce : annonceCovoiturageRepository.findIdsAVenirParAdresse(id, LocalDateTime.now())) {
+                evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.MODIFICATION));
+            }
+            return sauvegardee;
         }
         return null;
     }
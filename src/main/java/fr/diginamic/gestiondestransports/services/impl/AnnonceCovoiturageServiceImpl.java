@@ -1,23 +1,48 @@
 package fr.diginamic.gestiondestransports.services.impl;
 
+import fr.diginamic.gestiondestransports.cache.ModeleLectureAnnonces;
+import fr.diginamic.gestiondestransports.dto.AdresseDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageAvecPlacesDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageProximiteDto;
+import fr.diginamic.gestiondestransports.dto.PageAnnoncesCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantAnnonceLigneDto;
+import fr.diginamic.gestiondestransports.dto.PositionDepartAnnonceDto;
 import fr.diginamic.gestiondestransports.dto.ParticipantsCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.RechercheAnnonceCovoiturageDto;
 import fr.diginamic.gestiondestransports.entites.*;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
 import fr.diginamic.gestiondestransports.mapper.AnnonceCovoiturageMapper;
 import fr.diginamic.gestiondestransports.mapper.AdresseMapper;
 import fr.diginamic.gestiondestransports.repositories.*;
 import fr.diginamic.gestiondestransports.services.AnnonceCovoiturageService;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ListeAttenteCovoiturageService;
+import fr.diginamic.gestiondestransports.services.NotificationEmailService;
 import fr.diginamic.gestiondestransports.services.UtilisateurService;
-import fr.diginamic.gestiondestransports.tools.EmailSender;
+import fr.diginamic.gestiondestransports.tools.GrilleGeographique;
 import fr.diginamic.gestiondestransports.tools.OsmApi;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service de gestion des annonces de covoiturage
@@ -26,6 +51,11 @@ import java.util.Optional;
 @Transactional
 public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService {
 
+    private static final int TAILLE_PAGE_PAR_DEFAUT = 20;
+    private static final int TAILLE_PAGE_MAX = 100;
+    private static final double RAYON_PAR_DEFAUT_KM = 10;
+    private static final double RAYON_MAX_KM = 100;
+
     private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
     private final CovoituragePassagersRepository covoituragePassagersRepository;
     private final VehiculePersonnelRepository vehiculePersonnelRepository;
@@ -35,9 +65,13 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
     private final AdresseMapper adresseMapper;
     private final UtilisateurService utilisateurService;
     private final OsmApi osmApi;
+    private final CorridorCovoiturageService corridorCovoiturageService;
+    private final ApplicationEventPublisher evenements;
+    private final ModeleLectureAnnonces modeleLecture;
+    private final ListeAttenteCovoiturageService listeAttenteService;
 
     @Autowired
-    private EmailSender emailSender;
+    private NotificationEmailService notificationEmailService;
 
     @Autowired
     public AnnonceCovoiturageServiceImpl(
@@ -49,7 +83,11 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
             UtilisateurService utilisateurService,
             CovoituragePassagersRepository covoituragePassagersRepository,
             VehiculePersonnelRepository vehiculePersonnelRepository,
-            OsmApi osmApi) {
+            OsmApi osmApi,
+            CorridorCovoiturageService corridorCovoiturageService,
+            ApplicationEventPublisher evenements,
+            ModeleLectureAnnonces modeleLecture,
+            ListeAttenteCovoiturageService listeAttenteService) {
         this.annonceCovoiturageRepository = annonceCovoiturageRepository;
         this.vehiculeEntrepriseRepository = vehiculeEntrepriseRepository;
         this.adresseRepository = adresseRepository;
@@ -59,6 +97,10 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
         this.covoituragePassagersRepository = covoituragePassagersRepository;
         this.vehiculePersonnelRepository = vehiculePersonnelRepository;
         this.osmApi = osmApi;
+        this.corridorCovoiturageService = corridorCovoiturageService;
+        this.evenements = evenements;
+        this.modeleLecture = modeleLecture;
+        this.listeAttenteService = listeAttenteService;
     }
 
     /**
@@ -89,6 +131,7 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
             Optional<VehiculeEntreprise> vehiculeOpt = vehiculeEntrepriseRepository.findById(annonceDto.vehiculeServiceId());
             if (vehiculeOpt.isPresent()) {
                 nouvelleAnnonce.setVehiculeService(vehiculeOpt.get());
+                nouvelleAnnonce.setPlacesTotales(vehiculeOpt.get().getNbPlaces());
             } else {
                 throw new IllegalArgumentException("Véhicule de service introuvable avec l'ID: " + annonceDto.vehiculeServiceId());
             }
@@ -104,8 +147,12 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
             if (vehiculesPersonnels.isEmpty()) {
                 throw new IllegalArgumentException("Vous devez spécifier un véhicule de service ou posséder un véhicule personnel pour créer une annonce de covoiturage.");
             }
+            nouvelleAnnonce.setPlacesTotales(vehiculesPersonnels.get(0).getNbPlaces());
         }
 
+        // Aucun passager à la création
+        nouvelleAnnonce.setPlacesOccupees(0);
+
 
         // ═══════════════════════════════════════════════════════════
         //  APPEL À L'API OSM SI NÉCESSAIRE
@@ -125,15 +172,19 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
 
                 throw new IllegalArgumentException("Impossible de calculer la distance et la durée. Veuillez les saisir manuellement.");
             }
-        } else {
-
         }
+        // Distance et durée saisies : aucun appel à OSM ici, les adresses encore sans coordonnées
+        // sont géocodées après validation de la transaction (GeocodageAdresseService)
 
 
 
         // Sauvegarder l'annonce
         AnnonceCovoiturage annonceSauvegardee = annonceCovoiturageRepository.save(nouvelleAnnonce);
 
+        // Calculer le corridor du trajet pour la recherche de trajets compatibles
+        corridorCovoiturageService.indexerAnnonce(annonceSauvegardee);
+        evenements.publishEvent(new AnnonceCovoiturageEvenement(annonceSauvegardee.getId(), TypeEvenementAnnonce.CREATION));
+
         // Retourner le DTO de l'annonce créée
         return annonceMapper.versDto(annonceSauvegardee);
 
@@ -162,7 +213,20 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
             throw new IllegalArgumentException("Impossible de modifier cette annonce car " + placesOccupees + " passager(s) ont déjà réservé une place");
         }
 
+        // Une occurrence de trajet récurrent ne peut pas prendre le départ d'une autre occurrence du même trajet
+        TrajetRecurrent trajetRecurrent = annonceExistante.getTrajetRecurrent();
+        if (trajetRecurrent != null && annonceDto.heureDepart() != null
+                && !annonceDto.heureDepart().equals(annonceExistante.getHeureDepart())) {
+            Optional<Long> occurrenceExistante = annonceCovoiturageRepository.findIdOccurrence(trajetRecurrent.getId(), annonceDto.heureDepart());
+            if (occurrenceExistante.isPresent() && !occurrenceExistante.get().equals(idAnnonce)) {
+                throw new IllegalArgumentException("Le trajet récurrent a déjà une occurrence au départ du " + annonceDto.heureDepart()
+                        + " (annonce " + occurrenceExistante.get() + ")");
+            }
+        }
+
         // Gérer les nouvelles adresses
+        Adresse ancienDepart = annonceExistante.getAdresseDepart();
+        Adresse ancienneArrivee = annonceExistante.getAdresseArrivee();
         if (annonceDto.adresseDepart() != null) {
             Adresse nouvelleAdresseDepart = gererAdresse(annonceDto.adresseDepart());
             annonceExistante.setAdresseDepart(nouvelleAdresseDepart);
@@ -173,17 +237,32 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
             annonceExistante.setAdresseArrivee(nouvelleAdresseArrivee);
         }
 
+        // Une adresse existante est modifiée sur place par le mapper : ses coordonnées (et sa cellule de grille)
+        // ne correspondent plus, elle sera géocodée de nouveau après l'enregistrement
+        boolean departModifie = effacerCoordonneesSiModifiee(annonceDto.adresseDepart(), annonceExistante.getAdresseDepart());
+        boolean arriveeModifiee = effacerCoordonneesSiModifiee(annonceDto.adresseArrivee(), annonceExistante.getAdresseArrivee());
+
+        // Le tracé routier ne correspond plus si le départ ou l'arrivée change : repli sur la ligne droite
+        if (annonceExistante.getAdresseDepart() != ancienDepart || annonceExistante.getAdresseArrivee() != ancienneArrivee
+                || departModifie || arriveeModifiee) {
+            annonceExistante.setTraceItineraire(null);
+        }
+
         // Gérer le véhicule de service
         if (annonceDto.vehiculeServiceId() != null) {
             Optional<VehiculeEntreprise> vehiculeOpt = vehiculeEntrepriseRepository.findById(annonceDto.vehiculeServiceId());
             if (vehiculeOpt.isPresent()) {
                 annonceExistante.setVehiculeService(vehiculeOpt.get());
+                annonceExistante.setPlacesTotales(vehiculeOpt.get().getNbPlaces());
             } else {
                 throw new IllegalArgumentException("Véhicule de service introuvable avec l'ID: " + annonceDto.vehiculeServiceId());
             }
         } else {
             // Si vehiculeServiceId est null, retirer le véhicule de service
             annonceExistante.setVehiculeService(null);
+            // La capacité devient celle du véhicule personnel du responsable
+            List<VehiculePersonnel> vehiculesPersonnels = vehiculePersonnelRepository.findByUtilisateur(annonceExistante.getResponsable());
+            annonceExistante.setPlacesTotales(vehiculesPersonnels.isEmpty() ? null : vehiculesPersonnels.get(0).getNbPlaces());
         }
 
         // Mettre à jour les autres champs
@@ -191,6 +270,10 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
 
         // Sauvegarder les modifications
         AnnonceCovoiturage annonceMiseAJour = annonceCovoiturageRepository.save(annonceExistante);
+        corridorCovoiturageService.indexerAnnonce(annonceMiseAJour);
+        evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.MODIFICATION));
+        // Un véhicule plus grand libère des places pour la liste d'attente
+        listeAttenteService.promouvoir(idAnnonce);
 
         // Retourner le DTO de l'annonce modifiée
         return annonceMapper.versDto(annonceMiseAJour);
@@ -217,22 +300,18 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
         // Récupérer tous les passagers de cette annonce pour les notifier
         List<CovoituragePassagers> passagers = covoituragePassagersRepository.findByAnnonceCovoiturageId(idAnnonce);
 
+        String nomCompletResponsable = annonceExistante.getResponsable().getPrenom() + " " +
+                annonceExistante.getResponsable().getNom();
 
+        // Formatage des informations du trajet
+        String infoTrajet = annonceExistante.getAdresseDepart().getVille() + " → " +
+                annonceExistante.getAdresseArrivee().getVille() +
+                " le " + annonceExistante.getHeureDepart().format(DateTimeFormatter.ofPattern("dd/MM/yyyy à HH:mm"));
 
-
-
-        // Envoyer un email à chaque passager pour les informer de l'annulation
+        // Planifier un email pour chaque passager : enregistré dans cette transaction, envoyé après validation
         for (CovoituragePassagers passager : passagers) {
             Utilisateur utilisateurPassager = passager.getUtilisateur();
-            String nomCompletResponsable = annonceExistante.getResponsable().getPrenom() + " " +
-                    annonceExistante.getResponsable().getNom();
-
-            // Formatage des informations du trajet
-            String infoTrajet = annonceExistante.getAdresseDepart().getVille() + " → " +
-                    annonceExistante.getAdresseArrivee().getVille() +
-                    " le " + annonceExistante.getHeureDepart().format(DateTimeFormatter.ofPattern("dd/MM/yyyy à HH:mm"));
-
-            emailSender.send(
+            notificationEmailService.planifier(
                     utilisateurPassager.getEmail(),
                     "Le covoiturage " + infoTrajet + " organisé par " + nomCompletResponsable +
                             " a été annulé. Nous nous excusons pour ce désagrément. Vous pouvez rechercher d'autres covoiturages sur notre plateforme.",
@@ -242,10 +321,11 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
             );
         }
 
-
-
-        // Supprimer l'annonce
+        // Supprimer le corridor et la liste d'attente, puis l'annonce
+        corridorCovoiturageService.supprimerCorridor(idAnnonce);
+        listeAttenteService.supprimerListes(List.of(idAnnonce));
         annonceCovoiturageRepository.delete(annonceExistante);
+        evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.SUPPRESSION));
     }
 
 
@@ -272,6 +352,11 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
         AnnonceCovoiturage annonce = annonceCovoiturageRepository.findById(idAnnonce)
                 .orElseThrow(() -> new IllegalArgumentException("Annonce de covoiturage introuvable avec l'ID: " + idAnnonce));
 
+        // Capacité dénormalisée sur l'annonce
+        if (annonce.getPlacesTotales() != null) {
+            return annonce.getPlacesTotales();
+        }
+
         if (annonce.getVehiculeService() != null) {
             return annonce.getVehiculeService().getNbPlaces();
         }
@@ -299,10 +384,17 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
         return nombrePassagers.intValue();
     }
     /**
-     * Réserve une place dans un covoiturage pour un utilisateur
+     * Réserve une place dans un covoiturage pour un utilisateur.
+     * Le compteur de places est d'abord incrémenté par un UPDATE conditionnel, puis l'inscription est insérée :
+     * l'UPDATE garantit qu'aucune place n'est attribuée au-delà de la capacité et prend d'emblée le verrou exclusif
+     * sur la ligne de l'annonce, ce qui sérialise les réservations simultanées d'un même trajet sans interblocage
+     * (insérer d'abord prendrait un verrou partagé sur l'annonce via la clé étrangère, avant l'UPDATE).
+     * La contrainte d'unicité (utilisateur, annonce) empêche les doubles inscriptions.
+     * En cas d'échec, l'exception annule la transaction (place occupée comprise).
      * @param idAnnonce l'ID de l'annonce de covoiturage
      * @param idUtilisateur l'ID de l'utilisateur qui réserve
-     *
+     * @throws IllegalArgumentException si l'annonce n'existe pas, si l'utilisateur est déjà inscrit,
+     *                                  s'il est le responsable ou s'il ne reste aucune place
      */
     @Override
     public void reserverPlace(Long idAnnonce, Long idUtilisateur) {
@@ -313,30 +405,33 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
         // Récupérer l'utilisateur
         Utilisateur utilisateur = utilisateurService.obtenirUtilisateurParId(idUtilisateur);
 
-        // Vérifier que l'utilisateur n'est pas déjà inscrit
-        Optional<CovoituragePassagers> reservationExistante = covoituragePassagersRepository
-                .findByUtilisateurAndAnnonceCovoiturage(utilisateur, annonce);
-
-        if (reservationExistante.isPresent()) {
-            throw new IllegalArgumentException("Vous êtes déjà inscrit à ce covoiturage");
-        }
-
         // Vérifier que l'utilisateur n'est pas le responsable du covoiturage
         if (annonce.getResponsable().getId().equals(idUtilisateur)) {
             throw new IllegalArgumentException("Vous ne pouvez pas réserver une place dans votre propre covoiturage");
         }
 
-        // Vérifier s'il reste des places disponibles
-        Integer placesTotales = obtenirNombrePlacesTotales(idAnnonce)-1;
-        Integer placesOccupees = obtenirNombrePlacesOccupees(idAnnonce);
+        // Annonce antérieure aux compteurs de places : calculer les siens avant la réservation (les autres
+        // annonces sont initialisées au démarrage, hors de toute réservation)
+        if (annonce.getPlacesTotales() == null || annonce.getPlacesOccupees() == null) {
+            annonceCovoiturageRepository.initialiserCompteursPlaces(idAnnonce);
+        }
 
-        if (placesOccupees >= placesTotales) {
-            throw new IllegalArgumentException("Aucune place disponible dans ce covoiturage");
+        // Occuper une place s'il en reste une (verrou exclusif sur l'annonce jusqu'à la fin de la transaction)
+        if (annonceCovoiturageRepository.occuperPlace(idAnnonce) == 0) {
+            if (covoituragePassagersRepository.existsByUtilisateurIdAndAnnonceCovoiturageId(idUtilisateur, idAnnonce)) {
+                throw new IllegalArgumentException("Vous êtes déjà inscrit à ce covoiturage");
+            }
+            throw new IllegalArgumentException("Aucune place disponible dans ce covoiturage : vous pouvez vous inscrire sur la liste d'attente");
         }
 
-        // Créer la réservation
-        CovoituragePassagers nouvelleReservation = new CovoituragePassagers(utilisateur, annonce);
-        covoituragePassagersRepository.save(nouvelleReservation);
+        // Créer la réservation (la contrainte d'unicité refuse une double inscription ; la place est rendue par le rollback)
+        try {
+            covoituragePassagersRepository.saveAndFlush(new CovoituragePassagers(utilisateur, annonce));
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Vous êtes déjà inscrit à ce covoiturage");
+        }
+        listeAttenteService.retirerDeLaListe(idAnnonce, idUtilisateur);
+        evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.RESERVATION));
     }
     /**
      * Annule la réservation d'un passager pour une annonce de covoiturage.
@@ -346,6 +441,7 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
      *
      * Règle métier : un passager peut annuler sa réservation à tout moment,
      * ce qui augmente le nombre de places disponibles dans le covoiturage.
+     * Si la liste d'attente de l'annonce a des inscrits, le premier reçoit la place dans la même transaction.
      *
      * @param idAnnonce l'identifiant de l'annonce de covoiturage
      * @param idUtilisateur l'identifiant de l'utilisateur passager souhaitant annuler
@@ -354,47 +450,196 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
     @Override
     public void annulerReservation(Long idAnnonce, Long idUtilisateur) {
         // Vérifier que l'annonce existe
-        AnnonceCovoiturage annonce = annonceCovoiturageRepository.findById(idAnnonce)
-                .orElseThrow(() -> new IllegalArgumentException("Annonce de covoiturage introuvable avec l'ID: " + idAnnonce));
-
-        // Récupérer l'utilisateur
-        Utilisateur utilisateur = utilisateurService.obtenirUtilisateurParId(idUtilisateur);
+        if (!annonceCovoiturageRepository.existsById(idAnnonce)) {
+            throw new IllegalArgumentException("Annonce de covoiturage introuvable avec l'ID: " + idAnnonce);
+        }
 
-        // Vérifier que l'utilisateur a bien une réservation pour ce covoiturage
-        Optional<CovoituragePassagers> reservationExistante = covoituragePassagersRepository
-                .findByUtilisateurAndAnnonceCovoiturage(utilisateur, annonce);
+        // Vérifier que l'utilisateur existe
+        utilisateurService.obtenirUtilisateurParId(idUtilisateur);
 
-        if (reservationExistante.isEmpty()) {
+        // Supprimer la réservation en une requête ; aucune ligne supprimée = aucune réservation
+        int reservationsSupprimees = covoituragePassagersRepository.supprimerReservation(idUtilisateur, idAnnonce);
+        if (reservationsSupprimees == 0) {
             throw new IllegalArgumentException("Aucune réservation trouvée pour ce covoiturage");
         }
 
-        // Supprimer la réservation
-        covoituragePassagersRepository.delete(reservationExistante.get());
+        // Libérer la place, aussitôt attribuée au premier inscrit de la liste d'attente s'il y en a un
+        annonceCovoiturageRepository.libererPlace(idAnnonce);
+        evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.ANNULATION));
+        listeAttenteService.promouvoir(idAnnonce);
     }
 
 
     /**
-     * Récupère toutes les annonces de covoiturage avec informations sur les places
-     * @return liste de toutes les annonces avec détails des places
+     * Convertit les lignes agrégées en annonces avec places, en ignorant les annonces sans véhicule
      */
-    @Override
-    public List<AnnonceCovoiturageAvecPlacesDto> obtenirToutesLesAnnonces() {
-        List<AnnonceCovoiturage> annonces = annonceCovoiturageRepository.findAll();
-
-        return annonces.stream()
-                .map(annonce -> {
-                    try {
-                        AnnonceCovoiturageDto dto = annonceMapper.versDto(annonce);
-                        Integer placesTotales = obtenirNombrePlacesTotales((long) annonce.getId());
-                        Integer placesOccupees = obtenirNombrePlacesOccupees((long) annonce.getId());
-                        return AnnonceCovoiturageAvecPlacesDto.of(dto, placesTotales, placesOccupees);
-                    } catch (IllegalStateException e) {
+    private List<AnnonceCovoiturageAvecPlacesDto> versAnnoncesAvecPlaces(List<AnnonceCovoiturageLigneDto> lignes) {
+        return lignes.stream()
+                .filter(ligne -> {
+                    if (!ligne.aUnVehicule()) {
                         // Journaliser l'anomalie mais continuer
-                        System.err.println("Annonce corrompue ignorée - ID: " + annonce.getId() + " - " + e.getMessage());
-                        return null;
+                        System.err.println("Annonce corrompue ignorée - ID: " + ligne.id()
+                                + " - Aucun véhicule trouvé pour cette annonce. L'annonce a été créée incorrectement.");
+                        return false;
                     }
+                    return true;
                 })
-                .filter(dto -> dto != null) // Éliminer les annonces corrompues
+                .map(AnnonceCovoiturageLigneDto::versAvecPlacesDto)
+                .toList();
+    }
+
+    /**
+     * Récupère les annonces de covoiturage à venir, triées par heure de départ.
+     * Servies par le modèle de lecture en mémoire lorsqu'il est chargé, sinon par la base.
+     * @return liste des annonces à venir avec détails des places
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<AnnonceCovoiturageAvecPlacesDto> obtenirAnnoncesAVenir() {
+        List<AnnonceCovoiturageLigneDto> lignes = modeleLecture.estCharge()
+                ? modeleLecture.annoncesAVenir()
+                : annonceCovoiturageRepository.findFuturesAvecPlaces(LocalDateTime.now());
+
+        return lignes.stream()
+                .filter(AnnonceCovoiturageLigneDto::aUnVehicule)
+                .map(AnnonceCovoiturageLigneDto::versAvecPlacesDto)
+                .toList();
+    }
+
+    /**
+     * Recherche les annonces de covoiturage selon des critères optionnels, avec pagination par curseur.
+     * Sans date de début ni curseur, seules les annonces futures sont renvoyées.
+     * Une annonce supplémentaire est lue pour savoir s'il existe une page suivante.
+     * Lorsque la recherche ne porte que sur des départs à venir, elle est servie par le modèle de lecture en mémoire.
+     * @param criteres les critères de recherche (villes, codes postaux, période, places libres, curseur, taille)
+     * @return la page d'annonces et le curseur de la page suivante (null s'il n'y en a pas)
+     * @throws IllegalArgumentException si la taille, la période, le nombre de places ou le curseur sont invalides
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public PageAnnoncesCovoiturageDto rechercherAnnonces(RechercheAnnonceCovoiturageDto criteres) {
+        int taille = criteres.taille() == null ? TAILLE_PAGE_PAR_DEFAUT : criteres.taille();
+        if (taille < 1 || taille > TAILLE_PAGE_MAX) {
+            throw new IllegalArgumentException("La taille de page doit être comprise entre 1 et " + TAILLE_PAGE_MAX);
+        }
+        if (criteres.placesMin() != null && criteres.placesMin() < 0) {
+            throw new IllegalArgumentException("Le nombre de places minimum ne peut pas être négatif");
+        }
+        if (criteres.dateDebut() != null && criteres.dateFin() != null
+                && criteres.dateFin().isBefore(criteres.dateDebut())) {
+            throw new IllegalArgumentException("La date de fin doit être postérieure à la date de début");
+        }
+
+        LocalDateTime curseurHeureDepart = null;
+        Long curseurId = null;
+        if (criteres.curseur() != null && !criteres.curseur().isBlank()) {
+            String[] curseur = decoderCurseur(criteres.curseur());
+            curseurHeureDepart = LocalDateTime.parse(curseur[0]);
+            curseurId = Long.parseLong(curseur[1]);
+        }
+
+        // Par défaut, uniquement les trajets à venir
+        LocalDateTime maintenant = LocalDateTime.now();
+        LocalDateTime dateDebut = criteres.dateDebut();
+        if (dateDebut == null && curseurHeureDepart == null) {
+            dateDebut = maintenant;
+        }
+
+        // Le modèle en mémoire ne contient que les trajets à venir
+        LocalDateTime borneInferieure = dateDebut != null ? dateDebut : curseurHeureDepart;
+        boolean depuisMemoire = modeleLecture.estCharge() && !borneInferieure.isBefore(maintenant);
+
+        List<AnnonceCovoiturageLigneDto> lignes = depuisMemoire
+                ? modeleLecture.rechercher(
+                        videVersNull(criteres.villeDepart()),
+                        videVersNull(criteres.codePostalDepart()),
+                        videVersNull(criteres.villeArrivee()),
+                        videVersNull(criteres.codePostalArrivee()),
+                        dateDebut,
+                        criteres.dateFin(),
+                        criteres.placesMin(),
+                        curseurHeureDepart,
+                        curseurId,
+                        taille + 1)
+                : annonceCovoiturageRepository.rechercherAvecCurseur(
+                        videVersNull(criteres.villeDepart()),
+                        videVersNull(criteres.codePostalDepart()),
+                        videVersNull(criteres.villeArrivee()),
+                        videVersNull(criteres.codePostalArrivee()),
+                        dateDebut,
+                        criteres.dateFin(),
+                        criteres.placesMin(),
+                        curseurHeureDepart,
+                        curseurId,
+                        PageRequest.of(0, taille + 1));
+
+        boolean aUneSuite = lignes.size() > taille;
+        List<AnnonceCovoiturageLigneDto> page = aUneSuite ? lignes.subList(0, taille) : lignes;
+
+        String curseurSuivant = null;
+        if (aUneSuite) {
+            AnnonceCovoiturageLigneDto derniere = page.get(page.size() - 1);
+            curseurSuivant = encoderCurseur(derniere.heureDepart(), derniere.id());
+        }
+
+        // Les annonces sans véhicule sont exclues par la recherche, avant la limite de page
+        List<AnnonceCovoiturageAvecPlacesDto> annonces = page.stream()
+                .map(AnnonceCovoiturageLigneDto::versAvecPlacesDto)
+                .toList();
+
+        return PageAnnoncesCovoiturageDto.of(annonces, curseurSuivant);
+    }
+
+    /**
+     * Recherche les annonces à venir dont l'adresse de départ se trouve à moins d'un rayon donné d'un point
+     * Les cellules de grille couvrant le rectangle englobant du cercle limitent les candidats,
+     * puis la distance exacte est calculée à partir des coordonnées enregistrées (aucun appel externe)
+     * @param latitude latitude du point de recherche
+     * @param longitude longitude du point de recherche
+     * @param rayonKm rayon de recherche en kilomètres (10 par défaut, 100 maximum)
+     * @param taille nombre maximal d'annonces renvoyées (20 par défaut, 100 maximum)
+     * @return les annonces triées de la plus proche à la plus éloignée
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<AnnonceCovoiturageProximiteDto> rechercherAnnoncesProximite(Double latitude, Double longitude, Double rayonKm, Integer taille) {
+        if (latitude == null || latitude < -90 || latitude > 90) {
+            throw new IllegalArgumentException("La latitude doit être comprise entre -90 et 90");
+        }
+        if (longitude == null || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("La longitude doit être comprise entre -180 et 180");
+        }
+        double rayon = rayonKm == null ? RAYON_PAR_DEFAUT_KM : rayonKm;
+        if (rayon <= 0 || rayon > RAYON_MAX_KM) {
+            throw new IllegalArgumentException("Le rayon doit être strictement positif et au plus de " + (int) RAYON_MAX_KM + " km");
+        }
+        int nombreMax = taille == null ? TAILLE_PAGE_PAR_DEFAUT : taille;
+        if (nombreMax < 1 || nombreMax > TAILLE_PAGE_MAX) {
+            throw new IllegalArgumentException("La taille de page doit être comprise entre 1 et " + TAILLE_PAGE_MAX);
+        }
+
+        List<PositionDepartAnnonceDto> candidats = annonceCovoiturageRepository.findPositionsDepartDansCellules(
+                GrilleGeographique.cellulesCouvrant(latitude, longitude, rayon), LocalDateTime.now());
+
+        // Distance exacte et tri par proximité, puis par identifiant pour un ordre stable
+        Map<Long, Double> distances = new LinkedHashMap<>();
+        candidats.stream()
+                .map(c -> Map.entry(c.id(), GrilleGeographique.distanceKm(latitude, longitude, c.latitude(), c.longitude())))
+                .filter(e -> e.getValue() <= rayon)
+                .sorted(Map.Entry.<Long, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .limit(nombreMax)
+                .forEach(e -> distances.put(e.getKey(), e.getValue()));
+
+        if (distances.isEmpty()) {
+            return List.of();
+        }
+
+        return annonceCovoiturageRepository.findAvecPlacesParIds(distances.keySet()).stream()
+                .filter(AnnonceCovoiturageLigneDto::aUnVehicule)
+                .map(ligne -> AnnonceCovoiturageProximiteDto.of(ligne.versAvecPlacesDto(),
+                        Math.round(distances.get(ligne.id()) * 10) / 10.0))
+                .sorted(Comparator.comparing(AnnonceCovoiturageProximiteDto::distanceKm)
+                        .thenComparing(p -> p.annonce().annonce().id()))
                 .toList();
     }
 
@@ -404,24 +649,17 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
      * @return liste des annonces où l'utilisateur est passager avec détails des places
      */
     @Override
+    @Transactional(readOnly = true)
     public List<AnnonceCovoiturageAvecPlacesDto> obtenirReservationsUtilisateur(Long idUtilisateur) {
         // Récupérer l'utilisateur pour vérifier qu'il existe
-        Utilisateur utilisateur = utilisateurService.obtenirUtilisateurParId(idUtilisateur);
+        utilisateurService.obtenirUtilisateurParId(idUtilisateur);
 
-        // Récupérer toutes les annonces où cet utilisateur est passager
-        List<AnnonceCovoiturage> annoncesAvecReservations = annonceCovoiturageRepository.findByUtilisateurParticipant(utilisateur);
-        if (annoncesAvecReservations.isEmpty()) {
+        // Annonces où cet utilisateur est passager, avec adresses et places, en une seule requête
+        List<AnnonceCovoiturageLigneDto> lignes = annonceCovoiturageRepository.findAvecPlacesParPassager(idUtilisateur);
+        if (lignes.isEmpty()) {
             throw new IllegalArgumentException("Aucune réservation trouvée pour cet utilisateur");
         }
-        return annoncesAvecReservations.stream()
-                .map(annonce -> {
-                    AnnonceCovoiturageDto dto = annonceMapper.versDto(annonce);
-                    Integer placesTotales = obtenirNombrePlacesTotales(annonce.getId());
-                    Integer placesOccupees = obtenirNombrePlacesOccupees(annonce.getId());
-
-                    return AnnonceCovoiturageAvecPlacesDto.of(dto, placesTotales, placesOccupees);
-                })
-                .toList();
+        return versAnnoncesAvecPlaces(lignes);
     }
 
     /**
@@ -429,26 +667,19 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
      * @param idUtilisateur l'ID de l'utilisateur connecté
      * @return liste des annonces où l'utilisateur est responsable avec détails des places
      */
+    @Transactional(readOnly = true)
     public List<AnnonceCovoiturageAvecPlacesDto> obtenirAnnoncesOrganiseesParUtilisateur(Long idUtilisateur) {
         // Récupérer l'utilisateur pour vérifier qu'il existe
-        Utilisateur utilisateur = utilisateurService.obtenirUtilisateurParId(idUtilisateur);
+        utilisateurService.obtenirUtilisateurParId(idUtilisateur);
 
-        // Récupérer toutes les annonces où cet utilisateur est responsable
-        List<AnnonceCovoiturage> annoncesOrganisees = annonceCovoiturageRepository.findByResponsable(utilisateur);
+        // Annonces où cet utilisateur est responsable, avec adresses et places, en une seule requête
+        List<AnnonceCovoiturageLigneDto> lignes = annonceCovoiturageRepository.findAvecPlacesParResponsable(idUtilisateur);
 
-        if (annoncesOrganisees.isEmpty()) {
+        if (lignes.isEmpty()) {
             throw new IllegalArgumentException("Aucune annonce trouvée pour cet utilisateur");
         }
 
-        return annoncesOrganisees.stream()
-                .map(annonce -> {
-                    AnnonceCovoiturageDto dto = annonceMapper.versDto(annonce);
-                    Integer placesTotales = obtenirNombrePlacesTotales(annonce.getId());
-                    Integer placesOccupees = obtenirNombrePlacesOccupees(annonce.getId());
-
-                    return AnnonceCovoiturageAvecPlacesDto.of(dto, placesTotales, placesOccupees);
-                })
-                .toList();
+        return versAnnoncesAvecPlaces(lignes);
     }
 
     /**
@@ -485,7 +716,70 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
         // Construire et retourner le DTO
         return ParticipantsCovoiturageDto.of(conducteur, passagers);
     }
-    private Adresse gererAdresse(fr.diginamic.gestiondestransports.dto.AdresseDto adresseDto) {
+
+    /**
+     * Récupère en une seule requête les participants (conducteur et passagers) de plusieurs annonces
+     * @param idsAnnonces les identifiants des annonces (au plus 100, doublons ignorés)
+     * @return les participants de chaque annonce existante, indexés par identifiant dans l'ordre demandé ;
+     * les identifiants inconnus sont absents du résultat
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, ParticipantsCovoiturageDto> obtenirParticipantsParAnnonces(List<Long> idsAnnonces) {
+        if (idsAnnonces == null || idsAnnonces.isEmpty()) {
+            throw new IllegalArgumentException("Au moins un identifiant d'annonce est requis");
+        }
+        Set<Long> ids = new LinkedHashSet<>(idsAnnonces);
+        ids.remove(null);
+        if (ids.isEmpty() || ids.size() > TAILLE_PAGE_MAX) {
+            throw new IllegalArgumentException("Le nombre d'annonces doit être compris entre 1 et " + TAILLE_PAGE_MAX);
+        }
+
+        Map<Long, ParticipantsCovoiturageDto> participants =
+                ParticipantAnnonceLigneDto.regrouperParAnnonce(annonceCovoiturageRepository.findParticipantsParAnnonces(ids));
+
+        // Restituer l'ordre demandé par le client
+        Map<Long, ParticipantsCovoiturageDto> resultat = new LinkedHashMap<>();
+        for (Long id : ids) {
+            ParticipantsCovoiturageDto participantsAnnonce = participants.get(id);
+            if (participantsAnnonce != null) {
+                resultat.put(id, participantsAnnonce);
+            }
+        }
+        return resultat;
+    }
+    /**
+     * Encode le couple (heure de départ, id) de la dernière annonce d'une page en curseur opaque
+     */
+    private String encoderCurseur(LocalDateTime heureDepart, Long id) {
+        String brut = heureDepart + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur de pagination en [heure de départ, id]
+     */
+    private String[] decoderCurseur(String curseur) {
+        try {
+            String brut = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8);
+            String[] parties = brut.split("\\|");
+            if (parties.length != 2) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
+            // Vérifie le format des deux parties
+            LocalDateTime.parse(parties[0]);
+            Long.parseLong(parties[1]);
+            return parties;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide");
+        }
+    }
+
+    private String videVersNull(String valeur) {
+        return valeur == null || valeur.isBlank() ? null : valeur.trim();
+    }
+
+    private Adresse gererAdresse(AdresseDto adresseDto) {
         if (adresseDto.id() != null) {
             // Si l'adresse a un ID, la récupérer depuis la base
             Optional<Adresse> adresseOpt = adresseRepository.findById(adresseDto.id());
@@ -496,8 +790,39 @@ public class AnnonceCovoiturageServiceImpl implements AnnonceCovoiturageService
 
         // Sinon, créer une nouvelle adresse
         Adresse nouvelleAdresse = adresseMapper.versEntite(adresseDto);
+
+        // Réutiliser les coordonnées d'une adresse identique déjà géocodée
+        adresseRepository.findGeocodeesIdentiques(nouvelleAdresse.getNumero(), nouvelleAdresse.getLibelle(),
+                        nouvelleAdresse.getCodePostal(), nouvelleAdresse.getVille())
+                .stream()
+                .findFirst()
+                .ifPresent(connue -> {
+                    nouvelleAdresse.setLatitude(connue.getLatitude());
+                    nouvelleAdresse.setLongitude(connue.getLongitude());
+                });
+
         return adresseRepository.save(nouvelleAdresse);
     }
 
+    /**
+     * Efface les coordonnées d'une adresse que le DTO va modifier (les champs null du DTO sont ignorés par le mapper)
+     * @return true si l'adresse est modifiée
+     */
+    private static boolean effacerCoordonneesSiModifiee(AdresseDto adresseDto, Adresse adresse) {
+        if (adresseDto == null || adresse == null) {
+            return false;
+        }
+        boolean modifiee = (adresseDto.numero() != null && !adresseDto.numero().equals(adresse.getNumero()))
+                || (adresseDto.libelle() != null && !adresseDto.libelle().equals(adresse.getLibelle()))
+                || (adresseDto.codePostal() != null && !adresseDto.codePostal().equals(adresse.getCodePostal()))
+                || (adresseDto.ville() != null && !adresseDto.ville().equals(adresse.getVille()));
+        if (modifiee) {
+            adresse.setLatitude(null);
+            adresse.setLongitude(null);
+        }
+        return modifiee;
+    }
+
+
 
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
+import fr.diginamic.gestiondestransports.dto.StatistiqueArchiveDto;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageArchiveRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.CelluleCorridorRepository;
+import fr.diginamic.gestiondestransports.repositories.CovoituragePassagersArchiveRepository;
+import fr.diginamic.gestiondestransports.repositories.CovoituragePassagersRepository;
+import fr.diginamic.gestiondestransports.services.ArchivageCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ListeAttenteCovoiturageService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Service d'archivage des trajets de covoiturage passés.
+ *
+ * Chaque nuit, les annonces dont le départ date de plus de covoit.archivage.age-jours jours sont copiées
+ * (avec leurs réservations) dans les tables annonce_covoiturage_archive et covoiturage_passagers_archive,
+ * puis supprimées des tables courantes avec leur corridor. Les requêtes de l'application ne parcourent
+ * ainsi que les données vivantes, et l'historique reste disponible pour le reporting.
+ *
+ * Le travail est découpé en lots de covoit.archivage.taille-lot annonces, chacun dans sa propre transaction :
+ * les verrous sont courts et un échec n'annule que le lot en cours, repris au passage suivant.
+ */
+@Service
+public class ArchivageCovoiturageServiceImpl implements ArchivageCovoiturageService {
+
+    private static final Logger log = LogManager.getLogger(ArchivageCovoiturageServiceImpl.class);
+
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    private final CovoituragePassagersRepository covoituragePassagersRepository;
+    private final CelluleCorridorRepository celluleCorridorRepository;
+    private final AnnonceCovoiturageArchiveRepository annonceArchiveRepository;
+    private final CovoituragePassagersArchiveRepository passagersArchiveRepository;
+    private final ListeAttenteCovoiturageService listeAttenteService;
+    private final VersionsAgregats versionsAgregats;
+    private final TransactionTemplate transactionTemplate;
+    private final int ageJours;
+    private final int tailleLot;
+
+    public ArchivageCovoiturageServiceImpl(AnnonceCovoiturageRepository annonceCovoiturageRepository,
+                                           CovoituragePassagersRepository covoituragePassagersRepository,
+                                           CelluleCorridorRepository celluleCorridorRepository,
+                                           AnnonceCovoiturageArchiveRepository annonceArchiveRepository,
+                                           CovoituragePassagersArchiveRepository passagersArchiveRepository,
+                                           ListeAttenteCovoiturageService listeAttenteService,
+                                           VersionsAgregats versionsAgregats,
+                                           PlatformTransactionManager transactionManager,
+                                           @Value("${covoit.archivage.age-jours:180}") int ageJours,
+                                           @Value("${covoit.archivage.taille-lot:500}") int tailleLot) {
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+        this.covoituragePassagersRepository = covoituragePassagersRepository;
+        this.celluleCorridorRepository = celluleCorridorRepository;
+        this.annonceArchiveRepository = annonceArchiveRepository;
+        this.passagersArchiveRepository = passagersArchiveRepository;
+        this.listeAttenteService = listeAttenteService;
+        this.versionsAgregats = versionsAgregats;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ageJours = ageJours;
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Archive, lot par lot, les annonces parties depuis plus de covoit.archivage.age-jours jours
+     * @return le nombre d'annonces archivées
+     */
+    @Override
+    @Scheduled(cron = "${covoit.archivage.cron:0 0 4 * * *}")
+    public int archiverAnnoncesPassees() {
+        LocalDateTime limite = LocalDateTime.now().minusDays(ageJours);
+        int archivees = 0;
+        int lot;
+        do {
+            Integer resultat = transactionTemplate.execute(statut -> archiverLot(limite));
+            lot = resultat == null ? 0 : resultat;
+            archivees += lot;
+        } while (lot == tailleLot);
+        if (archivees > 0) {
+            log.info("{} annonces de covoiturage parties avant le {} archivées", archivees, limite.toLocalDate());
+        }
+        return archivees;
+    }
+
+    /**
+     * Calcule par mois les statistiques des trajets archivés sur une période
+     * @param debut premier jour de la période (inclus), par défaut un an avant la fin
+     * @param fin dernier jour de la période (inclus), par défaut aujourd'hui
+     * @return une ligne par mois ayant au moins un trajet archivé
+     * @throws IllegalArgumentException si le début est postérieur à la fin
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<StatistiqueArchiveDto> obtenirStatistiquesArchives(LocalDate debut, LocalDate fin) {
+        LocalDate finPeriode = fin == null ? LocalDate.now() : fin;
+        LocalDate debutPeriode = debut == null ? finPeriode.minusYears(1) : debut;
+        if (debutPeriode.isAfter(finPeriode)) {
+            throw new IllegalArgumentException("La date de début doit précéder la date de fin");
+        }
+        return annonceArchiveRepository.calculerStatistiquesMensuelles(debutPeriode.atStartOfDay(),
+                finPeriode.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * Archive un lot d'annonces dans la transaction courante : copie des annonces et des réservations,
+     * puis suppression des corridors, des réservations, des listes d'attente et des annonces
+     */
+    private int archiverLot(LocalDateTime limite) {
+        List<Long> ids = annonceCovoiturageRepository.findIdsPartiesAvant(limite, PageRequest.of(0, tailleLot));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        annonceArchiveRepository.archiverAnnonces(ids, LocalDateTime.now());
+        passagersArchiveRepository.archiverPassagers(ids);
+        celluleCorridorRepository.supprimerParAnnonces(ids);
+        covoituragePassagersRepository.supprimerParAnnonces(ids);
+        listeAttenteService.supprimerListes(ids);
+        annonceCovoiturageRepository.supprimerParIds(ids);
+        versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
+        return ids.size();
+    }
+}
@@ -0,0 +1,241 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageCompatibleDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.TraceAnnonceDto;
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.CelluleCorridor;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.CelluleCorridorRepository;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.tools.GrilleGeographique;
+import fr.diginamic.gestiondestransports.tools.TraceItineraire;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Service de mise en correspondance des passagers avec les trajets des conducteurs.
+ * Le corridor d'une annonce est calculé à partir du tracé routier fourni par OSRM lors de l'enrichissement
+ * de l'annonce, ou à défaut à partir de la ligne droite entre les adresses de départ et d'arrivée
+ * (fonctionnement sans accès réseau).
+ */
+@Service
+@Transactional
+public class CorridorCovoiturageServiceImpl implements CorridorCovoiturageService {
+
+    private static final Logger log = LogManager.getLogger(CorridorCovoiturageServiceImpl.class);
+
+    // Distance maximale entre deux points échantillonnés du trajet lors du calcul du corridor
+    private static final double PAS_ECHANTILLON_KM = 2;
+    private static final double DETOUR_PAR_DEFAUT_KM = 5;
+    private static final double DETOUR_MAX_KM = 30;
+    private static final int TAILLE_PAR_DEFAUT = 20;
+    private static final int TAILLE_MAX = 100;
+
+    private final CelluleCorridorRepository celluleCorridorRepository;
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    public CorridorCovoiturageServiceImpl(CelluleCorridorRepository celluleCorridorRepository,
+                                          AnnonceCovoiturageRepository annonceCovoiturageRepository) {
+        this.celluleCorridorRepository = celluleCorridorRepository;
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+    }
+
+    /**
+     * (Re)calcule le corridor d'une annonce enregistrée
+     * Sans tracé routier ni coordonnées de départ et d'arrivée, l'annonce reste sans corridor
+     * @param annonce l'annonce de covoiturage
+     */
+    @Override
+    public void indexerAnnonce(AnnonceCovoiturage annonce) {
+        celluleCorridorRepository.supprimerParAnnonce(annonce.getId());
+
+        Set<Long> cellules = calculerCellules(annonce);
+        if (cellules.isEmpty()) {
+            return;
+        }
+        celluleCorridorRepository.saveAll(cellules.stream()
+                .map(cellule -> new CelluleCorridor(annonce, cellule))
+                .toList());
+    }
+
+    /**
+     * Calcule les cellules du corridor d'une annonce sans les enregistrer (utilisé par l'import en masse)
+     * @param annonce l'annonce de covoiturage, enregistrée ou non
+     * @return les cellules traversées, vide sans tracé routier ni coordonnées de départ et d'arrivée
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Set<Long> calculerCellules(AnnonceCovoiturage annonce) {
+        Adresse depart = annonce.getAdresseDepart();
+        Adresse arrivee = annonce.getAdresseArrivee();
+        List<double[]> trace = decoderTrace(annonce.getId(), annonce.getTraceItineraire());
+        if (trace == null && depart != null && arrivee != null) {
+            trace = ligneDroite(depart.getLatitude(), depart.getLongitude(), arrivee.getLatitude(), arrivee.getLongitude());
+        }
+        if (trace == null) {
+            return Set.of();
+        }
+
+        Set<Long> cellules = new LinkedHashSet<>();
+        for (double[] point : TraceItineraire.echantillonner(trace, PAS_ECHANTILLON_KM)) {
+            cellules.add(GrilleGeographique.cellule(point[0], point[1]));
+        }
+        return cellules;
+    }
+
+    /**
+     * Supprime le corridor d'une annonce (à appeler avant la suppression de l'annonce)
+     * @param idAnnonce l'ID de l'annonce
+     */
+    @Override
+    public void supprimerCorridor(Long idAnnonce) {
+        celluleCorridorRepository.supprimerParAnnonce(idAnnonce);
+    }
+
+    /**
+     * Calcule le corridor des annonces à venir qui n'en ont pas encore (annonces antérieures au corridor)
+     * @return le nombre d'annonces indexées
+     */
+    @Override
+    public int indexerAnnoncesSansCorridor() {
+        List<AnnonceCovoiturage> annonces = annonceCovoiturageRepository.findAVenirSansCorridor(LocalDateTime.now());
+        annonces.forEach(this::indexerAnnonce);
+        return annonces.size();
+    }
+
+    /**
+     * Recherche les annonces à venir dont le trajet passe à moins d'un détour donné du point de prise en charge
+     * puis du point de dépose, dans cet ordre
+     * Seules les annonces dont le corridor traverse les deux zones sont examinées
+     * @param latitudePriseEnCharge latitude du point de prise en charge
+     * @param longitudePriseEnCharge longitude du point de prise en charge
+     * @param latitudeDepose latitude du point de dépose
+     * @param longitudeDepose longitude du point de dépose
+     * @param detourKm distance maximale entre chaque point et le trajet (5 km par défaut, 30 maximum)
+     * @param taille nombre maximal d'annonces renvoyées (20 par défaut, 100 maximum)
+     * @return les annonces compatibles, du plus petit au plus grand détour
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<AnnonceCovoiturageCompatibleDto> rechercherTrajetsCompatibles(Double latitudePriseEnCharge, Double longitudePriseEnCharge,
+                                                                              Double latitudeDepose, Double longitudeDepose,
+                                                                              Double detourKm, Integer taille) {
+        verifierCoordonnees(latitudePriseEnCharge, longitudePriseEnCharge);
+        verifierCoordonnees(latitudeDepose, longitudeDepose);
+        double detour = detourKm == null ? DETOUR_PAR_DEFAUT_KM : detourKm;
+        if (detour <= 0 || detour > DETOUR_MAX_KM) {
+            throw new IllegalArgumentException("Le détour doit être strictement positif et au plus de " + (int) DETOUR_MAX_KM + " km");
+        }
+        int nombreMax = taille == null ? TAILLE_PAR_DEFAUT : taille;
+        if (nombreMax < 1 || nombreMax > TAILLE_MAX) {
+            throw new IllegalArgumentException("La taille de page doit être comprise entre 1 et " + TAILLE_MAX);
+        }
+
+        // Un point du trajet à moins de "detour" du passager est au plus à un demi-pas d'un point échantillonné
+        double rayonCellules = detour + PAS_ECHANTILLON_KM;
+        List<Long> candidats = celluleCorridorRepository.findAnnoncesTraversant(
+                GrilleGeographique.cellulesCouvrant(latitudePriseEnCharge, longitudePriseEnCharge, rayonCellules),
+                GrilleGeographique.cellulesCouvrant(latitudeDepose, longitudeDepose, rayonCellules),
+                LocalDateTime.now());
+        if (candidats.isEmpty()) {
+            return List.of();
+        }
+
+        // Distance exacte au trajet et sens de parcours (prise en charge avant dépose)
+        Map<Long, double[]> detours = new LinkedHashMap<>();
+        Map<Long, Boolean> tracesRoutiers = new LinkedHashMap<>();
+        for (TraceAnnonceDto geometrie : annonceCovoiturageRepository.findTracesParIds(candidats)) {
+            List<double[]> trace = decoderTrace(geometrie.id(), geometrie.traceItineraire());
+            boolean traceRoutier = trace != null;
+            if (trace == null) {
+                trace = ligneDroite(geometrie.latitudeDepart(), geometrie.longitudeDepart(),
+                        geometrie.latitudeArrivee(), geometrie.longitudeArrivee());
+            }
+            if (trace == null) {
+                continue;
+            }
+            TraceItineraire.Projection prise = TraceItineraire.projeter(trace, latitudePriseEnCharge, longitudePriseEnCharge);
+            TraceItineraire.Projection depose = TraceItineraire.projeter(trace, latitudeDepose, longitudeDepose);
+            if (prise.distanceKm() <= detour && depose.distanceKm() <= detour && prise.abscisseKm() < depose.abscisseKm()) {
+                detours.put(geometrie.id(), new double[]{prise.distanceKm(), depose.distanceKm()});
+                tracesRoutiers.put(geometrie.id(), traceRoutier);
+            }
+        }
+
+        List<Long> retenus = detours.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<Long, double[]>>comparingDouble(e -> e.getValue()[0] + e.getValue()[1])
+                        .thenComparing(Map.Entry::getKey))
+                .limit(nombreMax)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (retenus.isEmpty()) {
+            return List.of();
+        }
+
+        return annonceCovoiturageRepository.findAvecPlacesParIds(retenus).stream()
+                .filter(AnnonceCovoiturageLigneDto::aUnVehicule)
+                .map(ligne -> AnnonceCovoiturageCompatibleDto.of(ligne.versAvecPlacesDto(),
+                        arrondir(detours.get(ligne.id())[0]),
+                        arrondir(detours.get(ligne.id())[1]),
+                        tracesRoutiers.get(ligne.id())))
+                .sorted(Comparator.comparingDouble(AnnonceCovoiturageCompatibleDto::detourKm)
+                        .thenComparing(c -> c.annonce().annonce().id()))
+                .toList();
+    }
+
+    /**
+     * Décode le tracé routier d'une annonce
+     * @param idAnnonce l'ID de l'annonce (null si elle n'est pas encore enregistrée), pour la journalisation
+     * @return les points du tracé, null si l'annonce n'a pas de tracé exploitable
+     */
+    private List<double[]> decoderTrace(Long idAnnonce, String traceEncodee) {
+        if (traceEncodee == null || traceEncodee.isBlank()) {
+            return null;
+        }
+        try {
+            List<double[]> points = TraceItineraire.decoder(traceEncodee);
+            return points.size() >= 2 ? points : null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Tracé d'itinéraire illisible pour l'annonce {}, utilisation de la ligne droite : {}", idAnnonce, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Trajet de repli : ligne droite entre le départ et l'arrivée
+     * @return les deux extrémités, null si une adresse n'est pas géocodée
+     */
+    private List<double[]> ligneDroite(Double latitudeDepart, Double longitudeDepart,
+                                       Double latitudeArrivee, Double longitudeArrivee) {
+        if (latitudeDepart == null || longitudeDepart == null || latitudeArrivee == null || longitudeArrivee == null) {
+            return null;
+        }
+        return List.of(new double[]{latitudeDepart, longitudeDepart}, new double[]{latitudeArrivee, longitudeArrivee});
+    }
+
+    private void verifierCoordonnees(Double latitude, Double longitude) {
+        if (latitude == null || latitude < -90 || latitude > 90) {
+            throw new IllegalArgumentException("La latitude doit être comprise entre -90 et 90");
+        }
+        if (longitude == null || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("La longitude doit être comprise entre -180 et 180");
+        }
+    }
+
+    private double arrondir(double distanceKm) {
+        return Math.round(distanceKm * 10) / 10.0;
+    }
+}
@@ -0,0 +1,223 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageExportDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantAnnonceLigneDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantsCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantsCovoiturageDto.PersonneDto;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.services.ExportCovoiturageService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service d'écriture en flux du catalogue des annonces de covoiturage (liste JSON, export NDJSON et CSV).
+ *
+ * Le catalogue est parcouru par lots triés par identifiant (keyset sur la clé primaire) : chaque lot est
+ * lu dans sa propre transaction courte, écrit puis libéré. Aucune connexion n'est donc retenue pendant
+ * l'envoi vers un client lent, et la mémoire reste bornée par la taille d'un lot.
+ * Volontairement non transactionnel : l'export n'est pas un instantané unique de la base, une annonce
+ * modifiée pendant l'export apparaît dans l'état lu par son lot.
+ */
+@Service
+public class ExportCovoiturageServiceImpl implements ExportCovoiturageService {
+
+    private static final Logger log = LogManager.getLogger(ExportCovoiturageServiceImpl.class);
+    private static final char SEPARATEUR_CSV = ';';
+    private static final String ENTETE_CSV = String.join(String.valueOf(SEPARATEUR_CSV),
+            "annonce_id", "heure_depart", "duree_trajet", "distance",
+            "depart_code_postal", "depart_ville", "arrivee_code_postal", "arrivee_ville",
+            "vehicule_service_id", "places_totales", "places_occupees",
+            "conducteur_id", "conducteur_nom", "conducteur_prenom",
+            "passager_id", "passager_nom", "passager_prenom");
+
+    // Annonce supprimée entre la lecture du lot et celle de ses participants
+    private static final ParticipantsCovoiturageDto SANS_PARTICIPANT = ParticipantsCovoiturageDto.of(null, List.of());
+
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    private final ObjectMapper objectMapper;
+    private final int tailleLot;
+
+    public ExportCovoiturageServiceImpl(AnnonceCovoiturageRepository annonceCovoiturageRepository,
+                                        ObjectMapper objectMapper,
+                                        @Value("${covoit.export.taille-lot:1000}") int tailleLot) {
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+        this.objectMapper = objectMapper;
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Écrit toutes les annonces sous forme de tableau JSON, au même format que la liste
+     * {@code List<AnnonceCovoiturageAvecPlacesDto>} (les annonces sans véhicule sont ignorées).
+     * @param sortie le flux de la réponse HTTP
+     */
+    @Override
+    public void ecrireAnnoncesJson(OutputStream sortie) throws IOException {
+        ObjectWriter ecrivain = ecrivainJson();
+        try (JsonGenerator generateur = objectMapper.getFactory().createGenerator(sortie, JsonEncoding.UTF8)) {
+            generateur.writeStartArray();
+            parcourirParLots(lot -> {
+                for (AnnonceCovoiturageLigneDto ligne : lot) {
+                    if (ligne.aUnVehicule()) {
+                        ecrivain.writeValue(generateur, ligne.versAvecPlacesDto());
+                    } else {
+                        log.warn("Annonce corrompue ignorée - ID: {} - Aucun véhicule trouvé pour cette annonce", ligne.id());
+                    }
+                }
+                generateur.flush();
+            });
+            generateur.writeEndArray();
+        }
+    }
+
+    /**
+     * Écrit toutes les annonces avec leur conducteur et leurs passagers, une annonce JSON par ligne (NDJSON)
+     * @param sortie le flux de la réponse HTTP
+     */
+    @Override
+    public void ecrireExportNdjson(OutputStream sortie) throws IOException {
+        ObjectWriter ecrivain = ecrivainJson();
+        try (JsonGenerator generateur = objectMapper.getFactory().createGenerator(sortie, JsonEncoding.UTF8)) {
+            // Une annonce par ligne : pas d'espace ajouté par Jackson entre deux valeurs racines
+            generateur.setRootValueSeparator(null);
+            parcourirParLots(lot -> {
+                Map<Long, ParticipantsCovoiturageDto> participants = chargerParticipants(lot);
+                for (AnnonceCovoiturageLigneDto ligne : lot) {
+                    ParticipantsCovoiturageDto participantsAnnonce = participants.getOrDefault(ligne.id(), SANS_PARTICIPANT);
+                    ecrivain.writeValue(generateur, AnnonceCovoiturageExportDto.of(ligne.versAvecPlacesDto(),
+                            participantsAnnonce.conducteur(), participantsAnnonce.passagers()));
+                    generateur.writeRaw('\n');
+                }
+                generateur.flush();
+            });
+        }
+    }
+
+    /**
+     * Écrit toutes les annonces au format CSV (séparateur point-virgule, encodage UTF-8),
+     * une ligne par passager et une ligne sans passager pour les annonces non réservées
+     * @param sortie le flux de la réponse HTTP
+     */
+    @Override
+    public void ecrireExportCsv(OutputStream sortie) throws IOException {
+        Writer ecrivain = new BufferedWriter(new OutputStreamWriter(sortie, StandardCharsets.UTF_8));
+        ecrivain.write(ENTETE_CSV);
+        ecrivain.write("\r\n");
+        parcourirParLots(lot -> {
+            Map<Long, ParticipantsCovoiturageDto> participants = chargerParticipants(lot);
+            for (AnnonceCovoiturageLigneDto ligne : lot) {
+                ParticipantsCovoiturageDto participantsAnnonce = participants.getOrDefault(ligne.id(), SANS_PARTICIPANT);
+                String debut = ligneCsv(ligne, participantsAnnonce.conducteur());
+                List<PersonneDto> passagers = participantsAnnonce.passagers();
+                if (passagers.isEmpty()) {
+                    ecrireLigneCsv(ecrivain, debut, null);
+                }
+                for (PersonneDto passager : passagers) {
+                    ecrireLigneCsv(ecrivain, debut, passager);
+                }
+            }
+            ecrivain.flush();
+        });
+        ecrivain.flush();
+    }
+
+    /**
+     * Parcourt tout le catalogue par lots de {@code tailleLot} annonces triées par identifiant
+     */
+    private void parcourirParLots(TraitementLot traitement) throws IOException {
+        long dernierId = 0L;
+        List<AnnonceCovoiturageLigneDto> lot;
+        do {
+            lot = annonceCovoiturageRepository.findAvecPlacesApres(dernierId, PageRequest.of(0, tailleLot));
+            if (!lot.isEmpty()) {
+                traitement.traiter(lot);
+                dernierId = lot.get(lot.size() - 1).id();
+            }
+        } while (lot.size() == tailleLot);
+    }
+
+    /**
+     * Charge en une seule requête le conducteur et les passagers de toutes les annonces du lot
+     */
+    private Map<Long, ParticipantsCovoiturageDto> chargerParticipants(List<AnnonceCovoiturageLigneDto> lot) {
+        List<Long> ids = lot.stream().map(AnnonceCovoiturageLigneDto::id).toList();
+        return ParticipantAnnonceLigneDto.regrouperParAnnonce(annonceCovoiturageRepository.findParticipantsParAnnonces(ids));
+    }
+
+    private String ligneCsv(AnnonceCovoiturageLigneDto ligne, PersonneDto conducteur) {
+        StringBuilder sb = new StringBuilder();
+        ajouterChamps(sb, ligne.id(), ligne.heureDepart(), ligne.dureeTrajet(), ligne.distance(),
+                ligne.adresseDepartCodePostal(), ligne.adresseDepartVille(),
+                ligne.adresseArriveeCodePostal(), ligne.adresseArriveeVille(),
+                ligne.vehiculeServiceId(), ligne.placesTotales(), ligne.placesOccupees());
+        sb.append(SEPARATEUR_CSV);
+        if (conducteur == null) {
+            ajouterChamps(sb, null, null, null);
+        } else {
+            ajouterChamps(sb, conducteur.id(), conducteur.nom(), conducteur.prenom());
+        }
+        return sb.toString();
+    }
+
+    private void ecrireLigneCsv(Writer ecrivain, String debut, PersonneDto passager) throws IOException {
+        StringBuilder sb = new StringBuilder(debut).append(SEPARATEUR_CSV);
+        if (passager == null) {
+            ajouterChamps(sb, null, null, null);
+        } else {
+            ajouterChamps(sb, passager.id(), passager.nom(), passager.prenom());
+        }
+        ecrivain.write(sb.append("\r\n").toString());
+    }
+
+    private static void ajouterChamps(StringBuilder sb, Object... valeurs) {
+        for (int i = 0; i < valeurs.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATEUR_CSV);
+            }
+            sb.append(echapperCsv(valeurs[i]));
+        }
+    }
+
+    /**
+     * Échappe une valeur selon la RFC 4180 : entourée de guillemets (doublés) si elle contient
+     * le séparateur, un guillemet ou un retour à la ligne
+     */
+    private static String echapperCsv(Object valeur) {
+        if (valeur == null) {
+            return "";
+        }
+        String texte = valeur.toString();
+        if (texte.indexOf(SEPARATEUR_CSV) < 0 && texte.indexOf('"') < 0
+                && texte.indexOf('\n') < 0 && texte.indexOf('\r') < 0) {
+            return texte;
+        }
+        return '"' + texte.replace("\"", "\"\"") + '"';
+    }
+
+    // Sans vidage après chaque objet : le flux n'est vidé qu'une fois par lot
+    private ObjectWriter ecrivainJson() {
+        return objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @FunctionalInterface
+    private interface TraitementLot {
+        void traiter(List<AnnonceCovoiturageLigneDto> lot) throws IOException;
+    }
+}
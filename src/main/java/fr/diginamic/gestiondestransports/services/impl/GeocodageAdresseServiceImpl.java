@@ -0,0 +1,196 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.GeocodageAdresseService;
+import fr.diginamic.gestiondestransports.tools.LimiteurDebit;
+import fr.diginamic.gestiondestransports.tools.OsmApi;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Service de géocodage différé des adresses des annonces de covoiturage.
+ *
+ * Une annonce dont la distance et la durée sont saisies manuellement est enregistrée sans appel à OSM.
+ * Une fois sa transaction validée, les adresses de départ et d'arrivée encore sans coordonnées sont géocodées
+ * en arrière-plan, une à une et sans dépasser covoit.geocodage.appels-par-seconde (Nominatim autorise
+ * environ un appel par seconde). Aucune connexion à la base n'est tenue pendant un appel à Nominatim :
+ * les adresses sont lues, géocodées puis enregistrées dans des transactions courtes distinctes,
+ * et le corridor de l'annonce est recalculé dès que ses coordonnées sont connues.
+ *
+ * Les adresses créées avant le géocodage (ou non trouvées par Nominatim) n'ont ni coordonnées ni cellule de grille :
+ * leurs annonces n'apparaîtraient ni dans la recherche par proximité ni dans celle des trajets compatibles.
+ * Une tâche planifiée géocode donc, par lots de covoit.geocodage.taille-lot et au même débit, les adresses sans
+ * coordonnées des annonces à venir, puis calcule le corridor des annonces devenues géocodées. Les lots reprennent
+ * après la dernière adresse traitée ; une adresse introuvable n'est retentée qu'au passage complet suivant.
+ */
+@Service
+public class GeocodageAdresseServiceImpl implements GeocodageAdresseService {
+
+    private static final Logger log = LogManager.getLogger(GeocodageAdresseServiceImpl.class);
+
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    private final AdresseRepository adresseRepository;
+    private final CorridorCovoiturageService corridorCovoiturageService;
+    private final OsmApi osmApi;
+    private final TransactionTemplate transactionTemplate;
+    private final LimiteurDebit limiteurOsm;
+    // Un seul thread : les appels sont de toute façon espacés par le limiteur
+    private final ExecutorService executeur = Executors.newSingleThreadExecutor();
+    private final int tailleLot;
+    // Dernière adresse traitée par le rattrapage, 0 au début d'un passage ; volatile : les exécutions planifiées
+    // successives ne s'exécutent pas forcément sur le même thread du planificateur
+    private volatile long curseurRattrapage;
+
+    public GeocodageAdresseServiceImpl(AnnonceCovoiturageRepository annonceCovoiturageRepository,
+                                       AdresseRepository adresseRepository,
+                                       CorridorCovoiturageService corridorCovoiturageService,
+                                       OsmApi osmApi,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${covoit.geocodage.appels-par-seconde:1}") double appelsParSeconde,
+                                       @Value("${covoit.geocodage.taille-lot:50}") int tailleLot) {
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+        this.adresseRepository = adresseRepository;
+        this.corridorCovoiturageService = corridorCovoiturageService;
+        this.osmApi = osmApi;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.limiteurOsm = new LimiteurDebit(appelsParSeconde);
+        this.tailleLot = tailleLot;
+    }
+
+    /**
+     * Planifie le géocodage des adresses d'une annonce créée ou modifiée, une fois la transaction validée
+     * @param evenement l'événement publié par le service des annonces
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void surEvenement(AnnonceCovoiturageEvenement evenement) {
+        if (evenement.type() == TypeEvenementAnnonce.CREATION || evenement.type() == TypeEvenementAnnonce.MODIFICATION) {
+            executeur.execute(() -> {
+                try {
+                    geocoderAnnonce(evenement.idAnnonce());
+                } catch (RuntimeException e) {
+                    log.warn("Échec du géocodage des adresses de l'annonce {} : {}", evenement.idAnnonce(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Géocode les adresses de départ et d'arrivée d'une annonce qui n'ont pas encore de coordonnées,
+     * puis recalcule le corridor de l'annonce. Un échec n'est pas bloquant : l'adresse reste sans coordonnées.
+     * @param idAnnonce l'ID de l'annonce
+     */
+    @Override
+    public void geocoderAnnonce(Long idAnnonce) {
+        List<Adresse> adresses = transactionTemplate.execute(statut -> annonceCovoiturageRepository.findById(idAnnonce)
+                .map(annonce -> Stream.of(annonce.getAdresseDepart(), annonce.getAdresseArrivee())
+                        .filter(Objects::nonNull)
+                        .filter(adresse -> !adresse.aDesCoordonnees())
+                        .filter(distinctParId())
+                        .toList())
+                .orElse(List.of()));
+        if (adresses == null || adresses.isEmpty()) {
+            return;
+        }
+
+        boolean geocodee = false;
+        for (Adresse adresse : adresses) {
+            geocodee |= geocoder(adresse);
+        }
+        if (geocodee) {
+            transactionTemplate.executeWithoutResult(statut -> annonceCovoiturageRepository.findById(idAnnonce)
+                    .ifPresent(corridorCovoiturageService::indexerAnnonce));
+        }
+    }
+
+    /**
+     * Géocode un lot d'adresses sans coordonnées utilisées par des annonces à venir,
+     * puis calcule le corridor des annonces dont le départ et l'arrivée sont désormais géocodés
+     * @return le nombre d'adresses géocodées
+     */
+    @Override
+    @Scheduled(initialDelayString = "${covoit.geocodage.rattrapage-delai-initial-ms:60000}",
+            fixedDelayString = "${covoit.geocodage.rattrapage-ms:600000}")
+    public int geocoderAdressesSansCoordonnees() {
+        List<Adresse> adresses = transactionTemplate.execute(statut -> adresseRepository.findSansCoordonneesPourAnnoncesAVenir(
+                curseurRattrapage, LocalDateTime.now(), PageRequest.of(0, tailleLot)));
+        if (adresses == null || adresses.isEmpty()) {
+            curseurRattrapage = 0;
+            return 0;
+        }
+        // Lot incomplet : fin du passage, le suivant reprend au début (adresses introuvables comprises)
+        curseurRattrapage = adresses.size() < tailleLot ? 0 : adresses.get(adresses.size() - 1).getId();
+
+        int geocodees = 0;
+        for (Adresse adresse : adresses) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (geocoder(adresse)) {
+                geocodees++;
+            }
+        }
+        if (geocodees > 0) {
+            int annoncesIndexees = corridorCovoiturageService.indexerAnnoncesSansCorridor();
+            log.info("{} adresse(s) sans coordonnées géocodée(s), corridor calculé pour {} annonce(s) à venir",
+                    geocodees, annoncesIndexees);
+        }
+        return geocodees;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Géocode une adresse détachée hors transaction, puis enregistre ses coordonnées (et sa cellule de grille)
+     * @return true si l'adresse a été géocodée
+     */
+    private boolean geocoder(Adresse adresse) {
+        try {
+            limiteurOsm.acquerir();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (osmApi.obtenirCoordonnees(adresse) == null) {
+            log.warn("Adresse {} introuvable par Nominatim, elle reste sans coordonnées", adresse.getId());
+            return false;
+        }
+        transactionTemplate.executeWithoutResult(statut -> adresseRepository.findById(adresse.getId())
+                .ifPresent(enregistree -> {
+                    enregistree.setLatitude(adresse.getLatitude());
+                    enregistree.setLongitude(adresse.getLongitude());
+                }));
+        return true;
+    }
+
+    // Départ et arrivée peuvent partager la même adresse
+    private static Predicate<Adresse> distinctParId() {
+        Set<Long> vus = new HashSet<>();
+        return adresse -> vus.add(adresse.getId());
+    }
+}
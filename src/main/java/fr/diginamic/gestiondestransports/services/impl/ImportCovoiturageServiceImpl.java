@@ -0,0 +1,553 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import fr.diginamic.gestiondestransports.cache.IndexOccupationsVehicules;
+import fr.diginamic.gestiondestransports.cache.ModeleLectureAnnonces;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
+import fr.diginamic.gestiondestransports.dto.AdresseDto;
+import fr.diginamic.gestiondestransports.dto.CoordonneesAdresseDto;
+import fr.diginamic.gestiondestransports.dto.LigneImportCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.RapportImportCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.ResultatLigneImportDto;
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import fr.diginamic.gestiondestransports.entites.VehiculePersonnel;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
+import fr.diginamic.gestiondestransports.repositories.ImportCovoiturageJdbcRepository;
+import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculePersonnelRepository;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ImportCovoiturageService;
+import fr.diginamic.gestiondestransports.tools.LimiteurDebit;
+import fr.diginamic.gestiondestransports.tools.OsmApi;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service d'import en masse d'annonces de covoiturage, destiné à l'inscription d'équipes entières.
+ *
+ * Les lignes sont traitées ensemble plutôt qu'une à une :
+ * - conducteurs et véhicules sont chargés en quelques requêtes ;
+ * - les adresses identiques ne sont géocodées qu'une fois : les coordonnées déjà connues en base sont relues
+ *   en une requête par lot d'adresses, et les adresses restantes sont géocodées en parallèle sans dépasser
+ *   le débit autorisé par Nominatim (covoit.import.osm.appels-par-seconde) ; il en va de même pour le calcul
+ *   des itinéraires manquants, une fois par couple départ/arrivée ;
+ * - chaque annonce reçoit ses propres lignes d'adresse, coordonnées comprises, pour rester modifiable seule ;
+ *   adresses, annonces et corridors sont insérés par lots JDBC de covoit.import.taille-lot lignes,
+ *   une transaction par lot.
+ * Les appels réseau ont lieu hors transaction. Une ligne invalide est rejetée sans bloquer les autres,
+ * et le rapport indique le résultat de chaque ligne.
+ */
+@Service
+public class ImportCovoiturageServiceImpl implements ImportCovoiturageService {
+
+    private static final Logger log = LogManager.getLogger(ImportCovoiturageServiceImpl.class);
+    private static final char SEPARATEUR = ';';
+    private static final List<String> COLONNES_OBLIGATOIRES = List.of("emailConducteur", "heureDepart",
+            "libelleDepart", "codePostalDepart", "villeDepart", "libelleArrivee", "codePostalArrivee", "villeArrivee");
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
+    private final VehiculePersonnelRepository vehiculePersonnelRepository;
+    private final AdresseRepository adresseRepository;
+    private final ImportCovoiturageJdbcRepository importJdbcRepository;
+    private final CorridorCovoiturageService corridorCovoiturageService;
+    private final OsmApi osmApi;
+    private final Validator validator;
+    private final VersionsAgregats versionsAgregats;
+    private final ModeleLectureAnnonces modeleLecture;
+    private final IndexOccupationsVehicules indexOccupations;
+    private final TransactionTemplate transactionTemplate;
+    private final int lignesMax;
+    private final int tailleLot;
+    private final int appelsParalleles;
+    // Partagé par tous les imports : le débit autorisé vaut pour l'application entière
+    private final LimiteurDebit limiteurOsm;
+
+    public ImportCovoiturageServiceImpl(UtilisateurRepository utilisateurRepository,
+                                        VehiculeEntrepriseRepository vehiculeEntrepriseRepository,
+                                        VehiculePersonnelRepository vehiculePersonnelRepository,
+                                        AdresseRepository adresseRepository,
+                                        ImportCovoiturageJdbcRepository importJdbcRepository,
+                                        CorridorCovoiturageService corridorCovoiturageService,
+                                        OsmApi osmApi,
+                                        Validator validator,
+                                        VersionsAgregats versionsAgregats,
+                                        ModeleLectureAnnonces modeleLecture,
+                                        IndexOccupationsVehicules indexOccupations,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${covoit.import.lignes-max:10000}") int lignesMax,
+                                        @Value("${covoit.import.taille-lot:500}") int tailleLot,
+                                        @Value("${covoit.import.osm.appels-paralleles:4}") int appelsParalleles,
+                                        @Value("${covoit.import.osm.appels-par-seconde:1}") double appelsParSeconde) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.vehiculeEntrepriseRepository = vehiculeEntrepriseRepository;
+        this.vehiculePersonnelRepository = vehiculePersonnelRepository;
+        this.adresseRepository = adresseRepository;
+        this.importJdbcRepository = importJdbcRepository;
+        this.corridorCovoiturageService = corridorCovoiturageService;
+        this.osmApi = osmApi;
+        this.validator = validator;
+        this.versionsAgregats = versionsAgregats;
+        this.modeleLecture = modeleLecture;
+        this.indexOccupations = indexOccupations;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lignesMax = lignesMax;
+        this.tailleLot = tailleLot;
+        this.appelsParalleles = appelsParalleles;
+        this.limiteurOsm = new LimiteurDebit(appelsParSeconde);
+    }
+
+    /**
+     * Importe des annonces reçues sous forme de tableau JSON
+     * @param lignes les annonces à créer, numérotées à partir de 1 dans le rapport
+     * @return le rapport d'import
+     * @throws IllegalArgumentException si aucune ligne n'est fournie ou si le nombre maximal de lignes est dépassé
+     */
+    @Override
+    public RapportImportCovoiturageDto importerAnnonces(List<LigneImportCovoiturageDto> lignes) {
+        if (lignes == null) {
+            throw new IllegalArgumentException("Aucune ligne à importer");
+        }
+        List<LigneLue> lues = new ArrayList<>(lignes.size());
+        for (int i = 0; i < lignes.size(); i++) {
+            lues.add(new LigneLue(i + 1, lignes.get(i), lignes.get(i) == null ? "Ligne vide" : null));
+        }
+        return importer(lues);
+    }
+
+    /**
+     * Importe des annonces au format CSV (séparateur point-virgule, première ligne d'en-tête).
+     * Colonnes : emailConducteur, heureDepart (ex. 2026-11-03T08:00), dureeTrajet, distance, numeroDepart,
+     * libelleDepart, codePostalDepart, villeDepart, numeroArrivee, libelleArrivee, codePostalArrivee,
+     * villeArrivee, vehiculeServiceId ; l'ordre des colonnes est libre et les colonnes optionnelles peuvent manquer.
+     * @param csv le contenu du fichier
+     * @return le rapport d'import, numéroté selon les lignes du fichier
+     * @throws IllegalArgumentException si l'en-tête est absent ou incomplet, ou si le nombre maximal de lignes est dépassé
+     * @throws IOException en cas d'erreur de lecture
+     */
+    @Override
+    public RapportImportCovoiturageDto importerAnnoncesCsv(Reader csv) throws IOException {
+        BufferedReader lecteur = new BufferedReader(csv);
+        String entete = lecteur.readLine();
+        if (entete == null) {
+            throw new IllegalArgumentException("Aucune ligne à importer");
+        }
+        // Marque d'ordre des octets ajoutée par certains tableurs
+        if (entete.startsWith("\uFEFF")) {
+            entete = entete.substring(1);
+        }
+        Map<String, Integer> colonnes = new HashMap<>();
+        List<String> nomsColonnes = decouper(entete);
+        for (int i = 0; i < nomsColonnes.size(); i++) {
+            colonnes.put(nomsColonnes.get(i).trim(), i);
+        }
+        List<String> manquantes = COLONNES_OBLIGATOIRES.stream().filter(c -> !colonnes.containsKey(c)).toList();
+        if (!manquantes.isEmpty()) {
+            throw new IllegalArgumentException("Colonnes manquantes dans l'en-tête : " + String.join(", ", manquantes));
+        }
+
+        List<LigneLue> lues = new ArrayList<>();
+        int numero = 1;
+        String ligne;
+        while ((ligne = lecteur.readLine()) != null) {
+            numero++;
+            if (ligne.isBlank()) {
+                continue;
+            }
+            if (lues.size() == lignesMax) {
+                throw new IllegalArgumentException("L'import est limité à " + lignesMax + " lignes");
+            }
+            lues.add(lireLigneCsv(numero, decouper(ligne), colonnes));
+        }
+        return importer(lues);
+    }
+
+    private RapportImportCovoiturageDto importer(List<LigneLue> lues) {
+        long debut = System.currentTimeMillis();
+        if (lues.isEmpty()) {
+            throw new IllegalArgumentException("Aucune ligne à importer");
+        }
+        if (lues.size() > lignesMax) {
+            throw new IllegalArgumentException("L'import est limité à " + lignesMax + " lignes");
+        }
+        int nombre = lues.size();
+        String[] erreurs = new String[nombre];
+        for (int i = 0; i < nombre; i++) {
+            erreurs[i] = lues.get(i).erreur() != null ? lues.get(i).erreur() : valider(lues.get(i).ligne());
+        }
+
+        AnnonceCovoiturage[] annonces = construireAnnonces(lues, erreurs);
+
+        // Adresses distinctes : coordonnées déjà connues en base, sinon géocodage en parallèle
+        Set<Adresse> adresses = new LinkedHashSet<>();
+        for (int i = 0; i < nombre; i++) {
+            if (annonces[i] != null) {
+                adresses.add(annonces[i].getAdresseDepart());
+                adresses.add(annonces[i].getAdresseArrivee());
+            }
+        }
+        Map<String, CoordonneesAdresseDto> connues = coordonneesConnues(new ArrayList<>(adresses));
+        List<Adresse> aGeocoder = new ArrayList<>();
+        for (Adresse adresse : adresses) {
+            CoordonneesAdresseDto connue = connues.get(cleAdresse(adresse.getNumero(), adresse.getLibelle(),
+                    adresse.getCodePostal(), adresse.getVille()));
+            if (connue != null) {
+                adresse.setLatitude(connue.latitude());
+                adresse.setLongitude(connue.longitude());
+            } else {
+                aGeocoder.add(adresse);
+            }
+        }
+        // Un échec de géocodage n'est pas bloquant, comme pour une annonce créée individuellement
+        appelerOsm(aGeocoder, osmApi::obtenirCoordonnees);
+
+        calculerItinerairesManquants(annonces, erreurs);
+
+        // Enregistrement des adresses, des annonces et de leurs corridors par lots
+        List<Integer> aInserer = new ArrayList<>();
+        for (int i = 0; i < nombre; i++) {
+            if (annonces[i] != null) {
+                aInserer.add(i);
+            }
+        }
+        int importees = 0;
+        for (int debutLot = 0; debutLot < aInserer.size(); debutLot += tailleLot) {
+            List<Integer> indices = aInserer.subList(debutLot, Math.min(debutLot + tailleLot, aInserer.size()));
+            importees += insererLot(indices, annonces, erreurs);
+        }
+
+        if (importees > 0) {
+            versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
+            // Un rechargement unique plutôt qu'une mise à jour par annonce importée
+            if (modeleLecture.estCharge()) {
+                modeleLecture.charger();
+            }
+            if (indexOccupations.estCharge()) {
+                indexOccupations.charger();
+            }
+        }
+
+        List<ResultatLigneImportDto> resultats = new ArrayList<>(nombre);
+        for (int i = 0; i < nombre; i++) {
+            int ligne = lues.get(i).numero();
+            resultats.add(erreurs[i] == null
+                    ? ResultatLigneImportDto.succes(ligne, annonces[i].getId())
+                    : ResultatLigneImportDto.echec(ligne, erreurs[i]));
+        }
+        long duree = System.currentTimeMillis() - debut;
+        log.info("Import de {} annonces de covoiturage : {} importées, {} rejetées en {} ms",
+                nombre, importees, nombre - importees, duree);
+        return new RapportImportCovoiturageDto(nombre, importees, nombre - importees, duree, resultats);
+    }
+
+    /**
+     * Coordonnées déjà connues en base des adresses fournies, en une requête par lot d'adresses
+     * @return les coordonnées, indexées par clé d'adresse normalisée
+     */
+    private Map<String, CoordonneesAdresseDto> coordonneesConnues(List<Adresse> adresses) {
+        Map<String, CoordonneesAdresseDto> connues = new HashMap<>();
+        for (int debutLot = 0; debutLot < adresses.size(); debutLot += tailleLot) {
+            List<Adresse> lot = adresses.subList(debutLot, Math.min(debutLot + tailleLot, adresses.size()));
+            Set<String> libelles = lot.stream().map(Adresse::getLibelle).collect(Collectors.toSet());
+            Set<String> codesPostaux = lot.stream().map(Adresse::getCodePostal).collect(Collectors.toSet());
+            for (CoordonneesAdresseDto connue : adresseRepository.findCoordonneesConnues(libelles, codesPostaux)) {
+                connues.putIfAbsent(cleAdresse(connue.numero(), connue.libelle(), connue.codePostal(), connue.ville()), connue);
+            }
+        }
+        return connues;
+    }
+
+    /**
+     * Résout conducteurs, véhicules et adresses des lignes valides. Les adresses sont partagées entre lignes
+     * identiques jusqu'à l'enregistrement, pour n'être géocodées qu'une fois.
+     * Les lignes rejetées reçoivent leur motif dans erreurs et aucune annonce.
+     */
+    private AnnonceCovoiturage[] construireAnnonces(List<LigneLue> lues, String[] erreurs) {
+        int nombre = lues.size();
+        Set<String> emails = new LinkedHashSet<>();
+        Set<Long> idsVehicules = new LinkedHashSet<>();
+        for (int i = 0; i < nombre; i++) {
+            if (erreurs[i] == null) {
+                emails.add(lues.get(i).ligne().emailConducteur());
+                if (lues.get(i).ligne().vehiculeServiceId() != null) {
+                    idsVehicules.add(lues.get(i).ligne().vehiculeServiceId());
+                }
+            }
+        }
+        Map<String, Utilisateur> conducteurs = emails.isEmpty() ? Map.of() : utilisateurRepository.findByEmailIn(emails).stream()
+                .collect(Collectors.toMap(Utilisateur::getEmail, Function.identity(), (a, b) -> a));
+        Map<Long, VehiculeEntreprise> vehicules = idsVehicules.isEmpty() ? Map.of() : vehiculeEntrepriseRepository.findAllById(idsVehicules).stream()
+                .collect(Collectors.toMap(VehiculeEntreprise::getId, Function.identity()));
+        // Premier véhicule personnel de chaque conducteur
+        Map<Long, Integer> placesVehiculePersonnel = new HashMap<>();
+        if (!conducteurs.isEmpty()) {
+            for (VehiculePersonnel vehicule : vehiculePersonnelRepository.findByUtilisateurIdInOrderByIdAsc(
+                    conducteurs.values().stream().map(Utilisateur::getId).toList())) {
+                placesVehiculePersonnel.putIfAbsent(vehicule.getUtilisateur().getId(), vehicule.getNbPlaces());
+            }
+        }
+
+        AnnonceCovoiturage[] annonces = new AnnonceCovoiturage[nombre];
+        Map<String, Adresse> adresses = new HashMap<>();
+        for (int i = 0; i < nombre; i++) {
+            if (erreurs[i] != null) {
+                continue;
+            }
+            LigneImportCovoiturageDto ligne = lues.get(i).ligne();
+            Utilisateur conducteur = conducteurs.get(ligne.emailConducteur());
+            if (conducteur == null) {
+                erreurs[i] = "Conducteur introuvable avec l'email: " + ligne.emailConducteur();
+                continue;
+            }
+            VehiculeEntreprise vehiculeService = null;
+            Integer placesTotales;
+            if (ligne.vehiculeServiceId() != null) {
+                vehiculeService = vehicules.get(ligne.vehiculeServiceId());
+                if (vehiculeService == null) {
+                    erreurs[i] = "Véhicule de service introuvable avec l'ID: " + ligne.vehiculeServiceId();
+                    continue;
+                }
+                placesTotales = vehiculeService.getNbPlaces();
+            } else {
+                placesTotales = placesVehiculePersonnel.get(conducteur.getId());
+                if (placesTotales == null) {
+                    erreurs[i] = "Le conducteur ne possède pas de véhicule personnel : un véhicule de service doit être indiqué";
+                    continue;
+                }
+            }
+            AnnonceCovoiturage annonce = new AnnonceCovoiturage(ligne.heureDepart(), ligne.dureeTrajet(), ligne.distance(),
+                    adresses.computeIfAbsent(cleAdresse(ligne.adresseDepart()), cle -> nouvelleAdresse(ligne.adresseDepart())),
+                    adresses.computeIfAbsent(cleAdresse(ligne.adresseArrivee()), cle -> nouvelleAdresse(ligne.adresseArrivee())),
+                    conducteur);
+            annonce.setVehiculeService(vehiculeService);
+            annonce.setPlacesTotales(placesTotales);
+            annonces[i] = annonce;
+        }
+        return annonces;
+    }
+
+    /**
+     * Calcule, une fois par couple d'adresses, la distance et la durée des annonces qui ne les précisent pas
+     */
+    private void calculerItinerairesManquants(AnnonceCovoiturage[] annonces, String[] erreurs) {
+        Map<List<Adresse>, List<Integer>> parTrajet = new LinkedHashMap<>();
+        for (int i = 0; i < annonces.length; i++) {
+            AnnonceCovoiturage annonce = annonces[i];
+            if (annonce != null && (annonce.getDistance() == null || annonce.getDureeTrajet() == null)) {
+                parTrajet.computeIfAbsent(List.of(annonce.getAdresseDepart(), annonce.getAdresseArrivee()), t -> new ArrayList<>()).add(i);
+            }
+        }
+        List<List<Adresse>> calculables = parTrajet.keySet().stream()
+                .filter(trajet -> trajet.get(0).aDesCoordonnees() && trajet.get(1).aDesCoordonnees())
+                .toList();
+        Map<List<Adresse>, OsmApi.ResultatItineraire> itineraires = appelerOsm(calculables, trajet -> osmApi.calculerDistanceEtDuree(
+                trajet.get(0).getLatitude(), trajet.get(0).getLongitude(), trajet.get(1).getLatitude(), trajet.get(1).getLongitude()));
+
+        parTrajet.forEach((trajet, indices) -> {
+            OsmApi.ResultatItineraire itineraire = itineraires.get(trajet);
+            for (int i : indices) {
+                if (itineraire == null) {
+                    erreurs[i] = "Impossible de calculer la distance et la durée. Veuillez les saisir manuellement.";
+                    annonces[i] = null;
+                } else {
+                    annonces[i].setDistance(itineraire.getDistanceKm());
+                    annonces[i].setDureeTrajet(itineraire.getDureeMinutes());
+                    annonces[i].setTraceItineraire(itineraire.getTraceEncodee());
+                }
+            }
+        });
+    }
+
+    /**
+     * Insère un lot d'annonces, leurs adresses et leurs corridors dans une transaction ; en cas d'échec, tout le lot est rejeté
+     * @return le nombre d'annonces insérées
+     */
+    private int insererLot(List<Integer> indices, AnnonceCovoiturage[] annonces, String[] erreurs) {
+        List<AnnonceCovoiturage> lot = indices.stream().map(i -> annonces[i]).toList();
+        // Une ligne d'adresse par extrémité de trajet : copie de l'adresse partagée, coordonnées comprises
+        List<Adresse> adressesLot = new ArrayList<>(2 * lot.size());
+        for (AnnonceCovoiturage annonce : lot) {
+            annonce.setAdresseDepart(annonce.getAdresseDepart().copie());
+            annonce.setAdresseArrivee(annonce.getAdresseArrivee().copie());
+            adressesLot.add(annonce.getAdresseDepart());
+            adressesLot.add(annonce.getAdresseArrivee());
+        }
+        // Calcul des corridors avant la transaction
+        List<Set<Long>> cellules = lot.stream().map(corridorCovoiturageService::calculerCellules).toList();
+        try {
+            transactionTemplate.executeWithoutResult(statut -> {
+                importJdbcRepository.insererAdresses(adressesLot);
+                importJdbcRepository.insererAnnonces(lot);
+                Map<Long, Set<Long>> cellulesParAnnonce = new LinkedHashMap<>();
+                for (int k = 0; k < lot.size(); k++) {
+                    cellulesParAnnonce.put(lot.get(k).getId(), cellules.get(k));
+                }
+                importJdbcRepository.insererCellulesCorridor(cellulesParAnnonce);
+            });
+            return lot.size();
+        } catch (RuntimeException e) {
+            log.error("Échec de l'enregistrement d'un lot de {} annonces importées : {}", lot.size(), e.getMessage());
+            for (int i : indices) {
+                erreurs[i] = "Erreur lors de l'enregistrement : " + e.getMessage();
+                annonces[i].setId(null);
+            }
+            adressesLot.forEach(adresse -> adresse.setId(null));
+            return 0;
+        }
+    }
+
+    /**
+     * Appelle l'API OSM pour chaque élément, en parallèle et sans dépasser le débit autorisé
+     * @return les résultats non nuls, par élément
+     */
+    private <T, R> Map<T, R> appelerOsm(Collection<T> elements, Function<T, R> appel) {
+        Map<T, R> resultats = new ConcurrentHashMap<>();
+        if (elements.isEmpty()) {
+            return resultats;
+        }
+        try (ExecutorService executeur = Executors.newFixedThreadPool(Math.min(appelsParalleles, elements.size()))) {
+            for (T element : elements) {
+                executeur.execute(() -> {
+                    try {
+                        limiteurOsm.acquerir();
+                        R resultat = appel.apply(element);
+                        if (resultat != null) {
+                            resultats.put(element, resultat);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        log.warn("Échec d'un appel à l'API OSM pendant l'import : {}", e.getMessage());
+                    }
+                });
+            }
+        }
+        return resultats;
+    }
+
+    private String valider(LigneImportCovoiturageDto ligne) {
+        Set<ConstraintViolation<LigneImportCovoiturageDto>> violations = validator.validate(ligne);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(" ; "));
+    }
+
+    private LigneLue lireLigneCsv(int numero, List<String> champs, Map<String, Integer> colonnes) {
+        try {
+            String heure = champ(champs, colonnes, "heureDepart");
+            LigneImportCovoiturageDto ligne = new LigneImportCovoiturageDto(
+                    champ(champs, colonnes, "emailConducteur"),
+                    heure == null ? null : LocalDateTime.parse(heure),
+                    entier(champs, colonnes, "dureeTrajet"),
+                    entier(champs, colonnes, "distance"),
+                    AdresseDto.of(null, entier(champs, colonnes, "numeroDepart"), champ(champs, colonnes, "libelleDepart"),
+                            champ(champs, colonnes, "codePostalDepart"), champ(champs, colonnes, "villeDepart")),
+                    AdresseDto.of(null, entier(champs, colonnes, "numeroArrivee"), champ(champs, colonnes, "libelleArrivee"),
+                            champ(champs, colonnes, "codePostalArrivee"), champ(champs, colonnes, "villeArrivee")),
+                    champ(champs, colonnes, "vehiculeServiceId") == null ? null : Long.valueOf(champ(champs, colonnes, "vehiculeServiceId")));
+            return new LigneLue(numero, ligne, null);
+        } catch (DateTimeParseException e) {
+            return new LigneLue(numero, null, "Heure de départ invalide (format attendu : 2026-11-03T08:00)");
+        } catch (NumberFormatException e) {
+            return new LigneLue(numero, null, "Valeur numérique invalide : " + e.getMessage());
+        }
+    }
+
+    private static String champ(List<String> champs, Map<String, Integer> colonnes, String colonne) {
+        Integer index = colonnes.get(colonne);
+        if (index == null || index >= champs.size()) {
+            return null;
+        }
+        String valeur = champs.get(index).trim();
+        return valeur.isEmpty() ? null : valeur;
+    }
+
+    private static Integer entier(List<String> champs, Map<String, Integer> colonnes, String colonne) {
+        String valeur = champ(champs, colonnes, colonne);
+        return valeur == null ? null : Integer.valueOf(valeur);
+    }
+
+    /**
+     * Découpe une ligne CSV (séparateur point-virgule, champs éventuellement entre guillemets doublés)
+     */
+    static List<String> decouper(String ligne) {
+        List<String> champs = new ArrayList<>();
+        StringBuilder champ = new StringBuilder();
+        boolean entreGuillemets = false;
+        for (int i = 0; i < ligne.length(); i++) {
+            char c = ligne.charAt(i);
+            if (entreGuillemets) {
+                if (c == '"' && i + 1 < ligne.length() && ligne.charAt(i + 1) == '"') {
+                    champ.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreGuillemets = false;
+                } else {
+                    champ.append(c);
+                }
+            } else if (c == '"') {
+                entreGuillemets = true;
+            } else if (c == SEPARATEUR) {
+                champs.add(champ.toString());
+                champ.setLength(0);
+            } else {
+                champ.append(c);
+            }
+        }
+        champs.add(champ.toString());
+        return champs;
+    }
+
+    private static String cleAdresse(AdresseDto adresse) {
+        return cleAdresse(adresse.numero(), adresse.libelle(), adresse.codePostal(), adresse.ville());
+    }
+
+    private static String cleAdresse(Integer numero, String libelle, String codePostal, String ville) {
+        return numero + "|" + normaliser(libelle) + "|" + normaliser(codePostal) + "|" + normaliser(ville);
+    }
+
+    private static String normaliser(String valeur) {
+        return valeur == null ? "" : valeur.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Adresse nouvelleAdresse(AdresseDto adresse) {
+        return new Adresse(adresse.numero(), adresse.libelle().trim(), adresse.codePostal().trim(), adresse.ville().trim());
+    }
+
+    /**
+     * Ligne lue avec son numéro (fichier CSV ou position JSON) et son éventuelle erreur de lecture
+     */
+    private record LigneLue(int numero, LigneImportCovoiturageDto ligne, String erreur) {
+    }
+}
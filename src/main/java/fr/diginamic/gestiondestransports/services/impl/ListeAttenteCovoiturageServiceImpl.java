@@ -0,0 +1,229 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import fr.diginamic.gestiondestransports.cache.IndexListeAttente;
+import fr.diginamic.gestiondestransports.dto.ListeAttenteDto;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.CovoituragePassagers;
+import fr.diginamic.gestiondestransports.entites.ListeAttenteCovoiturage;
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.CovoituragePassagersRepository;
+import fr.diginamic.gestiondestransports.repositories.ListeAttenteCovoiturageRepository;
+import fr.diginamic.gestiondestransports.services.ListeAttenteCovoiturageService;
+import fr.diginamic.gestiondestransports.services.NotificationEmailService;
+import fr.diginamic.gestiondestransports.services.UtilisateurService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Service des listes d'attente des covoiturages complets (premier inscrit, premier servi).
+ *
+ * Les inscriptions sont enregistrées en base et indexées en mémoire (IndexListeAttente) :
+ * une annulation sur une annonce sans liste d'attente ne coûte aucune requête supplémentaire.
+ * L'inscription verrouille la ligne de l'annonce, comme les UPDATE de compteur des réservations
+ * et annulations : une place ne peut pas se libérer entre la vérification « complet » et l'inscription.
+ * La promotion a lieu dans la transaction qui libère la place ; le passager promu est prévenu
+ * par email via la boîte d'envoi, après validation.
+ */
+@Service
+@Transactional
+public class ListeAttenteCovoiturageServiceImpl implements ListeAttenteCovoiturageService {
+
+    private static final Logger log = LogManager.getLogger(ListeAttenteCovoiturageServiceImpl.class);
+
+    private final ListeAttenteCovoiturageRepository listeAttenteRepository;
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    private final CovoituragePassagersRepository covoituragePassagersRepository;
+    private final UtilisateurService utilisateurService;
+    private final NotificationEmailService notificationEmailService;
+    private final IndexListeAttente index;
+    private final ApplicationEventPublisher evenements;
+
+    public ListeAttenteCovoiturageServiceImpl(ListeAttenteCovoiturageRepository listeAttenteRepository,
+                                              AnnonceCovoiturageRepository annonceCovoiturageRepository,
+                                              CovoituragePassagersRepository covoituragePassagersRepository,
+                                              UtilisateurService utilisateurService,
+                                              NotificationEmailService notificationEmailService,
+                                              IndexListeAttente index,
+                                              ApplicationEventPublisher evenements) {
+        this.listeAttenteRepository = listeAttenteRepository;
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+        this.covoituragePassagersRepository = covoituragePassagersRepository;
+        this.utilisateurService = utilisateurService;
+        this.notificationEmailService = notificationEmailService;
+        this.index = index;
+        this.evenements = evenements;
+    }
+
+    /**
+     * Inscrit un utilisateur sur la liste d'attente d'un covoiturage complet
+     * @param idAnnonce l'ID de l'annonce
+     * @param idUtilisateur l'ID de l'utilisateur
+     * @return l'inscription avec sa position dans la liste
+     * @throws IllegalArgumentException si l'annonce n'existe pas, est partie ou n'est pas complète,
+     *                                  si l'utilisateur en est le responsable, y a déjà une place ou est déjà inscrit
+     */
+    @Override
+    public ListeAttenteDto inscrire(Long idAnnonce, Long idUtilisateur) {
+        AnnonceCovoiturage annonce = annonceCovoiturageRepository.findPourMiseAJour(idAnnonce)
+                .orElseThrow(() -> new IllegalArgumentException("Annonce de covoiturage introuvable avec l'ID: " + idAnnonce));
+        Utilisateur utilisateur = utilisateurService.obtenirUtilisateurParId(idUtilisateur);
+
+        if (annonce.getResponsable().getId().equals(idUtilisateur)) {
+            throw new IllegalArgumentException("Vous ne pouvez pas vous inscrire sur la liste d'attente de votre propre covoiturage");
+        }
+        if (!annonce.getHeureDepart().isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Ce covoiturage est déjà parti");
+        }
+        if (covoituragePassagersRepository.existsByUtilisateurIdAndAnnonceCovoiturageId(idUtilisateur, idAnnonce)) {
+            throw new IllegalArgumentException("Vous avez déjà une place dans ce covoiturage");
+        }
+        // Compteurs lus sous verrou : aucune place ne peut se libérer avant la fin de l'inscription
+        if (annonce.getPlacesTotales() == null || annonce.getPlacesOccupees() == null
+                || annonce.getPlacesOccupees() < annonce.getPlacesTotales() - 1) {
+            throw new IllegalArgumentException("Il reste des places dans ce covoiturage : réservez directement");
+        }
+
+        // Ajout à l'index avant l'enregistrement, défait si la transaction est annulée
+        if (!index.ajouter(idAnnonce, idUtilisateur)) {
+            throw new IllegalArgumentException("Vous êtes déjà sur la liste d'attente de ce covoiturage");
+        }
+        ListeAttenteCovoiturage inscription;
+        try {
+            inscription = listeAttenteRepository.saveAndFlush(new ListeAttenteCovoiturage(utilisateur, annonce));
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("Vous êtes déjà sur la liste d'attente de ce covoiturage");
+        }
+        return versDto(inscription);
+    }
+
+    /**
+     * Retire un utilisateur de la liste d'attente d'une annonce
+     * @param idAnnonce l'ID de l'annonce
+     * @param idUtilisateur l'ID de l'utilisateur
+     * @throws IllegalArgumentException si l'utilisateur n'est pas inscrit
+     */
+    @Override
+    public void desinscrire(Long idAnnonce, Long idUtilisateur) {
+        if (listeAttenteRepository.supprimerInscription(idUtilisateur, idAnnonce) == 0) {
+            throw new IllegalArgumentException("Vous n'êtes pas sur la liste d'attente de ce covoiturage");
+        }
+        index.retirer(idAnnonce, idUtilisateur);
+    }
+
+    /**
+     * Listes d'attente sur lesquelles un utilisateur est inscrit, avec sa position dans chacune
+     * @param idUtilisateur l'ID de l'utilisateur
+     * @return les inscriptions par heure de départ
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<ListeAttenteDto> obtenirListesAttenteUtilisateur(Long idUtilisateur) {
+        return listeAttenteRepository.findParUtilisateur(idUtilisateur).stream()
+                .map(this::versDto)
+                .toList();
+    }
+
+    /**
+     * Attribue les places libres d'une annonce aux premiers inscrits de sa liste d'attente.
+     * Appelée dans la transaction qui a libéré la place : la promotion est validée ou annulée avec elle.
+     * Les inscrits qui ne peuvent plus voyager (compte banni ou supprimé) ou déjà passagers sont retirés de la liste.
+     * @param idAnnonce l'ID de l'annonce
+     * @return le nombre de passagers promus
+     */
+    @Override
+    public int promouvoir(Long idAnnonce) {
+        // Cas courant : aucune liste d'attente, aucune requête
+        if (!index.aDesInscrits(idAnnonce)) {
+            return 0;
+        }
+        int promus = 0;
+        while (true) {
+            List<ListeAttenteCovoiturage> premiers = listeAttenteRepository.findPremiersPourPromotion(idAnnonce, PageRequest.of(0, 1));
+            if (premiers.isEmpty()) {
+                return promus;
+            }
+            ListeAttenteCovoiturage inscription = premiers.get(0);
+            Utilisateur utilisateur = inscription.getUtilisateur();
+            boolean admissible = !Boolean.TRUE.equals(utilisateur.getEstBanni())
+                    && !Boolean.TRUE.equals(utilisateur.getEstSupprime())
+                    && !covoituragePassagersRepository.existsByUtilisateurIdAndAnnonceCovoiturageId(utilisateur.getId(), idAnnonce);
+            if (admissible && annonceCovoiturageRepository.occuperPlace(idAnnonce) == 0) {
+                return promus;
+            }
+            listeAttenteRepository.delete(inscription);
+            index.retirer(idAnnonce, utilisateur.getId());
+            if (!admissible) {
+                continue;
+            }
+            covoituragePassagersRepository.save(new CovoituragePassagers(utilisateur, inscription.getAnnonceCovoiturage()));
+            notifierPromotion(utilisateur, inscription.getAnnonceCovoiturage());
+            evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.RESERVATION));
+            log.info("Passager {} promu depuis la liste d'attente de l'annonce {}", utilisateur.getId(), idAnnonce);
+            promus++;
+        }
+    }
+
+    /**
+     * Retire un utilisateur de la liste d'attente après une réservation directe, s'il y était inscrit
+     * @param idAnnonce l'ID de l'annonce
+     * @param idUtilisateur l'ID de l'utilisateur
+     */
+    @Override
+    public void retirerDeLaListe(Long idAnnonce, Long idUtilisateur) {
+        if (index.position(idAnnonce, idUtilisateur) > 0) {
+            listeAttenteRepository.supprimerInscription(idUtilisateur, idAnnonce);
+            index.retirer(idAnnonce, idUtilisateur);
+        }
+    }
+
+    /**
+     * Supprime les listes d'attente d'annonces supprimées ou archivées
+     * @param idsAnnonces les identifiants des annonces
+     */
+    @Override
+    public void supprimerListes(Collection<Long> idsAnnonces) {
+        List<Long> avecListe = idsAnnonces.stream().filter(index::aDesInscrits).toList();
+        if (avecListe.isEmpty()) {
+            return;
+        }
+        listeAttenteRepository.supprimerParAnnonces(avecListe);
+        avecListe.forEach(index::retirerAnnonce);
+    }
+
+    /**
+     * Prévient le passager promu ; l'email est envoyé après validation de la transaction
+     */
+    private void notifierPromotion(Utilisateur passager, AnnonceCovoiturage annonce) {
+        String infoTrajet = annonce.getAdresseDepart().getVille() + " → " + annonce.getAdresseArrivee().getVille() +
+                " le " + annonce.getHeureDepart().format(DateTimeFormatter.ofPattern("dd/MM/yyyy à HH:mm"));
+        notificationEmailService.planifier(
+                passager.getEmail(),
+                "Une place s'est libérée dans le covoiturage " + infoTrajet + " : elle vous a été attribuée. " +
+                        "Si vous ne souhaitez plus voyager, pensez à annuler votre réservation pour libérer la place.",
+                "Hello " + passager.getPrenom() + " " + passager.getNom() + ", vous avez obtenu une place",
+                "Place obtenue dans votre covoiturage"
+        );
+    }
+
+    private ListeAttenteDto versDto(ListeAttenteCovoiturage inscription) {
+        AnnonceCovoiturage annonce = inscription.getAnnonceCovoiturage();
+        return new ListeAttenteDto(annonce.getId(), annonce.getHeureDepart(),
+                annonce.getAdresseDepart().getVille(), annonce.getAdresseArrivee().getVille(),
+                inscription.getDateInscription(),
+                index.position(annonce.getId(), inscription.getUtilisateur().getId()),
+                index.taille(annonce.getId()));
+    }
+}
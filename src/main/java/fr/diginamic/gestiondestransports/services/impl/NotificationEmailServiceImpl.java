@@ -0,0 +1,126 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import fr.diginamic.gestiondestransports.entites.NotificationEmail;
+import fr.diginamic.gestiondestransports.enums.StatutNotification;
+import fr.diginamic.gestiondestransports.repositories.NotificationEmailRepository;
+import fr.diginamic.gestiondestransports.services.NotificationEmailService;
+import fr.diginamic.gestiondestransports.tools.EmailSender;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Service de la boîte d'envoi transactionnelle des emails.
+ *
+ * planifier n'écrit qu'une ligne dans la table notification_email, dans la transaction de l'appelant :
+ * aucun appel réseau n'a lieu pendant l'opération métier, et l'email n'est jamais envoyé si celle-ci est annulée.
+ * Le répartiteur planifié envoie ensuite les notifications dues, hors transaction : chaque résultat est
+ * enregistré séparément. Un échec est réessayé avec un délai doublé à chaque tentative (1 min, 2 min, 4 min...,
+ * au plus 6 h), puis la notification est abandonnée après MAX_TENTATIVES essais.
+ * Une notification peut être envoyée deux fois si l'application s'arrête entre l'envoi et l'enregistrement
+ * du résultat (livraison « au moins une fois »). Le répartiteur suppose une seule instance de l'application.
+ */
+@Service
+public class NotificationEmailServiceImpl implements NotificationEmailService {
+
+    private static final Logger log = LogManager.getLogger(NotificationEmailServiceImpl.class);
+    private static final int TAILLE_LOT = 50;
+    private static final int MAX_TENTATIVES = 8;
+    private static final Duration DELAI_INITIAL = Duration.ofMinutes(1);
+    private static final Duration DELAI_MAX = Duration.ofHours(6);
+    private static final int CONSERVATION_JOURS = 30;
+
+    private final NotificationEmailRepository notificationEmailRepository;
+    private final EmailSender emailSender;
+
+    public NotificationEmailServiceImpl(NotificationEmailRepository notificationEmailRepository, EmailSender emailSender) {
+        this.notificationEmailRepository = notificationEmailRepository;
+        this.emailSender = emailSender;
+    }
+
+    /**
+     * Enregistre un email à envoyer ; doit être appelé dans la transaction de l'opération métier
+     * @param destinataire l'adresse email du destinataire
+     * @param message le texte personnalisé de l'email
+     * @param titre le titre personnalisé de l'email
+     * @param sujet le sujet de l'email
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void planifier(String destinataire, String message, String titre, String sujet) {
+        notificationEmailRepository.save(new NotificationEmail(destinataire, sujet, titre, message, LocalDateTime.now()));
+    }
+
+    /**
+     * Envoie les notifications dont l'envoi est dû, par lots, et enregistre le résultat de chacune
+     * @return le nombre d'emails envoyés
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${covoit.notifications.intervalle-ms:5000}")
+    public int envoyerNotificationsEnAttente() {
+        int envoyees = 0;
+        List<NotificationEmail> lot;
+        do {
+            lot = notificationEmailRepository.findAEnvoyer(StatutNotification.EN_ATTENTE, LocalDateTime.now(),
+                    PageRequest.of(0, TAILLE_LOT));
+            for (NotificationEmail notification : lot) {
+                if (envoyer(notification)) {
+                    envoyees++;
+                }
+            }
+            // Les notifications en échec sont reprogrammées plus tard : elles ne reviennent pas dans le lot suivant
+        } while (lot.size() == TAILLE_LOT);
+        return envoyees;
+    }
+
+    /**
+     * Supprime chaque nuit les notifications envoyées depuis plus de CONSERVATION_JOURS jours
+     * @return le nombre de notifications supprimées
+     */
+    @Override
+    @Transactional
+    @Scheduled(cron = "${covoit.notifications.purge-cron:0 30 3 * * *}")
+    public int purgerNotificationsEnvoyees() {
+        return notificationEmailRepository.supprimerEnvoyeesAvant(StatutNotification.ENVOYEE,
+                LocalDateTime.now().minusDays(CONSERVATION_JOURS));
+    }
+
+    private boolean envoyer(NotificationEmail notification) {
+        boolean envoyee;
+        try {
+            emailSender.envoyer(notification.getDestinataire(), notification.getMessage(),
+                    notification.getTitre(), notification.getSujet());
+            notification.marquerEnvoyee(LocalDateTime.now());
+            envoyee = true;
+        } catch (Exception e) {
+            int tentative = notification.getTentatives() + 1;
+            LocalDateTime prochaineTentative = tentative >= MAX_TENTATIVES ? null : LocalDateTime.now().plus(delaiAvant(tentative));
+            notification.enregistrerEchec(e.getMessage(), prochaineTentative);
+            if (prochaineTentative == null) {
+                log.error("Email {} abandonné après {} tentatives : {}", notification.getId(), tentative, e.getMessage());
+            } else {
+                log.warn("Échec de l'envoi de l'email {} (tentative {}), nouvel essai à {} : {}",
+                        notification.getId(), tentative, prochaineTentative, e.getMessage());
+            }
+            envoyee = false;
+        }
+        notificationEmailRepository.save(notification);
+        return envoyee;
+    }
+
+    /**
+     * Délai avant la tentative suivant la tentative numéro {@code tentative} : doublé à chaque échec, plafonné
+     */
+    private static Duration delaiAvant(int tentative) {
+        Duration delai = DELAI_INITIAL.multipliedBy(1L << Math.min(tentative - 1, 20));
+        return delai.compareTo(DELAI_MAX) > 0 ? DELAI_MAX : delai;
+    }
+}
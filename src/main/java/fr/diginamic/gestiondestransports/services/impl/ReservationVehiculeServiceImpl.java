@@ -1,48 +1,97 @@
 package fr.diginamic.gestiondestransports.services.impl;
 
+import fr.diginamic.gestiondestransports.dto.ConflitOccurrenceDto;
+import fr.diginamic.gestiondestransports.dto.CreneauOccupeDto;
+import fr.diginamic.gestiondestransports.dto.PeriodeReservationDto;
+import fr.diginamic.gestiondestransports.dto.PlanningVehiculeDto;
+import fr.diginamic.gestiondestransports.dto.RapportReservationRecurrenteDto;
 import fr.diginamic.gestiondestransports.dto.ReservationVehiculeDTO;
+import fr.diginamic.gestiondestransports.dto.ReservationVehiculeRecurrenteDto;
+import fr.diginamic.gestiondestransports.dto.UsageVehiculeDto;
 import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
 import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
 import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.evenements.ReservationVehiculeEvenement;
 import fr.diginamic.gestiondestransports.mapper.ReservationVehiculeMapper;
 import fr.diginamic.gestiondestransports.entites.ReservationVehicule;
 import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.PlanningFlotteJdbcRepository;
+import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeJdbcRepository;
 import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
+import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
 import fr.diginamic.gestiondestransports.services.ReservationVehiculeService;
 import fr.diginamic.gestiondestransports.shared.BadRequestException;
 import fr.diginamic.gestiondestransports.shared.NotFoundException;
+import fr.diginamic.gestiondestransports.tools.IntervallesOccupation;
 import jakarta.transaction.Transactional;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 /**
  * Implémentation du service de gestion des réservations de véhicules d'entreprise.
  * Gère la logique métier complète : création, modification, suppression, consultation des réservations.
  * Applique les règles de validation : disponibilité des véhicules, chevauchement de périodes, statut du véhicule.
  * Vérifie les conflits avec les annonces de covoiturage lors de la suppression.
  * Un utilisateur ne peut avoir qu'une seule réservation active à la fois (pas de chevauchement).
+ * Les créations et modifications verrouillent la ligne du véhicule, puis celle de l'utilisateur, avant de vérifier
+ * les chevauchements : deux requêtes simultanées sur le même véhicule ne peuvent pas le réserver deux fois,
+ * tandis que les réservations de véhicules différents restent parallèles.
+ * Fournit le planning d'occupation de toute la flotte sur une période.
+ * Les réservations récurrentes sont vérifiées en une seule requête et insérées en un seul lot JDBC.
+ * Chaque création, modification ou suppression publie un événement qui tient à jour l'index en mémoire
+ * des occupations de la flotte.
  * Conforme aux règles métier du cahier des charges concernant les réservations de véhicules de service.
  */
 @Service
 @Transactional
 public class ReservationVehiculeServiceImpl implements ReservationVehiculeService {
 
+    /** Seul le premier conflit est affiché : inutile de lire les suivants */
+    private static final Pageable PREMIER_CONFLIT = PageRequest.of(0, 1);
+
+    /** Période maximale du planning de la flotte, pour borner la taille de la réponse */
+    private static final int DUREE_MAX_PLANNING_JOURS = 93;
+
+    /** Période maximale d'une réservation récurrente, comme pour les trajets récurrents */
+    private static final int DUREE_MAX_RECURRENCE_MOIS = 12;
+
     private final ReservationVehiculeRepository repo;
     private final VehiculeEntrepriseRepository vehiculeEntrepriseRepo;
     private final AnnonceCovoiturageRepository annonceCovoiturageRepo;
     private final ReservationVehiculeMapper reservationMapper;
+    private final PlanningFlotteJdbcRepository planningRepo;
+    private final UtilisateurRepository utilisateurRepo;
+    private final ReservationVehiculeJdbcRepository reservationJdbcRepo;
+    private final ApplicationEventPublisher evenements;
 
     public ReservationVehiculeServiceImpl(ReservationVehiculeRepository repo,
                                           VehiculeEntrepriseRepository vehiculeEntrepriseRepo,
                                           AnnonceCovoiturageRepository annonceCovoiturageRepo,
-                                          ReservationVehiculeMapper reservationMapper) {
+                                          ReservationVehiculeMapper reservationMapper,
+                                          PlanningFlotteJdbcRepository planningRepo,
+                                          UtilisateurRepository utilisateurRepo,
+                                          ReservationVehiculeJdbcRepository reservationJdbcRepo,
+                                          ApplicationEventPublisher evenements) {
         this.repo = repo;
         this.vehiculeEntrepriseRepo = vehiculeEntrepriseRepo;
         this.annonceCovoiturageRepo = annonceCovoiturageRepo;
         this.reservationMapper = reservationMapper;
+        this.planningRepo = planningRepo;
+        this.utilisateurRepo = utilisateurRepo;
+        this.reservationJdbcRepo = reservationJdbcRepo;
+        this.evenements = evenements;
     }
     /**
      * Récupère toutes les réservations de véhicules existantes.
@@ -104,8 +153,91 @@ public class ReservationVehiculeServiceImpl implements ReservationVehiculeServic
         entity.setVehiculeEntreprise(vehiculeEntrepriseRepo.getReferenceById(dto.vehiculeId()));
 
         ReservationVehicule saved = repo.save(entity);
+        evenements.publishEvent(new ReservationVehiculeEvenement(List.of(saved.getId())));
         return reservationMapper.toDto(saved);
     }
+    /**
+     * Crée les réservations d'un véhicule d'entreprise pour chaque occurrence d'une récurrence
+     * (jours de la semaine choisis, entre deux dates, à heure fixe).
+     * Les occurrences déjà commencées sont ignorées. Le véhicule puis l'utilisateur sont verrouillés comme pour une création,
+     * puis une seule requête lit les réservations du véhicule et de l'utilisateur entre la première et la dernière occurrence :
+     * fusionnées en mémoire, elles permettent de vérifier chaque occurrence par recherche dichotomique.
+     * Les occurrences libres sont insérées en un seul lot JDBC ; les autres sont renvoyées avec le motif du conflit.
+     * Si toutOuRien est demandé, aucune occurrence n'est réservée dès qu'une seule est en conflit.
+     *
+     * @param user l'utilisateur effectuant la réservation
+     * @param dto la récurrence (véhicule, jours, période, heure de début, durée)
+     * @return le rapport : réservations créées et occurrences en conflit
+     * @throws BadRequestException si la récurrence est invalide, sans occurrence à venir, ou si le véhicule n'est pas en service
+     * @throws NotFoundException si le véhicule n'existe pas
+     */
+    @Override
+    public RapportReservationRecurrenteDto createRecurrentes(Utilisateur user, ReservationVehiculeRecurrenteDto dto) {
+        if (dto.dateFin().isBefore(dto.dateDebut())) {
+            throw new BadRequestException("La date de fin doit être postérieure à la date de début.");
+        }
+        if (dto.dateFin().isAfter(dto.dateDebut().plusMonths(DUREE_MAX_RECURRENCE_MOIS))) {
+            throw new BadRequestException("Une réservation récurrente ne peut pas dépasser " + DUREE_MAX_RECURRENCE_MOIS + " mois.");
+        }
+
+        // Occurrences à venir, par date de début
+        LocalDateTime now = LocalDateTime.now();
+        List<PeriodeReservationDto> occurrences = new ArrayList<>();
+        for (LocalDate date = dto.dateDebut(); !date.isAfter(dto.dateFin()); date = date.plusDays(1)) {
+            LocalDateTime debut = date.atTime(dto.heureDebut());
+            if (dto.joursSemaine().contains(date.getDayOfWeek()) && debut.isAfter(now)) {
+                occurrences.add(new PeriodeReservationDto(debut, debut.plusMinutes(dto.dureeMinutes())));
+            }
+        }
+        if (occurrences.isEmpty()) {
+            throw new BadRequestException("Aucune occurrence à venir sur cette période pour les jours choisis.");
+        }
+
+        // Mêmes verrous, dans le même ordre, que pour une création : véhicule puis utilisateur
+        verrouillerVehiculeEnService(dto.vehiculeId());
+        utilisateurRepo.findPourMiseAJour(user.getId());
+
+        // Une seule requête pour toute la récurrence, puis fusion en mémoire
+        List<UsageVehiculeDto> existantes = repo.findReservationsVehiculeOuUtilisateur(dto.vehiculeId(), user.getId(),
+                occurrences.get(0).dateDebut(), occurrences.get(occurrences.size() - 1).dateFin());
+        IntervallesOccupation occupationsVehicule = IntervallesOccupation.de(existantes.stream()
+                .filter(r -> dto.vehiculeId().equals(r.vehiculeId())).toList());
+        IntervallesOccupation occupationsUtilisateur = IntervallesOccupation.de(existantes.stream()
+                .filter(r -> !dto.vehiculeId().equals(r.vehiculeId())).toList());
+
+        List<PeriodeReservationDto> libres = new ArrayList<>();
+        List<ConflitOccurrenceDto> conflits = new ArrayList<>();
+        for (PeriodeReservationDto occurrence : occurrences) {
+            CreneauOccupeDto creneau = occupationsVehicule.creneauChevauchant(occurrence.dateDebut(), occurrence.dateFin());
+            if (creneau != null) {
+                conflits.add(new ConflitOccurrenceDto(occurrence.dateDebut(), occurrence.dateFin(),
+                        "Le véhicule n'est pas disponible : déjà réservé du " + creneau.debut() + " au " + creneau.fin()));
+                continue;
+            }
+            creneau = occupationsUtilisateur.creneauChevauchant(occurrence.dateDebut(), occurrence.dateFin());
+            if (creneau != null) {
+                conflits.add(new ConflitOccurrenceDto(occurrence.dateDebut(), occurrence.dateFin(),
+                        "Vous avez déjà une réservation de véhicule du " + creneau.debut() + " au " + creneau.fin()));
+                continue;
+            }
+            libres.add(occurrence);
+        }
+
+        if (Boolean.TRUE.equals(dto.toutOuRien()) && !conflits.isEmpty()) {
+            libres = List.of();
+        }
+        List<Long> ids = reservationJdbcRepo.insererReservations(user.getId(), dto.vehiculeId(), libres);
+        if (!ids.isEmpty()) {
+            evenements.publishEvent(new ReservationVehiculeEvenement(ids));
+        }
+        List<ReservationVehiculeDTO> reservations = new ArrayList<>(libres.size());
+        for (int i = 0; i < libres.size(); i++) {
+            reservations.add(new ReservationVehiculeDTO(ids.get(i), user.getId(), dto.vehiculeId(),
+                    libres.get(i).dateDebut(), libres.get(i).dateFin()));
+        }
+        return new RapportReservationRecurrenteDto(occurrences.size(), reservations.size(), conflits.size(),
+                reservations, conflits);
+    }
     /**
      * Modifie une réservation existante.
      * Supporte la mise à jour partielle (seuls les champs fournis sont modifiés).
@@ -146,6 +278,7 @@ public class ReservationVehiculeServiceImpl implements ReservationVehiculeServic
         if (dto.vehiculeId() != null) {
             entity.setVehiculeEntreprise(vehiculeEntrepriseRepo.getReferenceById(dto.vehiculeId()));
         }
+        evenements.publishEvent(new ReservationVehiculeEvenement(List.of(id)));
 
         return reservationMapper.toDto(entity);
     }
@@ -192,6 +325,67 @@ public class ReservationVehiculeServiceImpl implements ReservationVehiculeServic
         return reservationMapper.toDto(entity);
     }
 
+    /**
+     * Construit le planning d'occupation de tous les véhicules d'entreprise sur une période.
+     * Réservations et trajets de covoiturage sont lus en une seule requête bornée par la période,
+     * puis triés par véhicule et par début et fusionnés en un seul balayage :
+     * deux occupations qui se chevauchent ou se touchent forment un seul créneau occupé.
+     * Les créneaux sont tronqués aux bornes de la période ; les véhicules libres ont une liste vide.
+     *
+     * @param dateDebut début de la période du planning
+     * @param dateFin fin de la période du planning
+     * @return une ligne par véhicule d'entreprise, par identifiant
+     * @throws BadRequestException si la période est absente, incohérente ou dépasse la durée maximale
+     */
+    @Override
+    public List<PlanningVehiculeDto> planningFlotte(LocalDateTime dateDebut, LocalDateTime dateFin) {
+        if (dateDebut == null || dateFin == null) {
+            throw new BadRequestException("La dateDebut et la dateFin sont obligatoires.");
+        }
+        if (!dateDebut.isBefore(dateFin)) {
+            throw new BadRequestException("dateDebut doit être strictement antérieure à dateFin.");
+        }
+        if (dateFin.isAfter(dateDebut.plusDays(DUREE_MAX_PLANNING_JOURS))) {
+            throw new BadRequestException("Le planning ne peut pas dépasser " + DUREE_MAX_PLANNING_JOURS + " jours.");
+        }
+
+        List<UsageVehiculeDto> usages = new ArrayList<>(planningRepo.findUsages(dateDebut, dateFin));
+        usages.sort(Comparator.comparing(UsageVehiculeDto::vehiculeId).thenComparing(UsageVehiculeDto::debut));
+
+        // Balayage : le créneau courant s'étend tant que l'occupation suivante du même véhicule commence avant sa fin
+        Map<Long, List<CreneauOccupeDto>> creneauxParVehicule = new HashMap<>();
+        Long vehiculeCourant = null;
+        LocalDateTime debutCourant = null;
+        LocalDateTime finCourante = null;
+        for (UsageVehiculeDto usage : usages) {
+            LocalDateTime debut = usage.debut().isBefore(dateDebut) ? dateDebut : usage.debut();
+            LocalDateTime fin = usage.fin().isAfter(dateFin) ? dateFin : usage.fin();
+            if (usage.vehiculeId().equals(vehiculeCourant) && !debut.isAfter(finCourante)) {
+                if (fin.isAfter(finCourante)) {
+                    finCourante = fin;
+                }
+                continue;
+            }
+            if (vehiculeCourant != null) {
+                creneauxParVehicule.computeIfAbsent(vehiculeCourant, id -> new ArrayList<>())
+                        .add(new CreneauOccupeDto(debutCourant, finCourante));
+            }
+            vehiculeCourant = usage.vehiculeId();
+            debutCourant = debut;
+            finCourante = fin;
+        }
+        if (vehiculeCourant != null) {
+            creneauxParVehicule.computeIfAbsent(vehiculeCourant, id -> new ArrayList<>())
+                    .add(new CreneauOccupeDto(debutCourant, finCourante));
+        }
+
+        return vehiculeEntrepriseRepo.findAll(Sort.by("id")).stream()
+                .map(vehicule -> new PlanningVehiculeDto(vehicule.getId(), vehicule.getImmatriculation(),
+                        vehicule.getMarque(), vehicule.getModele(), vehicule.getStatut(),
+                        creneauxParVehicule.getOrDefault(vehicule.getId(), List.of())))
+                .toList();
+    }
+
     /**
      * Supprime une réservation de véhicule.
      * Vérifie que l'utilisateur est le propriétaire.
@@ -271,6 +465,7 @@ public class ReservationVehiculeServiceImpl implements ReservationVehiculeServic
 
         // Si toutes les validations passent, on supprime la réservation
         repo.deleteById(id);
+        evenements.publishEvent(new ReservationVehiculeEvenement(List.of(id)));
     }
     /**
      * Récupère toutes les réservations d'un utilisateur spécifique.
@@ -322,32 +517,32 @@ public class ReservationVehiculeServiceImpl implements ReservationVehiculeServic
             throw new BadRequestException("dateDebut doit être strictement antérieure à dateFin.");
         }
 
-        VehiculeEntreprise vehicule = vehiculeEntrepriseRepo.findById(vehiculeId)
+        verrouillerVehiculeEnService(vehiculeId);
+
+        // Verification que le vehicule est disponible pour ces dates : seul le premier conflit est lu
+        // (deux périodes se chevauchent si chacune commence avant la fin de l'autre)
+        List<PeriodeReservationDto> conflits = repo.findConflitsVehicule(vehiculeId, debut, fin, reservationIdAExclure, PREMIER_CONFLIT);
+        if (!conflits.isEmpty()) {
+            PeriodeReservationDto conflit = conflits.get(0);
+            throw new BadRequestException("Le véhicule n'est pas disponible pour ces dates. " +
+                    "Conflit avec une réservation existante du " + conflit.dateDebut() + " au " + conflit.dateFin());
+        }
+    }
+    /**
+     * Verrouille un véhicule jusqu'à la fin de la transaction et vérifie qu'il est en service.
+     * Aucune autre réservation de ce véhicule ne peut être validée entre la vérification des chevauchements et l'insertion.
+     *
+     * @param vehiculeId l'identifiant du véhicule à réserver
+     * @throws NotFoundException si le véhicule n'existe pas
+     * @throws BadRequestException si le véhicule n'est pas en service
+     */
+    private void verrouillerVehiculeEnService(Long vehiculeId) {
+        VehiculeEntreprise vehicule = vehiculeEntrepriseRepo.findPourMiseAJour(vehiculeId)
                 .orElseThrow(() -> new NotFoundException("Véhicule introuvable: " + vehiculeId));
 
         if (vehicule.getStatut() != StatutVehicule.EN_SERVICE) {
             throw new BadRequestException("Le véhicule n'est pas en service. Statut actuel: " + vehicule.getStatut());
         }
-
-
-        List<ReservationVehicule> reservationsExistantes = repo.findByVehiculeEntrepriseId(vehiculeId);
-        // Verification que le vehicule est disponible pour ces dates
-        for (ReservationVehicule reservationExistante : reservationsExistantes) {
-            LocalDateTime debutExistant = reservationExistante.getDateDebut();
-            LocalDateTime finExistante = reservationExistante.getDateFin();
-
-            if (reservationExistante.getId().equals(reservationIdAExclure)) {
-                continue;
-            }
-
-            // Vérification de chevauchement : deux périodes se chevauchent si :
-            // - la nouvelle période commence avant la fin de l'existante ET
-            // - la nouvelle période finit après le début de l'existante
-            if (debut.isBefore(finExistante) && fin.isAfter(debutExistant)) {
-                throw new BadRequestException("Le véhicule n'est pas disponible pour ces dates. " +
-                        "Conflit avec une réservation existante du " + debutExistant + " au " + finExistante);
-            }
-        }
     }
     /**
      * Valide qu'un utilisateur n'a pas de chevauchement avec ses propres réservations.
@@ -361,22 +556,16 @@ public class ReservationVehiculeServiceImpl implements ReservationVehiculeServic
      * @throws BadRequestException si un chevauchement est détecté avec une autre réservation de l'utilisateur
      */
     private void validateUser(LocalDateTime debut, LocalDateTime fin, Long userId, Long reservationIdAExclure) {
-        // Vérification que l'utilisateur n'a pas d'autre réservation en même temps
-        List<ReservationVehicule> reservationsUtilisateur = repo.findByUtilisateurId(userId);
-        for (ReservationVehicule reservationUtilisateur : reservationsUtilisateur) {
-            // Exclure la réservation courante si c'est une mise à jour
-            if (reservationIdAExclure != null && reservationUtilisateur.getId().equals(reservationIdAExclure)) {
-                continue;
-            }
-
-            LocalDateTime debutUtilisateur = reservationUtilisateur.getDateDebut();
-            LocalDateTime finUtilisateur = reservationUtilisateur.getDateFin();
-
-            // Vérification de chevauchement avec les autres réservations de l'utilisateur
-            if (debut.isBefore(finUtilisateur) && fin.isAfter(debutUtilisateur)) {
-                throw new BadRequestException("Vous avez déjà une réservation de véhicule pour cette période. " +
-                        "Conflit avec votre réservation du " + debutUtilisateur + " au " + finUtilisateur);
-            }
+        // Verrou de l'utilisateur, pris après celui du véhicule : ses réservations simultanées sur des véhicules
+        // différents sont vérifiées l'une après l'autre
+        utilisateurRepo.findPourMiseAJour(userId);
+
+        // Vérification que l'utilisateur n'a pas d'autre réservation en même temps (la réservation modifiée est exclue)
+        List<PeriodeReservationDto> conflits = repo.findConflitsUtilisateur(userId, debut, fin, reservationIdAExclure, PREMIER_CONFLIT);
+        if (!conflits.isEmpty()) {
+            PeriodeReservationDto conflit = conflits.get(0);
+            throw new BadRequestException("Vous avez déjà une réservation de véhicule pour cette période. " +
+                    "Conflit avec votre réservation du " + conflit.dateDebut() + " au " + conflit.dateFin());
         }
     }
 
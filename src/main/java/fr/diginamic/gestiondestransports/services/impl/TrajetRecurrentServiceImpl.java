@@ -0,0 +1,311 @@
+package fr.diginamic.gestiondestransports.services.impl;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.TrajetRecurrentDto;
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.TrajetRecurrent;
+import fr.diginamic.gestiondestransports.entites.VehiculePersonnel;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.mapper.AdresseMapper;
+import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.TrajetRecurrentRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculePersonnelRepository;
+import fr.diginamic.gestiondestransports.services.AnnonceCovoiturageService;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.TrajetRecurrentService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service des trajets de covoiturage récurrents.
+ *
+ * Un trajet récurrent est créé à partir de sa première occurrence, enregistrée par le service des annonces
+ * (adresses, véhicule, géocodage et calcul d'itinéraire) : l'itinéraire n'est calculé qu'une fois,
+ * les occurrences suivantes en sont des copies sans appel à l'API OSM.
+ * Chaque occurrence reçoit ses propres lignes d'adresse, copiées du trajet avec leurs coordonnées :
+ * le conducteur peut modifier une occurrence sans toucher aux autres.
+ *
+ * Les occurrences utilisent le véhicule personnel du conducteur : un véhicule de service n'est attribué
+ * qu'au travers d'une réservation couvrant le trajet, qui ne peut pas être posée d'avance pour chaque occurrence.
+ *
+ * Les occurrences ne sont créées que sur un horizon glissant de covoit.recurrence.horizon-jours jours,
+ * par une tâche planifiée, ou à la demande lorsqu'un passager réserve une date plus lointaine.
+ * Une occurrence supprimée par le conducteur dans l'horizon déjà matérialisé n'est pas recréée.
+ */
+@Service
+public class TrajetRecurrentServiceImpl implements TrajetRecurrentService {
+
+    private static final Logger log = LogManager.getLogger(TrajetRecurrentServiceImpl.class);
+    private static final int DUREE_MAX_MOIS = 12;
+
+    private final TrajetRecurrentRepository trajetRecurrentRepository;
+    private final AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    private final VehiculePersonnelRepository vehiculePersonnelRepository;
+    private final AdresseRepository adresseRepository;
+    private final AnnonceCovoiturageService annonceCovoiturageService;
+    private final CorridorCovoiturageService corridorCovoiturageService;
+    private final AdresseMapper adresseMapper;
+    private final ApplicationEventPublisher evenements;
+    private final TransactionTemplate transactionTemplate;
+    private final int horizonJours;
+
+    public TrajetRecurrentServiceImpl(TrajetRecurrentRepository trajetRecurrentRepository,
+                                      AnnonceCovoiturageRepository annonceCovoiturageRepository,
+                                      VehiculePersonnelRepository vehiculePersonnelRepository,
+                                      AdresseRepository adresseRepository,
+                                      AnnonceCovoiturageService annonceCovoiturageService,
+                                      CorridorCovoiturageService corridorCovoiturageService,
+                                      AdresseMapper adresseMapper,
+                                      ApplicationEventPublisher evenements,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${covoit.recurrence.horizon-jours:14}") int horizonJours) {
+        this.trajetRecurrentRepository = trajetRecurrentRepository;
+        this.annonceCovoiturageRepository = annonceCovoiturageRepository;
+        this.vehiculePersonnelRepository = vehiculePersonnelRepository;
+        this.adresseRepository = adresseRepository;
+        this.annonceCovoiturageService = annonceCovoiturageService;
+        this.corridorCovoiturageService = corridorCovoiturageService;
+        this.adresseMapper = adresseMapper;
+        this.evenements = evenements;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.horizonJours = horizonJours;
+    }
+
+    /**
+     * Crée un trajet récurrent et ses occurrences de l'horizon glissant
+     * @param trajetDto la description du trajet (jours, heure, période, adresses)
+     * @param idUtilisateurResponsable l'ID du conducteur
+     * @return le trajet créé
+     * @throws IllegalArgumentException si un véhicule de service est demandé, si la période est invalide
+     *                                  ou si aucune occurrence n'est à venir
+     */
+    @Override
+    @Transactional
+    public TrajetRecurrentDto creerTrajetRecurrent(TrajetRecurrentDto trajetDto, Long idUtilisateurResponsable) {
+        LocalDate aujourdhui = LocalDate.now();
+        if (trajetDto.vehiculeServiceId() != null) {
+            throw new IllegalArgumentException("Un trajet récurrent utilise votre véhicule personnel : "
+                    + "un véhicule de service se réserve pour chaque trajet");
+        }
+        if (trajetDto.dateFin().isBefore(trajetDto.dateDebut())) {
+            throw new IllegalArgumentException("La date de fin doit être postérieure à la date de début");
+        }
+        if (trajetDto.dateDebut().isBefore(aujourdhui)) {
+            throw new IllegalArgumentException("La date de début ne peut pas être dans le passé");
+        }
+        if (trajetDto.dateFin().isAfter(trajetDto.dateDebut().plusMonths(DUREE_MAX_MOIS))) {
+            throw new IllegalArgumentException("Un trajet récurrent ne peut pas dépasser " + DUREE_MAX_MOIS + " mois");
+        }
+
+        // Première occurrence à venir
+        LocalDate premiereDate = null;
+        LocalDateTime maintenant = LocalDateTime.now();
+        for (LocalDate date = trajetDto.dateDebut(); !date.isAfter(trajetDto.dateFin()); date = date.plusDays(1)) {
+            if (trajetDto.joursSemaine().contains(date.getDayOfWeek()) && date.atTime(trajetDto.heureDepart()).isAfter(maintenant)) {
+                premiereDate = date;
+                break;
+            }
+        }
+        if (premiereDate == null) {
+            throw new IllegalArgumentException("Aucun départ à venir sur cette période pour les jours choisis");
+        }
+
+        // La première occurrence passe par la création d'annonce : adresses, véhicule et calcul de l'itinéraire
+        AnnonceCovoiturageDto premiere = annonceCovoiturageService.creerAnnonce(AnnonceCovoiturageDto.nouvelle(
+                premiereDate.atTime(trajetDto.heureDepart()), trajetDto.dureeTrajet(), trajetDto.distance(),
+                trajetDto.adresseDepart(), trajetDto.adresseArrivee(), null), idUtilisateurResponsable);
+        AnnonceCovoiturage annonce = annonceCovoiturageRepository.findById(premiere.id())
+                .orElseThrow(() -> new IllegalStateException("Annonce introuvable après création : " + premiere.id()));
+
+        TrajetRecurrent trajet = new TrajetRecurrent(annonce, trajetDto.joursSemaine(), trajetDto.dateDebut(), trajetDto.dateFin());
+        adresseRepository.save(trajet.getAdresseDepart());
+        adresseRepository.save(trajet.getAdresseArrivee());
+        trajet = trajetRecurrentRepository.save(trajet);
+        annonce.setTrajetRecurrent(trajet);
+        trajet.setMaterialiseJusquAu(premiereDate);
+        materialiserJusqua(trajet, aujourdhui.plusDays(horizonJours));
+        return versDto(trajet);
+    }
+
+    /**
+     * Arrête un trajet récurrent : plus aucune occurrence n'est créée.
+     * Les occurrences déjà publiées restent en place et peuvent être supprimées une à une.
+     * @param idTrajet l'ID du trajet récurrent
+     * @param idUtilisateurResponsable l'ID de l'utilisateur connecté
+     * @throws IllegalArgumentException si le trajet n'existe pas ou si l'utilisateur n'en est pas le conducteur
+     */
+    @Override
+    @Transactional
+    public void arreterTrajetRecurrent(Long idTrajet, Long idUtilisateurResponsable) {
+        TrajetRecurrent trajet = trajetRecurrentRepository.findPourMaterialisation(idTrajet)
+                .orElseThrow(() -> new IllegalArgumentException("Trajet récurrent introuvable avec l'ID: " + idTrajet));
+        if (!trajet.getResponsable().getId().equals(idUtilisateurResponsable)) {
+            throw new IllegalArgumentException("Vous n'êtes pas autorisé à arrêter ce trajet récurrent");
+        }
+        trajet.setActif(false);
+    }
+
+    /**
+     * Trajets récurrents en cours ou à venir, tous conducteurs confondus
+     * @return les trajets actifs, par date de début
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<TrajetRecurrentDto> obtenirTrajetsRecurrents() {
+        return trajetRecurrentRepository.findActifs(LocalDate.now()).stream().map(this::versDto).toList();
+    }
+
+    /**
+     * Trajets récurrents d'un conducteur, y compris terminés ou arrêtés
+     * @param idUtilisateur l'ID du conducteur
+     * @return les trajets, du plus récent au plus ancien
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<TrajetRecurrentDto> obtenirTrajetsRecurrentsUtilisateur(Long idUtilisateur) {
+        return trajetRecurrentRepository.findByResponsableIdOrderByIdDesc(idUtilisateur).stream().map(this::versDto).toList();
+    }
+
+    /**
+     * Réserve une place sur l'occurrence d'un trajet récurrent à une date donnée,
+     * en créant l'occurrence si elle est au-delà de l'horizon déjà matérialisé
+     * @param idTrajet l'ID du trajet récurrent
+     * @param date la date du trajet
+     * @param idUtilisateur l'ID du passager
+     * @return l'annonce de l'occurrence réservée
+     * @throws IllegalArgumentException si le trajet ne circule pas ce jour-là, si l'occurrence a été annulée
+     *                                  ou si la réservation est refusée (voir reserverPlace)
+     */
+    @Override
+    @Transactional
+    public AnnonceCovoiturageDto reserverOccurrence(Long idTrajet, LocalDate date, Long idUtilisateur) {
+        if (date == null) {
+            throw new IllegalArgumentException("La date du trajet est obligatoire");
+        }
+        TrajetRecurrent trajet = trajetRecurrentRepository.findPourMaterialisation(idTrajet)
+                .orElseThrow(() -> new IllegalArgumentException("Trajet récurrent introuvable avec l'ID: " + idTrajet));
+        LocalDateTime depart = date.atTime(trajet.getHeureDepart());
+        if (!trajet.circuleLe(date) || !depart.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Ce trajet récurrent n'a pas de départ à venir le " + date);
+        }
+
+        Optional<Long> idOccurrence = annonceCovoiturageRepository.findIdOccurrence(idTrajet, depart);
+        Long idAnnonce;
+        if (idOccurrence.isPresent()) {
+            idAnnonce = idOccurrence.get();
+        } else if (trajet.getMaterialiseJusquAu() != null && !date.isAfter(trajet.getMaterialiseJusquAu())) {
+            // Occurrence déjà créée puis supprimée par le conducteur
+            throw new IllegalArgumentException("Le conducteur a annulé ce trajet le " + date);
+        } else {
+            AnnonceCovoiturage occurrence = creerOccurrence(trajet, depart);
+            if (occurrence == null) {
+                throw new IllegalArgumentException("Le conducteur ne dispose plus d'un véhicule pour ce trajet");
+            }
+            idAnnonce = occurrence.getId();
+        }
+        annonceCovoiturageService.reserverPlace(idAnnonce, idUtilisateur);
+        return annonceCovoiturageService.obtenirAnnonceParId(idAnnonce);
+    }
+
+    /**
+     * Crée chaque nuit les occurrences entrant dans l'horizon glissant, une transaction par trajet
+     * @return le nombre d'occurrences créées
+     */
+    @Override
+    @Scheduled(cron = "${covoit.recurrence.cron:0 15 2 * * *}")
+    public int materialiserOccurrences() {
+        LocalDate horizon = LocalDate.now().plusDays(horizonJours);
+        int creees = 0;
+        for (Long idTrajet : trajetRecurrentRepository.findIdsAMaterialiser(LocalDate.now(), horizon)) {
+            try {
+                Integer resultat = transactionTemplate.execute(statut -> trajetRecurrentRepository
+                        .findPourMaterialisation(idTrajet)
+                        .map(trajet -> materialiserJusqua(trajet, horizon))
+                        .orElse(0));
+                creees += resultat == null ? 0 : resultat;
+            } catch (RuntimeException e) {
+                log.error("Échec de la création des occurrences du trajet récurrent {} : {}", idTrajet, e.getMessage());
+            }
+        }
+        if (creees > 0) {
+            log.info("{} occurrences de trajets récurrents créées jusqu'au {}", creees, horizon);
+        }
+        return creees;
+    }
+
+    /**
+     * Crée les occurrences manquantes du trajet verrouillé jusqu'à la date donnée (bornée par la fin du trajet)
+     */
+    private int materialiserJusqua(TrajetRecurrent trajet, LocalDate horizon) {
+        LocalDate fin = horizon.isAfter(trajet.getDateFin()) ? trajet.getDateFin() : horizon;
+        LocalDate debut = trajet.getMaterialiseJusquAu() == null ? trajet.getDateDebut() : trajet.getMaterialiseJusquAu().plusDays(1);
+        LocalDateTime maintenant = LocalDateTime.now();
+        int creees = 0;
+        for (LocalDate date = debut; !date.isAfter(fin); date = date.plusDays(1)) {
+            LocalDateTime depart = date.atTime(trajet.getHeureDepart());
+            if (!trajet.circuleLe(date) || !depart.isAfter(maintenant)) {
+                continue;
+            }
+            // Occurrence déjà créée par une réservation au-delà de l'horizon
+            if (annonceCovoiturageRepository.findIdOccurrence(trajet.getId(), depart).isPresent()) {
+                continue;
+            }
+            if (creerOccurrence(trajet, depart) == null) {
+                log.warn("Trajet récurrent {} : le conducteur n'a plus de véhicule, occurrences non créées", trajet.getId());
+                return creees;
+            }
+            creees++;
+        }
+        if (!fin.isBefore(debut)) {
+            trajet.setMaterialiseJusquAu(fin);
+        }
+        return creees;
+    }
+
+    /**
+     * Crée une occurrence par copie du trajet récurrent, adresses comprises, sans appel à l'API OSM
+     * @return l'annonce créée, ou null si le conducteur n'a plus de véhicule
+     */
+    private AnnonceCovoiturage creerOccurrence(TrajetRecurrent trajet, LocalDateTime depart) {
+        // Jamais le véhicule de service d'un trajet antérieur à la règle : aucune réservation ne couvrirait l'occurrence
+        List<VehiculePersonnel> vehiculesPersonnels = vehiculePersonnelRepository.findByUtilisateur(trajet.getResponsable());
+        if (vehiculesPersonnels.isEmpty()) {
+            return null;
+        }
+        Adresse adresseDepart = adresseRepository.save(trajet.getAdresseDepart().copie());
+        Adresse adresseArrivee = adresseRepository.save(trajet.getAdresseArrivee().copie());
+        AnnonceCovoiturage occurrence = new AnnonceCovoiturage(depart, trajet.getDureeTrajet(), trajet.getDistance(),
+                adresseDepart, adresseArrivee, trajet.getResponsable());
+        occurrence.setPlacesTotales(vehiculesPersonnels.get(0).getNbPlaces());
+        occurrence.setPlacesOccupees(0);
+        occurrence.setTraceItineraire(trajet.getTraceItineraire());
+        occurrence.setTrajetRecurrent(trajet);
+        AnnonceCovoiturage sauvegardee = annonceCovoiturageRepository.save(occurrence);
+        corridorCovoiturageService.indexerAnnonce(sauvegardee);
+        evenements.publishEvent(new AnnonceCovoiturageEvenement(sauvegardee.getId(), TypeEvenementAnnonce.CREATION));
+        return sauvegardee;
+    }
+
+    private TrajetRecurrentDto versDto(TrajetRecurrent trajet) {
+        return new TrajetRecurrentDto(trajet.getId(), trajet.getHeureDepart(), trajet.getJours(),
+                trajet.getDateDebut(), trajet.getDateFin(), trajet.getDureeTrajet(), trajet.getDistance(),
+                adresseMapper.versDto(trajet.getAdresseDepart()), adresseMapper.versDto(trajet.getAdresseArrivee()),
+                trajet.getVehiculeService() == null ? null : trajet.getVehiculeService().getId(),
+                trajet.getActif(), trajet.getMaterialiseJusquAu());
+    }
+}
@@ -1,29 +1,43 @@
 package fr.diginamic.gestiondestransports.services.impl;
 
+import fr.diginamic.gestiondestransports.cache.IndexOccupationsVehicules;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
 import fr.diginamic.gestiondestransports.dto.VehiculeDTO;
-import fr.diginamic.gestiondestransports.entites.ReservationVehicule;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.enums.Categorie;
+import fr.diginamic.gestiondestransports.enums.Motorisation;
 import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
 import fr.diginamic.gestiondestransports.mapper.VehiculeMapper;
 import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
-import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.PlanningFlotteJdbcRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
 import fr.diginamic.gestiondestransports.services.VehiculeEntrepriseService;
 import fr.diginamic.gestiondestransports.shared.BadRequestException;
 import fr.diginamic.gestiondestransports.shared.NotFoundException;
+import fr.diginamic.gestiondestransports.tools.IntervallesOccupation;
+import fr.diginamic.gestiondestransports.tools.OccupationsFlotte;
 import jakarta.transaction.Transactional;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 /**
  * Implémentation du service de gestion des véhicules d'entreprise (véhicules de service).
  * Gère la logique métier complète du parc automobile :
  * - CRUD des véhicules (création, lecture, modification, suppression)
  * - Vérification de disponibilité sur une période donnée
+ * - Attribution du véhicule le mieux adapté à une demande (meilleur ajustement dans le planning)
  * - Validation des données (statut, immatriculation, nombre de places)
  * - Gestion du cycle de vie des véhicules (EN_SERVICE, EN_REPARATION, HORS_SERVICE)
  * - Détection des chevauchements de réservations
+ * Les disponibilités sont lues dans l'index en mémoire des occupations de la flotte quand il est chargé, sinon en base.
  * Applique les règles métier du cahier des charges concernant les véhicules de service.
  * Seuls les administrateurs peuvent créer, modifier ou supprimer des véhicules.
  * Toutes les opérations sont transactionnelles pour garantir la cohérence des données.
@@ -32,17 +46,38 @@ import java.util.List;
 @Transactional
 public class VehiculeEntrepriseServiceImpl implements VehiculeEntrepriseService {
 
+    // Temps libre pris en compte de part et d'autre de la période demandée pour mesurer le morcellement
+    private static final long HORIZON_ATTRIBUTION_HEURES = 24;
+
+    // Préférences respectées, puis morcellement minimal, puis CO2/km le plus faible (non renseigné en dernier)
+    private static final Comparator<Candidat> CLASSEMENT_ATTRIBUTION = Comparator
+            .comparingInt(Candidat::preferencesNonRespectees)
+            .thenComparingLong(Candidat::minutesLibresAutour)
+            .thenComparing(c -> c.vehicule().getCo2ParKm(), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(c -> c.vehicule().getId());
+
     private final VehiculeEntrepriseRepository repo;
-    private final ReservationVehiculeRepository repoReservations;
+    private final AnnonceCovoiturageRepository repoAnnonces;
     private final VehiculeMapper vehiculeMapper;
+    private final VersionsAgregats versionsAgregats;
+    private final PlanningFlotteJdbcRepository planningRepo;
+    private final IndexOccupationsVehicules indexOccupations;
+    private final ApplicationEventPublisher evenements;
 
     public VehiculeEntrepriseServiceImpl(VehiculeEntrepriseRepository repo,
-                                         ReservationVehiculeRepository repoReservations,
-                                         VehiculeMapper vehiculeMapper) {
+                                         AnnonceCovoiturageRepository repoAnnonces,
+                                         VehiculeMapper vehiculeMapper,
+                                         VersionsAgregats versionsAgregats,
+                                         PlanningFlotteJdbcRepository planningRepo,
+                                         IndexOccupationsVehicules indexOccupations,
+                                         ApplicationEventPublisher evenements) {
         this.repo = repo;
         this.vehiculeMapper = vehiculeMapper;
-        this.repoReservations = repoReservations;
-
+        this.repoAnnonces = repoAnnonces;
+        this.versionsAgregats = versionsAgregats;
+        this.planningRepo = planningRepo;
+        this.indexOccupations = indexOccupations;
+        this.evenements = evenements;
     }
     /**
      * Récupère tous les véhicules d'entreprise.
@@ -61,7 +96,11 @@ public class VehiculeEntrepriseServiceImpl implements VehiculeEntrepriseService
      * - La date de fin doit être postérieure à la date de début
      * Filtre les véhicules selon ces critères :
      * - Statut EN_SERVICE uniquement
-     * - Aucune réservation ne chevauche la période demandée
+     * - Aucune réservation ni aucun trajet de covoiturage ne chevauche la période demandée
+     * Si l'index des occupations est chargé, les véhicules en service sont filtrés en mémoire (une recherche par véhicule
+     * dans son arbre d'intervalles).
+     * Sinon, une requête en base exclut les véhicules ayant une réservation sur la période, puis les véhicules
+     * des trajets de covoiturage qui la chevauchent sont retirés : le résultat est le même dans les deux cas.
      * Utilisé pour afficher le carrousel de véhicules lors de la création d'une réservation.
      *
      * @param dateDebut date et heure de début de la période recherchée
@@ -71,66 +110,118 @@ public class VehiculeEntrepriseServiceImpl implements VehiculeEntrepriseService
      * @throws NotFoundException si aucun véhicule n'est en service ou disponible
      */
     public List<VehiculeDTO> findByAvailability(LocalDateTime dateDebut, LocalDateTime dateFin) {
-        // Check if dateFin is after dateDebut
-        if (dateFin.isBefore(dateDebut) || dateFin.isEqual(dateDebut)) {
-            throw new BadRequestException("DATES INCORRECTES : La date de début doit être antérieure à la date de fin");
+        validerPeriode(dateDebut, dateFin);
+        List<VehiculeEntreprise> vehiculesDisponibles;
+        if (indexOccupations.estCharge()) {
+            List<VehiculeEntreprise> enService = repo.findByStatutOrderById(StatutVehicule.EN_SERVICE);
+            if (enService.isEmpty()) {
+                throw new NotFoundException("Il n'y a pas de voitures en service");
+            }
+            vehiculesDisponibles = enService.stream()
+                    .filter(v -> !indexOccupations.chevauche(v.getId(), dateDebut, dateFin))
+                    .toList();
+        } else {
+            // Véhicules EN_SERVICE sans réservation qui chevauche la période, puis sans trajet de covoiturage
+            vehiculesDisponibles = repo.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin);
+            if (!vehiculesDisponibles.isEmpty()) {
+                Set<Long> enCovoiturage = planningRepo.findVehiculesEnCovoiturage(dateDebut, dateFin);
+                vehiculesDisponibles = vehiculesDisponibles.stream()
+                        .filter(v -> !enCovoiturage.contains(v.getId()))
+                        .toList();
+            }
         }
 
-        LocalDateTime now = LocalDateTime.now();
+        if (vehiculesDisponibles.isEmpty()) {
+            // Requête supplémentaire uniquement pour préciser le message d'erreur
+            if (!repo.existsByStatut(StatutVehicule.EN_SERVICE)) {
+                throw new NotFoundException("Il n'y a pas de voitures en service");
+            }
+            throw new  NotFoundException("Aucune voiture disponible pour les dates sélectionnées");
+        }
 
+        return vehiculeMapper.toDtoEntrepriseList(vehiculesDisponibles);
+    }
 
-        if (dateDebut.isBefore(now)) {
-            throw new BadRequestException("DATES INCORRECTES : La date de début doit être dans le futur");
-        }
-        if (dateFin.isBefore(now)) {
-            throw new BadRequestException("DATES INCORRECTES : La date de fin doit être dans le futur");
+    /**
+     * Attribue le véhicule d'entreprise le mieux adapté à une demande de réservation.
+     * Candidats : véhicules EN_SERVICE d'au moins nbPlaces places, libres sur la période
+     * (ni réservation ni trajet de covoiturage qui la chevauche).
+     * Classement :
+     * - Préférences respectées (catégorie, motorisation) : un véhicule qui les respecte passe devant,
+     *   sans exclure les autres si aucun ne les respecte
+     * - Morcellement minimal : temps libre laissé avant et après la période dans le créneau libre du véhicule,
+     *   borné à 24 h de part et d'autre ; un véhicule dont le trou correspond exactement à la demande passe devant
+     *   un véhicule entièrement libre, gardé pour les demandes longues
+     * - Émissions de CO2 par km les plus faibles (non renseignées en dernier), puis identifiant
+     * Le temps libre antérieur à maintenant n'est pas compté.
+     * Chaque candidat est évalué en O(log n) dans l'index en mémoire des occupations s'il est chargé ; sinon les occupations
+     * de la flotte autour de la période sont lues en une requête puis indexées par véhicule pour la durée de l'appel.
+     *
+     * @param nbPlaces nombre de places nécessaires (conducteur compris)
+     * @param categorie catégorie souhaitée, ou null
+     * @param motorisation motorisation souhaitée, ou null
+     * @param dateDebut date et heure de début de la période
+     * @param dateFin date et heure de fin de la période
+     * @return le véhicule attribué sous forme de DTO
+     * @throws BadRequestException si les dates sont incohérentes ou passées, ou si nbPlaces < 1
+     * @throws NotFoundException si aucun véhicule ne convient
+     */
+    @Override
+    public VehiculeDTO attribuer(int nbPlaces, Categorie categorie, Motorisation motorisation,
+                                 LocalDateTime dateDebut, LocalDateTime dateFin) {
+        if (nbPlaces < 1) {
+            throw new BadRequestException("nbPlaces doit être >= 1.");
         }
-        // Get all vehicles with status EN_SERVICE
-        List<VehiculeEntreprise> vehiculesEnService = repo.findByStatut(StatutVehicule.EN_SERVICE);
+        validerPeriode(dateDebut, dateFin);
 
-        if (vehiculesEnService.isEmpty()) {
-            throw new NotFoundException("Il n'y a pas de voitures en service");
+        // L'index en mémoire ne contient pas les occupations terminées : l'horizon ne remonte pas avant maintenant
+        LocalDateTime maintenant = LocalDateTime.now();
+        LocalDateTime horizonDebut = dateDebut.minusHours(HORIZON_ATTRIBUTION_HEURES);
+        if (horizonDebut.isBefore(maintenant)) {
+            horizonDebut = maintenant;
         }
-        List<VehiculeEntreprise> vehiculesDisponibles = new ArrayList<>();
-
-        // Loop through all company cars
-        for (VehiculeEntreprise vehicule : vehiculesEnService) {
-            List<ReservationVehicule> reservations = repoReservations.findByVehiculeEntrepriseId(vehicule.getId());
-
-
-
-            boolean isAvailable = true;
-
-            // Check if the selected period intersects with any existing reservations
-            for (ReservationVehicule reservation : reservations) {
-                LocalDateTime reservationDebut = reservation.getDateDebut();
-                LocalDateTime reservationFin = reservation.getDateFin();
+        LocalDateTime horizonFin = dateFin.plusHours(HORIZON_ATTRIBUTION_HEURES);
+        OccupationsFlotte occupations = indexOccupations.estCharge()
+                ? indexOccupations
+                : IntervallesOccupation.flotte(planningRepo.findUsages(horizonDebut, horizonFin));
+        LocalDateTime debutCreneau = horizonDebut;
 
+        return repo.findByStatut(StatutVehicule.EN_SERVICE).stream()
+                .filter(v -> v.getNbPlaces() != null && v.getNbPlaces() >= nbPlaces)
+                .map(v -> {
+                    if (occupations.chevauche(v.getId(), dateDebut, dateFin)) {
+                        return null;
+                    }
+                    int nonRespectees = (categorie != null && categorie != v.getCategorie() ? 1 : 0)
+                            + (motorisation != null && motorisation != v.getMotorisation() ? 1 : 0);
+                    return new Candidat(v, nonRespectees,
+                            occupations.minutesLibresAutour(v.getId(), dateDebut, dateFin, debutCreneau, horizonFin));
+                })
+                .filter(Objects::nonNull)
+                .min(CLASSEMENT_ATTRIBUTION)
+                .map(c -> vehiculeMapper.toDto(c.vehicule()))
+                .orElseThrow(() -> new NotFoundException(
+                        "Aucune voiture de " + nbPlaces + " places ou plus disponible pour les dates sélectionnées"));
+    }
 
-                // Check for real overlap (excluding boundary touches)
-                if (((!dateDebut.isBefore(reservationDebut) && !dateDebut.isAfter(reservationFin)) ||
-                        (!dateFin.isBefore(reservationDebut) && !dateFin.isAfter(reservationFin)) ||
-                        (!dateDebut.isAfter(reservationDebut) && !dateFin.isBefore(reservationFin))) &&
-                        !(dateFin.isEqual(reservationDebut) || dateDebut.isEqual(reservationFin))) {
+    /**
+     * Vérifie qu'une période de réservation est cohérente et future
+     */
+    private void validerPeriode(LocalDateTime dateDebut, LocalDateTime dateFin) {
+        // Check if dateFin is after dateDebut
+        if (dateFin.isBefore(dateDebut) || dateFin.isEqual(dateDebut)) {
+            throw new BadRequestException("DATES INCORRECTES : La date de début doit être antérieure à la date de fin");
+        }
 
-                    isAvailable = false;
-                    break;
-                }
-            }
+        LocalDateTime now = LocalDateTime.now();
 
-            // If no conflicts found, add the vehicle to available list
-            if (isAvailable) {
 
-                vehiculesDisponibles.add(vehicule);
-            }
+        if (dateDebut.isBefore(now)) {
+            throw new BadRequestException("DATES INCORRECTES : La date de début doit être dans le futur");
         }
-
-        if (vehiculesDisponibles.isEmpty()) {
-            throw new  NotFoundException("Aucune voiture disponible pour les dates sélectionnées");
+        if (dateFin.isBefore(now)) {
+            throw new BadRequestException("DATES INCORRECTES : La date de fin doit être dans le futur");
         }
-
-
-        return vehiculeMapper.toDtoEntrepriseList(vehiculesDisponibles);
     }
     /**
      * Récupère un véhicule d'entreprise par son identifiant.
@@ -185,6 +276,7 @@ public class VehiculeEntrepriseServiceImpl implements VehiculeEntrepriseService
 
         VehiculeEntreprise entity = vehiculeMapper.toEntrepriseEntity(dto);
         VehiculeEntreprise saved = repo.save(entity);
+        versionsAgregats.incrementer(AgregatVersionne.VEHICULES_ENTREPRISE);
         return vehiculeMapper.toDto(saved);
     }
     /**
@@ -226,12 +318,22 @@ public class VehiculeEntrepriseServiceImpl implements VehiculeEntrepriseService
         if(dto.immatriculation() != null) entity.setImmatriculation(dto.immatriculation());
         if(dto.marque() != null) entity.setMarque(dto.marque());
         if(dto.modele() != null) entity.setModele(dto.modele());
-        if(dto.nbPlaces() != null) entity.setNbPlaces(dto.nbPlaces());
+        if(dto.nbPlaces() != null) {
+            entity.setNbPlaces(dto.nbPlaces());
+            // Reporter la nouvelle capacité sur les covoiturages utilisant ce véhicule
+            repoAnnonces.mettreAJourPlacesTotalesVehiculeService(id, dto.nbPlaces());
+            versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
+            // Le modèle de lecture et le flux des places rechargent les annonces à venir concernées
+            for (Long idAnnonce : repoAnnonces.findIdsAVenirParVehiculeService(id, LocalDateTime.now())) {
+                evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.MODIFICATION));
+            }
+        }
         if(dto.statut() != null) entity.setStatut(dto.statut());
         if(dto.co2ParKm() != null) entity.setCo2ParKm(dto.co2ParKm());
         if(dto.photo() != null) entity.setPhoto(dto.photo());
         if(dto.categorie() != null) entity.setCategorie(dto.categorie());
         if(dto.motorisation() != null) entity.setMotorisation(dto.motorisation());
+        versionsAgregats.incrementer(AgregatVersionne.VEHICULES_ENTREPRISE);
 
         return vehiculeMapper.toDto(entity);
     }
@@ -249,6 +351,7 @@ public class VehiculeEntrepriseServiceImpl implements VehiculeEntrepriseService
             throw new NotFoundException("Véhicule d'entreprise introuvable: " + id);
         }
         repo.deleteById(id);
+        versionsAgregats.incrementer(AgregatVersionne.VEHICULES_ENTREPRISE);
     }
     /**
      * Récupère tous les véhicules d'entreprise ayant un statut spécifique.
@@ -262,4 +365,10 @@ public class VehiculeEntrepriseServiceImpl implements VehiculeEntrepriseService
     public List<VehiculeDTO> findByStatut(String statut) {
         return vehiculeMapper.toDtoEntrepriseList(repo.findByStatut(StatutVehicule.valueOf(statut)));
     }
+
+    /**
+     * Véhicule libre sur la période demandée, avec ses critères de classement
+     */
+    private record Candidat(VehiculeEntreprise vehicule, int preferencesNonRespectees, long minutesLibresAutour) {
+    }
 }
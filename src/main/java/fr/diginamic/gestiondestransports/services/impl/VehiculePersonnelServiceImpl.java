@@ -1,8 +1,13 @@
 package fr.diginamic.gestiondestransports.services.impl;
 
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
 import fr.diginamic.gestiondestransports.dto.VehiculeDTO;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
 import fr.diginamic.gestiondestransports.mapper.VehiculeMapper;
 import fr.diginamic.gestiondestransports.entites.VehiculePersonnel;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
 import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculePersonnelRepository;
 import fr.diginamic.gestiondestransports.services.VehiculePersonnelService;
@@ -12,10 +17,12 @@ import fr.diginamic.gestiondestransports.shared.ConflictException;
 import jakarta.transaction.Transactional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
 import java.util.List;
 /**
  * Implémentation du service de gestion des véhicules personnels des collaborateurs.
@@ -35,14 +42,23 @@ public class VehiculePersonnelServiceImpl implements VehiculePersonnelService {
     private static final Logger log = LogManager.getLogger(VehiculePersonnelServiceImpl.class);
     private final VehiculePersonnelRepository repo;
     private final UtilisateurRepository utilisateurRepo;
+    private final AnnonceCovoiturageRepository annonceRepo;
     private final VehiculeMapper vehiculeMapper;
+    private final VersionsAgregats versionsAgregats;
+    private final ApplicationEventPublisher evenements;
 
     public VehiculePersonnelServiceImpl(VehiculePersonnelRepository repo,
                                         UtilisateurRepository utilisateurRepo,
-                                        VehiculeMapper vehiculeMapper) {
+                                        AnnonceCovoiturageRepository annonceRepo,
+                                        VehiculeMapper vehiculeMapper,
+                                        VersionsAgregats versionsAgregats,
+                                        ApplicationEventPublisher evenements) {
         this.repo = repo;
         this.utilisateurRepo = utilisateurRepo;
+        this.annonceRepo = annonceRepo;
         this.vehiculeMapper = vehiculeMapper;
+        this.versionsAgregats = versionsAgregats;
+        this.evenements = evenements;
     }
     /**
      * Récupère tous les véhicules personnels du système.
@@ -114,6 +130,8 @@ public class VehiculePersonnelServiceImpl implements VehiculePersonnelService {
         entity.setUtilisateur(utilisateurRepo.getReferenceById(utilisateurId));
         try {
             var saved = repo.saveAndFlush(entity);
+            // Les covoiturages du propriétaire affichent désormais la capacité de ce véhicule
+            versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
             return vehiculeMapper.toDto(saved);
         } catch (javax.validation.ConstraintViolationException e) {
             e.getConstraintViolations().forEach(v ->
@@ -166,7 +184,16 @@ public class VehiculePersonnelServiceImpl implements VehiculePersonnelService {
         if(dto.immatriculation() != null) entity.setImmatriculation(dto.immatriculation());
         if(dto.marque() != null) entity.setMarque(dto.marque());
         if(dto.modele() != null) entity.setModele(dto.modele());
-        if(dto.nbPlaces() != null) entity.setNbPlaces(dto.nbPlaces());
+        if(dto.nbPlaces() != null) {
+            entity.setNbPlaces(dto.nbPlaces());
+            // Reporter la nouvelle capacité sur les covoiturages du propriétaire sans véhicule de service
+            annonceRepo.mettreAJourPlacesTotalesVehiculePersonnel(id, dto.nbPlaces());
+            versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
+            // Le modèle de lecture et le flux des places rechargent les annonces à venir concernées
+            for (Long idAnnonce : annonceRepo.findIdsAVenirSansVehiculeService(id, LocalDateTime.now())) {
+                evenements.publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.MODIFICATION));
+            }
+        }
         if(dto.co2ParKm() != null) entity.setCo2ParKm(dto.co2ParKm());
         if(dto.photo() != null) entity.setPhoto(dto.photo());
         if(dto.categorie() != null) entity.setCategorie(dto.categorie());
@@ -188,6 +215,7 @@ public class VehiculePersonnelServiceImpl implements VehiculePersonnelService {
             throw new NotFoundException("Véhicule personnel introuvable: " + id);
         }
         repo.deleteById(id);
+        versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
     }
     /**
      * Supprime le véhicule personnel d'un utilisateur.
@@ -205,6 +233,7 @@ public class VehiculePersonnelServiceImpl implements VehiculePersonnelService {
         }
 
         repo.deleteById(entity.getId());
+        versionsAgregats.incrementer(AgregatVersionne.COVOITURAGE);
     }
     /**
      * Récupère les véhicules personnels d'un utilisateur (maximum 1 selon règle métier).
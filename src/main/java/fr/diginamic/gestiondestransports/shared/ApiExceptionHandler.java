@@ -2,6 +2,7 @@ package fr.diginamic.gestiondestransports.shared;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -48,6 +49,18 @@ public class ApiExceptionHandler {
     public ResponseEntity<Map<String, Object>> handleConflict(ConflictException ex, HttpServletRequest req) {
         return build(HttpStatus.CONFLICT, ex.getMessage(), req, null);
     }
+    /**
+     * Gère les échecs de concurrence de la base (interblocage, délai de verrou dépassé, verrou optimiste).
+     * Retourne une réponse HTTP 409 : la transaction a été annulée et la requête peut être rejouée.
+     *
+     * @param ex l'exception ConcurrencyFailureException levée
+     * @param req la requête HTTP qui a causé l'erreur
+     * @return ResponseEntity avec statut 409 et détails de l'erreur au format JSON
+     */
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleConcurrencyFailure(ConcurrencyFailureException ex, HttpServletRequest req) {
+        return build(HttpStatus.CONFLICT, "Modification simultanée en cours, veuillez réessayer.", req, null);
+    }
     /**
      * Gère les exceptions NotFoundException (ressources introuvables).
      * Retourne une réponse HTTP 404 avec le message d'erreur personnalisé.
@@ -0,0 +1,247 @@
+package fr.diginamic.gestiondestransports.tools;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Arbre d'intervalles : arbre AVL de périodes triées par (début, clé), chaque nœud portant la plus grande fin
+ * de son sous-arbre. Contrairement à IntervallesOccupation, construit une fois pour toutes, il accepte
+ * insertions et suppressions en O(log n) : les périodes ne sont pas fusionnées, chacune est retrouvée par sa clé.
+ * Chevauchement et créneau libre autour d'une période en O(log n).
+ * Non synchronisé : les accès concurrents doivent être protégés par l'appelant.
+ *
+ * @param <K> type de la clé identifiant une période (départage les périodes de même début)
+ */
+public final class ArbreIntervalles<K extends Comparable<K>> {
+
+    private static final class Noeud<K> {
+        private final K cle;
+        private final long debut;
+        private final long fin;
+        private Noeud<K> gauche;
+        private Noeud<K> droite;
+        private int hauteur = 1;
+        private long finMax;
+
+        private Noeud(K cle, long debut, long fin) {
+            this.cle = cle;
+            this.debut = debut;
+            this.fin = fin;
+            this.finMax = fin;
+        }
+    }
+
+    private Noeud<K> racine;
+    private int taille;
+
+    /**
+     * Ajoute une période ; la clé ne doit pas déjà être présente avec le même début
+     *
+     * @param cle l'identifiant de la période
+     * @param debut début de la période
+     * @param fin fin de la période
+     */
+    public void inserer(K cle, LocalDateTime debut, LocalDateTime fin) {
+        racine = inserer(racine, new Noeud<>(cle, secondes(debut), secondes(fin)));
+        taille++;
+    }
+
+    /**
+     * Retire une période
+     *
+     * @param cle l'identifiant de la période
+     * @param debut début de la période, tel qu'inséré
+     * @return true si la période était présente
+     */
+    public boolean retirer(K cle, LocalDateTime debut) {
+        int tailleAvant = taille;
+        racine = retirer(racine, cle, secondes(debut));
+        return taille < tailleAvant;
+    }
+
+    /**
+     * Indique si une période chevauche une période de l'arbre (des bornes qui se touchent ne se chevauchent pas)
+     */
+    public boolean chevauche(LocalDateTime debut, LocalDateTime fin) {
+        long sDebut = secondes(debut);
+        long sFin = secondes(fin);
+        Noeud<K> noeud = racine;
+        while (noeud != null) {
+            if (noeud.debut < sFin && noeud.fin > sDebut) {
+                return true;
+            }
+            // Si le sous-arbre gauche contient une fin après le début demandé sans chevauchement,
+            // cette période commence après la fin demandée, comme toutes celles du sous-arbre droit
+            noeud = noeud.gauche != null && noeud.gauche.finMax > sDebut ? noeud.gauche : noeud.droite;
+        }
+        return false;
+    }
+
+    /**
+     * Temps libre, en minutes, laissé de part et d'autre d'une période libre dans le créneau libre qui la contient,
+     * borné par un horizon ; même sémantique que IntervallesOccupation.minutesLibresAutour.
+     *
+     * @param debut début de la période, libre
+     * @param fin fin de la période, libre
+     * @param horizonDebut borne basse du créneau libre (antérieure ou égale au début)
+     * @param horizonFin borne haute du créneau libre (postérieure ou égale à la fin)
+     * @return minutes libres avant et après la période
+     */
+    public long minutesLibresAutour(LocalDateTime debut, LocalDateTime fin,
+                                    LocalDateTime horizonDebut, LocalDateTime horizonFin) {
+        long sDebut = secondes(debut);
+        long sFin = secondes(fin);
+        // La période étant libre, les périodes commençant avant elle se terminent avant son début
+        long libreDepuis = Math.max(finMaxAvant(sDebut), secondes(horizonDebut));
+        long libreJusqua = Math.min(premierDebutDepuis(sFin), secondes(horizonFin));
+        return (Math.max(0, sDebut - libreDepuis) + Math.max(0, libreJusqua - sFin)) / 60;
+    }
+
+    /**
+     * Nombre de périodes dans l'arbre
+     */
+    public int taille() {
+        return taille;
+    }
+
+    /**
+     * Plus grande fin des périodes commençant strictement avant un instant (Long.MIN_VALUE si aucune)
+     */
+    private long finMaxAvant(long instant) {
+        long resultat = Long.MIN_VALUE;
+        Noeud<K> noeud = racine;
+        while (noeud != null) {
+            if (noeud.debut < instant) {
+                resultat = Math.max(resultat, Math.max(noeud.fin, finMax(noeud.gauche)));
+                noeud = noeud.droite;
+            } else {
+                noeud = noeud.gauche;
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Plus petit début des périodes commençant à partir d'un instant (Long.MAX_VALUE si aucune)
+     */
+    private long premierDebutDepuis(long instant) {
+        long resultat = Long.MAX_VALUE;
+        Noeud<K> noeud = racine;
+        while (noeud != null) {
+            if (noeud.debut >= instant) {
+                resultat = Math.min(resultat, noeud.debut);
+                noeud = noeud.gauche;
+            } else {
+                noeud = noeud.droite;
+            }
+        }
+        return resultat;
+    }
+
+    private Noeud<K> inserer(Noeud<K> noeud, Noeud<K> nouveau) {
+        if (noeud == null) {
+            return nouveau;
+        }
+        if (comparer(nouveau.debut, nouveau.cle, noeud) < 0) {
+            noeud.gauche = inserer(noeud.gauche, nouveau);
+        } else {
+            noeud.droite = inserer(noeud.droite, nouveau);
+        }
+        return equilibrer(noeud);
+    }
+
+    private Noeud<K> retirer(Noeud<K> noeud, K cle, long debut) {
+        if (noeud == null) {
+            return null;
+        }
+        int comparaison = comparer(debut, cle, noeud);
+        if (comparaison < 0) {
+            noeud.gauche = retirer(noeud.gauche, cle, debut);
+        } else if (comparaison > 0) {
+            noeud.droite = retirer(noeud.droite, cle, debut);
+        } else {
+            taille--;
+            if (noeud.gauche == null) {
+                return noeud.droite;
+            }
+            if (noeud.droite == null) {
+                return noeud.gauche;
+            }
+            // Remplacé par son successeur, le plus petit nœud du sous-arbre droit
+            Noeud<K> successeur = noeud.droite;
+            while (successeur.gauche != null) {
+                successeur = successeur.gauche;
+            }
+            successeur.droite = retirerPlusPetit(noeud.droite);
+            successeur.gauche = noeud.gauche;
+            return equilibrer(successeur);
+        }
+        return equilibrer(noeud);
+    }
+
+    private Noeud<K> retirerPlusPetit(Noeud<K> noeud) {
+        if (noeud.gauche == null) {
+            return noeud.droite;
+        }
+        noeud.gauche = retirerPlusPetit(noeud.gauche);
+        return equilibrer(noeud);
+    }
+
+    private int comparer(long debut, K cle, Noeud<K> noeud) {
+        int comparaison = Long.compare(debut, noeud.debut);
+        return comparaison != 0 ? comparaison : cle.compareTo(noeud.cle);
+    }
+
+    private Noeud<K> equilibrer(Noeud<K> noeud) {
+        mettreAJour(noeud);
+        int desequilibre = hauteur(noeud.gauche) - hauteur(noeud.droite);
+        if (desequilibre > 1) {
+            if (hauteur(noeud.gauche.gauche) < hauteur(noeud.gauche.droite)) {
+                noeud.gauche = rotationGauche(noeud.gauche);
+            }
+            return rotationDroite(noeud);
+        }
+        if (desequilibre < -1) {
+            if (hauteur(noeud.droite.droite) < hauteur(noeud.droite.gauche)) {
+                noeud.droite = rotationDroite(noeud.droite);
+            }
+            return rotationGauche(noeud);
+        }
+        return noeud;
+    }
+
+    private Noeud<K> rotationDroite(Noeud<K> noeud) {
+        Noeud<K> pivot = noeud.gauche;
+        noeud.gauche = pivot.droite;
+        pivot.droite = noeud;
+        mettreAJour(noeud);
+        mettreAJour(pivot);
+        return pivot;
+    }
+
+    private Noeud<K> rotationGauche(Noeud<K> noeud) {
+        Noeud<K> pivot = noeud.droite;
+        noeud.droite = pivot.gauche;
+        pivot.gauche = noeud;
+        mettreAJour(noeud);
+        mettreAJour(pivot);
+        return pivot;
+    }
+
+    private void mettreAJour(Noeud<K> noeud) {
+        noeud.hauteur = 1 + Math.max(hauteur(noeud.gauche), hauteur(noeud.droite));
+        noeud.finMax = Math.max(noeud.fin, Math.max(finMax(noeud.gauche), finMax(noeud.droite)));
+    }
+
+    private static int hauteur(Noeud<?> noeud) {
+        return noeud == null ? 0 : noeud.hauteur;
+    }
+
+    private static long finMax(Noeud<?> noeud) {
+        return noeud == null ? Long.MIN_VALUE : noeud.finMax;
+    }
+
+    private static long secondes(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+}
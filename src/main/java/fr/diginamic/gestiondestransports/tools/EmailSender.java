@@ -49,7 +49,7 @@ public class EmailSender {
     }
 
     /**
-     * Envoie un email via Mailjet
+     * Envoie un email via Mailjet, sans signaler les échecs
      *
      * @param email Email du destinataire
      * @param text Texte personnalisé (variable personalmessage)
@@ -57,34 +57,47 @@ public class EmailSender {
      * @param subject Sujet de l'email
      */
     public void send(String email, String text, String heading, String subject) {
-
-
         try {
+            envoyer(email, text, heading, subject);
+        } catch (MailjetException | JSONException | IllegalStateException e) {
 
-            // Construction de la requête Mailjet
-            MailjetRequest requete = new MailjetRequest(Emailv31.resource)
-                    .property(Emailv31.MESSAGES, new JSONArray()
-                            .put(new JSONObject()
-                                    .put(Emailv31.Message.FROM, new JSONObject()
-                                            .put("Email", emailExpediteur)
-                                            .put("Name", nomExpediteur))
-                                    .put(Emailv31.Message.TO, new JSONArray()
-                                            .put(new JSONObject()
-                                                    .put("Email", email)))
-                                    .put(Emailv31.Message.VARIABLES, new JSONObject()
-                                            .put("personalmessage", text)
-                                            .put("personalheading", heading))
-                                    .put(Emailv31.Message.TEMPLATEID, idTemplate)
-                                    .put(Emailv31.Message.TEMPLATELANGUAGE, true)
-                                    .put(Emailv31.Message.SUBJECT, subject)));
-
-            // Envoi de l'email
-            clientMailjet.post(requete);
-
-
-
-        } catch (MailjetException | JSONException e) {
+        }
+    }
 
+    /**
+     * Envoie un email via Mailjet en signalant les échecs, pour permettre de réessayer l'envoi
+     *
+     * @param email Email du destinataire
+     * @param text Texte personnalisé (variable personalmessage)
+     * @param heading Titre personnalisé (variable personalheading)
+     * @param subject Sujet de l'email
+     * @throws MailjetException si Mailjet est injoignable ou refuse la requête
+     * @throws JSONException si la requête ne peut pas être construite
+     * @throws IllegalStateException si Mailjet répond avec un statut d'erreur
+     */
+    public void envoyer(String email, String text, String heading, String subject) throws MailjetException, JSONException {
+
+        // Construction de la requête Mailjet
+        MailjetRequest requete = new MailjetRequest(Emailv31.resource)
+                .property(Emailv31.MESSAGES, new JSONArray()
+                        .put(new JSONObject()
+                                .put(Emailv31.Message.FROM, new JSONObject()
+                                        .put("Email", emailExpediteur)
+                                        .put("Name", nomExpediteur))
+                                .put(Emailv31.Message.TO, new JSONArray()
+                                        .put(new JSONObject()
+                                                .put("Email", email)))
+                                .put(Emailv31.Message.VARIABLES, new JSONObject()
+                                        .put("personalmessage", text)
+                                        .put("personalheading", heading))
+                                .put(Emailv31.Message.TEMPLATEID, idTemplate)
+                                .put(Emailv31.Message.TEMPLATELANGUAGE, true)
+                                .put(Emailv31.Message.SUBJECT, subject)));
+
+        // Envoi de l'email
+        MailjetResponse reponse = clientMailjet.post(requete);
+        if (reponse.getStatus() < 200 || reponse.getStatus() >= 300) {
+            throw new IllegalStateException("Mailjet a refusé l'email (statut " + reponse.getStatus() + ")");
         }
     }
 }
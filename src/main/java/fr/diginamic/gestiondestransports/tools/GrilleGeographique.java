@@ -0,0 +1,86 @@
+package fr.diginamic.gestiondestransports.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Découpage de la surface terrestre en cellules de 0,1° x 0,1° (environ 11 km x 8 km en France)
+ * Chaque adresse géocodée est rattachée à une cellule indexée en base, ce qui permet de limiter
+ * une recherche par rayon aux seules cellules couvrant le rectangle englobant du cercle recherché.
+ */
+public final class GrilleGeographique {
+
+    // Taille d'une cellule en degrés
+    public static final double PAS_DEGRES = 0.1;
+
+    private static final double RAYON_TERRE_KM = 6371.0;
+    private static final double KM_PAR_DEGRE_LATITUDE = 111.32;
+    private static final int NB_COLONNES = (int) Math.round(360 / PAS_DEGRES);
+    private static final int NB_LIGNES = (int) Math.round(180 / PAS_DEGRES);
+
+    private GrilleGeographique() {
+    }
+
+    /**
+     * Calcule l'identifiant de la cellule contenant un point
+     *
+     * @param latitude latitude en degrés décimaux
+     * @param longitude longitude en degrés décimaux
+     * @return l'identifiant de la cellule
+     */
+    public static long cellule(double latitude, double longitude) {
+        return (long) ligne(latitude) * NB_COLONNES + colonne(longitude);
+    }
+
+    /**
+     * Liste les cellules couvrant le rectangle englobant d'un cercle
+     *
+     * @param latitude latitude du centre
+     * @param longitude longitude du centre
+     * @param rayonKm rayon du cercle en kilomètres
+     * @return les identifiants des cellules à explorer
+     */
+    public static List<Long> cellulesCouvrant(double latitude, double longitude, double rayonKm) {
+        double deltaLatitude = rayonKm / KM_PAR_DEGRE_LATITUDE;
+        // Au-delà de ±89°, la largeur d'un degré de longitude tend vers 0 : on couvre toute la bande
+        double cosLatitude = Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + deltaLatitude, 89.0)));
+        double deltaLongitude = Math.min(180.0, rayonKm / (KM_PAR_DEGRE_LATITUDE * cosLatitude));
+
+        int ligneMin = ligne(latitude - deltaLatitude);
+        int ligneMax = ligne(latitude + deltaLatitude);
+        int colonneMin = colonne(longitude - deltaLongitude);
+        int colonneMax = colonne(longitude + deltaLongitude);
+
+        List<Long> cellules = new ArrayList<>();
+        for (int l = ligneMin; l <= ligneMax; l++) {
+            for (int c = colonneMin; c <= colonneMax; c++) {
+                cellules.add((long) l * NB_COLONNES + c);
+            }
+        }
+        return cellules;
+    }
+
+    /**
+     * Distance à vol d'oiseau entre deux points (formule de haversine)
+     *
+     * @return la distance en kilomètres
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RAYON_TERRE_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private static int ligne(double latitude) {
+        int ligne = (int) Math.floor((latitude + 90) / PAS_DEGRES);
+        return Math.max(0, Math.min(NB_LIGNES - 1, ligne));
+    }
+
+    private static int colonne(double longitude) {
+        int colonne = (int) Math.floor((longitude + 180) / PAS_DEGRES);
+        return Math.max(0, Math.min(NB_COLONNES - 1, colonne));
+    }
+}
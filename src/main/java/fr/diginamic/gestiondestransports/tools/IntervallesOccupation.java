@@ -0,0 +1,189 @@
+package fr.diginamic.gestiondestransports.tools;
+
+import fr.diginamic.gestiondestransports.dto.CreneauOccupeDto;
+import fr.diginamic.gestiondestransports.dto.UsageVehiculeDto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index en mémoire des occupations d'un véhicule : créneaux occupés fusionnés (chevauchants ou contigus),
+ * triés et disjoints, stockés en secondes dans deux tableaux parallèles.
+ * Les fins étant triées comme les débuts, une seule recherche dichotomique situe une période
+ * parmi les créneaux : chevauchement et créneau libre qui l'entoure en O(log n), sans allocation.
+ */
+public final class IntervallesOccupation {
+
+    private static final IntervallesOccupation VIDE = new IntervallesOccupation(new long[0], new long[0]);
+
+    private final long[] debuts;
+    private final long[] fins;
+
+    private IntervallesOccupation(long[] debuts, long[] fins) {
+        this.debuts = debuts;
+        this.fins = fins;
+    }
+
+    /**
+     * Index d'un véhicule sans aucune occupation
+     */
+    public static IntervallesOccupation vide() {
+        return VIDE;
+    }
+
+    /**
+     * Construit l'index de chaque véhicule à partir de ses occupations (réservations, trajets de covoiturage)
+     *
+     * @param usages les occupations de tous les véhicules, dans un ordre quelconque
+     * @return l'index par identifiant de véhicule (absent si le véhicule n'a aucune occupation)
+     */
+    public static Map<Long, IntervallesOccupation> parVehicule(List<UsageVehiculeDto> usages) {
+        List<UsageVehiculeDto> triees = new ArrayList<>(usages);
+        triees.sort(Comparator.comparing(UsageVehiculeDto::vehiculeId).thenComparing(UsageVehiculeDto::debut));
+
+        Map<Long, IntervallesOccupation> index = new HashMap<>();
+        int debutGroupe = 0;
+        for (int i = 1; i <= triees.size(); i++) {
+            if (i == triees.size() || !triees.get(i).vehiculeId().equals(triees.get(debutGroupe).vehiculeId())) {
+                index.put(triees.get(debutGroupe).vehiculeId(), fusionner(triees.subList(debutGroupe, i)));
+                debutGroupe = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Occupations de la flotte construites à partir d'occupations lues en base, indexées par véhicule
+     *
+     * @param usages les occupations de tous les véhicules, dans un ordre quelconque
+     * @return les occupations interrogeables par véhicule
+     */
+    public static OccupationsFlotte flotte(List<UsageVehiculeDto> usages) {
+        Map<Long, IntervallesOccupation> index = parVehicule(usages);
+        return new OccupationsFlotte() {
+            @Override
+            public boolean chevauche(Long vehiculeId, LocalDateTime debut, LocalDateTime fin) {
+                return index.getOrDefault(vehiculeId, VIDE).chevauche(debut, fin);
+            }
+
+            @Override
+            public long minutesLibresAutour(Long vehiculeId, LocalDateTime debut, LocalDateTime fin,
+                                            LocalDateTime horizonDebut, LocalDateTime horizonFin) {
+                return index.getOrDefault(vehiculeId, VIDE).minutesLibresAutour(debut, fin, horizonDebut, horizonFin);
+            }
+        };
+    }
+
+    /**
+     * Construit un seul index à partir d'occupations, quel que soit leur véhicule
+     *
+     * @param usages les occupations, dans un ordre quelconque
+     * @return l'index des créneaux occupés fusionnés
+     */
+    public static IntervallesOccupation de(List<UsageVehiculeDto> usages) {
+        List<UsageVehiculeDto> triees = new ArrayList<>(usages);
+        triees.sort(Comparator.comparing(UsageVehiculeDto::debut));
+        return fusionner(triees);
+    }
+
+    /**
+     * Indique si une période chevauche un créneau occupé (des bornes qui se touchent ne se chevauchent pas)
+     */
+    public boolean chevauche(LocalDateTime debut, LocalDateTime fin) {
+        int i = premiereFinApres(secondes(debut));
+        return i < fins.length && debuts[i] < secondes(fin);
+    }
+
+    /**
+     * Premier créneau occupé (après fusion) qui chevauche une période
+     *
+     * @return le créneau, ou null si la période est libre
+     */
+    public CreneauOccupeDto creneauChevauchant(LocalDateTime debut, LocalDateTime fin) {
+        int i = premiereFinApres(secondes(debut));
+        if (i == fins.length || debuts[i] >= secondes(fin)) {
+            return null;
+        }
+        return new CreneauOccupeDto(date(debuts[i]), date(fins[i]));
+    }
+
+    /**
+     * Temps libre, en minutes, laissé de part et d'autre d'une période libre dans le créneau libre qui la contient,
+     * borné par un horizon : 0 si la période comble exactement un trou entre deux occupations.
+     * Plus la valeur est faible, moins réserver cette période morcelle le planning du véhicule.
+     *
+     * @param debut début de la période, libre
+     * @param fin fin de la période, libre
+     * @param horizonDebut borne basse du créneau libre (antérieure ou égale au début)
+     * @param horizonFin borne haute du créneau libre (postérieure ou égale à la fin)
+     * @return minutes libres avant et après la période
+     */
+    public long minutesLibresAutour(LocalDateTime debut, LocalDateTime fin,
+                                    LocalDateTime horizonDebut, LocalDateTime horizonFin) {
+        long sDebut = secondes(debut);
+        long sFin = secondes(fin);
+        int i = premiereFinApres(sDebut);
+        long libreDepuis = i > 0 ? Math.max(fins[i - 1], secondes(horizonDebut)) : secondes(horizonDebut);
+        long libreJusqua = i < debuts.length ? Math.min(debuts[i], secondes(horizonFin)) : secondes(horizonFin);
+        return (Math.max(0, sDebut - libreDepuis) + Math.max(0, libreJusqua - sFin)) / 60;
+    }
+
+    /**
+     * Nombre de créneaux occupés après fusion
+     */
+    public int taille() {
+        return debuts.length;
+    }
+
+    /**
+     * Indice du premier créneau qui se termine strictement après un instant (taille() si aucun)
+     */
+    private int premiereFinApres(long instant) {
+        int bas = 0;
+        int haut = fins.length;
+        while (bas < haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (fins[milieu] <= instant) {
+                bas = milieu + 1;
+            } else {
+                haut = milieu;
+            }
+        }
+        return bas;
+    }
+
+    /**
+     * Fusionne les occupations d'un véhicule, triées par début
+     */
+    private static IntervallesOccupation fusionner(List<UsageVehiculeDto> usages) {
+        long[] debuts = new long[usages.size()];
+        long[] fins = new long[usages.size()];
+        int n = 0;
+        for (UsageVehiculeDto usage : usages) {
+            long debut = secondes(usage.debut());
+            long fin = secondes(usage.fin());
+            if (n > 0 && debut <= fins[n - 1]) {
+                fins[n - 1] = Math.max(fins[n - 1], fin);
+            } else {
+                debuts[n] = debut;
+                fins[n] = fin;
+                n++;
+            }
+        }
+        return new IntervallesOccupation(Arrays.copyOf(debuts, n), Arrays.copyOf(fins, n));
+    }
+
+    private static long secondes(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime date(long secondes) {
+        return LocalDateTime.ofEpochSecond(secondes, 0, ZoneOffset.UTC);
+    }
+}
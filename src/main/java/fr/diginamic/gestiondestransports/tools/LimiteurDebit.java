@@ -0,0 +1,41 @@
+package fr.diginamic.gestiondestransports.tools;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limite le nombre d'appels par seconde à un service externe, tous threads confondus.
+ * Chaque appel réserve le prochain créneau libre puis attend son heure : les appels sont
+ * espacés régulièrement, sans rafale, quel que soit le nombre de threads appelants.
+ */
+public class LimiteurDebit {
+
+    private final long intervalleNanos;
+    private long prochainCreneau = System.nanoTime();
+
+    /**
+     * @param appelsParSeconde le nombre maximal d'appels par seconde (strictement positif)
+     */
+    public LimiteurDebit(double appelsParSeconde) {
+        if (appelsParSeconde <= 0) {
+            throw new IllegalArgumentException("Le débit doit être strictement positif");
+        }
+        this.intervalleNanos = (long) (TimeUnit.SECONDS.toNanos(1) / appelsParSeconde);
+    }
+
+    /**
+     * Attend le prochain créneau disponible
+     * @throws InterruptedException si le thread est interrompu pendant l'attente
+     */
+    public void acquerir() throws InterruptedException {
+        long attente;
+        synchronized (this) {
+            long maintenant = System.nanoTime();
+            long creneau = Math.max(prochainCreneau, maintenant);
+            prochainCreneau = creneau + intervalleNanos;
+            attente = creneau - maintenant;
+        }
+        if (attente > 0) {
+            TimeUnit.NANOSECONDS.sleep(attente);
+        }
+    }
+}
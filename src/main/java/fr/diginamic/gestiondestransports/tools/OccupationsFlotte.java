@@ -0,0 +1,23 @@
+package fr.diginamic.gestiondestransports.tools;
+
+import java.time.LocalDateTime;
+
+/**
+ * Occupations des véhicules de service interrogeables par véhicule : chevauchement d'une période
+ * et créneau libre qui l'entoure. Servies par l'index en mémoire de la flotte quand il est chargé,
+ * sinon par des occupations lues en base pour la requête.
+ */
+public interface OccupationsFlotte {
+
+    /**
+     * Indique si une période chevauche une occupation du véhicule (des bornes qui se touchent ne se chevauchent pas)
+     */
+    boolean chevauche(Long vehiculeId, LocalDateTime debut, LocalDateTime fin);
+
+    /**
+     * Temps libre, en minutes, laissé de part et d'autre d'une période libre du véhicule dans le créneau libre
+     * qui la contient, borné par un horizon (voir IntervallesOccupation.minutesLibresAutour)
+     */
+    long minutesLibresAutour(Long vehiculeId, LocalDateTime debut, LocalDateTime fin,
+                             LocalDateTime horizonDebut, LocalDateTime horizonFin);
+}
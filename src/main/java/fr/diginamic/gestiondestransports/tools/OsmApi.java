@@ -22,6 +22,9 @@ public class OsmApi {
     private static final String NOMINATIM_URL = "https://nominatim.openstreetmap.org/search";
     private static final String OSRM_URL = "http://router.project-osrm.org/route/v1/driving";
 
+    // Écart maximal toléré lors de la simplification du tracé conservé pour l'annonce
+    private static final double TOLERANCE_TRACE_KM = 0.1;
+
     public OsmApi() {
         this.restTemplate = new RestTemplate();
         this.objectMapper = new ObjectMapper();
@@ -71,14 +74,24 @@ public class OsmApi {
     public static class ResultatItineraire {
         private final Integer distanceKm;
         private final Integer dureeMinutes;
+        private final String traceEncodee;
         /**
          * Représentation textuelle du résultat de l'itinéraire.
          *
          * @return chaîne formatée contenant la distance en km et la durée en minutes
          */
         public ResultatItineraire(Integer distanceKm, Integer dureeMinutes) {
+            this(distanceKm, dureeMinutes, null);
+        }
+        /**
+         * Résultat de l'itinéraire accompagné du tracé de la route.
+         *
+         * @param traceEncodee tracé simplifié de la route au format polyline, null si indisponible
+         */
+        public ResultatItineraire(Integer distanceKm, Integer dureeMinutes, String traceEncodee) {
             this.distanceKm = distanceKm;
             this.dureeMinutes = dureeMinutes;
+            this.traceEncodee = traceEncodee;
         }
         /**
          * Obtient la distance calculée de l'itinéraire.
@@ -96,6 +109,14 @@ public class OsmApi {
         public Integer getDureeMinutes() {
             return dureeMinutes;
         }
+        /**
+         * Obtient le tracé simplifié de la route.
+         *
+         * @return le tracé au format polyline (précision 5), null si OSRM ne l'a pas fourni
+         */
+        public String getTraceEncodee() {
+            return traceEncodee;
+        }
 
 
         /**
@@ -111,13 +132,18 @@ public class OsmApi {
     }
 
     /**
-     * Obtient les coordonnées géographiques d'une adresse via l'API Nominatim
+     * Obtient les coordonnées géographiques d'une adresse.
+     * Si l'adresse a déjà été géocodée, ses coordonnées enregistrées sont réutilisées sans appel réseau.
+     * Sinon l'API Nominatim est interrogée et le résultat est conservé sur l'adresse.
      *
      * @param adresse L'adresse à géolocaliser
      * @return Les coordonnées (latitude, longitude) ou null si non trouvée
      */
     public Coordonnees obtenirCoordonnees(Adresse adresse) {
 
+        if (adresse.aDesCoordonnees()) {
+            return new Coordonnees(adresse.getLatitude(), adresse.getLongitude());
+        }
 
         try {
             // Construction de la requête d'adresse
@@ -157,6 +183,10 @@ public class OsmApi {
 
                 Coordonnees coords = new Coordonnees(latitude, longitude);
 
+                // Conserver les coordonnées pour les prochains enrichissements
+                adresse.setLatitude(latitude);
+                adresse.setLongitude(longitude);
+
 
                 return coords;
             } else {
@@ -186,7 +216,7 @@ public class OsmApi {
         try {
             // Construction de l'URL OSRM
             // Format : lon,lat;lon,lat (ATTENTION : longitude d'abord, puis latitude !)
-            String url = String.format(Locale.US, "%s/%.7f,%.7f;%.7f,%.7f?overview=false&steps=false",
+            String url = String.format(Locale.US, "%s/%.7f,%.7f;%.7f,%.7f?overview=simplified&geometries=polyline&steps=false",
                     OSRM_URL, lonDepart, latDepart, lonArrivee, latArrivee);
 
 
@@ -220,7 +250,15 @@ public class OsmApi {
                         Integer dureeMinutes = (int) Math.round(dureeSecondes / 60.0);
 
 
-                        ResultatItineraire resultat = new ResultatItineraire(distanceKm, dureeMinutes);
+                        // Tracé de la route, simplifié pour limiter sa taille en base
+                        String traceEncodee = null;
+                        JsonNode geometrie = premiereRoute.get("geometry");
+                        if (geometrie != null && geometrie.isTextual() && !geometrie.asText().isEmpty()) {
+                            traceEncodee = TraceItineraire.encoder(TraceItineraire.simplifier(
+                                    TraceItineraire.decoder(geometrie.asText()), TOLERANCE_TRACE_KM));
+                        }
+
+                        ResultatItineraire resultat = new ResultatItineraire(distanceKm, dureeMinutes, traceEncodee);
 
 
                         return resultat;
@@ -293,6 +331,7 @@ public class OsmApi {
 
             annonce.setDistance(itineraire.getDistanceKm());
             annonce.setDureeTrajet(itineraire.getDureeMinutes());
+            annonce.setTraceItineraire(itineraire.getTraceEncodee());
 
 
             return true;
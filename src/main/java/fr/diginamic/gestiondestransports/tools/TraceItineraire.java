@@ -0,0 +1,221 @@
+package fr.diginamic.gestiondestransports.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outils de manipulation du tracé d'un itinéraire (suite de points latitude/longitude)
+ * - encodage/décodage au format "polyline" (précision 5, format utilisé par OSRM)
+ * - simplification par l'algorithme de Douglas-Peucker
+ * - projection d'un point sur le tracé (distance au tracé et position le long du trajet)
+ * Les calculs de distance utilisent une projection plane locale, suffisante à l'échelle d'un détour.
+ */
+public final class TraceItineraire {
+
+    private static final double PRECISION = 1e5;
+    private static final double KM_PAR_DEGRE = 111.32;
+
+    private TraceItineraire() {
+    }
+
+    /**
+     * Résultat de la projection d'un point sur un tracé
+     *
+     * @param distanceKm distance entre le point et le tracé
+     * @param abscisseKm distance parcourue depuis le départ jusqu'au point du tracé le plus proche
+     */
+    public record Projection(double distanceKm, double abscisseKm) {
+    }
+
+    /**
+     * Encode une suite de points au format polyline
+     *
+     * @param points les points {latitude, longitude}
+     * @return la chaîne encodée
+     */
+    public static String encoder(List<double[]> points) {
+        StringBuilder sb = new StringBuilder();
+        long latPrecedente = 0;
+        long lonPrecedente = 0;
+        for (double[] point : points) {
+            long lat = Math.round(point[0] * PRECISION);
+            long lon = Math.round(point[1] * PRECISION);
+            encoderValeur(lat - latPrecedente, sb);
+            encoderValeur(lon - lonPrecedente, sb);
+            latPrecedente = lat;
+            lonPrecedente = lon;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Décode une chaîne au format polyline
+     *
+     * @param encodee la chaîne encodée
+     * @return les points {latitude, longitude}
+     * @throws IllegalArgumentException si la chaîne est mal formée
+     */
+    public static List<double[]> decoder(String encodee) {
+        List<double[]> points = new ArrayList<>();
+        int[] index = {0};
+        long lat = 0;
+        long lon = 0;
+        while (index[0] < encodee.length()) {
+            lat += decoderValeur(encodee, index);
+            lon += decoderValeur(encodee, index);
+            points.add(new double[]{lat / PRECISION, lon / PRECISION});
+        }
+        return points;
+    }
+
+    /**
+     * Simplifie un tracé en supprimant les points qui s'écartent de moins d'une tolérance (Douglas-Peucker)
+     * Le premier et le dernier point sont toujours conservés.
+     *
+     * @param points les points du tracé
+     * @param toleranceKm écart maximal toléré entre le tracé simplifié et le tracé d'origine
+     * @return le tracé simplifié
+     */
+    public static List<double[]> simplifier(List<double[]> points, double toleranceKm) {
+        if (points.size() < 3) {
+            return new ArrayList<>(points);
+        }
+        boolean[] conserve = new boolean[points.size()];
+        conserve[0] = true;
+        conserve[points.size() - 1] = true;
+
+        // Pile de segments [début, fin] à examiner, pour éviter la récursion sur les longs tracés
+        List<int[]> aTraiter = new ArrayList<>();
+        aTraiter.add(new int[]{0, points.size() - 1});
+        while (!aTraiter.isEmpty()) {
+            int[] segment = aTraiter.remove(aTraiter.size() - 1);
+            int debut = segment[0];
+            int fin = segment[1];
+            double ecartMax = 0;
+            int indexMax = -1;
+            for (int i = debut + 1; i < fin; i++) {
+                double ecart = distanceAuSegmentKm(points.get(i), points.get(debut), points.get(fin))[0];
+                if (ecart > ecartMax) {
+                    ecartMax = ecart;
+                    indexMax = i;
+                }
+            }
+            if (indexMax != -1 && ecartMax > toleranceKm) {
+                conserve[indexMax] = true;
+                aTraiter.add(new int[]{debut, indexMax});
+                aTraiter.add(new int[]{indexMax, fin});
+            }
+        }
+
+        List<double[]> resultat = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (conserve[i]) {
+                resultat.add(points.get(i));
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Projette un point sur un tracé
+     *
+     * @param points les points du tracé (au moins un)
+     * @param latitude latitude du point
+     * @param longitude longitude du point
+     * @return la distance au tracé et la position du point le plus proche le long du tracé
+     */
+    public static Projection projeter(List<double[]> points, double latitude, double longitude) {
+        double[] point = {latitude, longitude};
+        if (points.size() == 1) {
+            return new Projection(distanceKm(point, points.get(0)), 0);
+        }
+        double meilleureDistance = Double.MAX_VALUE;
+        double meilleureAbscisse = 0;
+        double parcouru = 0;
+        for (int i = 0; i < points.size() - 1; i++) {
+            double[] a = points.get(i);
+            double[] b = points.get(i + 1);
+            double[] resultat = distanceAuSegmentKm(point, a, b);
+            double longueur = distanceKm(a, b);
+            if (resultat[0] < meilleureDistance) {
+                meilleureDistance = resultat[0];
+                meilleureAbscisse = parcouru + resultat[1] * longueur;
+            }
+            parcouru += longueur;
+        }
+        return new Projection(meilleureDistance, meilleureAbscisse);
+    }
+
+    /**
+     * Échantillonne un tracé en ajoutant des points intermédiaires tous les pasKm au plus
+     *
+     * @param points les points du tracé
+     * @param pasKm distance maximale entre deux points consécutifs
+     * @return les points échantillonnés, extrémités comprises
+     */
+    public static List<double[]> echantillonner(List<double[]> points, double pasKm) {
+        List<double[]> resultat = new ArrayList<>();
+        if (points.isEmpty()) {
+            return resultat;
+        }
+        resultat.add(points.get(0));
+        for (int i = 0; i < points.size() - 1; i++) {
+            double[] a = points.get(i);
+            double[] b = points.get(i + 1);
+            int nbPas = (int) Math.ceil(distanceKm(a, b) / pasKm);
+            for (int k = 1; k <= nbPas; k++) {
+                double t = (double) k / nbPas;
+                resultat.add(new double[]{a[0] + (b[0] - a[0]) * t, a[1] + (b[1] - a[1]) * t});
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Distance d'un point à un segment [a, b] en projection plane locale
+     *
+     * @return {distance en km, position relative du point projeté sur le segment entre 0 et 1}
+     */
+    private static double[] distanceAuSegmentKm(double[] p, double[] a, double[] b) {
+        double cosLatitude = Math.cos(Math.toRadians(p[0]));
+        double ax = (a[1] - p[1]) * cosLatitude * KM_PAR_DEGRE;
+        double ay = (a[0] - p[0]) * KM_PAR_DEGRE;
+        double bx = (b[1] - p[1]) * cosLatitude * KM_PAR_DEGRE;
+        double by = (b[0] - p[0]) * KM_PAR_DEGRE;
+        double dx = bx - ax;
+        double dy = by - ay;
+        double longueur2 = dx * dx + dy * dy;
+        double t = longueur2 == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / longueur2));
+        double x = ax + t * dx;
+        double y = ay + t * dy;
+        return new double[]{Math.sqrt(x * x + y * y), t};
+    }
+
+    private static double distanceKm(double[] a, double[] b) {
+        return GrilleGeographique.distanceKm(a[0], a[1], b[0], b[1]);
+    }
+
+    private static void encoderValeur(long valeur, StringBuilder sb) {
+        long v = valeur < 0 ? ~(valeur << 1) : valeur << 1;
+        while (v >= 0x20) {
+            sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        sb.append((char) (v + 63));
+    }
+
+    private static long decoderValeur(String encodee, int[] index) {
+        long resultat = 0;
+        int decalage = 0;
+        int octet;
+        do {
+            if (index[0] >= encodee.length()) {
+                throw new IllegalArgumentException("Tracé d'itinéraire mal formé");
+            }
+            octet = encodee.charAt(index[0]++) - 63;
+            resultat |= (long) (octet & 0x1f) << decalage;
+            decalage += 5;
+        } while (octet >= 0x20);
+        return (resultat & 1) != 0 ? ~(resultat >> 1) : resultat >> 1;
+    }
+}
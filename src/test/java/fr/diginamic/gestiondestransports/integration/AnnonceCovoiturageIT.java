@@ -1,5 +1,7 @@
 package fr.diginamic.gestiondestransports.integration;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.diginamic.gestiondestransports.dto.AdresseDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageAvecPlacesDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
@@ -11,8 +13,13 @@ import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageReposito
 import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
 import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import fr.diginamic.gestiondestransports.services.ExportCovoiturageService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
@@ -20,6 +27,8 @@ import org.springframework.http.*;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +61,18 @@ public class AnnonceCovoiturageIT {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private ExportCovoiturageService exportCovoiturageService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${covoit.export.taille-lot:1000}")
+    private int tailleLot;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     // Endpoints
     private static final String AUTH_BASE = "/api/auth";
     private static final String AUTH_REGISTER = AUTH_BASE + "/register";
@@ -468,9 +489,34 @@ public class AnnonceCovoiturageIT {
         assertTrue(resp.getBody().stream().anyMatch(a -> annonceId.equals(a.annonce().id())));
     }
 
-    // ------------------- 10) DELETE /reserve/{id} (user2) -------------------
+    // ------------------- 10) Liste : nombre de requêtes SQL constant -------------------
     @Test
     @Order(10)
+    @DisplayName("IT - La liste de toutes les annonces (GET /, en flux) s'exécute en une requête SQL par lot")
+    void list_all_single_query() throws IOException {
+        // Le parcours s'arrête au premier lot incomplet, éventuellement vide
+        long lots = annonceCovoiturageRepository.count() / tailleLot + 1;
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        exportCovoiturageService.ecrireAnnoncesJson(sortie);
+
+        assertEquals(lots, statistics.getPrepareStatementCount(),
+                "Chaque lot d'annonces doit être chargé en un seul aller-retour, quel que soit le nombre d'annonces du lot");
+        boolean trouvee = false;
+        for (JsonNode annonce : objectMapper.readTree(sortie.toByteArray())) {
+            trouvee |= annonceId.equals(annonce.path("annonce").path("id").asLong());
+        }
+        assertTrue(trouvee);
+
+        statistics.setStatisticsEnabled(false);
+    }
+
+    // ------------------- 11) DELETE /reserve/{id} (user2) -------------------
+    @Test
+    @Order(11)
     @DisplayName("IT - Annulation de réservation par user2 (200) + places occupées = 0")
     void cancel_reservation_ok() {
         HttpEntity<Void> req = new HttpEntity<>(createAuthHeaders(jwtToken2));
@@ -496,9 +542,9 @@ public class AnnonceCovoiturageIT {
         assertEquals(0, get.getBody().placesOccupees());
     }
 
-    // ------------------- 11) DELETE /{id} par le propriétaire -------------------
+    // ------------------- 12) DELETE /{id} par le propriétaire -------------------
     @Test
-    @Order(11)
+    @Order(12)
     @DisplayName("IT - Suppression d'une annonce par le propriétaire (204)")
     void delete_ok_owner() {
         HttpEntity<Void> req = new HttpEntity<>(createAuthHeaders(jwtToken));
@@ -0,0 +1,147 @@
+package fr.diginamic.gestiondestransports.integration;
+
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
+import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
+import fr.diginamic.gestiondestransports.services.ReservationVehiculeService;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Issue;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Resultat;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Strategie;
+import fr.diginamic.gestiondestransports.stress.ReservationsVehiculeConcurrentes;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests d'intégration de la création simultanée de réservations d'un même véhicule de service.
+ * Utilise une vraie base de données (TEST_covoit) : le verrou du véhicule (SELECT ... FOR UPDATE)
+ * est vérifié sur le moteur de production, pas seulement sur H2.
+ * Tous les utilisateurs demandent le même véhicule sur le même créneau :
+ * - l'ancien fonctionnement (vérification puis insertion, sans verrou) doit produire des doubles réservations,
+ *   sans quoi le test ne met pas le verrou à l'épreuve
+ * - ReservationVehiculeService.create ne doit en accepter qu'une
+ * Les mesures de débit et de latence restent dans ReservationVehiculeStressTest.
+ * Execute avec Maven Failsafe plugin via la commande: mvn verify
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReservationVehiculeConcurrenceIT {
+
+    private static final int NB_UTILISATEURS = 40;
+    private static final int NB_THREADS = 16;
+
+    @Autowired
+    private ReservationVehiculeService reservationVehiculeService;
+    @Autowired
+    private ReservationVehiculeRepository reservationVehiculeRepository;
+    @Autowired
+    private UtilisateurRepository utilisateurRepository;
+    @Autowired
+    private VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final String suffixe = Long.toString(System.currentTimeMillis(), 36);
+    private ReservationsVehiculeConcurrentes reservations;
+    private List<Utilisateur> utilisateurs;
+    private final List<VehiculeEntreprise> vehicules = new ArrayList<>();
+    private int semaine;
+
+    /**
+     * Crée les utilisateurs concurrents, tous vérifiés
+     */
+    @BeforeAll
+    void preparerDonnees() {
+        reservations = new ReservationsVehiculeConcurrentes(reservationVehiculeService, reservationVehiculeRepository,
+                vehiculeEntrepriseRepository, jdbcTemplate, new TransactionTemplate(transactionManager));
+        utilisateurs = new ArrayList<>();
+        for (int i = 0; i < NB_UTILISATEURS; i++) {
+            Utilisateur utilisateur = new Utilisateur("Concurrence", "conducteur" + i,
+                    "concurrence." + suffixe + "." + i + "@example.com", RoleEnum.ROLE_USER);
+            utilisateur.setEstVerifie(true);
+            utilisateur.setEstBanni(false);
+            utilisateurs.add(utilisateur);
+        }
+        utilisateurs = utilisateurRepository.saveAll(utilisateurs);
+    }
+
+    /**
+     * Supprime les réservations, véhicules et utilisateurs créés par les tests
+     */
+    @AfterAll
+    void nettoyer() {
+        for (VehiculeEntreprise vehicule : vehicules) {
+            jdbcTemplate.update("DELETE FROM vehicule_entreprise_reservations WHERE vehicule_entreprise_id = ?", vehicule.getId());
+        }
+        vehiculeEntrepriseRepository.deleteAll(vehicules);
+        utilisateurRepository.deleteAll(utilisateurs);
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Sans verrou, des réservations simultanées du même créneau se chevauchent")
+    void lectureVerificationInsertion_produitDesDoublesReservations() throws Exception {
+        Resultat resultat = executer(Strategie.LECTURE_VERIFICATION_INSERTION);
+
+        assertEquals(0, resultat.nombre(Issue.ERREUR), "Aucune erreur inattendue");
+        assertTrue(resultat.anomalies() > 0,
+                "L'ancien fonctionnement doit produire des doubles réservations : sinon le scénario ne teste pas le verrou");
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Avec le verrou du véhicule, une seule réservation simultanée du même créneau est acceptée")
+    void verrouVehicule_aucuneDoubleReservation() throws Exception {
+        Resultat resultat = executer(Strategie.VERROU_VEHICULE);
+
+        assertEquals(0, resultat.nombre(Issue.ERREUR), "Aucune erreur inattendue");
+        assertEquals(0, resultat.nombre(Issue.CONFLIT), "Aucun interblocage ni délai de verrou dépassé");
+        assertEquals(1, resultat.nombre(Issue.RESERVEE), "Une seule réservation acceptée");
+        assertEquals(NB_UTILISATEURS - 1, resultat.nombre(Issue.REFUSEE), "Les autres demandes sont refusées");
+        assertEquals(1, resultat.reservations());
+        assertEquals(0, resultat.anomalies());
+    }
+
+    /**
+     * Tous les utilisateurs demandent simultanément le même véhicule, neuf, sur le même créneau d'une semaine encore libre
+     */
+    private Resultat executer(Strategie strategie) throws Exception {
+        LocalDateTime debut = LocalDateTime.now().plusDays(30L + 7L * semaine++).withHour(6).withMinute(0).withSecond(0).withNano(0);
+        VehiculeEntreprise vehicule = vehiculeEntrepriseRepository.save(new VehiculeEntreprise(null,
+                "CC-" + suffixe + "-" + strategie.ordinal(), 5, "Clio", 110, null, "Renault", null, null, StatutVehicule.EN_SERVICE));
+        vehicules.add(vehicule);
+
+        List<Callable<Issue>> demandes = new ArrayList<>();
+        for (Utilisateur utilisateur : utilisateurs) {
+            demandes.add(() -> reservations.reserver(strategie, utilisateur, vehicule.getId(), debut, debut.plusHours(3)));
+        }
+        MesuresConcurrence.Mesure mesure = MesuresConcurrence.executer(NB_THREADS, demandes);
+
+        List<VehiculeEntreprise> vehiculeTeste = List.of(vehicule);
+        Resultat resultat = mesure.resultat("", strategie,
+                reservations.compterReservations(vehiculeTeste), reservations.compterDoublesReservations(vehiculeTeste));
+        MesuresConcurrence.afficher(String.format("Réservations simultanées du même créneau : %d utilisateurs, %d threads",
+                NB_UTILISATEURS, NB_THREADS), "Doubles", List.of(resultat));
+        return resultat;
+    }
+}
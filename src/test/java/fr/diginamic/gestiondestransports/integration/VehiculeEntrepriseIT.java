@@ -1,16 +1,28 @@
 package fr.diginamic.gestiondestransports.integration;
 
+import fr.diginamic.gestiondestransports.cache.IndexOccupationsVehicules;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
 import fr.diginamic.gestiondestransports.dto.VehiculeDTO;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.ReservationVehicule;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
 import fr.diginamic.gestiondestransports.enums.Categorie;
 import fr.diginamic.gestiondestransports.enums.Motorisation;
 import fr.diginamic.gestiondestransports.enums.RoleEnum;
 import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.mapper.VehiculeMapper;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.PlanningFlotteJdbcRepository;
+import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
 import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
+import fr.diginamic.gestiondestransports.services.impl.VehiculeEntrepriseServiceImpl;
+import fr.diginamic.gestiondestransports.shared.NotFoundException;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.*;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
@@ -39,12 +51,33 @@ public class VehiculeEntrepriseIT {
     @Autowired
     private VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
 
+    @Autowired
+    private ReservationVehiculeRepository reservationVehiculeRepository;
+
     @Autowired
     private UtilisateurRepository utilisateurRepository;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    @Autowired
+    private PlanningFlotteJdbcRepository planningFlotteJdbcRepository;
+
+    @Autowired
+    private IndexOccupationsVehicules indexOccupations;
+
+    @Autowired
+    private VehiculeMapper vehiculeMapper;
+
+    @Autowired
+    private VersionsAgregats versionsAgregats;
+
+    @Autowired
+    private ApplicationEventPublisher evenements;
+
     private static final String BASE_URL = "/api/vehicules-entreprise";
     private static String jwtTokenAdmin;
     private static String jwtTokenUser;
@@ -650,4 +683,115 @@ public class VehiculeEntrepriseIT {
 
         System.out.println("✓ Test d'accès non authentifié validé");
     }
-}
\ No newline at end of file
+
+    /**
+     * Test des bornes de la requête de disponibilité (anti-jointure en base).
+     * Une réservation qui touche la période sans la chevaucher ne bloque pas le véhicule ;
+     * tout chevauchement réel (début, fin, inclusion, englobement) le bloque.
+     */
+    @Test
+    @Order(11)
+    @DisplayName("IT - Disponibilité : réservations contiguës permises, chevauchements exclus")
+    void testVehiculesDisponibles_bornesChevauchement() {
+        // Given - Un véhicule en service réservé de 10h à 12h
+        VehiculeEntreprise vehicule = vehiculeEntrepriseRepository.save(new VehiculeEntreprise(
+                null, "IT-" + System.currentTimeMillis(), 5, "Clio", 100, null, "Renault",
+                Motorisation.THERMIQUE, Categorie.COMPACTE, StatutVehicule.EN_SERVICE));
+        LocalDateTime jour = LocalDateTime.now().plusDays(200).withHour(0).withMinute(0).withSecond(0).withNano(0);
+        ReservationVehicule reservation = reservationVehiculeRepository.save(new ReservationVehicule(
+                utilisateurRepository.findById(userId).orElseThrow(), vehicule, jour.plusHours(10), jour.plusHours(12)));
+
+        try {
+            // Then - Périodes contiguës : véhicule disponible
+            assertTrue(estDisponible(vehicule, jour.plusHours(8), jour.plusHours(10)), "Fin de période = début de réservation");
+            assertTrue(estDisponible(vehicule, jour.plusHours(12), jour.plusHours(14)), "Début de période = fin de réservation");
+
+            // Then - Chevauchements : véhicule indisponible
+            assertFalse(estDisponible(vehicule, jour.plusHours(9), jour.plusHours(11)), "Réservation commençant pendant la période");
+            assertFalse(estDisponible(vehicule, jour.plusHours(11), jour.plusHours(13)), "Réservation finissant pendant la période");
+            assertFalse(estDisponible(vehicule, jour.plusHours(8), jour.plusHours(14)), "Réservation incluse dans la période");
+            assertFalse(estDisponible(vehicule, jour.plusMinutes(630), jour.plusMinutes(690)), "Réservation englobant la période");
+            assertFalse(estDisponible(vehicule, jour.plusHours(10), jour.plusHours(12)), "Période identique");
+
+            System.out.println("✓ Bornes de disponibilité validées");
+        } finally {
+            reservationVehiculeRepository.delete(reservation);
+            vehiculeEntrepriseRepository.delete(vehicule);
+        }
+    }
+
+    /**
+     * Test de cohérence de /dispo selon que l'index des occupations est chargé ou non.
+     * Un trajet de covoiturage qui utilise le véhicule le rend indisponible dans les deux cas :
+     * l'index en mémoire et le repli en base (réservations puis trajets) doivent donner le même résultat.
+     */
+    @Test
+    @Order(12)
+    @DisplayName("IT - Disponibilité : un trajet de covoiturage exclut le véhicule, index chargé ou non")
+    void testVehiculesDisponibles_trajetCovoiturage_indexChargeOuNon() {
+        // Given - Un véhicule en service utilisé par un trajet de covoiturage de 10h à 11h
+        VehiculeEntreprise vehicule = vehiculeEntrepriseRepository.save(new VehiculeEntreprise(
+                null, "IT-" + System.currentTimeMillis(), 5, "Clio", 100, null, "Renault",
+                Motorisation.THERMIQUE, Categorie.COMPACTE, StatutVehicule.EN_SERVICE));
+        LocalDateTime jour = LocalDateTime.now().plusDays(201).withHour(0).withMinute(0).withSecond(0).withNano(0);
+        AnnonceCovoiturage annonce = new AnnonceCovoiturage(jour.plusHours(10), 60, 20, null, null,
+                utilisateurRepository.findById(userId).orElseThrow());
+        annonce.setVehiculeService(vehicule);
+        annonce.setPlacesTotales(vehicule.getNbPlaces());
+        annonce = annonceCovoiturageRepository.save(annonce);
+        // Annonce enregistrée sans passer par le service : l'index est rechargé pour la prendre en compte
+        indexOccupations.charger();
+        // Même service, avec un index jamais chargé : repli sur la base
+        VehiculeEntrepriseServiceImpl serviceSansIndex = new VehiculeEntrepriseServiceImpl(vehiculeEntrepriseRepository,
+                annonceCovoiturageRepository, vehiculeMapper, versionsAgregats, planningFlotteJdbcRepository,
+                new IndexOccupationsVehicules(planningFlotteJdbcRepository), evenements);
+
+        try {
+            // Then - Chevauchement du trajet : véhicule indisponible
+            LocalDateTime debut = jour.plusMinutes(630);
+            LocalDateTime fin = jour.plusHours(12);
+            assertFalse(disponibleViaDispo(vehicule, debut, fin), "/dispo avec l'index chargé");
+            assertFalse(disponibleSansIndex(serviceSansIndex, vehicule, debut, fin), "/dispo sans index");
+
+            // Then - Période qui commence à l'arrivée du trajet : véhicule disponible
+            assertTrue(disponibleViaDispo(vehicule, jour.plusHours(11), fin), "/dispo avec l'index chargé");
+            assertTrue(disponibleSansIndex(serviceSansIndex, vehicule, jour.plusHours(11), fin), "/dispo sans index");
+
+            System.out.println("✓ /dispo cohérent avec ou sans index des occupations");
+        } finally {
+            annonceCovoiturageRepository.delete(annonce);
+            vehiculeEntrepriseRepository.delete(vehicule);
+            indexOccupations.charger();
+        }
+    }
+
+    private boolean disponibleViaDispo(VehiculeEntreprise vehicule, LocalDateTime dateDebut, LocalDateTime dateFin) {
+        // Corps lu en Object : liste des véhicules (200) ou message d'erreur (404 si aucun véhicule disponible)
+        ResponseEntity<Object> response = restTemplate.exchange(
+                BASE_URL + "/dispo?dateDebut=" + dateDebut + "&dateFin=" + dateFin,
+                HttpMethod.GET,
+                new HttpEntity<Void>(createUserAuthHeaders()),
+                Object.class
+        );
+        if (response.getStatusCode() != HttpStatus.OK || !(response.getBody() instanceof List<?> vehicules)) {
+            return false;
+        }
+        return vehicules.stream()
+                .anyMatch(v -> vehicule.getId().equals(((Number) ((Map<?, ?>) v).get("id")).longValue()));
+    }
+
+    private boolean disponibleSansIndex(VehiculeEntrepriseServiceImpl service, VehiculeEntreprise vehicule,
+                                        LocalDateTime dateDebut, LocalDateTime dateFin) {
+        try {
+            return service.findByAvailability(dateDebut, dateFin).stream()
+                    .anyMatch(v -> v.id().equals(vehicule.getId()));
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    private boolean estDisponible(VehiculeEntreprise vehicule, LocalDateTime dateDebut, LocalDateTime dateFin) {
+        return vehiculeEntrepriseRepository.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin).stream()
+                .anyMatch(v -> v.getId().equals(vehicule.getId()));
+    }
+}
@@ -0,0 +1,167 @@
+package fr.diginamic.gestiondestransports.stress;
+
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outils communs aux tests de réservations simultanées : lancement des demandes en parallèle,
+ * mesure du débit et des latences p50/p99, affichage du tableau de comparaison des stratégies.
+ */
+public final class MesuresConcurrence {
+
+    /**
+     * Stratégies de réservation comparées
+     * - LECTURE_VERIFICATION_INSERTION : vérification puis insertion, sans verrou (ancien fonctionnement)
+     * - VERROU_PESSIMISTE : SELECT ... FOR UPDATE sur l'annonce avant comptage et insertion
+     * - VERSION_OPTIMISTE : compare-and-set sur un compteur utilisé comme version, avec nouvelles tentatives
+     * - UPDATE_CONDITIONNEL : AnnonceCovoiturageService.reserverPlace (UPDATE ... WHERE places_occupees < capacité)
+     * - VERROU_VEHICULE : ReservationVehiculeService.create (SELECT ... FOR UPDATE sur le véhicule puis l'utilisateur)
+     */
+    public enum Strategie {
+        LECTURE_VERIFICATION_INSERTION,
+        VERROU_PESSIMISTE,
+        VERSION_OPTIMISTE,
+        UPDATE_CONDITIONNEL,
+        VERROU_VEHICULE
+    }
+
+    /**
+     * Issue d'une tentative de réservation
+     * REFUSEE : refus métier (trajet complet, créneau déjà pris)
+     * CONFLIT : interblocage, délai de verrou dépassé, échec de sérialisation
+     */
+    public enum Issue {
+        RESERVEE,
+        REFUSEE,
+        CONFLIT,
+        ERREUR
+    }
+
+    public record Tentative(Issue issue, long dureeNanos) {
+    }
+
+    /**
+     * Mesures d'une exécution
+     * @param scenario libellé du scénario, vide s'il n'y en a qu'un
+     * @param reservations réservations présentes en base après l'exécution
+     * @param anomalies réservations en trop (surréservations, doubles réservations d'un véhicule)
+     */
+    public record Resultat(String scenario, Strategie strategie, Map<Issue, Integer> issues, double debitParSeconde,
+                           double p50Ms, double p99Ms, long reservations, long anomalies) {
+
+        public int nombre(Issue issue) {
+            return issues.get(issue);
+        }
+    }
+
+    /**
+     * Mesures communes à toutes les exécutions, avant comptage en base
+     */
+    public record Mesure(Map<Issue, Integer> issues, double debitParSeconde, double p50Ms, double p99Ms) {
+
+        public Resultat resultat(String scenario, Strategie strategie, long reservations, long anomalies) {
+            return new Resultat(scenario, strategie, issues, debitParSeconde, p50Ms, p99Ms, reservations, anomalies);
+        }
+    }
+
+    private MesuresConcurrence() {
+    }
+
+    /**
+     * Lance toutes les demandes au même instant sur nbThreads threads et mesure débit et latences
+     * @param nbThreads taille du pool
+     * @param demandes une demande de réservation par utilisateur, retournant son issue
+     * @return les issues, le débit et les latences
+     */
+    public static Mesure executer(int nbThreads, List<Callable<Issue>> demandes) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        CountDownLatch depart = new CountDownLatch(1);
+        List<Future<Tentative>> futures = new ArrayList<>();
+        for (Callable<Issue> demande : demandes) {
+            futures.add(executor.submit(() -> {
+                depart.await();
+                return tenter(demande);
+            }));
+        }
+
+        long debut = System.nanoTime();
+        depart.countDown();
+        List<Tentative> tentatives = new ArrayList<>();
+        try {
+            for (Future<Tentative> future : futures) {
+                tentatives.add(future.get(2, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long dureeTotale = System.nanoTime() - debut;
+
+        Map<Issue, Integer> issues = new EnumMap<>(Issue.class);
+        for (Issue issue : Issue.values()) {
+            issues.put(issue, 0);
+        }
+        List<Long> durees = new ArrayList<>();
+        for (Tentative tentative : tentatives) {
+            issues.merge(tentative.issue(), 1, Integer::sum);
+            durees.add(tentative.dureeNanos());
+        }
+        Collections.sort(durees);
+
+        return new Mesure(issues, tentatives.size() / (dureeTotale / 1_000_000_000.0),
+                percentile(durees, 50), percentile(durees, 99));
+    }
+
+    private static Tentative tenter(Callable<Issue> demande) {
+        long debut = System.nanoTime();
+        Issue issue;
+        try {
+            issue = demande.call();
+        } catch (ConcurrencyFailureException e) {
+            issue = Issue.CONFLIT;
+        } catch (Exception e) {
+            issue = Issue.ERREUR;
+            System.err.println("Erreur inattendue : " + e);
+        }
+        return new Tentative(issue, System.nanoTime() - debut);
+    }
+
+    /**
+     * Affiche le tableau de comparaison des stratégies
+     * @param titre première ligne du tableau (nombre d'utilisateurs, threads, base utilisée...)
+     * @param libelleAnomalies en-tête de la colonne des réservations en trop
+     */
+    public static void afficher(String titre, String libelleAnomalies, List<Resultat> resultats) {
+        System.out.println();
+        System.out.println("=== " + titre + " ===");
+        System.out.printf("%-22s %-32s %8s %8s %8s %8s %10s %9s %9s %10s %9s%n",
+                "Scénario", "Stratégie", "Réserv.", "Refus", "Conflit", "Erreur", "Débit/s", "p50 ms", "p99 ms",
+                "En base", libelleAnomalies);
+        for (Resultat r : resultats) {
+            System.out.printf("%-22s %-32s %8d %8d %8d %8d %10.1f %9.2f %9.2f %10d %9d%n",
+                    r.scenario(), r.strategie(),
+                    r.nombre(Issue.RESERVEE), r.nombre(Issue.REFUSEE),
+                    r.nombre(Issue.CONFLIT), r.nombre(Issue.ERREUR),
+                    r.debitParSeconde(), r.p50Ms(), r.p99Ms(), r.reservations(), r.anomalies());
+        }
+        System.out.println();
+    }
+
+    static double percentile(List<Long> dureesTriees, int percentile) {
+        if (dureesTriees.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * dureesTriees.size()) - 1;
+        return dureesTriees.get(Math.max(0, index)) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,21 @@
+package fr.diginamic.gestiondestransports.stress;
+
+import org.springframework.test.context.ActiveProfilesResolver;
+
+/**
+ * Profils actifs des tests de charge.
+ * Par défaut, base H2 embarquée (profil stress) : elle ne reproduit pas les verrous d'InnoDB
+ * (verrou partagé posé par la vérification de clé étrangère, interblocages), ses résultats ne valent que pour H2.
+ * Avec -Dstress.base=mysql, le profil stress-mysql remplace la base par une base MySQL dédiée,
+ * désignée par les variables d'environnement STRESS_DB_URL, DB_USER_COVOIT et DB_PASS_COVOIT.
+ */
+public class ProfilsStress implements ActiveProfilesResolver {
+
+    @Override
+    public String[] resolve(Class<?> classeTest) {
+        if ("mysql".equalsIgnoreCase(System.getProperty("stress.base"))) {
+            return new String[]{"stress", "stress-mysql"};
+        }
+        return new String[]{"stress"};
+    }
+}
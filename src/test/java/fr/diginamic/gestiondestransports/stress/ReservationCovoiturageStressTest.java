@@ -0,0 +1,279 @@
+package fr.diginamic.gestiondestransports.stress;
+
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.CovoituragePassagers;
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.CovoituragePassagersRepository;
+import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
+import fr.diginamic.gestiondestransports.services.AnnonceCovoiturageService;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Issue;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Resultat;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Strategie;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test de charge du chemin de réservation d'une place de covoiturage.
+ * Des centaines d'utilisateurs tentent simultanément de réserver une place sur un même trajet presque complet,
+ * pour chacune des stratégies de réservation comparées :
+ * - LECTURE_VERIFICATION_INSERTION : comptage des passagers puis insertion, sans verrou (ancien fonctionnement)
+ * - VERROU_PESSIMISTE : SELECT ... FOR UPDATE sur l'annonce avant comptage et insertion
+ * - VERSION_OPTIMISTE : compare-and-set sur le compteur places_occupees utilisé comme version, avec nouvelles tentatives
+ * - UPDATE_CONDITIONNEL : AnnonceCovoiturageService.reserverPlace (UPDATE ... WHERE places_occupees < capacité)
+ * Pour chaque stratégie sont affichés : débit, latence p50/p99, conflits (verrous/interblocages) et surréservations.
+ *
+ * S'exécute uniquement à la demande, par défaut sur une base H2 embarquée (profil stress) :
+ * mvn test -Dtest=ReservationCovoiturageStressTest -Dstress=true
+ * H2 ne pose pas de verrou partagé sur l'annonce lors de la vérification de clé étrangère de l'insertion :
+ * les interblocages propres à InnoDB n'y apparaissent pas. Pour valider le chemin du service, lancer aussi
+ * sur une base MySQL dédiée (profil stress-mysql, voir {@link ProfilsStress}) :
+ * STRESS_DB_URL=jdbc:mysql://localhost:3306/covoit_stress mvn test -Dtest=ReservationCovoiturageStressTest -Dstress=true -Dstress.base=mysql
+ * Paramètres optionnels : -Dstress.utilisateurs=300 -Dstress.threads=32 -Dstress.places=10 -Dstress.dejaOccupees=6
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles(resolver = ProfilsStress.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "stress", matches = "true")
+public class ReservationCovoiturageStressTest {
+
+    private static final int NB_UTILISATEURS = Integer.getInteger("stress.utilisateurs", 300);
+    private static final int NB_THREADS = Integer.getInteger("stress.threads", 32);
+    private static final int PLACES_VEHICULE = Integer.getInteger("stress.places", 10);
+    private static final int PLACES_DEJA_OCCUPEES = Integer.getInteger("stress.dejaOccupees", 6);
+    private static final int TENTATIVES_OPTIMISTES = 20;
+    private static final List<Strategie> STRATEGIES = List.of(Strategie.LECTURE_VERIFICATION_INSERTION,
+            Strategie.VERROU_PESSIMISTE, Strategie.VERSION_OPTIMISTE, Strategie.UPDATE_CONDITIONNEL);
+
+    @Autowired
+    private AnnonceCovoiturageService annonceCovoiturageService;
+    @Autowired
+    private AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    @Autowired
+    private CovoituragePassagersRepository covoituragePassagersRepository;
+    @Autowired
+    private UtilisateurRepository utilisateurRepository;
+    @Autowired
+    private VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private TransactionTemplate transaction;
+    private Utilisateur responsable;
+    private VehiculeEntreprise vehicule;
+    private List<Utilisateur> candidats;
+
+    @BeforeAll
+    void preparerDonnees() {
+        transaction = new TransactionTemplate(transactionManager);
+
+        responsable = utilisateurRepository.save(creerUtilisateur("responsable"));
+        vehicule = new VehiculeEntreprise(null, "ST-000-RS", PLACES_VEHICULE, "Trafic", 150, null,
+                "Renault", null, null, StatutVehicule.EN_SERVICE);
+        vehicule = vehiculeEntrepriseRepository.save(vehicule);
+
+        candidats = new ArrayList<>();
+        for (int i = 0; i < NB_UTILISATEURS + PLACES_DEJA_OCCUPEES; i++) {
+            candidats.add(creerUtilisateur("candidat" + i));
+        }
+        candidats = utilisateurRepository.saveAll(candidats);
+    }
+
+    @Test
+    @DisplayName("Stress - comparaison des stratégies de réservation sur un trajet presque complet")
+    void comparerStrategies() throws Exception {
+        List<Resultat> resultats = new ArrayList<>();
+        for (Strategie strategie : STRATEGIES) {
+            resultats.add(executer(strategie));
+        }
+
+        MesuresConcurrence.afficher(String.format(
+                "Réservations simultanées (%s) : %d utilisateurs, %d threads, %d places (%d déjà occupées)",
+                baseDeDonnees(), NB_UTILISATEURS, NB_THREADS, PLACES_VEHICULE, PLACES_DEJA_OCCUPEES), "Surrés.", resultats);
+
+        int placesPassagers = PLACES_VEHICULE - 1;
+        for (Resultat resultat : resultats) {
+            assertEquals(0, resultat.nombre(Issue.ERREUR),
+                    resultat.strategie() + " : aucune erreur inattendue");
+            if (resultat.strategie() != Strategie.LECTURE_VERIFICATION_INSERTION) {
+                assertEquals(0, resultat.anomalies(), resultat.strategie() + " ne doit jamais surréserver");
+                assertEquals(placesPassagers, resultat.reservations(), resultat.strategie() + " doit remplir le trajet");
+            }
+        }
+        Resultat service = resultats.stream()
+                .filter(r -> r.strategie() == Strategie.UPDATE_CONDITIONNEL).findFirst().orElseThrow();
+        assertEquals(0, service.nombre(Issue.CONFLIT),
+                "Le chemin du service ne doit provoquer ni interblocage ni délai de verrou dépassé");
+    }
+
+    /**
+     * Lance NB_UTILISATEURS réservations simultanées sur une nouvelle annonce pour une stratégie donnée
+     */
+    private Resultat executer(Strategie strategie) throws Exception {
+        Long idAnnonce = creerAnnoncePresqueComplete();
+        List<Utilisateur> concurrents = candidats.subList(PLACES_DEJA_OCCUPEES, PLACES_DEJA_OCCUPEES + NB_UTILISATEURS);
+
+        List<Callable<Issue>> demandes = new ArrayList<>();
+        for (Utilisateur utilisateur : concurrents) {
+            demandes.add(() -> reserver(strategie, idAnnonce, utilisateur.getId()));
+        }
+        MesuresConcurrence.Mesure mesure = MesuresConcurrence.executer(NB_THREADS, demandes);
+
+        long passagers = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM covoiturage_passagers WHERE annonce_covoiturage_id = ?", Long.class, idAnnonce);
+        long surreservations = Math.max(0, passagers - (PLACES_VEHICULE - 1));
+
+        return mesure.resultat("", strategie, passagers, surreservations);
+    }
+
+    private Issue reserver(Strategie strategie, Long idAnnonce, Long idUtilisateur) {
+        return switch (strategie) {
+            case LECTURE_VERIFICATION_INSERTION -> reserverParLectureVerification(idAnnonce, idUtilisateur);
+            case VERROU_PESSIMISTE -> reserverAvecVerrouPessimiste(idAnnonce, idUtilisateur);
+            case VERSION_OPTIMISTE -> reserverAvecVersionOptimiste(idAnnonce, idUtilisateur);
+            case UPDATE_CONDITIONNEL -> reserverParUpdateConditionnel(idAnnonce, idUtilisateur);
+            default -> throw new IllegalArgumentException("Stratégie non comparée ici : " + strategie);
+        };
+    }
+
+    /**
+     * Ancien fonctionnement : compter les passagers puis insérer, sans aucun verrou
+     */
+    private Issue reserverParLectureVerification(Long idAnnonce, Long idUtilisateur) {
+        return transaction.execute(statut -> {
+            AnnonceCovoiturage annonce = entityManager.find(AnnonceCovoiturage.class, idAnnonce);
+            long occupees = covoituragePassagersRepository.countPassagersParCovoiturage(annonce);
+            if (occupees >= annonce.getPlacesTotales() - 1) {
+                return Issue.REFUSEE;
+            }
+            inscrire(annonce, idUtilisateur);
+            return Issue.RESERVEE;
+        });
+    }
+
+    /**
+     * Verrou pessimiste : SELECT ... FOR UPDATE sur la ligne de l'annonce, puis comptage et insertion
+     */
+    private Issue reserverAvecVerrouPessimiste(Long idAnnonce, Long idUtilisateur) {
+        return transaction.execute(statut -> {
+            AnnonceCovoiturage annonce = entityManager.find(AnnonceCovoiturage.class, idAnnonce, LockModeType.PESSIMISTIC_WRITE);
+            long occupees = covoituragePassagersRepository.countPassagersParCovoiturage(annonce);
+            if (occupees >= annonce.getPlacesTotales() - 1) {
+                return Issue.REFUSEE;
+            }
+            inscrire(annonce, idUtilisateur);
+            return Issue.RESERVEE;
+        });
+    }
+
+    /**
+     * Version optimiste : places_occupees sert de numéro de version, la mise à jour n'aboutit que si
+     * la valeur lue n'a pas changé ; sinon la transaction est annulée et la réservation retentée
+     */
+    private Issue reserverAvecVersionOptimiste(Long idAnnonce, Long idUtilisateur) {
+        for (int essai = 0; essai < TENTATIVES_OPTIMISTES; essai++) {
+            Issue issue = transaction.execute(statut -> {
+                Map<String, Object> ligne = jdbcTemplate.queryForMap(
+                        "SELECT places_totales, places_occupees FROM annonce_covoiturage WHERE id = ?", idAnnonce);
+                int totales = ((Number) ligne.get("places_totales")).intValue();
+                int occupees = ((Number) ligne.get("places_occupees")).intValue();
+                if (occupees >= totales - 1) {
+                    return Issue.REFUSEE;
+                }
+                int maj = jdbcTemplate.update(
+                        "UPDATE annonce_covoiturage SET places_occupees = ? WHERE id = ? AND places_occupees = ?",
+                        occupees + 1, idAnnonce, occupees);
+                if (maj == 0) {
+                    statut.setRollbackOnly();
+                    return null;
+                }
+                inscrire(entityManager.getReference(AnnonceCovoiturage.class, idAnnonce), idUtilisateur);
+                return Issue.RESERVEE;
+            });
+            if (issue != null) {
+                return issue;
+            }
+        }
+        return Issue.CONFLIT;
+    }
+
+    /**
+     * Fonctionnement actuel du service : UPDATE conditionnel du compteur (verrou exclusif) puis insertion
+     */
+    private Issue reserverParUpdateConditionnel(Long idAnnonce, Long idUtilisateur) {
+        try {
+            annonceCovoiturageService.reserverPlace(idAnnonce, idUtilisateur);
+            return Issue.RESERVEE;
+        } catch (IllegalArgumentException e) {
+            return Issue.REFUSEE;
+        }
+    }
+
+    private void inscrire(AnnonceCovoiturage annonce, Long idUtilisateur) {
+        Utilisateur utilisateur = entityManager.getReference(Utilisateur.class, idUtilisateur);
+        entityManager.persist(new CovoituragePassagers(utilisateur, annonce));
+        entityManager.flush();
+    }
+
+    /**
+     * Crée une annonce dont PLACES_DEJA_OCCUPEES places sont déjà réservées
+     */
+    private Long creerAnnoncePresqueComplete() {
+        return transaction.execute(statut -> {
+            AnnonceCovoiturage annonce = new AnnonceCovoiturage(LocalDateTime.now().plusDays(7), 30, 25,
+                    null, null, responsable);
+            annonce.setVehiculeService(vehicule);
+            annonce.setPlacesTotales(PLACES_VEHICULE);
+            annonce.setPlacesOccupees(PLACES_DEJA_OCCUPEES);
+            annonce = annonceCovoiturageRepository.save(annonce);
+            for (int i = 0; i < PLACES_DEJA_OCCUPEES; i++) {
+                covoituragePassagersRepository.save(new CovoituragePassagers(candidats.get(i), annonce));
+            }
+            return annonce.getId();
+        });
+    }
+
+    /**
+     * Moteur de base de données réellement utilisé, pour interpréter les résultats
+     */
+    private String baseDeDonnees() {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connexion ->
+                connexion.getMetaData().getDatabaseProductName() + " " + connexion.getMetaData().getDatabaseProductVersion());
+    }
+
+    private static Utilisateur creerUtilisateur(String prefixe) {
+        Utilisateur utilisateur = new Utilisateur("Stress", prefixe, prefixe + "@stress.test", RoleEnum.ROLE_USER);
+        utilisateur.setEstVerifie(true);
+        utilisateur.setEstBanni(false);
+        return utilisateur;
+    }
+}
@@ -0,0 +1,171 @@
+package fr.diginamic.gestiondestransports.stress;
+
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
+import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
+import fr.diginamic.gestiondestransports.services.ReservationVehiculeService;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Issue;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Resultat;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Strategie;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test de charge de la création de réservations de véhicules de service.
+ * Des centaines d'utilisateurs réservent simultanément, selon deux scénarios :
+ * - MEME_VEHICULE : tous visent le même véhicule sur des créneaux qui se chevauchent
+ * - VEHICULES_DIFFERENTS : chacun vise son propre véhicule sur le même créneau
+ * et deux stratégies (voir {@link ReservationsVehiculeConcurrentes}) :
+ * - LECTURE_VERIFICATION_INSERTION : recherche des chevauchements puis insertion, sans verrou (ancien fonctionnement)
+ * - VERROU_VEHICULE : ReservationVehiculeService.create (SELECT ... FOR UPDATE sur le véhicule puis l'utilisateur)
+ * Pour chaque combinaison sont affichés : débit, latence p50/p99, refus, conflits et doubles réservations.
+ * Le verrou par véhicule ne doit pas ralentir les réservations de véhicules différents.
+ * L'absence de double réservation avec le verrou est aussi vérifiée à chaque mvn verify
+ * par ReservationVehiculeConcurrenceIT, sur la base de test.
+ *
+ * S'exécute uniquement à la demande, par défaut sur une base H2 embarquée (profil stress) :
+ * mvn test -Dtest=ReservationVehiculeStressTest -Dstress=true
+ * Sur une base MySQL dédiée (profil stress-mysql, voir {@link ProfilsStress}) : ajouter -Dstress.base=mysql
+ * Paramètres optionnels : -Dstress.utilisateurs=200 -Dstress.threads=32
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles(resolver = ProfilsStress.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "stress", matches = "true")
+public class ReservationVehiculeStressTest {
+
+    private static final int NB_UTILISATEURS = Integer.getInteger("stress.utilisateurs", 200);
+    private static final int NB_THREADS = Integer.getInteger("stress.threads", 32);
+    /** Décalages de début possibles (en heures) sur le véhicule partagé : les créneaux de 3 h se chevauchent */
+    private static final int DECALAGES_HEURES = 12;
+    private static final List<Strategie> STRATEGIES = List.of(Strategie.LECTURE_VERIFICATION_INSERTION, Strategie.VERROU_VEHICULE);
+
+    @Autowired
+    private ReservationVehiculeService reservationVehiculeService;
+    @Autowired
+    private ReservationVehiculeRepository reservationVehiculeRepository;
+    @Autowired
+    private UtilisateurRepository utilisateurRepository;
+    @Autowired
+    private VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ReservationsVehiculeConcurrentes reservations;
+    private List<Utilisateur> utilisateurs;
+    private int semaine;
+
+    /**
+     * Répartition des demandes sur les véhicules
+     */
+    enum Scenario {
+        MEME_VEHICULE,
+        VEHICULES_DIFFERENTS
+    }
+
+    @BeforeAll
+    void preparerDonnees() {
+        reservations = new ReservationsVehiculeConcurrentes(reservationVehiculeService, reservationVehiculeRepository,
+                vehiculeEntrepriseRepository, jdbcTemplate, new TransactionTemplate(transactionManager));
+        utilisateurs = new ArrayList<>();
+        for (int i = 0; i < NB_UTILISATEURS; i++) {
+            Utilisateur utilisateur = new Utilisateur("Stress", "conducteur" + i, "conducteur" + i + "@stress.test", RoleEnum.ROLE_USER);
+            utilisateur.setEstVerifie(true);
+            utilisateur.setEstBanni(false);
+            utilisateurs.add(utilisateur);
+        }
+        utilisateurs = utilisateurRepository.saveAll(utilisateurs);
+    }
+
+    @Test
+    @DisplayName("Stress - réservations simultanées de véhicules : aucune double réservation, véhicules différents en parallèle")
+    void comparerStrategies() throws Exception {
+        List<Resultat> resultats = new ArrayList<>();
+        for (Scenario scenario : Scenario.values()) {
+            for (Strategie strategie : STRATEGIES) {
+                resultats.add(executer(scenario, strategie));
+            }
+        }
+
+        MesuresConcurrence.afficher(String.format("Réservations de véhicules simultanées : %d utilisateurs, %d threads",
+                NB_UTILISATEURS, NB_THREADS), "Doubles", resultats);
+
+        for (Resultat resultat : resultats) {
+            assertEquals(0, resultat.nombre(Issue.ERREUR),
+                    resultat.scenario() + "/" + resultat.strategie() + " : aucune erreur inattendue");
+            if (resultat.strategie() == Strategie.VERROU_VEHICULE) {
+                assertEquals(0, resultat.anomalies(),
+                        resultat.scenario() + " : le verrou par véhicule ne doit jamais réserver deux fois");
+                assertEquals(0, resultat.nombre(Issue.CONFLIT),
+                        resultat.scenario() + " : aucun interblocage ni délai de verrou dépassé");
+            }
+        }
+        // Sans double réservation de référence, le scénario ne met pas le verrou à l'épreuve
+        assertTrue(trouver(resultats, Scenario.MEME_VEHICULE, Strategie.LECTURE_VERIFICATION_INSERTION).anomalies() > 0,
+                "L'ancien fonctionnement doit produire des doubles réservations sous cette charge");
+        Resultat differentsSansVerrou = trouver(resultats, Scenario.VEHICULES_DIFFERENTS, Strategie.LECTURE_VERIFICATION_INSERTION);
+        Resultat differentsAvecVerrou = trouver(resultats, Scenario.VEHICULES_DIFFERENTS, Strategie.VERROU_VEHICULE);
+        assertEquals(NB_UTILISATEURS, differentsAvecVerrou.nombre(Issue.RESERVEE),
+                "Chaque utilisateur doit obtenir son propre véhicule");
+        assertTrue(differentsAvecVerrou.debitParSeconde() >= differentsSansVerrou.debitParSeconde() / 2,
+                "Le verrou par véhicule ne doit pas sérialiser les réservations de véhicules différents");
+    }
+
+    /**
+     * Lance NB_UTILISATEURS créations simultanées pour un scénario et une stratégie, sur une semaine encore libre
+     */
+    private Resultat executer(Scenario scenario, Strategie strategie) throws Exception {
+        // Une semaine par exécution : les réservations précédentes des utilisateurs ne gênent pas la suivante
+        LocalDateTime jour = LocalDateTime.now().plusDays(30L + 7L * semaine++).withHour(6).withMinute(0).withSecond(0).withNano(0);
+        List<VehiculeEntreprise> vehicules = creerVehicules(scenario == Scenario.MEME_VEHICULE ? 1 : NB_UTILISATEURS);
+
+        List<Callable<Issue>> demandes = new ArrayList<>();
+        for (int i = 0; i < NB_UTILISATEURS; i++) {
+            Utilisateur utilisateur = utilisateurs.get(i);
+            Long idVehicule = vehicules.get(scenario == Scenario.MEME_VEHICULE ? 0 : i).getId();
+            LocalDateTime debut = scenario == Scenario.MEME_VEHICULE ? jour.plusHours(i % DECALAGES_HEURES) : jour;
+            demandes.add(() -> reservations.reserver(strategie, utilisateur, idVehicule, debut, debut.plusHours(3)));
+        }
+        MesuresConcurrence.Mesure mesure = MesuresConcurrence.executer(NB_THREADS, demandes);
+
+        return mesure.resultat(scenario.name(), strategie,
+                reservations.compterReservations(vehicules), reservations.compterDoublesReservations(vehicules));
+    }
+
+    private List<VehiculeEntreprise> creerVehicules(int nombre) {
+        List<VehiculeEntreprise> vehicules = new ArrayList<>();
+        for (int i = 0; i < nombre; i++) {
+            vehicules.add(new VehiculeEntreprise(null, "ST-" + semaine + "-" + i, 5, "Clio", 110, null,
+                    "Renault", null, null, StatutVehicule.EN_SERVICE));
+        }
+        return vehiculeEntrepriseRepository.saveAll(vehicules);
+    }
+
+    private static Resultat trouver(List<Resultat> resultats, Scenario scenario, Strategie strategie) {
+        return resultats.stream()
+                .filter(r -> r.scenario().equals(scenario.name()) && r.strategie() == strategie)
+                .findFirst().orElseThrow();
+    }
+}
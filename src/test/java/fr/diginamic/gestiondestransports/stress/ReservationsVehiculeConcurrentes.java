@@ -0,0 +1,116 @@
+package fr.diginamic.gestiondestransports.stress;
+
+import fr.diginamic.gestiondestransports.dto.ReservationVehiculeDTO;
+import fr.diginamic.gestiondestransports.entites.ReservationVehicule;
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
+import fr.diginamic.gestiondestransports.services.ReservationVehiculeService;
+import fr.diginamic.gestiondestransports.shared.BadRequestException;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Issue;
+import fr.diginamic.gestiondestransports.stress.MesuresConcurrence.Strategie;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Réservations de véhicules de service selon les stratégies comparées par les tests de concurrence :
+ * - LECTURE_VERIFICATION_INSERTION : recherche des chevauchements puis insertion, sans verrou (ancien fonctionnement)
+ * - VERROU_VEHICULE : ReservationVehiculeService.create (SELECT ... FOR UPDATE sur le véhicule puis l'utilisateur)
+ * Utilisé par ReservationVehiculeStressTest (mesures) et ReservationVehiculeConcurrenceIT (garantie du verrou).
+ */
+public class ReservationsVehiculeConcurrentes {
+
+    private final ReservationVehiculeService reservationVehiculeService;
+    private final ReservationVehiculeRepository reservationVehiculeRepository;
+    private final VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+
+    public ReservationsVehiculeConcurrentes(ReservationVehiculeService reservationVehiculeService,
+                                            ReservationVehiculeRepository reservationVehiculeRepository,
+                                            VehiculeEntrepriseRepository vehiculeEntrepriseRepository,
+                                            JdbcTemplate jdbcTemplate,
+                                            TransactionTemplate transaction) {
+        this.reservationVehiculeService = reservationVehiculeService;
+        this.reservationVehiculeRepository = reservationVehiculeRepository;
+        this.vehiculeEntrepriseRepository = vehiculeEntrepriseRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = transaction;
+    }
+
+    /**
+     * Tente une réservation selon la stratégie donnée
+     * @return RESERVEE, ou REFUSEE si un chevauchement a été détecté
+     */
+    public Issue reserver(Strategie strategie, Utilisateur utilisateur, Long idVehicule,
+                          LocalDateTime debut, LocalDateTime fin) {
+        return switch (strategie) {
+            case LECTURE_VERIFICATION_INSERTION -> reserverParLectureVerification(utilisateur, idVehicule, debut, fin);
+            case VERROU_VEHICULE -> reserverAvecVerrouVehicule(utilisateur, idVehicule, debut, fin);
+            default -> throw new IllegalArgumentException("Stratégie non comparée ici : " + strategie);
+        };
+    }
+
+    /**
+     * Ancien fonctionnement : recherche des chevauchements du véhicule et de l'utilisateur puis insertion, sans verrou
+     */
+    private Issue reserverParLectureVerification(Utilisateur utilisateur, Long idVehicule,
+                                                 LocalDateTime debut, LocalDateTime fin) {
+        return transaction.execute(statut -> {
+            VehiculeEntreprise vehicule = vehiculeEntrepriseRepository.findById(idVehicule).orElseThrow();
+            if (!reservationVehiculeRepository.findConflitsVehicule(idVehicule, debut, fin, null, PageRequest.of(0, 1)).isEmpty()
+                    || !reservationVehiculeRepository.findConflitsUtilisateur(utilisateur.getId(), debut, fin, null, PageRequest.of(0, 1)).isEmpty()) {
+                return Issue.REFUSEE;
+            }
+            reservationVehiculeRepository.save(new ReservationVehicule(utilisateur, vehicule, debut, fin));
+            return Issue.RESERVEE;
+        });
+    }
+
+    /**
+     * Fonctionnement actuel du service : verrou du véhicule puis de l'utilisateur, vérification et insertion
+     */
+    private Issue reserverAvecVerrouVehicule(Utilisateur utilisateur, Long idVehicule,
+                                             LocalDateTime debut, LocalDateTime fin) {
+        try {
+            reservationVehiculeService.create(utilisateur,
+                    new ReservationVehiculeDTO(null, utilisateur.getId(), idVehicule, debut, fin));
+            return Issue.RESERVEE;
+        } catch (BadRequestException e) {
+            return Issue.REFUSEE;
+        }
+    }
+
+    /**
+     * Nombre de réservations présentes en base pour ces véhicules
+     */
+    public long compterReservations(List<VehiculeEntreprise> vehicules) {
+        long total = 0;
+        for (VehiculeEntreprise vehicule : vehicules) {
+            total += jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM vehicule_entreprise_reservations WHERE vehicule_entreprise_id = ?",
+                    Long.class, vehicule.getId());
+        }
+        return total;
+    }
+
+    /**
+     * Nombre de couples de réservations d'un même véhicule qui se chevauchent
+     */
+    public long compterDoublesReservations(List<VehiculeEntreprise> vehicules) {
+        long total = 0;
+        for (VehiculeEntreprise vehicule : vehicules) {
+            total += jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM vehicule_entreprise_reservations a JOIN vehicule_entreprise_reservations b " +
+                            "ON a.vehicule_entreprise_id = b.vehicule_entreprise_id AND a.id < b.id " +
+                            "AND a.date_debut < b.date_fin AND a.date_fin > b.date_debut " +
+                            "WHERE a.vehicule_entreprise_id = ?", Long.class, vehicule.getId());
+        }
+        return total;
+    }
+}
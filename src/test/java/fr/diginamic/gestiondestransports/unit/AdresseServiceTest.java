@@ -1,15 +1,21 @@
 package fr.diginamic.gestiondestransports.unit;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
 import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
 import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
 import fr.diginamic.gestiondestransports.services.impl.AdresseServiceImpl;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -17,6 +23,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 public class AdresseServiceTest {
@@ -24,6 +31,15 @@ public class AdresseServiceTest {
     @Mock
     private AdresseRepository adresseRepository;
 
+    @Mock
+    private VersionsAgregats versionsAgregats;
+
+    @Mock
+    private AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    @Mock
+    private ApplicationEventPublisher evenements;
+
     @InjectMocks
     private AdresseServiceImpl adresseService;
 
@@ -295,6 +311,7 @@ public class AdresseServiceTest {
 
         when(adresseRepository.findById(1L)).thenReturn(Optional.of(adresseExistante));
         when(adresseRepository.save(any(Adresse.class))).thenReturn(adresseMiseAJour);
+        when(annonceCovoiturageRepository.findIdsAVenirParAdresse(eq(1L), any(LocalDateTime.class))).thenReturn(List.of(10L));
 
         // Act
         Adresse resultat = adresseService.mettreAJourAdresse(1L, adresseModifiee);
@@ -309,6 +326,8 @@ public class AdresseServiceTest {
 
         verify(adresseRepository, times(1)).findById(1L);
         verify(adresseRepository, times(1)).save(any(Adresse.class));
+        // Les annonces à venir partant de ou arrivant à cette adresse sont rechargées et regéocodées
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(10L, TypeEvenementAnnonce.MODIFICATION));
     }
 
     @Test
@@ -357,4 +376,48 @@ public class AdresseServiceTest {
         verify(adresseRepository, times(1)).save(any(Adresse.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Devrait effacer les coordonnées géographiques lorsque l'adresse change")
+    void mettreAJourAdresse_ShouldResetCoordinatesWhenAdresseChanges() {
+        // Arrange
+        Adresse adresseExistante = new Adresse(10, "Ancienne Rue", "34000", "Montpellier");
+        adresseExistante.setId(1L);
+        adresseExistante.setLatitude(43.61);
+        adresseExistante.setLongitude(3.87);
+
+        Adresse adresseModifiee = new Adresse(20, "Nouvelle Rue", "75001", "Paris");
+
+        when(adresseRepository.findById(1L)).thenReturn(Optional.of(adresseExistante));
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        Adresse resultat = adresseService.mettreAJourAdresse(1L, adresseModifiee);
+
+        // Assert
+        assertFalse(resultat.aDesCoordonnees());
+        assertNull(resultat.getLatitude());
+        assertNull(resultat.getLongitude());
+    }
+
+    @Test
+    @DisplayName("Devrait conserver les coordonnées géographiques lorsque l'adresse est inchangée")
+    void mettreAJourAdresse_ShouldKeepCoordinatesWhenAdresseUnchanged() {
+        // Arrange
+        Adresse adresseExistante = new Adresse(10, "Ancienne Rue", "34000", "Montpellier");
+        adresseExistante.setId(1L);
+        adresseExistante.setLatitude(43.61);
+        adresseExistante.setLongitude(3.87);
+
+        Adresse adresseModifiee = new Adresse(10, "Ancienne Rue", "34000", "Montpellier");
+
+        when(adresseRepository.findById(1L)).thenReturn(Optional.of(adresseExistante));
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        Adresse resultat = adresseService.mettreAJourAdresse(1L, adresseModifiee);
+
+        // Assert
+        assertEquals(43.61, resultat.getLatitude());
+        assertEquals(3.87, resultat.getLongitude());
+    }
+}
@@ -1,33 +1,53 @@
 package fr.diginamic.gestiondestransports.unit;
 
+import fr.diginamic.gestiondestransports.cache.ModeleLectureAnnonces;
 import fr.diginamic.gestiondestransports.dto.AdresseDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageAvecPlacesDto;
 import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageProximiteDto;
+import fr.diginamic.gestiondestransports.dto.PageAnnoncesCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantAnnonceLigneDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantsCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.PositionDepartAnnonceDto;
+import fr.diginamic.gestiondestransports.dto.RechercheAnnonceCovoiturageDto;
 import fr.diginamic.gestiondestransports.entites.*;
 import fr.diginamic.gestiondestransports.enums.RoleEnum;
 import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
 import fr.diginamic.gestiondestransports.mapper.AdresseMapper;
 import fr.diginamic.gestiondestransports.mapper.AnnonceCovoiturageMapper;
 import fr.diginamic.gestiondestransports.repositories.*;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.ListeAttenteCovoiturageService;
+import fr.diginamic.gestiondestransports.services.NotificationEmailService;
 import fr.diginamic.gestiondestransports.services.UtilisateurService;
 import fr.diginamic.gestiondestransports.services.impl.AnnonceCovoiturageServiceImpl;
-import fr.diginamic.gestiondestransports.tools.EmailSender;
+import fr.diginamic.gestiondestransports.tools.OsmApi;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static fr.diginamic.gestiondestransports.unit.LigneAnnonceBuilder.uneLigne;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -51,7 +71,17 @@ public class AnnonceCovoiturageServiceTest {
     @Mock
     CovoituragePassagersRepository covoituragePassagersRepository;
     @Mock
-    EmailSender emailSender;
+    NotificationEmailService notificationEmailService;
+    @Mock
+    OsmApi osmApi;
+    @Mock
+    CorridorCovoiturageService corridorCovoiturageService;
+    @Mock
+    ApplicationEventPublisher evenements;
+    @Mock
+    ModeleLectureAnnonces modeleLecture;
+    @Mock
+    ListeAttenteCovoiturageService listeAttenteService;
 
     @Spy
     @InjectMocks
@@ -77,7 +107,7 @@ public class AnnonceCovoiturageServiceTest {
 
     @BeforeEach
     void setUp(){
-        ReflectionTestUtils.setField(service, "emailSender", emailSender);
+        ReflectionTestUtils.setField(service, "notificationEmailService", notificationEmailService);
 
         idAnnonce = 123L;
         idResponsable = 42L;
@@ -111,6 +141,59 @@ public class AnnonceCovoiturageServiceTest {
                 adresseDepartDto, adresseArriveeDto, null);
         inputDtoAvecVehicule = new AnnonceCovoiturageDto(null, heureDepart, duree, distance,
                 adresseDepartDto, adresseArriveeDto, vehicule.getId());
+
+        lenient().when(adresseMapper.versEntite(adresseDepartDto))
+                .thenAnswer(inv -> new Adresse(1, "rue de la paix", "34210", "Montpellier"));
+        lenient().when(adresseMapper.versEntite(adresseArriveeDto))
+                .thenAnswer(inv -> new Adresse(10, "avenue foch", "42000", "Nantes"));
+    }
+
+    @Test
+    @DisplayName("creerAnnonce → OK : réutilise les coordonnées d'une adresse connue sans géocodage")
+    void creerAnnonce_ok_reutilise_coordonnees_adresses_connues() {
+        Adresse departConnu = new Adresse(1, "rue de la paix", "34210", "Montpellier");
+        departConnu.setLatitude(43.61);
+        departConnu.setLongitude(3.87);
+        Adresse arriveeConnue = new Adresse(10, "avenue foch", "42000", "Nantes");
+        arriveeConnue.setLatitude(47.21);
+        arriveeConnue.setLongitude(-1.55);
+
+        when(utilisateurService.obtenirUtilisateurParId(responsable.getId())).thenReturn(responsable);
+        AnnonceCovoiturage entite = new AnnonceCovoiturage();
+        when(annonceMapper.versEntite(inputDtoAvecVehicule)).thenReturn(entite);
+        when(vehiculeEntrepriseRepository.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(adresseRepository.findGeocodeesIdentiques(1, "rue de la paix", "34210", "Montpellier"))
+                .thenReturn(List.of(departConnu));
+        when(adresseRepository.findGeocodeesIdentiques(10, "avenue foch", "42000", "Nantes"))
+                .thenReturn(List.of(arriveeConnue));
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(annonceCovoiturageRepository.save(any(AnnonceCovoiturage.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.creerAnnonce(inputDtoAvecVehicule, responsable.getId());
+
+        assertEquals(43.61, entite.getAdresseDepart().getLatitude());
+        assertEquals(3.87, entite.getAdresseDepart().getLongitude());
+        assertEquals(47.21, entite.getAdresseArrivee().getLatitude());
+        assertEquals(-1.55, entite.getAdresseArrivee().getLongitude());
+        verifyNoInteractions(osmApi);
+    }
+
+    @Test
+    @DisplayName("creerAnnonce → OK : distance et durée saisies → aucun appel OSM pendant la création, géocodage différé")
+    void creerAnnonce_ok_adresse_inconnue_sans_appel_osm() {
+        when(utilisateurService.obtenirUtilisateurParId(responsable.getId())).thenReturn(responsable);
+        AnnonceCovoiturage entite = new AnnonceCovoiturage();
+        when(annonceMapper.versEntite(inputDtoAvecVehicule)).thenReturn(entite);
+        when(vehiculeEntrepriseRepository.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(adresseRepository.findGeocodeesIdentiques(any(), any(), any(), any())).thenReturn(Collections.emptyList());
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(annonceCovoiturageRepository.save(any(AnnonceCovoiturage.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.creerAnnonce(inputDtoAvecVehicule, responsable.getId());
+
+        verifyNoInteractions(osmApi);
+        assertFalse(entite.getAdresseDepart().aDesCoordonnees());
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(entite.getId(), TypeEvenementAnnonce.CREATION));
     }
 
     @Test
@@ -139,11 +222,16 @@ public class AnnonceCovoiturageServiceTest {
 
         // THEN
         assertEquals(expected, out);
+        // compteurs de places initialisés depuis le véhicule de service
+        assertEquals(4, entite.getPlacesTotales());
+        assertEquals(0, entite.getPlacesOccupees());
 
         verify(utilisateurService).obtenirUtilisateurParId(responsable.getId());
         verify(annonceMapper).versEntite(inputDtoAvecVehicule);
         verify(vehiculeEntrepriseRepository).findById(vehicule.getId());
         verify(annonceMapper).versDto(saved);
+        // corridor calculé pour la recherche de trajets compatibles
+        verify(corridorCovoiturageService).indexerAnnonce(saved);
     }
 
     @Test
@@ -350,6 +438,51 @@ public class AnnonceCovoiturageServiceTest {
         verifyNoMoreInteractions(annonceCovoiturageRepository);
     }
 
+    @Test
+    @DisplayName("modifierAnnonce → IllegalArgumentException si une autre occurrence du trajet récurrent part déjà à cette heure")
+    void modifierAnnonce_occurrence_depart_deja_pris() {
+        TrajetRecurrent trajet = new TrajetRecurrent();
+        trajet.setId(8L);
+        annonceExistante.setTrajetRecurrent(trajet);
+        doReturn(0).when(service).obtenirNombrePlacesOccupees(idAnnonce);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        LocalDateTime lendemain = heureDepart.plusDays(1);
+        when(annonceCovoiturageRepository.findIdOccurrence(8L, lendemain)).thenReturn(Optional.of(124L));
+
+        AnnonceCovoiturageDto patch = AnnonceCovoiturageDto.of(
+                null, lendemain, duree, distance, null, null, null
+        );
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.modifierAnnonce(idAnnonce, patch, responsable.getId()));
+        assertTrue(ex.getMessage().contains("124"));
+
+        verify(annonceCovoiturageRepository, never()).save(any());
+        verify(annonceMapper, never()).mettreAJourEntite(any(), any());
+    }
+
+    @Test
+    @DisplayName("modifierAnnonce → OK : une occurrence de trajet récurrent peut changer d'heure vers un départ libre")
+    void modifierAnnonce_ok_occurrence_depart_libre() {
+        TrajetRecurrent trajet = new TrajetRecurrent();
+        trajet.setId(8L);
+        annonceExistante.setTrajetRecurrent(trajet);
+        doReturn(0).when(service).obtenirNombrePlacesOccupees(idAnnonce);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        LocalDateTime plusTard = heureDepart.plusHours(1);
+        when(annonceCovoiturageRepository.findIdOccurrence(8L, plusTard)).thenReturn(Optional.empty());
+        when(annonceCovoiturageRepository.save(annonceExistante)).thenReturn(annonceExistante);
+
+        AnnonceCovoiturageDto patch = AnnonceCovoiturageDto.of(
+                null, plusTard, duree, distance, null, null, null
+        );
+
+        service.modifierAnnonce(idAnnonce, patch, responsable.getId());
+
+        verify(annonceCovoiturageRepository).findIdOccurrence(8L, plusTard);
+        verify(annonceCovoiturageRepository).save(annonceExistante);
+    }
+
     @Test
     @DisplayName("modifierAnnonce → IllegalArgumentException si vehiculeServiceId inexistant")
     void modifierAnnonce_vehicle_not_found() {
@@ -414,9 +547,62 @@ public class AnnonceCovoiturageServiceTest {
         verify(annonceMapper).mettreAJourEntite(eq(patch), same(annonceExistante));
         verify(annonceCovoiturageRepository).save(annonceExistante);
         verify(annonceMapper).versDto(annonceExistante);
+        verify(corridorCovoiturageService).indexerAnnonce(annonceExistante);
         verify(vehiculeEntrepriseRepository, never()).findById(anyLong());
     }
 
+    @Test
+    @DisplayName("modifierAnnonce → OK : adresse existante modifiée sur place → coordonnées, cellule et tracé effacés")
+    void modifierAnnonce_ok_adresse_existante_modifiee() {
+        adresseDepart.setLatitude(43.61);
+        adresseDepart.setLongitude(3.88);
+        adresseArrivee.setLatitude(47.22);
+        adresseArrivee.setLongitude(-1.55);
+        annonceExistante.setTraceItineraire("trace");
+        AnnonceCovoiturageDto patch = AnnonceCovoiturageDto.of(null, null, null, null,
+                AdresseDto.of(100L, 3, "rue de la paix", "34210", "Montpellier"),
+                AdresseDto.of(101L, 10, "avenue foch", "42000", "Nantes"), null);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        doReturn(0).when(service).obtenirNombrePlacesOccupees(idAnnonce);
+        when(adresseRepository.findById(100L)).thenReturn(Optional.of(adresseDepart));
+        when(adresseRepository.findById(101L)).thenReturn(Optional.of(adresseArrivee));
+        when(annonceCovoiturageRepository.save(annonceExistante)).thenReturn(annonceExistante);
+
+        service.modifierAnnonce(idAnnonce, patch, responsable.getId());
+
+        // Numéro de départ changé : l'adresse sera géocodée de nouveau
+        assertSame(adresseDepart, annonceExistante.getAdresseDepart());
+        assertNull(adresseDepart.getLatitude());
+        assertNull(adresseDepart.getLongitude());
+        assertNull(adresseDepart.getCelluleGrille());
+        assertNull(annonceExistante.getTraceItineraire());
+        // Arrivée inchangée : coordonnées conservées
+        assertEquals(47.22, adresseArrivee.getLatitude());
+        assertNotNull(adresseArrivee.getCelluleGrille());
+    }
+
+    @Test
+    @DisplayName("modifierAnnonce → OK : adresses existantes inchangées → coordonnées et tracé conservés")
+    void modifierAnnonce_ok_adresses_existantes_inchangees() {
+        adresseDepart.setLatitude(43.61);
+        adresseDepart.setLongitude(3.88);
+        annonceExistante.setTraceItineraire("trace");
+        AnnonceCovoiturageDto patch = AnnonceCovoiturageDto.of(null, null, 50, null,
+                AdresseDto.of(100L, 1, "rue de la paix", "34210", "Montpellier"),
+                AdresseDto.of(101L, 10, "avenue foch", "42000", "Nantes"), null);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        doReturn(0).when(service).obtenirNombrePlacesOccupees(idAnnonce);
+        when(adresseRepository.findById(100L)).thenReturn(Optional.of(adresseDepart));
+        when(adresseRepository.findById(101L)).thenReturn(Optional.of(adresseArrivee));
+        when(annonceCovoiturageRepository.save(annonceExistante)).thenReturn(annonceExistante);
+
+        service.modifierAnnonce(idAnnonce, patch, responsable.getId());
+
+        assertEquals(43.61, adresseDepart.getLatitude());
+        assertNotNull(adresseDepart.getCelluleGrille());
+        assertEquals("trace", annonceExistante.getTraceItineraire());
+    }
+
     @Test
     @DisplayName("supprimerAnnonce → OK (aucun passager) : pas d’email, suppression effectuée")
     void supprimerAnnonce_ok_sans_passagers() {
@@ -428,13 +614,15 @@ public class AnnonceCovoiturageServiceTest {
 
         verify(annonceCovoiturageRepository).findById(idAnnonce);
         verify(covoituragePassagersRepository).findByAnnonceCovoiturageId(idAnnonce);
-        verify(emailSender, never()).send(anyString(), anyString(), anyString(), anyString());
+        verify(notificationEmailService, never()).planifier(anyString(), anyString(), anyString(), anyString());
+        verify(corridorCovoiturageService).supprimerCorridor(idAnnonce);
         verify(annonceCovoiturageRepository).delete(annonceExistante);
-        verifyNoMoreInteractions(annonceCovoiturageRepository, covoituragePassagersRepository, emailSender);
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.SUPPRESSION));
+        verifyNoMoreInteractions(annonceCovoiturageRepository, covoituragePassagersRepository, notificationEmailService);
     }
 
     @Test
-    @DisplayName("supprimerAnnonce → OK (avec passagers) : envoi d’emails puis suppression")
+    @DisplayName("supprimerAnnonce → OK (avec passagers) : emails planifiés dans la boîte d’envoi (aucun envoi direct) puis suppression")
     void supprimerAnnonce_ok_avec_passagers() {
         // Deux passagers inscrits
         Utilisateur u1 = new Utilisateur("Martin", "Alice", "alice@mail.com", RoleEnum.ROLE_USER); u1.setId(1L);
@@ -454,12 +642,12 @@ public class AnnonceCovoiturageServiceTest {
         verify(annonceCovoiturageRepository).findById(idAnnonce);
         verify(covoituragePassagersRepository).findByAnnonceCovoiturageId(idAnnonce);
 
-        // 2 emails envoyés (on ne vérifie pas le contenu exact, seulement le destinataire + invocation)
-        verify(emailSender, times(1)).send(eq("alice@mail.com"), anyString(), anyString(), anyString());
-        verify(emailSender, times(1)).send(eq("bob@mail.com"),   anyString(), anyString(), anyString());
+        // 2 emails planifiés (on ne vérifie pas le contenu exact, seulement le destinataire + invocation)
+        verify(notificationEmailService, times(1)).planifier(eq("alice@mail.com"), anyString(), anyString(), anyString());
+        verify(notificationEmailService, times(1)).planifier(eq("bob@mail.com"),   anyString(), anyString(), anyString());
 
         verify(annonceCovoiturageRepository).delete(annonceExistante);
-        verifyNoMoreInteractions(annonceCovoiturageRepository, covoituragePassagersRepository, emailSender);
+        verifyNoMoreInteractions(annonceCovoiturageRepository, covoituragePassagersRepository, notificationEmailService);
     }
 
     @Test
@@ -472,7 +660,7 @@ public class AnnonceCovoiturageServiceTest {
         assertTrue(ex.getMessage().toLowerCase().contains("introuvable"));
 
         verify(annonceCovoiturageRepository).findById(999L);
-        verifyNoInteractions(covoituragePassagersRepository, emailSender);
+        verifyNoInteractions(covoituragePassagersRepository, notificationEmailService);
         verify(annonceCovoiturageRepository, never()).delete(any());
     }
 
@@ -493,7 +681,7 @@ public class AnnonceCovoiturageServiceTest {
         assertTrue(ex.getMessage().contains("autoris"));
 
         verify(annonceCovoiturageRepository).findById(idAnnonce);
-        verifyNoInteractions(covoituragePassagersRepository, emailSender);
+        verifyNoInteractions(covoituragePassagersRepository, notificationEmailService);
         verify(annonceCovoiturageRepository, never()).delete(any());
     }
 
@@ -535,6 +723,18 @@ public class AnnonceCovoiturageServiceTest {
         verifyNoMoreInteractions(annonceCovoiturageRepository);
     }
 
+    @Test
+    @DisplayName("obtenirNombrePlacesTotales → OK : capacité dénormalisée sur l'annonce, aucun accès aux véhicules")
+    void obtenirNombrePlacesTotales_ok_compteur_annonce() {
+        annonceExistante.setPlacesTotales(6);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+
+        Integer out = service.obtenirNombrePlacesTotales(idAnnonce);
+
+        assertEquals(6, out);
+        verifyNoInteractions(vehiculePersonnelRepository);
+    }
+
     @Test
     @DisplayName("obtenirNombrePlacesTotales → OK : véhicule de service présent")
     void obtenirNombrePlacesTotales_ok_vehicule_service() {
@@ -662,26 +862,41 @@ public class AnnonceCovoiturageServiceTest {
     }
 
     @Test
-    @DisplayName("reserverPlace → OK : utilisateur admissible, places dispos → enregistrement")
+    @DisplayName("reserverPlace → OK : utilisateur admissible, place occupée par UPDATE conditionnel → enregistrement")
     void reserverPlace_ok() {
+        annonceExistante.setPlacesTotales(4);
+        annonceExistante.setPlacesOccupees(1);
         when(utilisateurService.obtenirUtilisateurParId(anyLong())).thenReturn(user);
         when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
-        when(covoituragePassagersRepository.findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante))
-                .thenReturn(Optional.empty());
-
-        // on force 3 places totales et 1 occupée
-        doReturn(3).when(service).obtenirNombrePlacesTotales(idAnnonce);
-        doReturn(1).when(service).obtenirNombrePlacesOccupees(idAnnonce);
+        when(annonceCovoiturageRepository.occuperPlace(idAnnonce)).thenReturn(1);
 
         service.reserverPlace(idAnnonce, idUser);
 
-        verify(utilisateurService).obtenirUtilisateurParId(idUser);
         verify(annonceCovoiturageRepository).findById(idAnnonce);
         verify(utilisateurService).obtenirUtilisateurParId(idUser);
-        verify(covoituragePassagersRepository).findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante);
-        verify(service).obtenirNombrePlacesTotales(idAnnonce);
-        verify(service).obtenirNombrePlacesOccupees(idAnnonce);
-        verify(covoituragePassagersRepository).save(any(CovoituragePassagers.class));
+        verify(covoituragePassagersRepository).saveAndFlush(any(CovoituragePassagers.class));
+        verify(annonceCovoiturageRepository).occuperPlace(idAnnonce);
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(idAnnonce, TypeEvenementAnnonce.RESERVATION));
+        // ni lecture préalable de l'inscription, ni comptage des passagers
+        verify(service, never()).obtenirNombrePlacesTotales(anyLong());
+        verify(service, never()).obtenirNombrePlacesOccupees(anyLong());
+        verifyNoMoreInteractions(annonceCovoiturageRepository, covoituragePassagersRepository);
+    }
+
+    @Test
+    @DisplayName("reserverPlace → OK : annonce sans compteurs → ses seuls compteurs initialisés avant réservation")
+    void reserverPlace_ok_initialiseCompteurs() {
+        annonceExistante.setPlacesTotales(null);
+        when(utilisateurService.obtenirUtilisateurParId(anyLong())).thenReturn(user);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        when(annonceCovoiturageRepository.occuperPlace(idAnnonce)).thenReturn(1);
+
+        service.reserverPlace(idAnnonce, idUser);
+
+        verify(annonceCovoiturageRepository).initialiserCompteursPlaces(idAnnonce);
+        verify(annonceCovoiturageRepository, never()).initialiserCompteursPlaces();
+        verify(covoituragePassagersRepository).saveAndFlush(any(CovoituragePassagers.class));
+        verify(annonceCovoiturageRepository).occuperPlace(idAnnonce);
     }
 
     @Test
@@ -698,12 +913,14 @@ public class AnnonceCovoiturageServiceTest {
     }
 
     @Test
-    @DisplayName("reserverPlace → KO : utilisateur déjà inscrit")
+    @DisplayName("reserverPlace → KO : utilisateur déjà inscrit (contrainte d'unicité)")
     void reserverPlace_ko_deja_inscrit() {
+        annonceExistante.setPlacesTotales(4);
         when(utilisateurService.obtenirUtilisateurParId(anyLong())).thenReturn(user);
         when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
-        when(covoituragePassagersRepository.findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante))
-                .thenReturn(Optional.of(new CovoituragePassagers()));
+        when(annonceCovoiturageRepository.occuperPlace(idAnnonce)).thenReturn(1);
+        when(covoituragePassagersRepository.saveAndFlush(any(CovoituragePassagers.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_covoiturage_passager"));
 
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
                 () -> service.reserverPlace(idAnnonce, idUser));
@@ -711,11 +928,42 @@ public class AnnonceCovoiturageServiceTest {
 
         verify(annonceCovoiturageRepository).findById(idAnnonce);
         verify(utilisateurService).obtenirUtilisateurParId(idUser);
-        verify(covoituragePassagersRepository).findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante);
-        // pas de calcul de places ni de save
-        verify(service, never()).obtenirNombrePlacesTotales(anyLong());
-        verify(service, never()).obtenirNombrePlacesOccupees(anyLong());
-        verify(covoituragePassagersRepository, never()).save(any());
+        // la place occupée est rendue par l'annulation de la transaction, aucun événement publié
+        verify(annonceCovoiturageRepository).occuperPlace(idAnnonce);
+        verify(evenements, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("reserverPlace → OK : la place est occupée (verrou exclusif) avant l'insertion de l'inscription")
+    void reserverPlace_ok_placeOccupeeAvantInsertion() {
+        annonceExistante.setPlacesTotales(4);
+        annonceExistante.setPlacesOccupees(1);
+        when(utilisateurService.obtenirUtilisateurParId(anyLong())).thenReturn(user);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        when(annonceCovoiturageRepository.occuperPlace(idAnnonce)).thenReturn(1);
+
+        service.reserverPlace(idAnnonce, idUser);
+
+        InOrder ordre = inOrder(annonceCovoiturageRepository, covoituragePassagersRepository);
+        ordre.verify(annonceCovoiturageRepository).occuperPlace(idAnnonce);
+        ordre.verify(covoituragePassagersRepository).saveAndFlush(any(CovoituragePassagers.class));
+    }
+
+    @Test
+    @DisplayName("reserverPlace → KO : trajet complet et utilisateur déjà inscrit → message d'inscription existante")
+    void reserverPlace_ko_complet_deja_inscrit() {
+        annonceExistante.setPlacesTotales(3);
+        annonceExistante.setPlacesOccupees(2);
+        when(utilisateurService.obtenirUtilisateurParId(anyLong())).thenReturn(user);
+        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        when(annonceCovoiturageRepository.occuperPlace(idAnnonce)).thenReturn(0);
+        when(covoituragePassagersRepository.existsByUtilisateurIdAndAnnonceCovoiturageId(idUser, idAnnonce)).thenReturn(true);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.reserverPlace(idAnnonce, idUser));
+        assertTrue(ex.getMessage().toLowerCase().contains("inscrit"));
+
+        verify(covoituragePassagersRepository, never()).saveAndFlush(any(CovoituragePassagers.class));
     }
 
     @Test
@@ -724,9 +972,6 @@ public class AnnonceCovoiturageServiceTest {
         when(utilisateurService.obtenirUtilisateurParId(idResponsable)).thenReturn(responsable);
         when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
 
-        when(covoituragePassagersRepository.findByUtilisateurAndAnnonceCovoiturage(responsable, annonceExistante))
-                .thenReturn(Optional.empty());
-
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
                 () -> service.reserverPlace(idAnnonce, idResponsable));
         assertTrue(ex.getMessage().toLowerCase().contains("propre covoiturage")
@@ -734,23 +979,18 @@ public class AnnonceCovoiturageServiceTest {
 
         verify(annonceCovoiturageRepository).findById(idAnnonce);
         verify(utilisateurService).obtenirUtilisateurParId(idResponsable);
-        verify(covoituragePassagersRepository).findByUtilisateurAndAnnonceCovoiturage(responsable, annonceExistante);
-        verify(service, never()).obtenirNombrePlacesTotales(anyLong());
-        verify(service, never()).obtenirNombrePlacesOccupees(anyLong());
-        verify(covoituragePassagersRepository, never()).save(any());
+        verify(annonceCovoiturageRepository, never()).occuperPlace(anyLong());
+        verifyNoInteractions(covoituragePassagersRepository);
     }
 
     @Test
-    @DisplayName("reserverPlace → KO : aucune place disponible (occupées ≥ totales)")
+    @DisplayName("reserverPlace → KO : aucune place disponible (UPDATE conditionnel sans effet)")
     void reserverPlace_ko_aucune_place() {
+        annonceExistante.setPlacesTotales(3);
+        annonceExistante.setPlacesOccupees(2);
         when(utilisateurService.obtenirUtilisateurParId(anyLong())).thenReturn(user);
         when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
-        when(covoituragePassagersRepository.findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante))
-                .thenReturn(Optional.empty());
-
-        // force la saturation : 2 totales, 2 occupées
-        doReturn(2).when(service).obtenirNombrePlacesTotales(idAnnonce);
-        doReturn(2).when(service).obtenirNombrePlacesOccupees(idAnnonce);
+        when(annonceCovoiturageRepository.occuperPlace(idAnnonce)).thenReturn(0);
 
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
                 () -> service.reserverPlace(idAnnonce, idUser));
@@ -759,175 +999,259 @@ public class AnnonceCovoiturageServiceTest {
 
         verify(annonceCovoiturageRepository).findById(idAnnonce);
         verify(utilisateurService).obtenirUtilisateurParId(idUser);
-        verify(covoituragePassagersRepository).findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante);
-        verify(service).obtenirNombrePlacesTotales(idAnnonce);
-        verify(service).obtenirNombrePlacesOccupees(idAnnonce);
-        verify(covoituragePassagersRepository, never()).save(any());
+        verify(annonceCovoiturageRepository).occuperPlace(idAnnonce);
+        verify(covoituragePassagersRepository, never()).saveAndFlush(any(CovoituragePassagers.class));
     }
 
     @Test
-    @DisplayName("annulerReservation → OK : la réservation existe → suppression")
+    @DisplayName("annulerReservation → OK : la réservation existe → suppression et place libérée")
     void annulerReservation_ok() {
         // GIVEN
-        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        when(annonceCovoiturageRepository.existsById(idAnnonce)).thenReturn(true);
         when(utilisateurService.obtenirUtilisateurParId(idUser)).thenReturn(user);
-
-        CovoituragePassagers resa = new CovoituragePassagers(user, annonceExistante);
-        when(covoituragePassagersRepository.findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante))
-                .thenReturn(Optional.of(resa));
+        when(covoituragePassagersRepository.supprimerReservation(idUser, idAnnonce)).thenReturn(1);
 
         // WHEN
         service.annulerReservation(idAnnonce, idUser);
 
         // THEN
-        verify(annonceCovoiturageRepository).findById(idAnnonce);
+        verify(annonceCovoiturageRepository).existsById(idAnnonce);
         verify(utilisateurService).obtenirUtilisateurParId(idUser);
-        verify(covoituragePassagersRepository)
-                .findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante);
-        verify(covoituragePassagersRepository).delete(resa);
+        verify(covoituragePassagersRepository).supprimerReservation(idUser, idAnnonce);
+        verify(annonceCovoiturageRepository).libererPlace(idAnnonce);
+        verify(listeAttenteService).promouvoir(idAnnonce);
         verifyNoMoreInteractions(annonceCovoiturageRepository, utilisateurService, covoituragePassagersRepository);
     }
 
     @Test
     @DisplayName("annulerReservation → KO : annonce introuvable")
     void annulerReservation_ko_annonce_introuvable() {
-        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.empty());
+        when(annonceCovoiturageRepository.existsById(idAnnonce)).thenReturn(false);
 
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
                 () -> service.annulerReservation(idAnnonce, idUser));
         assertTrue(ex.getMessage().toLowerCase().contains("introuvable"), ex.getMessage());
 
-        verify(annonceCovoiturageRepository).findById(idAnnonce);
+        verify(annonceCovoiturageRepository).existsById(idAnnonce);
         verifyNoInteractions(utilisateurService, covoituragePassagersRepository);
     }
 
     @Test
     @DisplayName("annulerReservation → KO : aucune réservation pour cet utilisateur")
     void annulerReservation_ko_aucune_reservation() {
-        when(annonceCovoiturageRepository.findById(idAnnonce)).thenReturn(Optional.of(annonceExistante));
+        when(annonceCovoiturageRepository.existsById(idAnnonce)).thenReturn(true);
         when(utilisateurService.obtenirUtilisateurParId(idUser)).thenReturn(user);
-        when(covoituragePassagersRepository.findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante))
-                .thenReturn(Optional.empty());
+        when(covoituragePassagersRepository.supprimerReservation(idUser, idAnnonce)).thenReturn(0);
 
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
                 () -> service.annulerReservation(idAnnonce, idUser));
         assertTrue(ex.getMessage().toLowerCase().contains("aucune réservation")
                 || ex.getMessage().toLowerCase().contains("aucune reservation"), ex.getMessage());
 
-        verify(annonceCovoiturageRepository).findById(idAnnonce);
-        verify(utilisateurService).obtenirUtilisateurParId(idUser);
-        verify(covoituragePassagersRepository)
-                .findByUtilisateurAndAnnonceCovoiturage(user, annonceExistante);
-        verify(covoituragePassagersRepository, never()).delete(any());
+        verify(covoituragePassagersRepository).supprimerReservation(idUser, idAnnonce);
+        verify(annonceCovoiturageRepository, never()).libererPlace(anyLong());
     }
 
     @Test
-    @DisplayName("obtenirToutesLesAnnonces → OK : mappe chaque annonce et annote avec places totales/occupées (ordre conservé)")
-    void obtenirToutesLesAnnonces_ok() {
-        // GIVEN — 2 entités
-        AnnonceCovoiturage a1 = new AnnonceCovoiturage(); a1.setId(10L);
-        AnnonceCovoiturage a2 = new AnnonceCovoiturage(); a2.setId(20L);
-        when(annonceCovoiturageRepository.findAll()).thenReturn(List.of(a1, a2));
-
-        // DTOs correspondant (peu importe les valeurs internes pour ce test)
-        var dep = new AdresseDto(null, 1, "rue A", "34000", "Montpellier");
-        var arr = new AdresseDto(null, 2, "rue B", "44000", "Nantes");
-        var dto1 = AnnonceCovoiturageDto.of(10L, LocalDateTime.now().plusDays(1), 30, 10, dep, arr, null);
-        var dto2 = AnnonceCovoiturageDto.of(20L, LocalDateTime.now().plusDays(2), 45, 12, dep, arr, 7L);
-        when(annonceMapper.versDto(a1)).thenReturn(dto1);
-        when(annonceMapper.versDto(a2)).thenReturn(dto2);
-
-        // Helpers internes → on les stub via le Spy
-        doReturn(4).when(service).obtenirNombrePlacesTotales(10L);
-        doReturn(2).when(service).obtenirNombrePlacesOccupees(10L);
-        doReturn(5).when(service).obtenirNombrePlacesTotales(20L);
-        doReturn(3).when(service).obtenirNombrePlacesOccupees(20L);
+    @DisplayName("rechercherAnnonces → OK : lit taille+1 lignes, renvoie une page et un curseur suivant décodable")
+    void rechercherAnnonces_ok_avecSuite() {
+        // GIVEN — 3 lignes pour une taille de 2 → il existe une page suivante
+        var l1 = ligne(1L, heureDepart, 4, 0L);
+        var l2 = ligne(2L, heureDepart.plusHours(1), 4, 1L);
+        var l3 = ligne(3L, heureDepart.plusHours(2), 4, 2L);
+        when(annonceCovoiturageRepository.rechercherAvecCurseur(
+                isNull(), isNull(), eq("Nantes"), isNull(), any(LocalDateTime.class), isNull(), eq(1),
+                isNull(), isNull(), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(l1, l2, l3));
 
         // WHEN
-        List<AnnonceCovoiturageAvecPlacesDto> out = service.obtenirToutesLesAnnonces();
+        PageAnnoncesCovoiturageDto page = service.rechercherAnnonces(
+                RechercheAnnonceCovoiturageDto.of(null, " ", "Nantes", null, null, null, 1, null, 2));
 
-        // THEN — on compare à la liste attendue
-        var expected = List.of(
-                AnnonceCovoiturageAvecPlacesDto.of(dto1, 4, 2),
-                AnnonceCovoiturageAvecPlacesDto.of(dto2, 5, 3)
-        );
-        assertEquals(expected, out);
+        // THEN
+        assertEquals(List.of(1L, 2L), page.annonces().stream().map(a -> a.annonce().id()).toList());
+        assertTrue(page.aUneSuite());
 
-        // Interactions
-        verify(annonceCovoiturageRepository).findAll();
-        verify(annonceMapper).versDto(a1);
-        verify(annonceMapper).versDto(a2);
-        verify(service).obtenirNombrePlacesTotales(10L);
-        verify(service).obtenirNombrePlacesOccupees(10L);
-        verify(service).obtenirNombrePlacesTotales(20L);
-        verify(service).obtenirNombrePlacesOccupees(20L);
-        verifyNoMoreInteractions(annonceCovoiturageRepository, annonceMapper);
+        // La page suivante repart après (heureDepart, id) de la dernière annonce
+        when(annonceCovoiturageRepository.rechercherAvecCurseur(
+                any(), any(), any(), any(), any(), any(), any(),
+                eq(heureDepart.plusHours(1)), eq(2L), any()))
+                .thenReturn(List.of(l3));
+
+        PageAnnoncesCovoiturageDto suivante = service.rechercherAnnonces(
+                RechercheAnnonceCovoiturageDto.of(null, null, "Nantes", null, null, null, 1, page.curseurSuivant(), 2));
+
+        assertEquals(List.of(3L), suivante.annonces().stream().map(a -> a.annonce().id()).toList());
+        assertNull(suivante.curseurSuivant());
+        verifyNoInteractions(covoituragePassagersRepository, vehiculePersonnelRepository);
     }
 
     @Test
-    @DisplayName("obtenirToutesLesAnnonces → OK : liste vide → retourne vide, pas d’appels aux helpers")
-    void obtenirToutesLesAnnonces_vide() {
-        // GIVEN
-        when(annonceCovoiturageRepository.findAll()).thenReturn(List.of());
+    @DisplayName("rechercherAnnonces → OK : sans date ni curseur, ne cherche que les annonces futures")
+    void rechercherAnnonces_ok_parDefautFutur() {
+        when(annonceCovoiturageRepository.rechercherAvecCurseur(
+                any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of());
+        LocalDateTime avant = LocalDateTime.now();
+
+        PageAnnoncesCovoiturageDto page = service.rechercherAnnonces(
+                RechercheAnnonceCovoiturageDto.of(null, null, null, null, null, null, null, null, null));
+
+        assertTrue(page.annonces().isEmpty());
+        assertNull(page.curseurSuivant());
+        verify(annonceCovoiturageRepository).rechercherAvecCurseur(
+                isNull(), isNull(), isNull(), isNull(),
+                argThat(date -> !date.isBefore(avant)), isNull(), isNull(),
+                isNull(), isNull(), eq(PageRequest.of(0, 21)));
+    }
+
+    @Test
+    @DisplayName("rechercherAnnonces → OK : modèle de lecture chargé et recherche sur l'avenir → servie en mémoire")
+    void rechercherAnnonces_ok_depuisModeleLecture() {
+        when(modeleLecture.estCharge()).thenReturn(true);
+        when(modeleLecture.rechercher(isNull(), isNull(), eq("Nantes"), isNull(), any(LocalDateTime.class), isNull(),
+                isNull(), isNull(), isNull(), eq(3)))
+                .thenReturn(List.of(ligne(1L, heureDepart, 4, 0L)));
+
+        PageAnnoncesCovoiturageDto page = service.rechercherAnnonces(
+                RechercheAnnonceCovoiturageDto.of(null, null, "Nantes", null, null, null, null, null, 2));
+
+        assertEquals(List.of(1L), page.annonces().stream().map(a -> a.annonce().id()).toList());
+        assertNull(page.curseurSuivant());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    @Test
+    @DisplayName("rechercherAnnonces → OK : date de début passée → servie par la base même si le modèle est chargé")
+    void rechercherAnnonces_ok_passeDepuisBase() {
+        when(modeleLecture.estCharge()).thenReturn(true);
+        when(annonceCovoiturageRepository.rechercherAvecCurseur(
+                any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of());
+
+        service.rechercherAnnonces(RechercheAnnonceCovoiturageDto.of(
+                null, null, null, null, LocalDateTime.now().minusDays(7), null, null, null, null));
+
+        verify(annonceCovoiturageRepository).rechercherAvecCurseur(
+                any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+        verify(modeleLecture, never()).rechercher(any(), any(), any(), any(), any(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("obtenirAnnoncesAVenir → OK : servies par le modèle de lecture, annonces sans véhicule ignorées")
+    void obtenirAnnoncesAVenir_ok_depuisModeleLecture() {
+        when(modeleLecture.estCharge()).thenReturn(true);
+        when(modeleLecture.annoncesAVenir()).thenReturn(List.of(ligne(1L, heureDepart, 4, 1L), ligne(2L, heureDepart, null, 0L)));
+
+        List<AnnonceCovoiturageAvecPlacesDto> annonces = service.obtenirAnnoncesAVenir();
+
+        assertEquals(List.of(1L), annonces.stream().map(a -> a.annonce().id()).toList());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    @Test
+    @DisplayName("obtenirAnnoncesAVenir → OK : modèle non chargé → lecture en base")
+    void obtenirAnnoncesAVenir_ok_depuisBase() {
+        when(annonceCovoiturageRepository.findFuturesAvecPlaces(any(LocalDateTime.class)))
+                .thenReturn(List.of(ligne(1L, heureDepart, 4, 0L)));
+
+        assertEquals(1, service.obtenirAnnoncesAVenir().size());
+        verify(modeleLecture, never()).annoncesAVenir();
+    }
+
+    @Test
+    @DisplayName("rechercherAnnonces → KO : taille hors bornes")
+    void rechercherAnnonces_ko_taille() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.rechercherAnnonces(
+                        RechercheAnnonceCovoiturageDto.of(null, null, null, null, null, null, null, null, 500)));
+        assertEquals("La taille de page doit être comprise entre 1 et 100", ex.getMessage());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    @Test
+    @DisplayName("rechercherAnnonces → KO : curseur invalide")
+    void rechercherAnnonces_ko_curseur() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.rechercherAnnonces(
+                        RechercheAnnonceCovoiturageDto.of(null, null, null, null, null, null, null, "pas-un-curseur", null)));
+        assertEquals("Curseur de pagination invalide", ex.getMessage());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    @Test
+    @DisplayName("rechercherAnnoncesProximite → OK : exclut les départs hors rayon et trie par distance")
+    void rechercherAnnoncesProximite_ok() {
+        // GIVEN — point de recherche : place de la Comédie, Montpellier
+        double lat = 43.6085, lon = 3.8798;
+        when(annonceCovoiturageRepository.findPositionsDepartDansCellules(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of(
+                        new PositionDepartAnnonceDto(1L, 43.6500, 3.8798),   // ~4,6 km
+                        new PositionDepartAnnonceDto(2L, 43.6100, 3.8800),   // ~0,2 km
+                        new PositionDepartAnnonceDto(3L, 43.8500, 3.8798))); // ~27 km, hors rayon
+        when(annonceCovoiturageRepository.findAvecPlacesParIds(anyCollection()))
+                .thenReturn(List.of(ligne(1L, heureDepart, 4, 0L), ligne(2L, heureDepart, 4, 1L)));
 
         // WHEN
-        List<AnnonceCovoiturageAvecPlacesDto> out = service.obtenirToutesLesAnnonces();
+        List<AnnonceCovoiturageProximiteDto> resultats = service.rechercherAnnoncesProximite(lat, lon, 10.0, null);
 
         // THEN
-        assertNotNull(out);
-        assertTrue(out.isEmpty());
+        assertEquals(List.of(2L, 1L), resultats.stream().map(r -> r.annonce().annonce().id()).toList());
+        assertEquals(0.2, resultats.get(0).distanceKm());
+        assertEquals(4.6, resultats.get(1).distanceKm());
+        verify(annonceCovoiturageRepository).findAvecPlacesParIds(argThat(ids -> ids.size() == 2 && !ids.contains(3L)));
+    }
 
-        verify(annonceCovoiturageRepository).findAll();
-        // aucun mapping ni helpers appelés
-        verifyNoInteractions(annonceMapper);
-        verify(service, never()).obtenirNombrePlacesTotales(anyLong());
-        verify(service, never()).obtenirNombrePlacesOccupees(anyLong());
+    @Test
+    @DisplayName("rechercherAnnoncesProximite → OK : aucun candidat, pas de chargement des annonces")
+    void rechercherAnnoncesProximite_ok_vide() {
+        when(annonceCovoiturageRepository.findPositionsDepartDansCellules(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+
+        assertTrue(service.rechercherAnnoncesProximite(43.6, 3.88, null, null).isEmpty());
+        verify(annonceCovoiturageRepository, never()).findAvecPlacesParIds(anyCollection());
+    }
+
+    @Test
+    @DisplayName("rechercherAnnoncesProximite → KO : rayon hors bornes")
+    void rechercherAnnoncesProximite_ko_rayon() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.rechercherAnnoncesProximite(43.6, 3.88, 500.0, null));
+        assertEquals("Le rayon doit être strictement positif et au plus de 100 km", ex.getMessage());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    private AnnonceCovoiturageLigneDto ligne(Long id, LocalDateTime heure, Integer placesTotales, Long placesOccupees) {
+        return uneLigne(id).departA(heure).places(placesTotales, placesOccupees).build();
     }
 
     @Test
-    @DisplayName("obtenirReservationsUtilisateur → OK : mappe chaque annonce et annote avec places totales/occupées")
+    @DisplayName("obtenirReservationsUtilisateur → OK : une seule requête agrégée, aucun appel par annonce (pas de N+1)")
     void obtenirReservationsUtilisateur_ok() {
         when(utilisateurService.obtenirUtilisateurParId(idUser)).thenReturn(user);
-
-        // Deux annonces auxquelles l’utilisateur participe
-        AnnonceCovoiturage a1 = new AnnonceCovoiturage(); a1.setId(10L);
-        AnnonceCovoiturage a2 = new AnnonceCovoiturage(); a2.setId(20L);
-        when(annonceCovoiturageRepository.findByUtilisateurParticipant(user))
-                .thenReturn(List.of(a1, a2));
-
-        // Mapping entité -> DTO
-        var dep = new AdresseDto(null, 1, "rue A", "34000", "Montpellier");
-        var arr = new AdresseDto(null, 2, "rue B", "44000", "Nantes");
-        var dto1 = AnnonceCovoiturageDto.of(10L, LocalDateTime.now().plusDays(1), 30, 10, dep, arr, null);
-        var dto2 = AnnonceCovoiturageDto.of(20L, LocalDateTime.now().plusDays(2), 45, 12, dep, arr, 7L);
-        when(annonceMapper.versDto(a1)).thenReturn(dto1);
-        when(annonceMapper.versDto(a2)).thenReturn(dto2);
-
-        // Helpers internes (stub via Spy)
-        doReturn(4).when(service).obtenirNombrePlacesTotales(10L);
-        doReturn(2).when(service).obtenirNombrePlacesOccupees(10L);
-        doReturn(5).when(service).obtenirNombrePlacesTotales(20L);
-        doReturn(3).when(service).obtenirNombrePlacesOccupees(20L);
+        LocalDateTime h1 = LocalDateTime.now().plusDays(1);
+        LocalDateTime h2 = LocalDateTime.now().plusDays(2);
+        when(annonceCovoiturageRepository.findAvecPlacesParPassager(idUser))
+                .thenReturn(List.of(ligne(10L, h1, 4, 2L), ligne(20L, h2, 5, 3L)));
 
         // WHEN
         List<AnnonceCovoiturageAvecPlacesDto> out = service.obtenirReservationsUtilisateur(idUser);
 
         // THEN
+        var dep = AdresseDto.of(1L, 1, "rue A", "34000", "Montpellier");
+        var arr = AdresseDto.of(2L, 2, "rue B", "69000", "Lyon");
         var expected = List.of(
-                AnnonceCovoiturageAvecPlacesDto.of(dto1, 4, 2),
-                AnnonceCovoiturageAvecPlacesDto.of(dto2, 5, 3)
+                AnnonceCovoiturageAvecPlacesDto.of(AnnonceCovoiturageDto.of(10L, h1, 30, 10, dep, arr, null), 4, 2),
+                AnnonceCovoiturageAvecPlacesDto.of(AnnonceCovoiturageDto.of(20L, h2, 30, 10, dep, arr, null), 5, 3)
         );
         assertEquals(expected, out);
 
         verify(utilisateurService).obtenirUtilisateurParId(idUser);
-        verify(annonceCovoiturageRepository).findByUtilisateurParticipant(user);
-        verify(annonceMapper).versDto(a1);
-        verify(annonceMapper).versDto(a2);
-        verify(service).obtenirNombrePlacesTotales(10L);
-        verify(service).obtenirNombrePlacesOccupees(10L);
-        verify(service).obtenirNombrePlacesTotales(20L);
-        verify(service).obtenirNombrePlacesOccupees(20L);
-        verifyNoMoreInteractions(annonceCovoiturageRepository, annonceMapper, utilisateurService);
+        verify(annonceCovoiturageRepository).findAvecPlacesParPassager(idUser);
+        verifyNoMoreInteractions(annonceCovoiturageRepository, utilisateurService);
+        verifyNoInteractions(covoituragePassagersRepository, vehiculePersonnelRepository, annonceMapper);
+        verify(service, never()).obtenirNombrePlacesTotales(anyLong());
+        verify(service, never()).obtenirNombrePlacesOccupees(anyLong());
     }
 
     @Test
@@ -935,7 +1259,7 @@ public class AnnonceCovoiturageServiceTest {
     void obtenirReservationsUtilisateur_aucune_reservation() {
         when(utilisateurService.obtenirUtilisateurParId(idUser)).thenReturn(user);
 
-        when(annonceCovoiturageRepository.findByUtilisateurParticipant(user))
+        when(annonceCovoiturageRepository.findAvecPlacesParPassager(idUser))
                 .thenReturn(List.of()); // vide
 
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
@@ -944,7 +1268,7 @@ public class AnnonceCovoiturageServiceTest {
         assertTrue(msg.contains("aucune réservation") || msg.contains("aucune reservation"));
 
         verify(utilisateurService).obtenirUtilisateurParId(idUser);
-        verify(annonceCovoiturageRepository).findByUtilisateurParticipant(user);
+        verify(annonceCovoiturageRepository).findAvecPlacesParPassager(idUser);
         // Pas d’appels aux helpers ni au mapper
         verifyNoInteractions(annonceMapper);
         verify(service, never()).obtenirNombrePlacesTotales(anyLong());
@@ -1037,53 +1361,62 @@ public class AnnonceCovoiturageServiceTest {
     }
 
     @Test
-    @DisplayName("obtenirAnnoncesOrganiseesParUtilisateur → OK : mappe chaque annonce et annote avec places totales/occupées")
+    @DisplayName("obtenirParticipantsParAnnonces → OK : une seule requête, regroupement par annonce dans l'ordre demandé")
+    void obtenirParticipantsParAnnonces_ok() {
+        when(annonceCovoiturageRepository.findParticipantsParAnnonces(anyCollection())).thenReturn(List.of(
+                new ParticipantAnnonceLigneDto(10L, 1L, "Martin", "Sophie", 2L, "Bernard", "Pierre"),
+                new ParticipantAnnonceLigneDto(10L, 1L, "Martin", "Sophie", 3L, "Durand", "Marie"),
+                new ParticipantAnnonceLigneDto(20L, 4L, "Petit", "Léa", null, null, null)));
+
+        // 30 n'existe pas, 10 est demandé deux fois
+        Map<Long, ParticipantsCovoiturageDto> out = service.obtenirParticipantsParAnnonces(List.of(20L, 10L, 30L, 10L));
+
+        assertEquals(List.of(20L, 10L), List.copyOf(out.keySet()));
+        assertEquals("Petit", out.get(20L).conducteur().nom());
+        assertTrue(out.get(20L).passagers().isEmpty());
+        assertEquals("Martin", out.get(10L).conducteur().nom());
+        assertEquals(List.of(2L, 3L), out.get(10L).passagers().stream().map(ParticipantsCovoiturageDto.PersonneDto::id).toList());
+
+        verify(annonceCovoiturageRepository).findParticipantsParAnnonces(Set.of(10L, 20L, 30L));
+        verifyNoMoreInteractions(annonceCovoiturageRepository);
+        verifyNoInteractions(covoituragePassagersRepository);
+    }
+
+    @Test
+    @DisplayName("obtenirParticipantsParAnnonces → KO : liste vide ou plus de 100 annonces")
+    void obtenirParticipantsParAnnonces_ko_nombreIds() {
+        assertThrows(IllegalArgumentException.class, () -> service.obtenirParticipantsParAnnonces(List.of()));
+        List<Long> trop = java.util.stream.LongStream.rangeClosed(1, 101).boxed().toList();
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.obtenirParticipantsParAnnonces(trop));
+        assertEquals("Le nombre d'annonces doit être compris entre 1 et 100", ex.getMessage());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    @Test
+    @DisplayName("obtenirAnnoncesOrganiseesParUtilisateur → OK : une seule requête agrégée, annonce sans véhicule ignorée")
     void obtenirAnnoncesOrganiseesParUtilisateur_ok() {
         // Arrange
         when(utilisateurService.obtenirUtilisateurParId(idResponsable)).thenReturn(responsable);
-
-        // Deux annonces organisées par le responsable
-        AnnonceCovoiturage a1 = new AnnonceCovoiturage();
-        a1.setId(10L);
-        AnnonceCovoiturage a2 = new AnnonceCovoiturage();
-        a2.setId(20L);
-
-        when(annonceCovoiturageRepository.findByResponsable(responsable))
-                .thenReturn(List.of(a1, a2));
-
-        // Mapping entité -> DTO
-        var dep = new AdresseDto(null, 1, "rue A", "34000", "Montpellier");
-        var arr = new AdresseDto(null, 2, "rue B", "44000", "Nantes");
-        var dto1 = AnnonceCovoiturageDto.of(10L, LocalDateTime.now().plusDays(1), 30, 10, dep, arr, null);
-        var dto2 = AnnonceCovoiturageDto.of(20L, LocalDateTime.now().plusDays(2), 45, 12, dep, arr, 7L);
-        when(annonceMapper.versDto(a1)).thenReturn(dto1);
-        when(annonceMapper.versDto(a2)).thenReturn(dto2);
-
-        // Helpers internes (stub via Spy)
-        doReturn(4).when(service).obtenirNombrePlacesTotales(10L);
-        doReturn(2).when(service).obtenirNombrePlacesOccupees(10L);
-        doReturn(5).when(service).obtenirNombrePlacesTotales(20L);
-        doReturn(3).when(service).obtenirNombrePlacesOccupees(20L);
+        LocalDateTime h1 = LocalDateTime.now().plusDays(1);
+        when(annonceCovoiturageRepository.findAvecPlacesParResponsable(idResponsable))
+                .thenReturn(List.of(ligne(10L, h1, 4, 2L), ligne(20L, h1, null, 0L)));
 
         // Act
         List<AnnonceCovoiturageAvecPlacesDto> out = service.obtenirAnnoncesOrganiseesParUtilisateur(idResponsable);
 
         // Assert
-        var expected = List.of(
-                AnnonceCovoiturageAvecPlacesDto.of(dto1, 4, 2),
-                AnnonceCovoiturageAvecPlacesDto.of(dto2, 5, 3)
-        );
-        assertEquals(expected, out);
+        assertEquals(1, out.size());
+        assertEquals(10L, out.get(0).annonce().id());
+        assertEquals(4, out.get(0).placesTotales());
+        assertEquals(2, out.get(0).placesOccupees());
 
         verify(utilisateurService).obtenirUtilisateurParId(idResponsable);
-        verify(annonceCovoiturageRepository).findByResponsable(responsable);
-        verify(annonceMapper).versDto(a1);
-        verify(annonceMapper).versDto(a2);
-        verify(service).obtenirNombrePlacesTotales(10L);
-        verify(service).obtenirNombrePlacesOccupees(10L);
-        verify(service).obtenirNombrePlacesTotales(20L);
-        verify(service).obtenirNombrePlacesOccupees(20L);
-        verifyNoMoreInteractions(annonceCovoiturageRepository, annonceMapper, utilisateurService);
+        verify(annonceCovoiturageRepository).findAvecPlacesParResponsable(idResponsable);
+        verifyNoMoreInteractions(annonceCovoiturageRepository, utilisateurService);
+        verifyNoInteractions(covoituragePassagersRepository, vehiculePersonnelRepository, annonceMapper);
+        verify(service, never()).obtenirNombrePlacesTotales(anyLong());
+        verify(service, never()).obtenirNombrePlacesOccupees(anyLong());
     }
 
     @Test
@@ -1091,7 +1424,7 @@ public class AnnonceCovoiturageServiceTest {
     void obtenirAnnoncesOrganiseesParUtilisateur_ko_aucune_annonce() {
         // Arrange
         when(utilisateurService.obtenirUtilisateurParId(idResponsable)).thenReturn(responsable);
-        when(annonceCovoiturageRepository.findByResponsable(responsable))
+        when(annonceCovoiturageRepository.findAvecPlacesParResponsable(idResponsable))
                 .thenReturn(List.of()); // vide
 
         // Act & Assert
@@ -1101,7 +1434,7 @@ public class AnnonceCovoiturageServiceTest {
         assertTrue(msg.contains("aucune annonce"), msg);
 
         verify(utilisateurService).obtenirUtilisateurParId(idResponsable);
-        verify(annonceCovoiturageRepository).findByResponsable(responsable);
+        verify(annonceCovoiturageRepository).findAvecPlacesParResponsable(idResponsable);
         // Pas d'appels aux helpers ni au mapper
         verifyNoInteractions(annonceMapper);
         verify(service, never()).obtenirNombrePlacesTotales(anyLong());
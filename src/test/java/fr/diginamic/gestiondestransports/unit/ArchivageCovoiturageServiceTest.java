@@ -0,0 +1,114 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
+import fr.diginamic.gestiondestransports.dto.StatistiqueArchiveDto;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageArchiveRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.CelluleCorridorRepository;
+import fr.diginamic.gestiondestransports.repositories.CovoituragePassagersArchiveRepository;
+import fr.diginamic.gestiondestransports.repositories.CovoituragePassagersRepository;
+import fr.diginamic.gestiondestransports.services.ListeAttenteCovoiturageService;
+import fr.diginamic.gestiondestransports.services.impl.ArchivageCovoiturageServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ArchivageCovoiturageServiceTest {
+
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    @Mock
+    CovoituragePassagersRepository covoituragePassagersRepository;
+    @Mock
+    CelluleCorridorRepository celluleCorridorRepository;
+    @Mock
+    AnnonceCovoiturageArchiveRepository annonceArchiveRepository;
+    @Mock
+    CovoituragePassagersArchiveRepository passagersArchiveRepository;
+    @Mock
+    ListeAttenteCovoiturageService listeAttenteService;
+    @Mock
+    VersionsAgregats versionsAgregats;
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    ArchivageCovoiturageServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ArchivageCovoiturageServiceImpl(annonceCovoiturageRepository, covoituragePassagersRepository,
+                celluleCorridorRepository, annonceArchiveRepository, passagersArchiveRepository, listeAttenteService, versionsAgregats,
+                transactionManager, 90, 2);
+    }
+
+    @Test
+    @DisplayName("archiverAnnoncesPassees → OK : lots successifs, copie avant suppression, une transaction par lot")
+    void archiverAnnoncesPassees_ok() {
+        when(annonceCovoiturageRepository.findIdsPartiesAvant(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L), List.of(3L));
+
+        int archivees = service.archiverAnnoncesPassees();
+
+        assertEquals(3, archivees);
+        InOrder ordre = inOrder(annonceArchiveRepository, passagersArchiveRepository, celluleCorridorRepository,
+                covoituragePassagersRepository, annonceCovoiturageRepository);
+        ordre.verify(annonceArchiveRepository).archiverAnnonces(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        ordre.verify(passagersArchiveRepository).archiverPassagers(List.of(1L, 2L));
+        ordre.verify(celluleCorridorRepository).supprimerParAnnonces(List.of(1L, 2L));
+        ordre.verify(covoituragePassagersRepository).supprimerParAnnonces(List.of(1L, 2L));
+        verify(listeAttenteService).supprimerListes(List.of(1L, 2L));
+        ordre.verify(annonceCovoiturageRepository).supprimerParIds(List.of(1L, 2L));
+        ordre.verify(annonceCovoiturageRepository).supprimerParIds(List.of(3L));
+        // Le dernier lot est incomplet : pas de lecture supplémentaire
+        verify(annonceCovoiturageRepository, times(2)).findIdsPartiesAvant(any(LocalDateTime.class), any(Pageable.class));
+        verify(transactionManager, times(2)).commit(any());
+        verify(versionsAgregats, times(2)).incrementer(AgregatVersionne.COVOITURAGE);
+    }
+
+    @Test
+    @DisplayName("archiverAnnoncesPassees → OK : aucune annonce ancienne, rien n'est écrit")
+    void archiverAnnoncesPassees_ok_rienAArchiver() {
+        when(annonceCovoiturageRepository.findIdsPartiesAvant(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        assertEquals(0, service.archiverAnnoncesPassees());
+
+        verifyNoInteractions(annonceArchiveRepository, passagersArchiveRepository, celluleCorridorRepository,
+                covoituragePassagersRepository, versionsAgregats);
+    }
+
+    @Test
+    @DisplayName("obtenirStatistiquesArchives → OK : la date de fin est incluse")
+    void obtenirStatistiquesArchives_ok() {
+        List<StatistiqueArchiveDto> statistiques = List.of(new StatistiqueArchiveDto(2025, 1, 4L, 6L, 1200L));
+        when(annonceArchiveRepository.calculerStatistiquesMensuelles(
+                LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 1, 0, 0))).thenReturn(statistiques);
+
+        assertEquals(statistiques, service.obtenirStatistiquesArchives(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31)));
+    }
+
+    @Test
+    @DisplayName("obtenirStatistiquesArchives → KO : début après la fin")
+    void obtenirStatistiquesArchives_ko_periode() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.obtenirStatistiquesArchives(LocalDate.of(2025, 6, 1), LocalDate.of(2025, 1, 1)));
+        assertEquals("La date de début doit précéder la date de fin", ex.getMessage());
+        verifyNoInteractions(annonceArchiveRepository);
+    }
+}
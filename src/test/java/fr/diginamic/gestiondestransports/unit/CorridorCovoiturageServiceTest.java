@@ -0,0 +1,166 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageCompatibleDto;
+import fr.diginamic.gestiondestransports.dto.TraceAnnonceDto;
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.CelluleCorridor;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.CelluleCorridorRepository;
+import fr.diginamic.gestiondestransports.services.impl.CorridorCovoiturageServiceImpl;
+import fr.diginamic.gestiondestransports.tools.GrilleGeographique;
+import fr.diginamic.gestiondestransports.tools.TraceItineraire;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static fr.diginamic.gestiondestransports.unit.LigneAnnonceBuilder.uneLigne;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CorridorCovoiturageServiceTest {
+
+    @Mock
+    CelluleCorridorRepository celluleCorridorRepository;
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    @InjectMocks
+    CorridorCovoiturageServiceImpl service;
+
+    // Montpellier → Lyon par la vallée du Rhône
+    private final double[] montpellier = {43.6108, 3.8767};
+    private final double[] nimes = {43.8367, 4.3601};
+    private final double[] avignon = {43.9493, 4.8055};
+    private final double[] valence = {44.9334, 4.8924};
+    private final double[] lyon = {45.7640, 4.8357};
+
+    private String traceMontpellierLyon;
+
+    @BeforeEach
+    void setUp() {
+        traceMontpellierLyon = TraceItineraire.encoder(List.of(montpellier, nimes, avignon, valence, lyon));
+    }
+
+    @Test
+    @DisplayName("indexerAnnonce → OK : sans tracé routier, corridor calculé sur la ligne droite départ/arrivée")
+    @SuppressWarnings("unchecked")
+    void indexerAnnonce_ok_ligneDroite() {
+        AnnonceCovoiturage annonce = annonce(7L, null);
+
+        service.indexerAnnonce(annonce);
+
+        ArgumentCaptor<List<CelluleCorridor>> captor = ArgumentCaptor.forClass(List.class);
+        verify(celluleCorridorRepository).supprimerParAnnonce(7L);
+        verify(celluleCorridorRepository).saveAll(captor.capture());
+        Set<Long> cellules = captor.getValue().stream().map(CelluleCorridor::getCelluleGrille).collect(Collectors.toSet());
+        assertTrue(cellules.contains(GrilleGeographique.cellule(montpellier[0], montpellier[1])));
+        assertTrue(cellules.contains(GrilleGeographique.cellule(lyon[0], lyon[1])));
+        assertEquals(cellules.size(), captor.getValue().size(), "aucune cellule en double");
+        assertTrue(captor.getValue().stream().allMatch(c -> c.getAnnonceCovoiturage() == annonce));
+    }
+
+    @Test
+    @DisplayName("indexerAnnonce → OK : le corridor suit le tracé routier lorsqu'il est disponible")
+    @SuppressWarnings("unchecked")
+    void indexerAnnonce_ok_traceRoutier() {
+        AnnonceCovoiturage annonce = annonce(7L, traceMontpellierLyon);
+
+        service.indexerAnnonce(annonce);
+
+        ArgumentCaptor<List<CelluleCorridor>> captor = ArgumentCaptor.forClass(List.class);
+        verify(celluleCorridorRepository).saveAll(captor.capture());
+        Set<Long> cellules = captor.getValue().stream().map(CelluleCorridor::getCelluleGrille).collect(Collectors.toSet());
+        // Avignon est sur la route mais à plus de 30 km de la ligne droite Montpellier-Lyon
+        assertTrue(cellules.contains(GrilleGeographique.cellule(avignon[0], avignon[1])));
+    }
+
+    @Test
+    @DisplayName("indexerAnnonce → OK : ni tracé ni coordonnées, l'annonce reste sans corridor")
+    void indexerAnnonce_ok_sansGeometrie() {
+        AnnonceCovoiturage annonce = new AnnonceCovoiturage(LocalDateTime.now().plusDays(1), 30, 10,
+                new Adresse(1, "rue A", "34000", "Montpellier"), new Adresse(2, "rue B", "69000", "Lyon"), null);
+        annonce.setId(8L);
+
+        service.indexerAnnonce(annonce);
+
+        verify(celluleCorridorRepository).supprimerParAnnonce(8L);
+        verifyNoMoreInteractions(celluleCorridorRepository);
+    }
+
+    @Test
+    @DisplayName("rechercherTrajetsCompatibles → OK : garde les trajets passant par la prise en charge puis la dépose")
+    void rechercherTrajetsCompatibles_ok() {
+        when(celluleCorridorRepository.findAnnoncesTraversant(anyCollection(), anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of(1L, 2L, 3L));
+        when(annonceCovoiturageRepository.findTracesParIds(List.of(1L, 2L, 3L))).thenReturn(List.of(
+                // Tracé routier Montpellier → Lyon : passe par Nîmes puis Valence
+                new TraceAnnonceDto(1L, traceMontpellierLyon, montpellier[0], montpellier[1], lyon[0], lyon[1]),
+                // Sens inverse : dépose avant prise en charge → exclu
+                new TraceAnnonceDto(2L, null, lyon[0], lyon[1], montpellier[0], montpellier[1]),
+                // Sans tracé : ligne droite Nîmes → Valence
+                new TraceAnnonceDto(3L, null, nimes[0], nimes[1], valence[0], valence[1])));
+        when(annonceCovoiturageRepository.findAvecPlacesParIds(anyCollection()))
+                .thenReturn(List.of(uneLigne(3L).build(), uneLigne(1L).build()));
+
+        List<AnnonceCovoiturageCompatibleDto> resultats = service.rechercherTrajetsCompatibles(
+                43.84, 4.36, 44.93, 4.89, null, null);
+
+        assertEquals(Set.of(1L, 3L), resultats.stream().map(r -> r.annonce().annonce().id()).collect(Collectors.toSet()));
+        // triés par détour croissant
+        assertTrue(resultats.get(0).detourKm() <= resultats.get(1).detourKm());
+        AnnonceCovoiturageCompatibleDto parRoute = resultats.stream()
+                .filter(r -> r.annonce().annonce().id().equals(1L)).findFirst().orElseThrow();
+        AnnonceCovoiturageCompatibleDto parLigneDroite = resultats.stream()
+                .filter(r -> r.annonce().annonce().id().equals(3L)).findFirst().orElseThrow();
+        assertTrue(parRoute.traceRoutier());
+        assertFalse(parLigneDroite.traceRoutier());
+        assertTrue(parRoute.distancePriseEnChargeKm() <= 1.0);
+        assertTrue(parRoute.distanceDeposeKm() <= 1.0);
+        verify(annonceCovoiturageRepository).findAvecPlacesParIds(argThat(ids -> !ids.contains(2L)));
+    }
+
+    @Test
+    @DisplayName("rechercherTrajetsCompatibles → OK : aucun corridor traversé, aucune annonce chargée")
+    void rechercherTrajetsCompatibles_ok_vide() {
+        when(celluleCorridorRepository.findAnnoncesTraversant(anyCollection(), anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+
+        assertTrue(service.rechercherTrajetsCompatibles(43.84, 4.36, 44.93, 4.89, 5.0, 10).isEmpty());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    @Test
+    @DisplayName("rechercherTrajetsCompatibles → KO : détour hors bornes")
+    void rechercherTrajetsCompatibles_ko_detour() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.rechercherTrajetsCompatibles(43.84, 4.36, 44.93, 4.89, 50.0, null));
+        assertEquals("Le détour doit être strictement positif et au plus de 30 km", ex.getMessage());
+        verifyNoInteractions(celluleCorridorRepository, annonceCovoiturageRepository);
+    }
+
+    private AnnonceCovoiturage annonce(Long id, String trace) {
+        Adresse depart = new Adresse(1, "rue A", "34000", "Montpellier");
+        depart.setLatitude(montpellier[0]);
+        depart.setLongitude(montpellier[1]);
+        Adresse arrivee = new Adresse(2, "rue B", "69000", "Lyon");
+        arrivee.setLatitude(lyon[0]);
+        arrivee.setLongitude(lyon[1]);
+        AnnonceCovoiturage annonce = new AnnonceCovoiturage(LocalDateTime.now().plusDays(1), 180, 300, depart, arrivee, null);
+        annonce.setId(id);
+        annonce.setTraceItineraire(trace);
+        return annonce;
+    }
+}
@@ -0,0 +1,94 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.dto.MiseAJourPlacesDto;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.evenements.DiffuseurPlacesCovoiturage;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static fr.diginamic.gestiondestransports.unit.LigneAnnonceBuilder.uneLigne;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DiffuseurPlacesCovoiturageTest {
+
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    DiffuseurPlacesCovoiturage diffuseur;
+
+    @BeforeEach
+    void setUp() {
+        diffuseur = new DiffuseurPlacesCovoiturage(annonceCovoiturageRepository, 60_000, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        diffuseur.fermer();
+    }
+
+    @Test
+    @DisplayName("surEvenement → OK : aucun abonné, l'annonce n'est pas relue")
+    void surEvenement_ok_sansAbonne() {
+        diffuseur.surEvenement(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.RESERVATION));
+
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    @Test
+    @DisplayName("surEvenement → OK : réservation avec abonné, l'annonce est relue une seule fois")
+    void surEvenement_ok_reservation() {
+        diffuseur.abonner(null);
+        diffuseur.abonner(List.of(1L));
+        when(annonceCovoiturageRepository.findAvecPlacesParIds(List.of(1L))).thenReturn(List.of(
+                uneLigne(1L).places(4, 2L).build()));
+
+        diffuseur.surEvenement(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.RESERVATION));
+
+        verify(annonceCovoiturageRepository, times(1)).findAvecPlacesParIds(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("surEvenement → OK : création et suppression ne relisent pas l'annonce")
+    void surEvenement_ok_creationSuppression() {
+        diffuseur.abonner(null);
+
+        diffuseur.surEvenement(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.CREATION));
+        diffuseur.surEvenement(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.SUPPRESSION));
+
+        verify(annonceCovoiturageRepository, never()).findAvecPlacesParIds(any());
+    }
+
+    @Test
+    @DisplayName("abonner → KO : nombre maximal d'abonnés atteint")
+    void abonner_ko_tropDAbonnes() {
+        diffuseur.abonner(null);
+        diffuseur.abonner(null);
+
+        assertThrows(IllegalStateException.class, () -> diffuseur.abonner(null));
+        assertEquals(2, diffuseur.nombreAbonnes());
+    }
+
+    @Test
+    @DisplayName("MiseAJourPlacesDto.of → OK : places disponibles hors conducteur")
+    void miseAJourPlaces_ok() {
+        MiseAJourPlacesDto miseAJour = MiseAJourPlacesDto.of(uneLigne(1L).departA(LocalDateTime.now()).places(4, 2L).build(),
+                TypeEvenementAnnonce.ANNULATION);
+
+        assertEquals(4, miseAJour.placesTotales());
+        assertEquals(2, miseAJour.placesOccupees());
+        assertEquals(1, miseAJour.placesDisponibles());
+    }
+}
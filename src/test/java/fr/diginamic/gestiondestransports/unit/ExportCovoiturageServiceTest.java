@@ -0,0 +1,137 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.ParticipantAnnonceLigneDto;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.services.impl.ExportCovoiturageServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static fr.diginamic.gestiondestransports.unit.LigneAnnonceBuilder.uneLigne;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ExportCovoiturageServiceTest {
+
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private ExportCovoiturageServiceImpl service;
+    private LocalDateTime demain;
+
+    @BeforeEach
+    void setUp() {
+        // Lots de 2 annonces pour vérifier l'enchaînement des lots
+        service = new ExportCovoiturageServiceImpl(annonceCovoiturageRepository, objectMapper, 2);
+        demain = LocalDateTime.now().plusDays(1).withNano(0);
+    }
+
+    @Test
+    @DisplayName("ecrireAnnoncesJson → OK : tableau JSON complet lu par lots successifs, annonce sans véhicule ignorée")
+    void ecrireAnnoncesJson_ok() throws Exception {
+        when(annonceCovoiturageRepository.findAvecPlacesApres(0L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(ligne(1L, "Lyon", 4), ligne(2L, "Paris", null)));
+        when(annonceCovoiturageRepository.findAvecPlacesApres(2L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(ligne(5L, "Nîmes", 5)));
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+
+        service.ecrireAnnoncesJson(sortie);
+
+        JsonNode tableau = objectMapper.readTree(sortie.toByteArray());
+        assertTrue(tableau.isArray());
+        assertEquals(2, tableau.size());
+        assertEquals(1L, tableau.get(0).at("/annonce/id").asLong());
+        assertEquals(4, tableau.get(0).get("placesTotales").asInt());
+        assertEquals("Nîmes", tableau.get(1).at("/annonce/adresseArrivee/ville").asText());
+        // Lot incomplet : fin du parcours sans troisième requête
+        verify(annonceCovoiturageRepository, times(2)).findAvecPlacesApres(anyLong(), any());
+        verify(annonceCovoiturageRepository, never()).findParticipantsParAnnonces(anyCollection());
+    }
+
+    @Test
+    @DisplayName("ecrireAnnoncesJson → OK : aucune annonce → tableau vide")
+    void ecrireAnnoncesJson_ok_vide() throws Exception {
+        when(annonceCovoiturageRepository.findAvecPlacesApres(anyLong(), any())).thenReturn(List.of());
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+
+        service.ecrireAnnoncesJson(sortie);
+
+        assertEquals("[]", sortie.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("ecrireExportNdjson → OK : une annonce par ligne avec conducteur et passagers, une requête de participants par lot")
+    void ecrireExportNdjson_ok() throws Exception {
+        when(annonceCovoiturageRepository.findAvecPlacesApres(0L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(ligne(1L, "Lyon", 4), ligne(2L, "Paris", 4)));
+        when(annonceCovoiturageRepository.findAvecPlacesApres(2L, PageRequest.of(0, 2))).thenReturn(List.of());
+        when(annonceCovoiturageRepository.findParticipantsParAnnonces(List.of(1L, 2L))).thenReturn(List.of(
+                new ParticipantAnnonceLigneDto(1L, 10L, "Martin", "Paul", 20L, "Petit", "Léa"),
+                new ParticipantAnnonceLigneDto(1L, 10L, "Martin", "Paul", 21L, "Roux", "Marc"),
+                new ParticipantAnnonceLigneDto(2L, 11L, "Durand", "Anne", null, null, null)));
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+
+        service.ecrireExportNdjson(sortie);
+
+        String[] lignes = sortie.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lignes.length);
+        JsonNode premiere = objectMapper.readTree(lignes[0]);
+        assertEquals("Martin", premiere.at("/conducteur/nom").asText());
+        assertEquals(2, premiere.get("passagers").size());
+        assertEquals(21L, premiere.at("/passagers/1/id").asLong());
+        JsonNode seconde = objectMapper.readTree(lignes[1]);
+        assertEquals(11L, seconde.at("/conducteur/id").asLong());
+        assertEquals(0, seconde.get("passagers").size());
+        verify(annonceCovoiturageRepository, times(1)).findParticipantsParAnnonces(anyCollection());
+    }
+
+    @Test
+    @DisplayName("ecrireExportCsv → OK : une ligne par passager, valeurs contenant le séparateur ou des guillemets échappées")
+    void ecrireExportCsv_ok() throws Exception {
+        when(annonceCovoiturageRepository.findAvecPlacesApres(0L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(ligne(1L, "Lyon", 4), ligne(2L, "Saint-Jean; \"Centre\"", 4)));
+        when(annonceCovoiturageRepository.findAvecPlacesApres(2L, PageRequest.of(0, 2))).thenReturn(List.of());
+        // L'annonce 2 a été supprimée entre la lecture du lot et celle des participants
+        when(annonceCovoiturageRepository.findParticipantsParAnnonces(anyCollection())).thenReturn(List.of(
+                new ParticipantAnnonceLigneDto(1L, 10L, "Martin", "Paul", 20L, "Petit", "Léa"),
+                new ParticipantAnnonceLigneDto(1L, 10L, "Martin", "Paul", 21L, "Roux", "Marc")));
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+
+        service.ecrireExportCsv(sortie);
+
+        String[] lignes = sortie.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(4, lignes.length);
+        assertTrue(lignes[0].startsWith("annonce_id;heure_depart;"));
+        assertTrue(lignes[1].startsWith("1;"));
+        assertTrue(lignes[1].endsWith(";10;Martin;Paul;20;Petit;Léa"));
+        assertTrue(lignes[2].endsWith(";21;Roux;Marc"));
+        // Annonce sans passager : une ligne, colonnes conducteur et passager vides
+        assertTrue(lignes[3].contains(";\"Saint-Jean; \"\"Centre\"\"\";"));
+        assertTrue(lignes[3].endsWith(";;;;;;"));
+    }
+
+    private AnnonceCovoiturageLigneDto ligne(Long id, String villeArrivee, Integer placesTotales) {
+        return uneLigne(id).departA(demain).versVille(villeArrivee)
+                .vehiculeService(placesTotales == null ? null : 3L).places(placesTotales, 0L).build();
+    }
+}
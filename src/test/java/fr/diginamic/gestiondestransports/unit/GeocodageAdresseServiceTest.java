@@ -0,0 +1,163 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.impl.GeocodageAdresseServiceImpl;
+import fr.diginamic.gestiondestransports.tools.OsmApi;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class GeocodageAdresseServiceTest {
+
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    @Mock
+    AdresseRepository adresseRepository;
+    @Mock
+    CorridorCovoiturageService corridorCovoiturageService;
+    @Mock
+    OsmApi osmApi;
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    GeocodageAdresseServiceImpl service;
+
+    Adresse depart;
+    Adresse arrivee;
+    AnnonceCovoiturage annonce;
+
+    @BeforeEach
+    void setUp() {
+        // Débit élevé : le limiteur n'attend pas pendant les tests
+        service = new GeocodageAdresseServiceImpl(annonceCovoiturageRepository, adresseRepository,
+                corridorCovoiturageService, osmApi, transactionManager, 1000, 2);
+
+        depart = new Adresse(1, "rue de la paix", "34210", "Montpellier");
+        depart.setId(1L);
+        arrivee = new Adresse(10, "avenue foch", "42000", "Nantes");
+        arrivee.setId(2L);
+        annonce = new AnnonceCovoiturage(LocalDateTime.now().plusDays(1), 30, 25, depart, arrivee, null);
+        annonce.setId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.arreter();
+    }
+
+    @Test
+    @DisplayName("geocoderAnnonce → OK : adresses sans coordonnées géocodées, enregistrées puis corridor recalculé")
+    void geocoderAnnonce_ok() {
+        Adresse departEnregistre = new Adresse(1, "rue de la paix", "34210", "Montpellier");
+        departEnregistre.setId(1L);
+        when(annonceCovoiturageRepository.findById(7L)).thenReturn(Optional.of(annonce));
+        when(adresseRepository.findById(1L)).thenReturn(Optional.of(departEnregistre));
+        when(adresseRepository.findById(2L)).thenReturn(Optional.of(new Adresse()));
+        when(osmApi.obtenirCoordonnees(any(Adresse.class))).thenAnswer(inv -> {
+            Adresse adresse = inv.getArgument(0);
+            adresse.setLatitude(43.61);
+            adresse.setLongitude(3.87);
+            return new OsmApi.Coordonnees(43.61, 3.87);
+        });
+
+        service.geocoderAnnonce(7L);
+
+        verify(osmApi, times(2)).obtenirCoordonnees(any(Adresse.class));
+        assertEquals(43.61, departEnregistre.getLatitude());
+        assertNotNull(departEnregistre.getCelluleGrille());
+        verify(corridorCovoiturageService).indexerAnnonce(annonce);
+        // Lecture, deux enregistrements et recalcul du corridor : transactions courtes distinctes
+        verify(transactionManager, times(4)).commit(any());
+    }
+
+    @Test
+    @DisplayName("geocoderAnnonce → OK : adresses déjà géocodées → aucun appel OSM ni recalcul du corridor")
+    void geocoderAnnonce_ok_deja_geocodees() {
+        depart.setLatitude(43.61);
+        depart.setLongitude(3.87);
+        arrivee.setLatitude(47.21);
+        arrivee.setLongitude(-1.55);
+        when(annonceCovoiturageRepository.findById(7L)).thenReturn(Optional.of(annonce));
+
+        service.geocoderAnnonce(7L);
+
+        verifyNoInteractions(osmApi, adresseRepository, corridorCovoiturageService);
+    }
+
+    @Test
+    @DisplayName("geocoderAnnonce → OK : adresse introuvable par Nominatim → rien n'est enregistré")
+    void geocoderAnnonce_ok_adresse_introuvable() {
+        annonce.setAdresseArrivee(depart);
+        when(annonceCovoiturageRepository.findById(7L)).thenReturn(Optional.of(annonce));
+        when(osmApi.obtenirCoordonnees(depart)).thenReturn(null);
+
+        service.geocoderAnnonce(7L);
+
+        // Départ et arrivée identiques : un seul appel
+        verify(osmApi).obtenirCoordonnees(depart);
+        verifyNoInteractions(adresseRepository, corridorCovoiturageService);
+    }
+
+    @Test
+    @DisplayName("geocoderAdressesSansCoordonnees → OK : lot géocodé, cellule de grille renseignée, corridors calculés, reprise après le lot")
+    void geocoderAdressesSansCoordonnees_ok() {
+        Adresse departEnregistre = new Adresse();
+        Adresse arriveeEnregistree = new Adresse();
+        when(adresseRepository.findSansCoordonneesPourAnnoncesAVenir(eq(0L), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(depart, arrivee));
+        when(adresseRepository.findById(1L)).thenReturn(Optional.of(departEnregistre));
+        when(adresseRepository.findById(2L)).thenReturn(Optional.of(arriveeEnregistree));
+        when(osmApi.obtenirCoordonnees(any(Adresse.class))).thenAnswer(inv -> {
+            Adresse adresse = inv.getArgument(0);
+            adresse.setLatitude(47.21);
+            adresse.setLongitude(-1.55);
+            return new OsmApi.Coordonnees(47.21, -1.55);
+        });
+        when(corridorCovoiturageService.indexerAnnoncesSansCorridor()).thenReturn(1);
+
+        int geocodees = service.geocoderAdressesSansCoordonnees();
+
+        assertEquals(2, geocodees);
+        assertNotNull(departEnregistre.getCelluleGrille());
+        assertNotNull(arriveeEnregistree.getCelluleGrille());
+        verify(corridorCovoiturageService).indexerAnnoncesSansCorridor();
+
+        // Lot complet : le passage suivant reprend après la dernière adresse traitée
+        service.geocoderAdressesSansCoordonnees();
+        verify(adresseRepository).findSansCoordonneesPourAnnoncesAVenir(eq(2L), any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("geocoderAdressesSansCoordonnees → OK : adresse introuvable → aucun corridor recalculé, nouveau passage au début")
+    void geocoderAdressesSansCoordonnees_ok_introuvable() {
+        when(adresseRepository.findSansCoordonneesPourAnnoncesAVenir(eq(0L), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(depart));
+        when(osmApi.obtenirCoordonnees(depart)).thenReturn(null);
+
+        assertEquals(0, service.geocoderAdressesSansCoordonnees());
+        service.geocoderAdressesSansCoordonnees();
+
+        verify(corridorCovoiturageService, never()).indexerAnnoncesSansCorridor();
+        // Lot incomplet : le passage est terminé, l'adresse sera retentée au passage suivant
+        verify(adresseRepository, times(2)).findSansCoordonneesPourAnnoncesAVenir(eq(0L), any(LocalDateTime.class), any(Pageable.class));
+    }
+}
@@ -0,0 +1,236 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.cache.IndexOccupationsVehicules;
+import fr.diginamic.gestiondestransports.cache.ModeleLectureAnnonces;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
+import fr.diginamic.gestiondestransports.dto.AdresseDto;
+import fr.diginamic.gestiondestransports.dto.CoordonneesAdresseDto;
+import fr.diginamic.gestiondestransports.dto.LigneImportCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.RapportImportCovoiturageDto;
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
+import fr.diginamic.gestiondestransports.repositories.ImportCovoiturageJdbcRepository;
+import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculePersonnelRepository;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.impl.ImportCovoiturageServiceImpl;
+import fr.diginamic.gestiondestransports.tools.OsmApi;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ImportCovoiturageServiceTest {
+
+    @Mock
+    UtilisateurRepository utilisateurRepository;
+    @Mock
+    VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
+    @Mock
+    VehiculePersonnelRepository vehiculePersonnelRepository;
+    @Mock
+    AdresseRepository adresseRepository;
+    @Mock
+    ImportCovoiturageJdbcRepository importJdbcRepository;
+    @Mock
+    CorridorCovoiturageService corridorCovoiturageService;
+    @Mock
+    OsmApi osmApi;
+    @Mock
+    VersionsAgregats versionsAgregats;
+    @Mock
+    ModeleLectureAnnonces modeleLecture;
+    @Mock
+    IndexOccupationsVehicules indexOccupations;
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    ImportCovoiturageServiceImpl service;
+
+    private Utilisateur conducteur;
+    private VehiculeEntreprise vehicule;
+    private LocalDateTime demain;
+
+    @BeforeEach
+    void setUp() {
+        service = new ImportCovoiturageServiceImpl(utilisateurRepository, vehiculeEntrepriseRepository,
+                vehiculePersonnelRepository, adresseRepository, importJdbcRepository, corridorCovoiturageService,
+                osmApi, Validation.buildDefaultValidatorFactory().getValidator(), versionsAgregats, modeleLecture,
+                indexOccupations, transactionManager, 100, 2, 2, 1000);
+        conducteur = new Utilisateur();
+        conducteur.setId(7L);
+        conducteur.setEmail("conducteur@x.fr");
+        vehicule = new VehiculeEntreprise(3L, "AA-123-BB", 5, "Clio", 100, null, "Renault", null, null, StatutVehicule.EN_SERVICE);
+        demain = LocalDateTime.now().plusDays(1).withNano(0);
+    }
+
+    @Test
+    @DisplayName("importerAnnonces → OK : adresses dédupliquées, coordonnées réutilisées, lots JDBC, lignes invalides rejetées")
+    void importerAnnonces_ok() {
+        when(utilisateurRepository.findByEmailIn(anyCollection())).thenReturn(List.of(conducteur));
+        when(vehiculeEntrepriseRepository.findAllById(anyCollection())).thenReturn(List.of(vehicule));
+        when(adresseRepository.findCoordonneesConnues(anyCollection(), anyCollection()))
+                .thenReturn(List.of(connue(1, "rue A", "34000", "Montpellier"), connue(2, "rue B", "69000", "Lyon")));
+        List<List<AnnonceCovoiturage>> lots = simulerInsertions();
+
+        RapportImportCovoiturageDto rapport = service.importerAnnonces(List.of(
+                ligne("conducteur@x.fr", 3L, 300),
+                ligne("inconnu@x.fr", 3L, 300),
+                ligne("conducteur@x.fr", 3L, 300),
+                ligne("conducteur@x.fr", 3L, 300),
+                ligne("", 3L, 300)));
+
+        assertEquals(5, rapport.lignes());
+        assertEquals(3, rapport.importees());
+        assertEquals(2, rapport.rejetees());
+        assertTrue(rapport.resultats().get(1).erreur().contains("inconnu@x.fr"));
+        assertEquals(5, rapport.resultats().get(4).ligne());
+        assertFalse(rapport.resultats().get(4).importee());
+        assertEquals(List.of(2, 1), lots.stream().map(List::size).toList());
+        assertEquals(5, lots.get(0).get(0).getPlacesTotales());
+        // Mêmes adresses sur toutes les lignes : une seule recherche de coordonnées, aucun géocodage,
+        // mais une ligne d'adresse par extrémité de chaque annonce, insérée avec son lot
+        verify(adresseRepository, times(1)).findCoordonneesConnues(anyCollection(), anyCollection());
+        ArgumentCaptor<List<Adresse>> adresses = captorAdresses();
+        verify(importJdbcRepository, times(2)).insererAdresses(adresses.capture());
+        assertEquals(List.of(4, 2), adresses.getAllValues().stream().map(List::size).toList());
+        List<Adresse> toutes = adresses.getAllValues().stream().flatMap(List::stream).toList();
+        assertEquals(6, toutes.stream().map(System::identityHashCode).distinct().count());
+        assertTrue(toutes.stream().allMatch(a -> a.aDesCoordonnees() && a.getCelluleGrille() != null));
+        assertSame(lots.get(0).get(0).getAdresseDepart(), toutes.get(0));
+        verifyNoInteractions(osmApi);
+        verify(versionsAgregats).incrementer(AgregatVersionne.COVOITURAGE);
+    }
+
+    @Test
+    @DisplayName("importerAnnoncesCsv → OK : colonnes par en-tête, itinéraire calculé une fois par couple d'adresses")
+    void importerAnnoncesCsv_ok() throws Exception {
+        when(utilisateurRepository.findByEmailIn(anyCollection())).thenReturn(List.of(conducteur));
+        when(vehiculeEntrepriseRepository.findAllById(anyCollection())).thenReturn(List.of(vehicule));
+        when(adresseRepository.findCoordonneesConnues(anyCollection(), anyCollection()))
+                .thenReturn(List.of(connue(null, "rue A; bât. 2", "34000", "Montpellier"), connue(null, "rue B", "69000", "Lyon")));
+        when(osmApi.calculerDistanceEtDuree(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(new OsmApi.ResultatItineraire(300, 180));
+        List<List<AnnonceCovoiturage>> lots = simulerInsertions();
+        String csv = "\uFEFFvehiculeServiceId;emailConducteur;heureDepart;libelleDepart;codePostalDepart;villeDepart;libelleArrivee;codePostalArrivee;villeArrivee\n"
+                + "3;conducteur@x.fr;" + demain + ";\"rue A; bât. 2\";34000;Montpellier;rue B;69000;Lyon\n"
+                + "\n"
+                + "3;conducteur@x.fr;demain;rue A;34000;Montpellier;rue B;69000;Lyon\n"
+                + "3;conducteur@x.fr;" + demain.plusDays(1) + ";\"rue A; bât. 2\";34000;MONTPELLIER;rue B;69000;Lyon\n";
+
+        RapportImportCovoiturageDto rapport = service.importerAnnoncesCsv(new StringReader(csv));
+
+        assertEquals(2, rapport.importees());
+        assertEquals(List.of(2, 4, 5), rapport.resultats().stream().map(r -> r.ligne()).toList());
+        assertFalse(rapport.resultats().get(1).importee());
+        AnnonceCovoiturage annonce = lots.get(0).get(0);
+        assertEquals("rue A; bât. 2", annonce.getAdresseDepart().getLibelle());
+        assertEquals(300, annonce.getDistance());
+        assertEquals(180, annonce.getDureeTrajet());
+        assertNotSame(annonce.getAdresseDepart(), lots.get(0).get(1).getAdresseDepart());
+        assertEquals(annonce.getAdresseDepart().getLatitude(), lots.get(0).get(1).getAdresseDepart().getLatitude());
+        verify(osmApi, times(1)).calculerDistanceEtDuree(anyDouble(), anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("importerAnnoncesCsv → KO : colonne obligatoire absente de l'en-tête")
+    void importerAnnoncesCsv_ko_enteteIncomplet() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.importerAnnoncesCsv(new StringReader("emailConducteur;heureDepart\n")));
+
+        assertTrue(ex.getMessage().contains("libelleDepart"));
+        verifyNoInteractions(importJdbcRepository);
+    }
+
+    @Test
+    @DisplayName("importerAnnonces → KO : échec d'un lot → ses lignes sont rejetées, les autres lots importés")
+    void importerAnnonces_ko_lotEnEchec() {
+        when(utilisateurRepository.findByEmailIn(anyCollection())).thenReturn(List.of(conducteur));
+        when(vehiculeEntrepriseRepository.findAllById(anyCollection())).thenReturn(List.of(vehicule));
+        when(adresseRepository.findCoordonneesConnues(anyCollection(), anyCollection()))
+                .thenReturn(List.of(connue(1, "rue A", "34000", "Montpellier"), connue(2, "rue B", "69000", "Lyon")));
+        List<List<AnnonceCovoiturage>> lots = simulerInsertions();
+        doThrow(new DataIntegrityViolationException("doublon"))
+                .doNothing()
+                .when(importJdbcRepository).insererCellulesCorridor(anyMap());
+
+        RapportImportCovoiturageDto rapport = service.importerAnnonces(List.of(
+                ligne("conducteur@x.fr", 3L, 300),
+                ligne("conducteur@x.fr", 3L, 300),
+                ligne("conducteur@x.fr", 3L, 300)));
+
+        assertEquals(1, rapport.importees());
+        assertTrue(rapport.resultats().get(0).erreur().contains("doublon"));
+        assertNull(rapport.resultats().get(0).idAnnonce());
+        assertTrue(rapport.resultats().get(2).importee());
+        assertEquals(2, lots.size());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    @DisplayName("importerAnnonces → KO : nombre maximal de lignes dépassé")
+    void importerAnnonces_ko_tropDeLignes() {
+        List<LigneImportCovoiturageDto> lignes = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            lignes.add(ligne("conducteur@x.fr", 3L, 300));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> service.importerAnnonces(lignes));
+        verifyNoInteractions(utilisateurRepository, importJdbcRepository);
+    }
+
+    /**
+     * Simule l'insertion JDBC (attribution des identifiants) et renvoie les lots reçus
+     */
+    private List<List<AnnonceCovoiturage>> simulerInsertions() {
+        List<List<AnnonceCovoiturage>> lots = new ArrayList<>();
+        long[] sequence = {100L};
+        doAnswer(invocation -> {
+            List<AnnonceCovoiturage> lot = invocation.getArgument(0);
+            lot.forEach(annonce -> annonce.setId(sequence[0]++));
+            lots.add(lot);
+            return null;
+        }).when(importJdbcRepository).insererAnnonces(anyList());
+        lenient().when(corridorCovoiturageService.calculerCellules(any())).thenReturn(Set.of(1L, 2L));
+        return lots;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<List<Adresse>> captorAdresses() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    private CoordonneesAdresseDto connue(Integer numero, String libelle, String codePostal, String ville) {
+        return new CoordonneesAdresseDto(numero, libelle, codePostal, ville, 43.61, 3.87);
+    }
+
+    private LigneImportCovoiturageDto ligne(String email, Long vehiculeId, Integer distance) {
+        return new LigneImportCovoiturageDto(email, demain, 180, distance,
+                AdresseDto.of(null, 1, "rue A", "34000", "Montpellier"),
+                AdresseDto.of(null, 2, "rue B", "69000", "Lyon"),
+                vehiculeId);
+    }
+}
@@ -0,0 +1,240 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.cache.IndexOccupationsVehicules;
+import fr.diginamic.gestiondestransports.dto.EtatIndexOccupationsDto;
+import fr.diginamic.gestiondestransports.dto.OccupationVehiculeDto;
+import fr.diginamic.gestiondestransports.dto.UsageVehiculeDto;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.enums.TypeOccupationVehicule;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.evenements.ReservationVehiculeEvenement;
+import fr.diginamic.gestiondestransports.repositories.PlanningFlotteJdbcRepository;
+import fr.diginamic.gestiondestransports.tools.IntervallesOccupation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static fr.diginamic.gestiondestransports.enums.TypeOccupationVehicule.COVOITURAGE;
+import static fr.diginamic.gestiondestransports.enums.TypeOccupationVehicule.RESERVATION;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IndexOccupationsVehiculesTest {
+
+    @Mock
+    PlanningFlotteJdbcRepository planningRepo;
+
+    @InjectMocks
+    IndexOccupationsVehicules index;
+
+    private LocalDateTime demain;
+
+    @BeforeEach
+    void setUp() {
+        demain = LocalDateTime.now().plusDays(1).withHour(8).withMinute(0).withSecond(0).withNano(0);
+    }
+
+    @Test
+    @DisplayName("charger → OK : réservations et trajets indexés par véhicule, bornes qui se touchent sans chevauchement")
+    void charger_ok() {
+        when(planningRepo.findOccupationsTerminantApres(any(LocalDateTime.class))).thenReturn(List.of(
+                occupation(RESERVATION, 1L, 10L, demain, demain.plusHours(2)),
+                occupation(COVOITURAGE, 1L, 10L, demain.plusHours(4), demain.plusHours(5)),
+                occupation(RESERVATION, 2L, 20L, demain, demain.plusHours(1))));
+        assertFalse(index.estCharge());
+
+        index.charger();
+
+        assertTrue(index.estCharge());
+        assertTrue(index.chevauche(10L, demain.plusHours(1), demain.plusHours(3)));
+        assertTrue(index.chevauche(10L, demain.plusHours(3), demain.plusHours(6)));
+        assertFalse(index.chevauche(10L, demain.plusHours(2), demain.plusHours(4)));
+        assertFalse(index.chevauche(30L, demain, demain.plusHours(5)));
+        assertEquals(3, index.etat().occupationsEnMemoire());
+        assertEquals(2, index.etat().vehiculesIndexes());
+    }
+
+    @Test
+    @DisplayName("charger → OK : mises à jour par événement pendant la lecture → rejouées après le remplacement")
+    void charger_ok_evenementsPendantLecture() {
+        when(planningRepo.findOccupationsTerminantApres(any(LocalDateTime.class))).thenAnswer(invocation -> {
+            // Réservation déplacée et trajet supprimé, validés pendant la lecture : les lignes lues sont antérieures
+            index.actualiser(RESERVATION, List.of(1L),
+                    List.of(occupation(RESERVATION, 1L, 10L, demain.plusHours(6), demain.plusHours(7))));
+            index.retirer(COVOITURAGE, 2L);
+            return List.of(occupation(RESERVATION, 1L, 10L, demain, demain.plusHours(2)),
+                    occupation(COVOITURAGE, 2L, 10L, demain.plusHours(4), demain.plusHours(5)));
+        });
+
+        index.charger();
+
+        assertFalse(index.chevauche(10L, demain, demain.plusHours(5)));
+        assertTrue(index.chevauche(10L, demain.plusHours(6), demain.plusHours(7)));
+        assertEquals(1, index.etat().occupationsEnMemoire());
+
+        // Chargement terminé : les mises à jour suivantes ne sont plus conservées
+        index.retirer(RESERVATION, 1L);
+        assertEquals(0, index.etat().occupationsEnMemoire());
+    }
+
+    @Test
+    @DisplayName("minutesLibresAutour → OK : créneau libre borné par les occupations voisines et par l'horizon")
+    void minutesLibresAutour_ok() {
+        chargerAvec(occupation(RESERVATION, 1L, 10L, demain, demain.plusHours(2)),
+                occupation(COVOITURAGE, 1L, 10L, demain.plusHours(5), demain.plusHours(6)));
+
+        // 30 min libres avant (depuis la fin de la réservation) et 90 min après (jusqu'au trajet)
+        assertEquals(120, index.minutesLibresAutour(10L, demain.plusMinutes(150), demain.plusMinutes(210),
+                demain.minusHours(24), demain.plusHours(24)));
+        // Véhicule sans occupation : tout l'horizon est libre
+        assertEquals(120, index.minutesLibresAutour(20L, demain, demain.plusHours(1),
+                demain.minusHours(1), demain.plusHours(2)));
+    }
+
+    @Test
+    @DisplayName("surEvenementReservation → OK : réservation déplacée puis supprimée, relue en base à chaque fois")
+    void surEvenementReservation_ok() {
+        chargerAvec(occupation(RESERVATION, 1L, 10L, demain, demain.plusHours(2)));
+        when(planningRepo.findOccupationsReservations(List.of(1L)))
+                .thenReturn(List.of(occupation(RESERVATION, 1L, 20L, demain.plusHours(3), demain.plusHours(4))))
+                .thenReturn(List.of());
+
+        index.surEvenementReservation(new ReservationVehiculeEvenement(List.of(1L)));
+
+        assertFalse(index.chevauche(10L, demain, demain.plusHours(2)));
+        assertTrue(index.chevauche(20L, demain.plusHours(3), demain.plusHours(4)));
+
+        index.surEvenementReservation(new ReservationVehiculeEvenement(List.of(1L)));
+
+        assertFalse(index.chevauche(20L, demain.plusHours(3), demain.plusHours(4)));
+        assertEquals(0, index.etat().vehiculesIndexes());
+    }
+
+    @Test
+    @DisplayName("surEvenementAnnonce → OK : places ignorées sans lecture, suppression retirée sans lecture, création relue")
+    void surEvenementAnnonce_ok() {
+        chargerAvec(occupation(COVOITURAGE, 1L, 10L, demain, demain.plusHours(1)));
+        when(planningRepo.findOccupationsCovoiturages(List.of(2L)))
+                .thenReturn(List.of(occupation(COVOITURAGE, 2L, 10L, demain.plusHours(2), demain.plusHours(3))));
+
+        index.surEvenementAnnonce(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.RESERVATION));
+        index.surEvenementAnnonce(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.SUPPRESSION));
+        index.surEvenementAnnonce(new AnnonceCovoiturageEvenement(2L, TypeEvenementAnnonce.CREATION));
+
+        assertFalse(index.chevauche(10L, demain, demain.plusHours(1)));
+        assertTrue(index.chevauche(10L, demain.plusHours(2), demain.plusHours(3)));
+        verify(planningRepo, never()).findOccupationsCovoiturages(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("arbre d'intervalles → OK : mêmes réponses que les créneaux fusionnés après insertions et suppressions aléatoires")
+    void arbreIntervalles_ok_aleatoire() {
+        chargerAvec();
+        Random aleatoire = new Random(42);
+        Map<Long, OccupationVehiculeDto> presentes = new HashMap<>();
+        for (long id = 1; id <= 2000; id++) {
+            LocalDateTime debut = demain.plusMinutes(15L * aleatoire.nextInt(2000));
+            OccupationVehiculeDto occupation = occupation(RESERVATION, id, 10L, debut, debut.plusMinutes(15L * (1 + aleatoire.nextInt(16))));
+            index.actualiser(RESERVATION, List.of(id), List.of(occupation));
+            presentes.put(id, occupation);
+            if (aleatoire.nextInt(3) == 0) {
+                long retiree = 1 + aleatoire.nextInt((int) id);
+                index.retirer(RESERVATION, retiree);
+                presentes.remove(retiree);
+            }
+        }
+
+        List<UsageVehiculeDto> usages = new ArrayList<>();
+        presentes.values().forEach(o -> usages.add(new UsageVehiculeDto(o.vehiculeId(), o.debut(), o.fin())));
+        IntervallesOccupation fusionnees = IntervallesOccupation.de(usages);
+        LocalDateTime horizonDebut = demain.minusHours(24);
+        LocalDateTime horizonFin = demain.plusDays(30);
+        for (int i = 0; i < 2000; i++) {
+            LocalDateTime debut = demain.plusMinutes(15L * aleatoire.nextInt(2100));
+            LocalDateTime fin = debut.plusMinutes(15L * (1 + aleatoire.nextInt(8)));
+            boolean chevauche = fusionnees.chevauche(debut, fin);
+            assertEquals(chevauche, index.chevauche(10L, debut, fin));
+            if (!chevauche) {
+                assertEquals(fusionnees.minutesLibresAutour(debut, fin, horizonDebut, horizonFin),
+                        index.minutesLibresAutour(10L, debut, fin, horizonDebut, horizonFin));
+            }
+        }
+        assertEquals(presentes.size(), index.etat().occupationsEnMemoire());
+    }
+
+    @Test
+    @DisplayName("balayer → OK : les occupations terminées sont retirées")
+    void balayer_ok() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        chargerAvec(occupation(RESERVATION, 1L, 10L, maintenant.minusHours(3), maintenant.minusHours(1)),
+                occupation(RESERVATION, 2L, 10L, demain, demain.plusHours(1)));
+
+        index.balayer();
+
+        assertEquals(1, index.etat().occupationsEnMemoire());
+        assertFalse(index.chevauche(10L, maintenant.minusHours(3), maintenant.minusHours(1)));
+        assertTrue(index.chevauche(10L, demain, demain.plusHours(1)));
+    }
+
+    @Test
+    @DisplayName("verifierCoherence → OK : index identique à la base, aucun rechargement")
+    void verifierCoherence_ok() {
+        OccupationVehiculeDto occupation = occupation(RESERVATION, 1L, 10L, demain, demain.plusHours(1));
+        chargerAvec(occupation);
+
+        EtatIndexOccupationsDto etat = index.verifierCoherence();
+
+        assertEquals(0, etat.ecarts());
+        assertEquals(1.0, etat.tauxCoherence());
+        assertEquals(0, etat.resynchronisations());
+    }
+
+    @Test
+    @DisplayName("verifierCoherence → OK : suppression non publiée et trajet modifié détectés, index rechargé")
+    void verifierCoherence_ok_ecartResynchronise() {
+        chargerAvec(occupation(RESERVATION, 1L, 10L, demain, demain.plusHours(1)),
+                occupation(COVOITURAGE, 2L, 10L, demain.plusHours(2), demain.plusHours(3)));
+        when(planningRepo.findOccupationsTerminantApres(any(LocalDateTime.class)))
+                .thenReturn(List.of(occupation(COVOITURAGE, 2L, 10L, demain.plusHours(4), demain.plusHours(5))));
+
+        EtatIndexOccupationsDto etat = index.verifierCoherence();
+
+        assertEquals(2, etat.ecarts());
+        assertEquals(1, etat.resynchronisations());
+        assertEquals(1, etat.occupationsEnMemoire());
+        assertFalse(index.chevauche(10L, demain, demain.plusHours(3)));
+        assertTrue(index.chevauche(10L, demain.plusHours(4), demain.plusHours(5)));
+    }
+
+    @Test
+    @DisplayName("verifierCoherence → OK : index non chargé, aucune lecture en base")
+    void verifierCoherence_ok_nonCharge() {
+        EtatIndexOccupationsDto etat = index.verifierCoherence();
+
+        assertFalse(etat.charge());
+        verifyNoInteractions(planningRepo);
+    }
+
+    private void chargerAvec(OccupationVehiculeDto... occupations) {
+        when(planningRepo.findOccupationsTerminantApres(any(LocalDateTime.class))).thenReturn(List.of(occupations));
+        index.charger();
+    }
+
+    private OccupationVehiculeDto occupation(TypeOccupationVehicule type, Long id, Long vehiculeId,
+                                             LocalDateTime debut, LocalDateTime fin) {
+        return new OccupationVehiculeDto(type, id, vehiculeId, debut, fin);
+    }
+}
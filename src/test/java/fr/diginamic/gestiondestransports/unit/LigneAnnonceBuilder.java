@@ -0,0 +1,65 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Construction des lignes d'annonce (AnnonceCovoiturageLigneDto) utilisées par les tests unitaires.
+ * Par défaut : départ demain de 1 rue A, 34000 Montpellier vers 2 rue B, 69000 Lyon,
+ * trajet de 30 min et 10 km, véhicule personnel de 4 places, aucune place occupée.
+ * Seules les valeurs utiles au test sont précisées, par exemple :
+ * uneLigne(1L).versVille("Paris").places(4, 1L).build()
+ */
+public final class LigneAnnonceBuilder {
+
+    private final Long id;
+    private LocalDateTime heureDepart = LocalDateTime.now().plusDays(1);
+    private String villeArrivee = "Lyon";
+    private Long vehiculeServiceId;
+    private Integer placesTotales = 4;
+    private Long placesOccupees = 0L;
+
+    private LigneAnnonceBuilder(Long id) {
+        this.id = id;
+    }
+
+    public static LigneAnnonceBuilder uneLigne(Long id) {
+        return new LigneAnnonceBuilder(id);
+    }
+
+    public LigneAnnonceBuilder departA(LocalDateTime heureDepart) {
+        this.heureDepart = heureDepart;
+        return this;
+    }
+
+    public LigneAnnonceBuilder versVille(String villeArrivee) {
+        this.villeArrivee = villeArrivee;
+        return this;
+    }
+
+    /**
+     * @param vehiculeServiceId véhicule de service, null pour un véhicule personnel
+     */
+    public LigneAnnonceBuilder vehiculeService(Long vehiculeServiceId) {
+        this.vehiculeServiceId = vehiculeServiceId;
+        return this;
+    }
+
+    /**
+     * @param placesTotales capacité du véhicule, null si aucun véhicule n'est retrouvé
+     * @param placesOccupees passagers inscrits
+     */
+    public LigneAnnonceBuilder places(Integer placesTotales, Long placesOccupees) {
+        this.placesTotales = placesTotales;
+        this.placesOccupees = placesOccupees;
+        return this;
+    }
+
+    public AnnonceCovoiturageLigneDto build() {
+        return new AnnonceCovoiturageLigneDto(id, heureDepart, 30, 10,
+                1L, 1, "rue A", "34000", "Montpellier",
+                2L, 2, "rue B", "69000", villeArrivee,
+                vehiculeServiceId, placesTotales, placesOccupees);
+    }
+}
@@ -0,0 +1,177 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.cache.IndexListeAttente;
+import fr.diginamic.gestiondestransports.dto.InscriptionListeAttenteDto;
+import fr.diginamic.gestiondestransports.dto.ListeAttenteDto;
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.CovoituragePassagers;
+import fr.diginamic.gestiondestransports.entites.ListeAttenteCovoiturage;
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.CovoituragePassagersRepository;
+import fr.diginamic.gestiondestransports.repositories.ListeAttenteCovoiturageRepository;
+import fr.diginamic.gestiondestransports.services.NotificationEmailService;
+import fr.diginamic.gestiondestransports.services.UtilisateurService;
+import fr.diginamic.gestiondestransports.services.impl.ListeAttenteCovoiturageServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ListeAttenteCovoiturageServiceTest {
+
+    @Mock
+    ListeAttenteCovoiturageRepository listeAttenteRepository;
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    @Mock
+    CovoituragePassagersRepository covoituragePassagersRepository;
+    @Mock
+    UtilisateurService utilisateurService;
+    @Mock
+    NotificationEmailService notificationEmailService;
+    @Mock
+    ApplicationEventPublisher evenements;
+
+    IndexListeAttente index;
+    ListeAttenteCovoiturageServiceImpl service;
+
+    private AnnonceCovoiturage annonce;
+    private Utilisateur passager;
+    private Utilisateur suivant;
+
+    @BeforeEach
+    void setUp() {
+        index = new IndexListeAttente(listeAttenteRepository);
+        service = new ListeAttenteCovoiturageServiceImpl(listeAttenteRepository, annonceCovoiturageRepository,
+                covoituragePassagersRepository, utilisateurService, notificationEmailService, index, evenements);
+
+        Utilisateur conducteur = new Utilisateur("Martin", "Paul", "paul@acme.com", RoleEnum.ROLE_USER);
+        conducteur.setId(1L);
+        passager = new Utilisateur("Durand", "Lea", "lea@acme.com", RoleEnum.ROLE_USER);
+        passager.setId(2L);
+        suivant = new Utilisateur("Petit", "Marc", "marc@acme.com", RoleEnum.ROLE_USER);
+        suivant.setId(3L);
+        annonce = new AnnonceCovoiturage(LocalDateTime.now().plusDays(1), 45, 100,
+                new Adresse(1, "rue A", "34000", "Montpellier"), new Adresse(2, "rue B", "69000", "Lyon"), conducteur);
+        annonce.setId(10L);
+        annonce.setPlacesTotales(3);
+        annonce.setPlacesOccupees(2);
+    }
+
+    @Test
+    @DisplayName("inscrire → OK : annonce complète → inscription en fin de liste avec sa position")
+    void inscrire_ok() {
+        when(listeAttenteRepository.findToutesInscriptions()).thenReturn(List.of(new InscriptionListeAttenteDto(10L, 3L)));
+        when(annonceCovoiturageRepository.findPourMiseAJour(10L)).thenReturn(Optional.of(annonce));
+        when(utilisateurService.obtenirUtilisateurParId(2L)).thenReturn(passager);
+        when(listeAttenteRepository.saveAndFlush(any(ListeAttenteCovoiturage.class))).thenAnswer(i -> i.getArgument(0));
+
+        ListeAttenteDto inscription = service.inscrire(10L, 2L);
+
+        assertEquals(2, inscription.position());
+        assertEquals(2, inscription.enAttente());
+        assertEquals("Lyon", inscription.villeArrivee());
+    }
+
+    @Test
+    @DisplayName("inscrire → KO : il reste une place → réservation directe demandée, index inchangé")
+    void inscrire_ko_placesDisponibles() {
+        annonce.setPlacesOccupees(1);
+        when(annonceCovoiturageRepository.findPourMiseAJour(10L)).thenReturn(Optional.of(annonce));
+        when(utilisateurService.obtenirUtilisateurParId(2L)).thenReturn(passager);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> service.inscrire(10L, 2L));
+
+        assertTrue(ex.getMessage().contains("réservez directement"), ex.getMessage());
+        assertFalse(index.aDesInscrits(10L));
+        verify(listeAttenteRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("inscrire → KO : déjà inscrit (index) → refus sans écriture")
+    void inscrire_ko_dejaInscrit() {
+        when(listeAttenteRepository.findToutesInscriptions()).thenReturn(List.of(new InscriptionListeAttenteDto(10L, 2L)));
+        when(annonceCovoiturageRepository.findPourMiseAJour(10L)).thenReturn(Optional.of(annonce));
+        when(utilisateurService.obtenirUtilisateurParId(2L)).thenReturn(passager);
+
+        assertThrows(IllegalArgumentException.class, () -> service.inscrire(10L, 2L));
+
+        verify(listeAttenteRepository, never()).saveAndFlush(any());
+        assertEquals(1, index.taille(10L));
+    }
+
+    @Test
+    @DisplayName("promouvoir → OK : premier inscrit promu passager, retiré de la liste et prévenu ; le suivant attend")
+    void promouvoir_ok() {
+        when(listeAttenteRepository.findToutesInscriptions()).thenReturn(List.of(
+                new InscriptionListeAttenteDto(10L, 2L), new InscriptionListeAttenteDto(10L, 3L)));
+        ListeAttenteCovoiturage premier = new ListeAttenteCovoiturage(passager, annonce);
+        ListeAttenteCovoiturage second = new ListeAttenteCovoiturage(suivant, annonce);
+        when(listeAttenteRepository.findPremiersPourPromotion(eq(10L), any(Pageable.class)))
+                .thenReturn(List.of(premier), List.of(second));
+        when(annonceCovoiturageRepository.occuperPlace(10L)).thenReturn(1, 0);
+
+        int promus = service.promouvoir(10L);
+
+        assertEquals(1, promus);
+        ArgumentCaptor<CovoituragePassagers> reservation = ArgumentCaptor.forClass(CovoituragePassagers.class);
+        verify(covoituragePassagersRepository).save(reservation.capture());
+        assertSame(passager, reservation.getValue().getUtilisateur());
+        verify(listeAttenteRepository).delete(premier);
+        verify(listeAttenteRepository, never()).delete(second);
+        verify(notificationEmailService).planifier(eq("lea@acme.com"), anyString(), anyString(), anyString());
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(10L, TypeEvenementAnnonce.RESERVATION));
+        // Hors transaction, l'index est mis à jour immédiatement
+        assertEquals(1, index.position(10L, 3L));
+    }
+
+    @Test
+    @DisplayName("promouvoir → OK : inscrit banni retiré de la liste sans prendre de place")
+    void promouvoir_ok_inscritBanni() {
+        passager.setEstBanni(true);
+        when(listeAttenteRepository.findToutesInscriptions()).thenReturn(List.of(new InscriptionListeAttenteDto(10L, 2L)));
+        ListeAttenteCovoiturage premier = new ListeAttenteCovoiturage(passager, annonce);
+        List<List<ListeAttenteCovoiturage>> lectures = new ArrayList<>(List.of(List.of(premier), List.of()));
+        when(listeAttenteRepository.findPremiersPourPromotion(eq(10L), any(Pageable.class)))
+                .thenAnswer(i -> lectures.remove(0));
+
+        assertEquals(0, service.promouvoir(10L));
+
+        verify(listeAttenteRepository).delete(premier);
+        verify(annonceCovoiturageRepository, never()).occuperPlace(any());
+        verify(covoituragePassagersRepository, never()).save(any());
+        verifyNoInteractions(notificationEmailService);
+    }
+
+    @Test
+    @DisplayName("promouvoir → OK : aucune liste d'attente → aucune requête de promotion")
+    void promouvoir_ok_sansListe() {
+        when(listeAttenteRepository.findToutesInscriptions()).thenReturn(List.of());
+
+        assertEquals(0, service.promouvoir(10L));
+
+        verify(listeAttenteRepository, never()).findPremiersPourPromotion(any(), any());
+        verifyNoInteractions(annonceCovoiturageRepository, covoituragePassagersRepository);
+    }
+}
@@ -0,0 +1,230 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.cache.ModeleLectureAnnonces;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageLigneDto;
+import fr.diginamic.gestiondestransports.dto.EtatModeleLectureDto;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static fr.diginamic.gestiondestransports.unit.LigneAnnonceBuilder.uneLigne;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ModeleLectureAnnoncesTest {
+
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
+    @InjectMocks
+    ModeleLectureAnnonces modele;
+
+    private LocalDateTime demain;
+
+    @BeforeEach
+    void setUp() {
+        demain = LocalDateTime.now().plusDays(1).withNano(0);
+    }
+
+    @Test
+    @DisplayName("charger → OK : annonces triées par heure de départ puis id, modèle marqué chargé")
+    void charger_ok() {
+        when(annonceCovoiturageRepository.findFuturesAvecPlaces(any(LocalDateTime.class))).thenReturn(List.of(
+                ligne(3L, demain.plusHours(1), "Lyon", 4, 0L),
+                ligne(2L, demain, "Lyon", 4, 0L),
+                ligne(1L, demain, "Lyon", 4, 0L)));
+        assertFalse(modele.estCharge());
+
+        modele.charger();
+
+        assertTrue(modele.estCharge());
+        assertEquals(List.of(1L, 2L, 3L), ids(modele.annoncesAVenir()));
+    }
+
+    @Test
+    @DisplayName("charger → OK : annonce mise à jour pendant la lecture → relue après le remplacement, pas perdue")
+    void charger_ok_evenementPendantLecture() {
+        when(annonceCovoiturageRepository.findFuturesAvecPlaces(any(LocalDateTime.class))).thenAnswer(invocation -> {
+            // Réservation validée pendant la lecture : la ligne lue est antérieure
+            modele.mettreAJour(ligne(1L, demain, "Lyon", 4, 1L));
+            return List.of(ligne(1L, demain, "Lyon", 4, 0L), ligne(2L, demain, "Lyon", 4, 0L));
+        });
+        when(annonceCovoiturageRepository.findAvecPlacesParIds(Set.of(1L)))
+                .thenReturn(List.of(ligne(1L, demain, "Lyon", 4, 1L)));
+
+        modele.charger();
+
+        assertEquals(List.of(1L, 2L), ids(modele.annoncesAVenir()));
+        assertEquals(1L, modele.annoncesAVenir().get(0).placesOccupees());
+    }
+
+    @Test
+    @DisplayName("surEvenement → OK : réservation → la ligne est relue et remplacée")
+    void surEvenement_ok_reservation() {
+        chargerAvec(ligne(1L, demain, "Lyon", 4, 0L));
+        when(annonceCovoiturageRepository.findAvecPlacesParIds(List.of(1L)))
+                .thenReturn(List.of(ligne(1L, demain, "Lyon", 4, 1L)));
+
+        modele.surEvenement(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.RESERVATION));
+
+        assertEquals(1L, modele.annoncesAVenir().get(0).placesOccupees());
+    }
+
+    @Test
+    @DisplayName("surEvenement → OK : modification de l'heure de départ → l'annonce change de position")
+    void surEvenement_ok_modificationHeure() {
+        chargerAvec(ligne(1L, demain, "Lyon", 4, 0L), ligne(2L, demain.plusHours(1), "Lyon", 4, 0L));
+        when(annonceCovoiturageRepository.findAvecPlacesParIds(List.of(1L)))
+                .thenReturn(List.of(ligne(1L, demain.plusHours(2), "Lyon", 4, 0L)));
+
+        modele.surEvenement(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.MODIFICATION));
+
+        assertEquals(List.of(2L, 1L), ids(modele.annoncesAVenir()));
+    }
+
+    @Test
+    @DisplayName("surEvenement → OK : suppression → l'annonce est retirée sans lecture en base")
+    void surEvenement_ok_suppression() {
+        chargerAvec(ligne(1L, demain, "Lyon", 4, 0L));
+
+        modele.surEvenement(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.SUPPRESSION));
+
+        assertTrue(modele.annoncesAVenir().isEmpty());
+        verify(annonceCovoiturageRepository, never()).findAvecPlacesParIds(any());
+    }
+
+    @Test
+    @DisplayName("mettreAJour → OK : une annonce dont le départ est passé n'est pas conservée")
+    void mettreAJour_ok_departPasse() {
+        chargerAvec(ligne(1L, demain, "Lyon", 4, 0L));
+
+        modele.mettreAJour(ligne(1L, LocalDateTime.now().minusHours(1), "Lyon", 4, 0L));
+
+        assertTrue(modele.annoncesAVenir().isEmpty());
+    }
+
+    @Test
+    @DisplayName("balayer → OK : retire les annonces parties")
+    void balayer_ok() {
+        chargerAvec(ligne(1L, LocalDateTime.now().minusMinutes(5), "Lyon", 4, 0L), ligne(2L, demain, "Lyon", 4, 0L));
+
+        modele.balayer();
+
+        assertEquals(1, modele.etat().annoncesEnMemoire());
+        assertEquals(List.of(2L), ids(modele.annoncesAVenir()));
+    }
+
+    @Test
+    @DisplayName("rechercher → OK : filtres (ville sans casse, places libres), curseur et limite")
+    void rechercher_ok() {
+        chargerAvec(
+                ligne(1L, demain, "Lyon", 4, 0L),
+                ligne(2L, demain, "Paris", 4, 0L),
+                ligne(3L, demain.plusHours(1), "Lyon", 4, 3L),   // complet
+                ligne(4L, demain.plusHours(2), "Lyon", null, 0L), // capacité inconnue
+                ligne(5L, demain.plusHours(3), "Lyon", 4, 1L),
+                ligne(6L, demain.plusHours(4), "Lyon", 4, 0L));
+
+        List<AnnonceCovoiturageLigneDto> page = modele.rechercher(null, null, "lyon", null,
+                demain, null, 1, null, null, 2);
+        assertEquals(List.of(1L, 5L), ids(page));
+
+        List<AnnonceCovoiturageLigneDto> suivante = modele.rechercher(null, null, "lyon", null,
+                null, null, 1, demain.plusHours(3), 5L, 2);
+        assertEquals(List.of(6L), ids(suivante));
+
+        // Même sans filtre de places, l'annonce sans capacité connue est exclue avant la limite
+        List<AnnonceCovoiturageLigneDto> periode = modele.rechercher(null, null, null, null,
+                demain.plusHours(1), demain.plusHours(2), null, null, null, 1);
+        assertEquals(List.of(3L), ids(periode));
+        List<AnnonceCovoiturageLigneDto> apresPeriode = modele.rechercher(null, null, null, null,
+                demain.plusHours(2), null, null, null, null, 1);
+        assertEquals(List.of(5L), ids(apresPeriode));
+    }
+
+    @Test
+    @DisplayName("verifierCoherence → OK : modèle identique à la base → aucun écart")
+    void verifierCoherence_ok() {
+        chargerAvec(ligne(1L, demain, "Lyon", 4, 0L));
+
+        EtatModeleLectureDto etat = modele.verifierCoherence();
+
+        assertEquals(0, etat.ecarts());
+        assertEquals(1.0, etat.tauxCoherence());
+        assertEquals(0, etat.resynchronisations());
+    }
+
+    @Test
+    @DisplayName("verifierCoherence → OK : capacité modifiée hors événement → écarts détectés et corrigés")
+    void verifierCoherence_ok_ecartResynchronise() {
+        chargerAvec(ligne(1L, demain, "Lyon", 4, 0L), ligne(2L, demain, "Lyon", 4, 0L));
+        when(annonceCovoiturageRepository.findFuturesAvecPlaces(any(LocalDateTime.class))).thenReturn(List.of(
+                ligne(1L, demain, "Lyon", 7, 0L),
+                ligne(2L, demain, "Lyon", 4, 0L),
+                ligne(3L, demain, "Lyon", 4, 0L)));
+
+        EtatModeleLectureDto etat = modele.verifierCoherence();
+
+        assertEquals(2, etat.ecarts());
+        assertEquals(3, etat.annoncesEnBase());
+        assertEquals(1, etat.resynchronisations());
+        assertEquals(List.of(1L, 2L, 3L), ids(modele.annoncesAVenir()));
+        assertEquals(7, modele.annoncesAVenir().get(0).placesTotales());
+    }
+
+    @Test
+    @DisplayName("verifierCoherence → OK : annonce mise à jour pendant la lecture → seule sa ligne est relue, les autres comparées")
+    void verifierCoherence_ok_evenementPendantLecture() {
+        chargerAvec(ligne(1L, demain, "Lyon", 4, 0L), ligne(2L, demain, "Lyon", 4, 0L));
+        when(annonceCovoiturageRepository.findFuturesAvecPlaces(any(LocalDateTime.class))).thenAnswer(invocation -> {
+            modele.mettreAJour(ligne(1L, demain, "Lyon", 4, 1L));
+            return List.of(ligne(1L, demain, "Lyon", 4, 0L), ligne(2L, demain, "Lyon", 7, 0L));
+        });
+        when(annonceCovoiturageRepository.findAvecPlacesParIds(Set.of(1L)))
+                .thenReturn(List.of(ligne(1L, demain, "Lyon", 4, 1L)));
+
+        EtatModeleLectureDto etat = modele.verifierCoherence();
+
+        // La capacité de l'annonce 2 est corrigée, la ligne périmée de l'annonce 1 n'écrase pas l'événement
+        assertEquals(1, etat.ecarts());
+        assertEquals(1, etat.resynchronisations());
+        assertEquals(1L, modele.annoncesAVenir().get(0).placesOccupees());
+        assertEquals(7, modele.annoncesAVenir().get(1).placesTotales());
+    }
+
+    @Test
+    @DisplayName("verifierCoherence → OK : modèle non chargé → aucune lecture en base")
+    void verifierCoherence_ok_nonCharge() {
+        EtatModeleLectureDto etat = modele.verifierCoherence();
+
+        assertFalse(etat.charge());
+        verifyNoInteractions(annonceCovoiturageRepository);
+    }
+
+    private void chargerAvec(AnnonceCovoiturageLigneDto... lignes) {
+        when(annonceCovoiturageRepository.findFuturesAvecPlaces(any(LocalDateTime.class))).thenReturn(List.of(lignes));
+        modele.charger();
+    }
+
+    private List<Long> ids(List<AnnonceCovoiturageLigneDto> lignes) {
+        return lignes.stream().map(AnnonceCovoiturageLigneDto::id).toList();
+    }
+
+    private AnnonceCovoiturageLigneDto ligne(Long id, LocalDateTime heure, String villeArrivee,
+                                             Integer placesTotales, Long placesOccupees) {
+        return uneLigne(id).departA(heure).versVille(villeArrivee).places(placesTotales, placesOccupees).build();
+    }
+}
@@ -0,0 +1,118 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import com.mailjet.client.errors.MailjetException;
+import fr.diginamic.gestiondestransports.entites.NotificationEmail;
+import fr.diginamic.gestiondestransports.enums.StatutNotification;
+import fr.diginamic.gestiondestransports.repositories.NotificationEmailRepository;
+import fr.diginamic.gestiondestransports.services.impl.NotificationEmailServiceImpl;
+import fr.diginamic.gestiondestransports.tools.EmailSender;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationEmailServiceTest {
+
+    @Mock
+    NotificationEmailRepository notificationEmailRepository;
+    @Mock
+    EmailSender emailSender;
+
+    @InjectMocks
+    NotificationEmailServiceImpl service;
+
+    @Test
+    @DisplayName("planifier → OK : enregistre la notification en attente, sans appel à Mailjet")
+    void planifier_ok() throws Exception {
+        service.planifier("alice@mail.com", "message", "titre", "sujet");
+
+        ArgumentCaptor<NotificationEmail> captor = ArgumentCaptor.forClass(NotificationEmail.class);
+        verify(notificationEmailRepository).save(captor.capture());
+        NotificationEmail notification = captor.getValue();
+        assertEquals("alice@mail.com", notification.getDestinataire());
+        assertEquals("sujet", notification.getSujet());
+        assertEquals(StatutNotification.EN_ATTENTE, notification.getStatut());
+        assertEquals(0, notification.getTentatives());
+        assertFalse(notification.getProchaineTentative().isAfter(LocalDateTime.now()));
+        verifyNoInteractions(emailSender);
+    }
+
+    @Test
+    @DisplayName("envoyerNotificationsEnAttente → OK : emails envoyés puis marqués envoyés")
+    void envoyerNotificationsEnAttente_ok() throws Exception {
+        NotificationEmail n1 = notification(1L, 0);
+        NotificationEmail n2 = notification(2L, 0);
+        when(notificationEmailRepository.findAEnvoyer(eq(StatutNotification.EN_ATTENTE), any(LocalDateTime.class), any()))
+                .thenReturn(List.of(n1, n2));
+
+        int envoyees = service.envoyerNotificationsEnAttente();
+
+        assertEquals(2, envoyees);
+        verify(emailSender).envoyer("user1@mail.com", "message", "titre", "sujet");
+        verify(emailSender).envoyer("user2@mail.com", "message", "titre", "sujet");
+        assertEquals(StatutNotification.ENVOYEE, n1.getStatut());
+        assertNotNull(n1.getDateEnvoi());
+        assertEquals(1, n2.getTentatives());
+        verify(notificationEmailRepository).save(n1);
+        verify(notificationEmailRepository).save(n2);
+    }
+
+    @Test
+    @DisplayName("envoyerNotificationsEnAttente → OK : échec Mailjet → nouvelle tentative avec délai doublé, les suivantes sont envoyées")
+    void envoyerNotificationsEnAttente_ok_echecReprogramme() throws Exception {
+        NotificationEmail enEchec = notification(1L, 2);
+        NotificationEmail suivante = notification(2L, 0);
+        when(notificationEmailRepository.findAEnvoyer(eq(StatutNotification.EN_ATTENTE), any(LocalDateTime.class), any()))
+                .thenReturn(List.of(enEchec, suivante));
+        doThrow(new MailjetException("Connexion refusée"))
+                .when(emailSender).envoyer(eq("user1@mail.com"), any(), any(), any());
+
+        int envoyees = service.envoyerNotificationsEnAttente();
+
+        assertEquals(1, envoyees);
+        assertEquals(StatutNotification.EN_ATTENTE, enEchec.getStatut());
+        assertEquals(3, enEchec.getTentatives());
+        assertEquals("Connexion refusée", enEchec.getDerniereErreur());
+        // Troisième tentative en échec : nouvel essai dans 4 minutes
+        LocalDateTime prochaine = enEchec.getProchaineTentative();
+        assertTrue(prochaine.isAfter(LocalDateTime.now().plusMinutes(3)) && prochaine.isBefore(LocalDateTime.now().plusMinutes(5)));
+        assertEquals(StatutNotification.ENVOYEE, suivante.getStatut());
+    }
+
+    @Test
+    @DisplayName("envoyerNotificationsEnAttente → OK : dernière tentative en échec → notification abandonnée")
+    void envoyerNotificationsEnAttente_ok_abandon() throws Exception {
+        NotificationEmail notification = notification(1L, 7);
+        when(notificationEmailRepository.findAEnvoyer(eq(StatutNotification.EN_ATTENTE), any(LocalDateTime.class), any()))
+                .thenReturn(List.of(notification));
+        doThrow(new IllegalStateException("Mailjet a refusé l'email (statut 500)"))
+                .when(emailSender).envoyer(any(), any(), any(), any());
+
+        assertEquals(0, service.envoyerNotificationsEnAttente());
+
+        assertEquals(StatutNotification.ECHEC, notification.getStatut());
+        assertEquals(8, notification.getTentatives());
+        verify(notificationEmailRepository).save(notification);
+    }
+
+    private NotificationEmail notification(Long id, int tentatives) {
+        NotificationEmail notification = new NotificationEmail("user" + id + "@mail.com", "sujet", "titre", "message",
+                LocalDateTime.now().minusMinutes(1));
+        notification.setId(id);
+        ReflectionTestUtils.setField(notification, "tentatives", tentatives);
+        return notification;
+    }
+}
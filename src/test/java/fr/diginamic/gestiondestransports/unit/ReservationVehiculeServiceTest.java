@@ -1,6 +1,13 @@
 package fr.diginamic.gestiondestransports.unit;
 
+import fr.diginamic.gestiondestransports.dto.ConflitOccurrenceDto;
+import fr.diginamic.gestiondestransports.dto.CreneauOccupeDto;
+import fr.diginamic.gestiondestransports.dto.PeriodeReservationDto;
+import fr.diginamic.gestiondestransports.dto.PlanningVehiculeDto;
+import fr.diginamic.gestiondestransports.dto.RapportReservationRecurrenteDto;
 import fr.diginamic.gestiondestransports.dto.ReservationVehiculeDTO;
+import fr.diginamic.gestiondestransports.dto.ReservationVehiculeRecurrenteDto;
+import fr.diginamic.gestiondestransports.dto.UsageVehiculeDto;
 import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
 import fr.diginamic.gestiondestransports.entites.ReservationVehicule;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
@@ -9,9 +16,12 @@ import fr.diginamic.gestiondestransports.enums.Categorie;
 import fr.diginamic.gestiondestransports.enums.Motorisation;
 import fr.diginamic.gestiondestransports.enums.RoleEnum;
 import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.evenements.ReservationVehiculeEvenement;
 import fr.diginamic.gestiondestransports.mapper.ReservationVehiculeMapper;
 import fr.diginamic.gestiondestransports.mapper.VehiculeMapper;
 import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.PlanningFlotteJdbcRepository;
+import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeJdbcRepository;
 import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
 import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
@@ -22,14 +32,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -48,6 +65,12 @@ public class ReservationVehiculeServiceTest {
     ReservationVehiculeMapper reservationMapper;
     @Mock
     VehiculeMapper vehiculeMapper;
+    @Mock
+    PlanningFlotteJdbcRepository planningRepo;
+    @Mock
+    ReservationVehiculeJdbcRepository reservationJdbcRepo;
+    @Mock
+    ApplicationEventPublisher evenements;
 
     @InjectMocks
     ReservationVehiculeServiceImpl reservationService;
@@ -164,7 +187,7 @@ public class ReservationVehiculeServiceTest {
         when(reservationMapper.toEntity(reservationDto)).thenReturn(mapped);
 
         // Le repo de véhicule renvoie une référence
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
         when(vehiculeEntrepriseRepo.getReferenceById(vehicule.getId())).thenReturn(vehicule);
 
         // Le save renvoie une entité persistée
@@ -185,6 +208,28 @@ public class ReservationVehiculeServiceTest {
         verify(reservationMapper).toEntity(reservationDto);
         verify(vehiculeEntrepriseRepo).getReferenceById(vehicule.getId());
         verify(reservationMapper).toDto(persisted);
+        verify(evenements).publishEvent(new ReservationVehiculeEvenement(List.of(5L)));
+    }
+
+    @Test
+    @DisplayName("create → verrouille le véhicule puis l'utilisateur avant de vérifier les chevauchements et d'insérer")
+    void create_ok_verrous_avant_verification() {
+        ReservationVehicule mapped = new ReservationVehicule();
+        mapped.setId(6L);
+        when(reservationMapper.toEntity(reservationDto)).thenReturn(mapped);
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(vehiculeEntrepriseRepo.getReferenceById(vehicule.getId())).thenReturn(vehicule);
+        when(reservationRepository.save(mapped)).thenReturn(mapped);
+
+        reservationService.create(user, reservationDto);
+
+        InOrder ordre = inOrder(vehiculeEntrepriseRepo, userRepo, reservationRepository);
+        ordre.verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        ordre.verify(reservationRepository).findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any());
+        ordre.verify(userRepo).findPourMiseAJour(user.getId());
+        ordre.verify(reservationRepository).findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any());
+        ordre.verify(reservationRepository).save(mapped);
+        verify(vehiculeEntrepriseRepo, never()).findById(any());
     }
 
     @Test
@@ -227,15 +272,15 @@ public class ReservationVehiculeServiceTest {
         var input = new ReservationVehiculeDTO(null, user.getId(), vehicule.getId(), debut, fin);
 
         // véhicule EXISTANT et EN_SERVICE (sinon on tomberait sur un autre test/erreur)
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
 
         // réservation EXISTANTE sur ce véhicule : 09:00–11:00 => chevauchement avec 10:00–12:00
         ReservationVehicule exist = new ReservationVehicule();
         exist.setId(100L);
         exist.setDateDebut(LocalDateTime.of(2099, 10, 2, 9, 0, 0));
         exist.setDateFin  (LocalDateTime.of(2099, 10, 2,11, 0, 0));
-        when(reservationRepository.findByVehiculeEntrepriseId(vehicule.getId()))
-                .thenReturn(List.of(exist));
+        when(reservationRepository.findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any()))
+                .thenReturn(List.of(periode(exist)));
 
         // WHEN / THEN
         BadRequestException ex = assertThrows(BadRequestException.class, () -> reservationService.create(user, input));
@@ -243,8 +288,8 @@ public class ReservationVehiculeServiceTest {
                 || ex.getMessage().toLowerCase().contains("conflit"), ex.getMessage());
 
         // interactions pertinentes
-        verify(vehiculeEntrepriseRepo).findById(vehicule.getId());
-        verify(reservationRepository).findByVehiculeEntrepriseId(vehicule.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        verify(reservationRepository).findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any());
         // rien d'autre (pas de mapping ni save si la validation échoue)
         verifyNoInteractions(reservationMapper);
         // getReferenceById ne doit PAS être appelé car on plante avant
@@ -261,8 +306,8 @@ public class ReservationVehiculeServiceTest {
                 null, user.getId(), vehicule.getId(), debut, fin
         );
 
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
-        when(reservationRepository.findByVehiculeEntrepriseId(vehicule.getId()))
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(reservationRepository.findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any()))
                 .thenReturn(Collections.emptyList());
 
         // MAIS l'utilisateur a déjà une résa 09:00–11:00 le même jour => chevauche 10:00–12:00
@@ -270,8 +315,8 @@ public class ReservationVehiculeServiceTest {
         existUser.setId(999L);
         existUser.setDateDebut(LocalDateTime.of(2099, 10, 3, 9, 0, 0));
         existUser.setDateFin  (LocalDateTime.of(2099, 10, 3,11, 0, 0));
-        when(reservationRepository.findByUtilisateurId(user.getId()))
-                .thenReturn(List.of(existUser));
+        when(reservationRepository.findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any()))
+                .thenReturn(List.of(periode(existUser)));
 
         // WHEN / THEN
         BadRequestException ex = assertThrows(BadRequestException.class, () -> reservationService.create(user, input));
@@ -279,9 +324,9 @@ public class ReservationVehiculeServiceTest {
                 || ex.getMessage().toLowerCase().contains("conflit"), ex.getMessage());
 
         // Vérifie les lectures attendues
-        verify(vehiculeEntrepriseRepo).findById(vehicule.getId());
-        verify(reservationRepository).findByVehiculeEntrepriseId(vehicule.getId());
-        verify(reservationRepository).findByUtilisateurId(user.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        verify(reservationRepository).findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any());
+        verify(reservationRepository).findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any());
 
         // Pas de mapping / save si la validation échoue
         verifyNoInteractions(reservationMapper);
@@ -308,10 +353,10 @@ public class ReservationVehiculeServiceTest {
 
         when(reservationRepository.findById(idReservation)).thenReturn(Optional.of(entity));
         //validate reservation
-        when(vehiculeEntrepriseRepo.findById(v2.getId())).thenReturn(Optional.of(v2));
-        when(reservationRepository.findByVehiculeEntrepriseId(v2.getId())).thenReturn(Collections.emptyList());
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(v2.getId())).thenReturn(Optional.of(v2));
+        when(reservationRepository.findConflitsVehicule(eq(v2.getId()), any(), any(), any(), any())).thenReturn(Collections.emptyList());
         // Validate user
-        when(reservationRepository.findByUtilisateurId(user.getId())).thenReturn(Collections.emptyList());
+        when(reservationRepository.findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any())).thenReturn(Collections.emptyList());
         when(vehiculeEntrepriseRepo.getReferenceById(v2.getId())).thenReturn(v2);
         // mapping sortie
         when(reservationMapper.toDto(entity)).thenReturn(input);
@@ -326,7 +371,7 @@ public class ReservationVehiculeServiceTest {
         assertEquals(v2.getId(), entity.getVehiculeEntreprise().getId());
 
         verify(reservationRepository).findById(idReservation);
-        verify(vehiculeEntrepriseRepo).findById(v2.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(v2.getId());
         verify(reservationMapper).toDto(entity);
 
         // pas de save dans update
@@ -343,9 +388,9 @@ public class ReservationVehiculeServiceTest {
         ReservationVehiculeDTO input = new ReservationVehiculeDTO(idReservation, user.getId(), null,  null, dNew2);
 
         when(reservationRepository.findById(idReservation)).thenReturn(Optional.of(entity));
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
-        when(reservationRepository.findByVehiculeEntrepriseId(vehicule.getId())).thenReturn(Collections.emptyList());
-        when(reservationRepository.findByUtilisateurId(user.getId())).thenReturn(Collections.emptyList());
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(reservationRepository.findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any())).thenReturn(Collections.emptyList());
+        when(reservationRepository.findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any())).thenReturn(Collections.emptyList());
 
         ReservationVehiculeDTO outDto = new ReservationVehiculeDTO(idReservation, user.getId(), vehicule.getId(), debut, dNew2);
         when(reservationMapper.toDto(entity)).thenReturn(outDto);
@@ -358,9 +403,9 @@ public class ReservationVehiculeServiceTest {
         assertEquals(vehicule.getId(), entity.getVehiculeEntreprise().getId());
 
         verify(reservationRepository).findById(idReservation);
-        verify(vehiculeEntrepriseRepo).findById(vehicule.getId());
-        verify(reservationRepository).findByVehiculeEntrepriseId(vehicule.getId());
-        verify(reservationRepository).findByUtilisateurId(user.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        verify(reservationRepository).findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any());
+        verify(reservationRepository).findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any());
         verify(vehiculeEntrepriseRepo, never()).getReferenceById(anyLong());
         verify(reservationMapper).toDto(entity);
         verify(reservationRepository, never()).save(any());
@@ -420,15 +465,15 @@ public class ReservationVehiculeServiceTest {
 
         // le véhicule courant est en service et existe
         when(reservationRepository.findById(idReservation)).thenReturn(Optional.of(entity));
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
 
         // une autre réservation sur le même véhicule, avec un autre id, qui chevauche
         ReservationVehicule other = new ReservationVehicule();
         other.setId(888L); // ≠ idReservation
         other.setDateDebut(LocalDateTime.of(2099,10,15,9,0));
         other.setDateFin  (LocalDateTime.of(2099,10,15,10,0));
-        when(reservationRepository.findByVehiculeEntrepriseId(vehicule.getId()))
-                .thenReturn(List.of(other));
+        when(reservationRepository.findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any()))
+                .thenReturn(List.of(periode(other)));
 
         // WHEN / THEN
         BadRequestException ex = assertThrows(BadRequestException.class,
@@ -437,8 +482,8 @@ public class ReservationVehiculeServiceTest {
                 || ex.getMessage().toLowerCase().contains("conflit"));
 
         verify(reservationRepository).findById(idReservation);
-        verify(vehiculeEntrepriseRepo).findById(vehicule.getId());
-        verify(reservationRepository).findByVehiculeEntrepriseId(vehicule.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        verify(reservationRepository).findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any());
         verify(reservationRepository, never()).save(any());
         verifyNoInteractions(reservationMapper);
     }
@@ -454,8 +499,8 @@ public class ReservationVehiculeServiceTest {
         var input = new ReservationVehiculeDTO(idReservation, user.getId(),  null, dNew1, dNew2);
 
         when(reservationRepository.findById(idReservation)).thenReturn(Optional.of(entity));
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
-        when(reservationRepository.findByVehiculeEntrepriseId(vehicule.getId()))
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(reservationRepository.findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any()))
                 .thenReturn(Collections.emptyList());
 
         // autre réservation du même user, id différent, qui chevauche
@@ -463,8 +508,8 @@ public class ReservationVehiculeServiceTest {
         other.setId(777L); // ≠ idReservation
         other.setDateDebut(LocalDateTime.of(2099,10,15,9,0));
         other.setDateFin  (LocalDateTime.of(2099,10,15,11,0));
-        when(reservationRepository.findByUtilisateurId(user.getId()))
-                .thenReturn(List.of(other));
+        when(reservationRepository.findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any()))
+                .thenReturn(List.of(periode(other)));
 
         BadRequestException ex = assertThrows(BadRequestException.class,
                 () -> reservationService.update(user, idReservation, input));
@@ -472,9 +517,9 @@ public class ReservationVehiculeServiceTest {
                 || ex.getMessage().toLowerCase().contains("conflit"));
 
         verify(reservationRepository).findById(idReservation);
-        verify(vehiculeEntrepriseRepo).findById(vehicule.getId());
-        verify(reservationRepository).findByVehiculeEntrepriseId(vehicule.getId());
-        verify(reservationRepository).findByUtilisateurId(user.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        verify(reservationRepository).findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any());
+        verify(reservationRepository).findConflitsUtilisateur(eq(user.getId()), any(), any(), any(), any());
         verifyNoInteractions(reservationMapper);
         verify(reservationRepository, never()).save(any());
     }
@@ -493,14 +538,14 @@ public class ReservationVehiculeServiceTest {
         var input = new ReservationVehiculeDTO(idReservation, user.getId(), v2.getId(), dNew1, dNew2);
 
         when(reservationRepository.findById(idReservation)).thenReturn(Optional.of(entity));
-        when(vehiculeEntrepriseRepo.findById(v2.getId())).thenReturn(Optional.of(v2));
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(v2.getId())).thenReturn(Optional.of(v2));
 
         BadRequestException ex = assertThrows(BadRequestException.class,
                 () -> reservationService.update(user, idReservation, input));
         assertTrue(ex.getMessage().toLowerCase().contains("pas en service"));
 
         verify(reservationRepository).findById(idReservation);
-        verify(vehiculeEntrepriseRepo).findById(v2.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(v2.getId());
         verify(reservationRepository, never()).save(any());
         verifyNoInteractions(reservationMapper);
     }
@@ -520,6 +565,7 @@ public class ReservationVehiculeServiceTest {
         verify(reservationRepository).findById(idReservation);
         verify(annonceCovoiturageRepo).findByVehiculeServiceIdBetweenDates(vehicule.getId(), debut, fin);
         verify(reservationRepository).deleteById(idReservation);
+        verify(evenements).publishEvent(new ReservationVehiculeEvenement(List.of(idReservation)));
     }
 
     @Test
@@ -843,7 +889,7 @@ public class ReservationVehiculeServiceTest {
     @Test
     @DisplayName("validateReservation → KO si le véhicule est introuvable (via create)")
     void validateReservation_ko_vehicle_not_found() {
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.empty());
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.empty());
 
         ReservationVehiculeDTO dto = new ReservationVehiculeDTO(idReservation, user.getId(), vehicule.getId(), debut, fin);
 
@@ -863,7 +909,7 @@ public class ReservationVehiculeServiceTest {
         v.setId(vehiculeId);
         v.setStatut(StatutVehicule.HORS_SERVICE);
 
-        when(vehiculeEntrepriseRepo.findById(vehiculeId)).thenReturn(Optional.of(v));
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehiculeId)).thenReturn(Optional.of(v));
 
         ReservationVehiculeDTO dto = new ReservationVehiculeDTO(idReservation, user.getId(), vehiculeId, debut, fin);
 
@@ -881,15 +927,15 @@ public class ReservationVehiculeServiceTest {
         LocalDateTime d1 = LocalDateTime.of(2099,10,4,10,0);
         LocalDateTime d2 = LocalDateTime.of(2099,10,4,12,0);
 
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
 
         // Réservation existante 09:00–11:00 → chevauche 10:00–12:00
         ReservationVehicule exist = new ReservationVehicule();
         exist.setId(111L);
         exist.setDateDebut(LocalDateTime.of(2099,10,4,9,0));
         exist.setDateFin  (LocalDateTime.of(2099,10,4,11,0));
-        when(reservationRepository.findByVehiculeEntrepriseId(vehicule.getId()))
-                .thenReturn(List.of(exist));
+        when(reservationRepository.findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any()))
+                .thenReturn(List.of(periode(exist)));
 
         ReservationVehiculeDTO dto = new ReservationVehiculeDTO(idReservation, user.getId(), vehicule.getId(), d1, d2);
 
@@ -912,11 +958,11 @@ public class ReservationVehiculeServiceTest {
         entity.setId(idReservation);
 
         when(reservationRepository.findById(idReservation)).thenReturn(Optional.of(entity));
-        when(vehiculeEntrepriseRepo.findById(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
 
-        // Le repo renvoie la liste contenant la "même" résa -> doit être ignorée par l'exclusion
-        when(reservationRepository.findByVehiculeEntrepriseId(vehicule.getId()))
-                .thenReturn(List.of(entity));
+        // La requête de conflits reçoit l'id de la résa modifiée : elle ne se signale pas elle-même
+        when(reservationRepository.findConflitsVehicule(eq(vehicule.getId()), any(), any(), eq(idReservation), any()))
+                .thenReturn(Collections.emptyList());
 
         // On ne change que légèrement la plage mais qui chevaucherait "elle-même"
         LocalDateTime newStart = LocalDateTime.of(2099,10,5,10,0);
@@ -934,10 +980,150 @@ public class ReservationVehiculeServiceTest {
         assertEquals(idReservation, out.id());
 
         verify(reservationRepository).findById(idReservation);
-        verify(vehiculeEntrepriseRepo).findById(vehicule.getId());
-        verify(reservationRepository).findByVehiculeEntrepriseId(vehicule.getId());
+        verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        verify(reservationRepository).findConflitsVehicule(eq(vehicule.getId()), any(), any(), any(), any());
         verify(reservationMapper).toDto(entity);
         verify(reservationRepository, never()).save(any());
     }
 
+    @Test
+    @DisplayName("planningFlotte → fusionne réservations et covoiturages par véhicule, tronque à la période, véhicule libre inclus")
+    void planningFlotte_ok_fusion_et_troncature() {
+        LocalDateTime j = LocalDateTime.of(2099, 11, 2, 0, 0);
+        VehiculeEntreprise libre = new VehiculeEntreprise(null, "LL-111-LL", 5, "Clio", 100,
+                null, "Renault", Motorisation.THERMIQUE, Categorie.COMPACTE, StatutVehicule.EN_REPARATION);
+        libre.setId(9L);
+        // Lignes non triées : covoiturage inclus dans une réservation, réservations contiguës, débordement de période
+        when(planningRepo.findUsages(j, j.plusDays(1))).thenReturn(List.of(
+                new UsageVehiculeDto(5L, j.plusHours(14), j.plusHours(16)),
+                new UsageVehiculeDto(5L, j.minusHours(2), j.plusHours(9)),
+                new UsageVehiculeDto(5L, j.plusHours(8), j.plusHours(10)),
+                new UsageVehiculeDto(5L, j.plusHours(10), j.plusHours(11)),
+                new UsageVehiculeDto(5L, j.plusHours(8).plusMinutes(30), j.plusHours(9)),
+                new UsageVehiculeDto(5L, j.plusHours(20), j.plusDays(2))));
+        when(vehiculeEntrepriseRepo.findAll(any(Sort.class))).thenReturn(List.of(vehicule, libre));
+
+        List<PlanningVehiculeDto> planning = reservationService.planningFlotte(j, j.plusDays(1));
+
+        assertEquals(2, planning.size());
+        assertEquals(List.of(
+                new CreneauOccupeDto(j, j.plusHours(11)),
+                new CreneauOccupeDto(j.plusHours(14), j.plusHours(16)),
+                new CreneauOccupeDto(j.plusHours(20), j.plusDays(1))), planning.get(0).creneauxOccupes());
+        assertEquals("FF-666-FF", planning.get(0).immatriculation());
+        assertEquals(9L, planning.get(1).vehiculeId());
+        assertTrue(planning.get(1).creneauxOccupes().isEmpty());
+        assertEquals(StatutVehicule.EN_REPARATION, planning.get(1).statut());
+        verifyNoInteractions(reservationRepository, annonceCovoiturageRepo);
+    }
+
+    @Test
+    @DisplayName("planningFlotte → KO si la période est inversée ou trop longue, sans requête")
+    void planningFlotte_ko_periode_invalide() {
+        LocalDateTime j = LocalDateTime.of(2099, 11, 2, 0, 0);
+
+        assertThrows(BadRequestException.class, () -> reservationService.planningFlotte(j, j));
+        BadRequestException ex = assertThrows(BadRequestException.class,
+                () -> reservationService.planningFlotte(j, j.plusDays(94)));
+        assertTrue(ex.getMessage().contains("93 jours"), ex.getMessage());
+        verifyNoInteractions(planningRepo, vehiculeEntrepriseRepo);
+    }
+
+    @Test
+    @DisplayName("createRecurrentes → une seule requête, occurrences libres insérées en lot, conflits véhicule et utilisateur signalés")
+    void createRecurrentes_ok_occurrences_libres_et_conflits() {
+        LocalDate premierJour = LocalDate.of(2099, 11, 3);
+        LocalDateTime s1 = premierJour.atTime(8, 0);
+        ReservationVehiculeRecurrenteDto dto = new ReservationVehiculeRecurrenteDto(vehicule.getId(),
+                Set.of(premierJour.getDayOfWeek()), premierJour, premierJour.plusDays(27), LocalTime.of(8, 0), 600, null);
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        // Semaine 2 : véhicule déjà réservé ; semaine 3 : l'utilisateur a réservé un autre véhicule ; semaine 4 : contiguë
+        when(reservationRepository.findReservationsVehiculeOuUtilisateur(vehicule.getId(), user.getId(), s1, s1.plusWeeks(3).plusHours(10)))
+                .thenReturn(List.of(
+                        new UsageVehiculeDto(vehicule.getId(), s1.plusWeeks(1).plusHours(2), s1.plusWeeks(1).plusHours(4)),
+                        new UsageVehiculeDto(7L, s1.plusWeeks(2).minusHours(1), s1.plusWeeks(2).plusHours(1)),
+                        new UsageVehiculeDto(vehicule.getId(), s1.plusWeeks(3).plusHours(10), s1.plusWeeks(3).plusHours(12))));
+        when(reservationJdbcRepo.insererReservations(eq(user.getId()), eq(vehicule.getId()), any())).thenReturn(List.of(100L, 101L));
+
+        RapportReservationRecurrenteDto rapport = reservationService.createRecurrentes(user, dto);
+
+        assertEquals(4, rapport.occurrences());
+        assertEquals(2, rapport.reservees());
+        assertEquals(2, rapport.enConflit());
+        assertEquals(List.of(
+                new ReservationVehiculeDTO(100L, user.getId(), vehicule.getId(), s1, s1.plusHours(10)),
+                new ReservationVehiculeDTO(101L, user.getId(), vehicule.getId(), s1.plusWeeks(3), s1.plusWeeks(3).plusHours(10))),
+                rapport.reservations());
+        ConflitOccurrenceDto conflitVehicule = rapport.conflits().get(0);
+        assertEquals(s1.plusWeeks(1), conflitVehicule.dateDebut());
+        assertTrue(conflitVehicule.motif().startsWith("Le véhicule n'est pas disponible"), conflitVehicule.motif());
+        assertTrue(rapport.conflits().get(1).motif().startsWith("Vous avez déjà une réservation"), rapport.conflits().get(1).motif());
+        verify(reservationJdbcRepo).insererReservations(user.getId(), vehicule.getId(), List.of(
+                new PeriodeReservationDto(s1, s1.plusHours(10)),
+                new PeriodeReservationDto(s1.plusWeeks(3), s1.plusWeeks(3).plusHours(10))));
+        InOrder ordre = inOrder(vehiculeEntrepriseRepo, userRepo, reservationRepository);
+        ordre.verify(vehiculeEntrepriseRepo).findPourMiseAJour(vehicule.getId());
+        ordre.verify(userRepo).findPourMiseAJour(user.getId());
+        ordre.verify(reservationRepository).findReservationsVehiculeOuUtilisateur(any(), any(), any(), any());
+        verifyNoMoreInteractions(reservationRepository);
+        verify(reservationRepository, never()).save(any());
+        verify(evenements).publishEvent(new ReservationVehiculeEvenement(List.of(100L, 101L)));
+    }
+
+    @Test
+    @DisplayName("createRecurrentes → toutOuRien : aucune occurrence réservée si l'une est en conflit")
+    void createRecurrentes_toutOuRien_aucune_insertion() {
+        LocalDate premierJour = LocalDate.of(2099, 11, 3);
+        LocalDateTime s1 = premierJour.atTime(8, 0);
+        ReservationVehiculeRecurrenteDto dto = new ReservationVehiculeRecurrenteDto(vehicule.getId(),
+                Set.of(premierJour.getDayOfWeek()), premierJour, premierJour.plusDays(13), LocalTime.of(8, 0), 600, true);
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
+        when(reservationRepository.findReservationsVehiculeOuUtilisateur(any(), any(), any(), any()))
+                .thenReturn(List.of(new UsageVehiculeDto(vehicule.getId(), s1.plusWeeks(1), s1.plusWeeks(1).plusHours(1))));
+
+        RapportReservationRecurrenteDto rapport = reservationService.createRecurrentes(user, dto);
+
+        assertEquals(2, rapport.occurrences());
+        assertEquals(0, rapport.reservees());
+        assertEquals(1, rapport.enConflit());
+        assertTrue(rapport.reservations().isEmpty());
+        verify(reservationJdbcRepo).insererReservations(user.getId(), vehicule.getId(), List.of());
+        verifyNoInteractions(evenements);
+    }
+
+    @Test
+    @DisplayName("createRecurrentes → KO si la récurrence est trop longue ou sans occurrence à venir, sans verrou")
+    void createRecurrentes_ko_recurrence_invalide() {
+        LocalDate jour = LocalDate.of(2099, 11, 3);
+        ReservationVehiculeRecurrenteDto tropLongue = new ReservationVehiculeRecurrenteDto(vehicule.getId(),
+                Set.of(jour.getDayOfWeek()), jour, jour.plusMonths(13), LocalTime.of(8, 0), 60, null);
+        ReservationVehiculeRecurrenteDto sansOccurrence = new ReservationVehiculeRecurrenteDto(vehicule.getId(),
+                Set.of(jour.plusDays(1).getDayOfWeek()), jour, jour, LocalTime.of(8, 0), 60, null);
+        ReservationVehiculeRecurrenteDto passee = new ReservationVehiculeRecurrenteDto(vehicule.getId(),
+                Set.of(DayOfWeek.values()), LocalDate.now().minusDays(10), LocalDate.now().minusDays(1), LocalTime.of(8, 0), 60, null);
+
+        BadRequestException ex = assertThrows(BadRequestException.class, () -> reservationService.createRecurrentes(user, tropLongue));
+        assertTrue(ex.getMessage().contains("12 mois"), ex.getMessage());
+        ex = assertThrows(BadRequestException.class, () -> reservationService.createRecurrentes(user, sansOccurrence));
+        assertEquals("Aucune occurrence à venir sur cette période pour les jours choisis.", ex.getMessage());
+        assertThrows(BadRequestException.class, () -> reservationService.createRecurrentes(user, passee));
+        verifyNoInteractions(vehiculeEntrepriseRepo, reservationRepository, reservationJdbcRepo);
+    }
+
+    @Test
+    @DisplayName("createRecurrentes → KO si le véhicule n'est pas en service, rien n'est inséré")
+    void createRecurrentes_ko_vehicule_pas_en_service() {
+        LocalDate jour = LocalDate.of(2099, 11, 3);
+        vehicule.setStatut(StatutVehicule.EN_REPARATION);
+        ReservationVehiculeRecurrenteDto dto = new ReservationVehiculeRecurrenteDto(vehicule.getId(),
+                Set.of(jour.getDayOfWeek()), jour, jour.plusDays(7), LocalTime.of(8, 0), 60, null);
+        when(vehiculeEntrepriseRepo.findPourMiseAJour(vehicule.getId())).thenReturn(Optional.of(vehicule));
+
+        assertThrows(BadRequestException.class, () -> reservationService.createRecurrentes(user, dto));
+        verifyNoInteractions(reservationRepository, reservationJdbcRepo);
+    }
+
+    private static PeriodeReservationDto periode(ReservationVehicule reservation) {
+        return new PeriodeReservationDto(reservation.getDateDebut(), reservation.getDateFin());
+    }
 }
@@ -0,0 +1,251 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.dto.AdresseDto;
+import fr.diginamic.gestiondestransports.dto.AnnonceCovoiturageDto;
+import fr.diginamic.gestiondestransports.dto.TrajetRecurrentDto;
+import fr.diginamic.gestiondestransports.entites.Adresse;
+import fr.diginamic.gestiondestransports.entites.AnnonceCovoiturage;
+import fr.diginamic.gestiondestransports.entites.TrajetRecurrent;
+import fr.diginamic.gestiondestransports.entites.Utilisateur;
+import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
+import fr.diginamic.gestiondestransports.entites.VehiculePersonnel;
+import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.mapper.AdresseMapper;
+import fr.diginamic.gestiondestransports.repositories.AdresseRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.TrajetRecurrentRepository;
+import fr.diginamic.gestiondestransports.repositories.VehiculePersonnelRepository;
+import fr.diginamic.gestiondestransports.services.AnnonceCovoiturageService;
+import fr.diginamic.gestiondestransports.services.CorridorCovoiturageService;
+import fr.diginamic.gestiondestransports.services.impl.TrajetRecurrentServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TrajetRecurrentServiceTest {
+
+    @Mock
+    TrajetRecurrentRepository trajetRecurrentRepository;
+    @Mock
+    AnnonceCovoiturageRepository annonceCovoiturageRepository;
+    @Mock
+    VehiculePersonnelRepository vehiculePersonnelRepository;
+    @Mock
+    AdresseRepository adresseRepository;
+    @Mock
+    AnnonceCovoiturageService annonceCovoiturageService;
+    @Mock
+    CorridorCovoiturageService corridorCovoiturageService;
+    @Mock
+    AdresseMapper adresseMapper;
+    @Mock
+    ApplicationEventPublisher evenements;
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    TrajetRecurrentServiceImpl service;
+
+    private final LocalTime huitHeures = LocalTime.of(8, 0);
+    private final LocalDate demain = LocalDate.now().plusDays(1);
+    private Utilisateur conducteur;
+    private VehiculePersonnel voiture;
+
+    @BeforeEach
+    void setUp() {
+        // Horizon glissant de 3 jours
+        service = new TrajetRecurrentServiceImpl(trajetRecurrentRepository, annonceCovoiturageRepository,
+                vehiculePersonnelRepository, adresseRepository, annonceCovoiturageService, corridorCovoiturageService, adresseMapper,
+                evenements, transactionManager, 3);
+        conducteur = new Utilisateur("Martin", "Paul", "paul@x.fr", RoleEnum.ROLE_USER);
+        conducteur.setId(1L);
+        voiture = new VehiculePersonnel(7L, "AA-123-AA", 4, "Clio", 100, null, "Renault", null, null, conducteur);
+    }
+
+    @Test
+    @DisplayName("creerTrajetRecurrent → OK : première occurrence via le service des annonces, suivantes copiées jusqu'à l'horizon")
+    void creerTrajetRecurrent_ok() {
+        AnnonceCovoiturage premiere = annonce(demain.atTime(huitHeures));
+        premiere.setId(10L);
+        premiere.setTraceItineraire("trace");
+        premiere.getAdresseDepart().setLatitude(43.61);
+        premiere.getAdresseDepart().setLongitude(3.88);
+        when(annonceCovoiturageService.creerAnnonce(any(AnnonceCovoiturageDto.class), eq(1L)))
+                .thenReturn(AnnonceCovoiturageDto.of(10L, demain.atTime(huitHeures), 30, 20, null, null, null));
+        when(annonceCovoiturageRepository.findById(10L)).thenReturn(Optional.of(premiere));
+        when(trajetRecurrentRepository.save(any(TrajetRecurrent.class))).thenAnswer(i -> {
+            TrajetRecurrent t = i.getArgument(0);
+            t.setId(3L);
+            return t;
+        });
+        when(annonceCovoiturageRepository.findIdOccurrence(eq(3L), any(LocalDateTime.class))).thenReturn(Optional.empty());
+        when(annonceCovoiturageRepository.save(any(AnnonceCovoiturage.class))).thenAnswer(i -> i.getArgument(0));
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(i -> i.getArgument(0));
+        when(vehiculePersonnelRepository.findByUtilisateur(conducteur)).thenReturn(List.of(voiture));
+
+        TrajetRecurrentDto cree = service.creerTrajetRecurrent(dto(demain, demain.plusMonths(3)), 1L);
+
+        assertEquals(3L, cree.id());
+        assertEquals(LocalDate.now().plusDays(3), cree.materialiseJusquAu());
+        assertSame(3L, premiere.getTrajetRecurrent().getId());
+        // J+2 et J+3 : copies de la première occurrence, itinéraire compris
+        ArgumentCaptor<AnnonceCovoiturage> captor = ArgumentCaptor.forClass(AnnonceCovoiturage.class);
+        verify(annonceCovoiturageRepository, times(2)).save(captor.capture());
+        assertEquals(List.of(demain.plusDays(1).atTime(huitHeures), demain.plusDays(2).atTime(huitHeures)),
+                captor.getAllValues().stream().map(AnnonceCovoiturage::getHeureDepart).toList());
+        assertTrue(captor.getAllValues().stream().allMatch(a -> "trace".equals(a.getTraceItineraire())
+                && a.getPlacesTotales() == 4 && a.getVehiculeService() == null));
+        // Chaque occurrence, comme le trajet, a ses propres adresses, coordonnées et cellule de la grille comprises
+        List<Adresse> departs = captor.getAllValues().stream().map(AnnonceCovoiturage::getAdresseDepart).toList();
+        assertNotSame(premiere.getAdresseDepart(), premiere.getTrajetRecurrent().getAdresseDepart());
+        assertTrue(departs.stream().noneMatch(a -> a == premiere.getAdresseDepart() || a == premiere.getTrajetRecurrent().getAdresseDepart()));
+        assertNotSame(departs.get(0), departs.get(1));
+        assertTrue(departs.stream().allMatch(a -> "rue A".equals(a.getLibelle()) && a.getLatitude() == 43.61
+                && a.getCelluleGrille().equals(premiere.getAdresseDepart().getCelluleGrille())));
+        assertNotSame(premiere.getAdresseArrivee(), captor.getAllValues().get(0).getAdresseArrivee());
+        // 2 adresses du trajet + 2 par occurrence copiée
+        verify(adresseRepository, times(6)).save(any(Adresse.class));
+        verify(annonceCovoiturageService, times(1)).creerAnnonce(any(), any());
+        verify(corridorCovoiturageService, times(2)).indexerAnnonce(any(AnnonceCovoiturage.class));
+    }
+
+    @Test
+    @DisplayName("creerTrajetRecurrent → KO : véhicule de service, aucune réservation ne couvrirait les occurrences")
+    void creerTrajetRecurrent_ko_vehiculeService() {
+        TrajetRecurrentDto avecVehiculeService = new TrajetRecurrentDto(null, huitHeures, EnumSet.allOf(DayOfWeek.class),
+                demain, demain.plusMonths(3), 30, 20, AdresseDto.nouvelle(1, "rue A", "34000", "Montpellier"),
+                AdresseDto.nouvelle(2, "rue B", "69000", "Lyon"), 7L, null, null);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.creerTrajetRecurrent(avecVehiculeService, 1L));
+        assertEquals("Un trajet récurrent utilise votre véhicule personnel : un véhicule de service se réserve pour chaque trajet",
+                ex.getMessage());
+        verifyNoInteractions(annonceCovoiturageService, trajetRecurrentRepository);
+    }
+
+    @Test
+    @DisplayName("materialiserOccurrences → OK : trajet antérieur avec véhicule de service, les occurrences ne l'utilisent pas")
+    void materialiserOccurrences_ok_trajetAvecVehiculeService() {
+        AnnonceCovoiturage premiere = annonce(demain.atTime(huitHeures));
+        premiere.setVehiculeService(new VehiculeEntreprise(8L, "BB-456-BB", 5, "Clio", 100, null, "Renault", null, null,
+                StatutVehicule.EN_SERVICE));
+        TrajetRecurrent trajet = new TrajetRecurrent(premiere, EnumSet.allOf(DayOfWeek.class), demain, demain.plusMonths(3));
+        trajet.setId(3L);
+        trajet.setMaterialiseJusquAu(LocalDate.now().plusDays(2));
+        when(trajetRecurrentRepository.findIdsAMaterialiser(any(LocalDate.class), any(LocalDate.class))).thenReturn(List.of(3L));
+        when(trajetRecurrentRepository.findPourMaterialisation(3L)).thenReturn(Optional.of(trajet));
+        when(annonceCovoiturageRepository.findIdOccurrence(eq(3L), any(LocalDateTime.class))).thenReturn(Optional.empty());
+        when(vehiculePersonnelRepository.findByUtilisateur(conducteur)).thenReturn(List.of(voiture));
+        when(annonceCovoiturageRepository.save(any(AnnonceCovoiturage.class))).thenAnswer(i -> i.getArgument(0));
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(i -> i.getArgument(0));
+
+        assertEquals(1, service.materialiserOccurrences());
+
+        ArgumentCaptor<AnnonceCovoiturage> captor = ArgumentCaptor.forClass(AnnonceCovoiturage.class);
+        verify(annonceCovoiturageRepository).save(captor.capture());
+        assertNull(captor.getValue().getVehiculeService());
+        assertEquals(4, captor.getValue().getPlacesTotales());
+    }
+
+    @Test
+    @DisplayName("creerTrajetRecurrent → KO : période de plus de 12 mois")
+    void creerTrajetRecurrent_ko_periode() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.creerTrajetRecurrent(dto(demain, demain.plusMonths(13)), 1L));
+        assertEquals("Un trajet récurrent ne peut pas dépasser 12 mois", ex.getMessage());
+        verifyNoInteractions(annonceCovoiturageService, trajetRecurrentRepository);
+    }
+
+    @Test
+    @DisplayName("reserverOccurrence → OK : date au-delà de l'horizon, l'occurrence est créée puis réservée")
+    void reserverOccurrence_ok_auDelaHorizon() {
+        TrajetRecurrent trajet = trajet(LocalDate.now().plusDays(3));
+        LocalDate date = LocalDate.now().plusDays(20);
+        when(trajetRecurrentRepository.findPourMaterialisation(3L)).thenReturn(Optional.of(trajet));
+        when(annonceCovoiturageRepository.findIdOccurrence(3L, date.atTime(huitHeures))).thenReturn(Optional.empty());
+        when(annonceCovoiturageRepository.save(any(AnnonceCovoiturage.class))).thenAnswer(i -> {
+            AnnonceCovoiturage a = i.getArgument(0);
+            a.setId(42L);
+            return a;
+        });
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(i -> i.getArgument(0));
+        when(vehiculePersonnelRepository.findByUtilisateur(conducteur)).thenReturn(List.of(voiture));
+
+        service.reserverOccurrence(3L, date, 2L);
+
+        verify(annonceCovoiturageService).reserverPlace(42L, 2L);
+        // L'horizon matérialisé par la tâche planifiée n'avance pas
+        assertEquals(LocalDate.now().plusDays(3), trajet.getMaterialiseJusquAu());
+    }
+
+    @Test
+    @DisplayName("reserverOccurrence → KO : occurrence de l'horizon supprimée par le conducteur")
+    void reserverOccurrence_ko_annulee() {
+        TrajetRecurrent trajet = trajet(LocalDate.now().plusDays(3));
+        when(trajetRecurrentRepository.findPourMaterialisation(3L)).thenReturn(Optional.of(trajet));
+        when(annonceCovoiturageRepository.findIdOccurrence(3L, demain.atTime(huitHeures))).thenReturn(Optional.empty());
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.reserverOccurrence(3L, demain, 2L));
+        assertEquals("Le conducteur a annulé ce trajet le " + demain, ex.getMessage());
+        verify(annonceCovoiturageRepository, never()).save(any());
+        verify(annonceCovoiturageService, never()).reserverPlace(any(), any());
+    }
+
+    @Test
+    @DisplayName("materialiserOccurrences → OK : complète l'horizon sans recréer une occurrence déjà réservée")
+    void materialiserOccurrences_ok() {
+        TrajetRecurrent trajet = trajet(LocalDate.now());
+        when(trajetRecurrentRepository.findIdsAMaterialiser(any(LocalDate.class), any(LocalDate.class))).thenReturn(List.of(3L));
+        when(trajetRecurrentRepository.findPourMaterialisation(3L)).thenReturn(Optional.of(trajet));
+        when(annonceCovoiturageRepository.findIdOccurrence(eq(3L), any(LocalDateTime.class))).thenReturn(Optional.empty());
+        when(annonceCovoiturageRepository.findIdOccurrence(3L, demain.plusDays(1).atTime(huitHeures))).thenReturn(Optional.of(42L));
+        when(annonceCovoiturageRepository.save(any(AnnonceCovoiturage.class))).thenAnswer(i -> i.getArgument(0));
+        when(adresseRepository.save(any(Adresse.class))).thenAnswer(i -> i.getArgument(0));
+        when(vehiculePersonnelRepository.findByUtilisateur(conducteur)).thenReturn(List.of(voiture));
+
+        assertEquals(2, service.materialiserOccurrences());
+
+        assertEquals(LocalDate.now().plusDays(3), trajet.getMaterialiseJusquAu());
+        verify(transactionManager).commit(any());
+    }
+
+    private TrajetRecurrentDto dto(LocalDate debut, LocalDate fin) {
+        return new TrajetRecurrentDto(null, huitHeures, EnumSet.allOf(DayOfWeek.class), debut, fin, 30, 20,
+                AdresseDto.nouvelle(1, "rue A", "34000", "Montpellier"), AdresseDto.nouvelle(2, "rue B", "69000", "Lyon"),
+                null, null, null);
+    }
+
+    private AnnonceCovoiturage annonce(LocalDateTime depart) {
+        AnnonceCovoiturage annonce = new AnnonceCovoiturage(depart, 30, 20,
+                new Adresse(1, "rue A", "34000", "Montpellier"), new Adresse(2, "rue B", "69000", "Lyon"), conducteur);
+        return annonce;
+    }
+
+    private TrajetRecurrent trajet(LocalDate materialiseJusquAu) {
+        TrajetRecurrent trajet = new TrajetRecurrent(annonce(demain.atTime(huitHeures)), EnumSet.allOf(DayOfWeek.class),
+                demain, demain.plusMonths(3));
+        trajet.setId(3L);
+        trajet.setMaterialiseJusquAu(materialiseJusquAu);
+        return trajet;
+    }
+}
@@ -1,13 +1,21 @@
 package fr.diginamic.gestiondestransports.unit;
 
+import fr.diginamic.gestiondestransports.cache.IndexOccupationsVehicules;
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.dto.OccupationVehiculeDto;
+import fr.diginamic.gestiondestransports.dto.UsageVehiculeDto;
 import fr.diginamic.gestiondestransports.dto.VehiculeDTO;
-import fr.diginamic.gestiondestransports.entites.ReservationVehicule;
 import fr.diginamic.gestiondestransports.entites.VehiculeEntreprise;
 import fr.diginamic.gestiondestransports.enums.Categorie;
 import fr.diginamic.gestiondestransports.enums.Motorisation;
 import fr.diginamic.gestiondestransports.enums.StatutVehicule;
+import fr.diginamic.gestiondestransports.enums.TypeOccupationVehicule;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
 import fr.diginamic.gestiondestransports.mapper.VehiculeMapper;
-import fr.diginamic.gestiondestransports.repositories.ReservationVehiculeRepository;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
+import fr.diginamic.gestiondestransports.repositories.PlanningFlotteJdbcRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculeEntrepriseRepository;
 import fr.diginamic.gestiondestransports.services.impl.VehiculeEntrepriseServiceImpl;
 import fr.diginamic.gestiondestransports.shared.BadRequestException;
@@ -17,12 +25,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -35,11 +45,23 @@ public class VehiculeEntrepriseServiceTest {
     private VehiculeEntrepriseRepository vehiculeEntrepriseRepository;
 
     @Mock
-    private ReservationVehiculeRepository reservationVehiculeRepository;
+    private AnnonceCovoiturageRepository annonceCovoiturageRepository;
 
     @Mock
     private VehiculeMapper vehiculeMapper;
 
+    @Mock
+    private VersionsAgregats versionsAgregats;
+
+    @Mock
+    private PlanningFlotteJdbcRepository planningFlotteJdbcRepository;
+
+    @Mock
+    private IndexOccupationsVehicules indexOccupations;
+
+    @Mock
+    private ApplicationEventPublisher evenements;
+
     @InjectMocks
     private VehiculeEntrepriseServiceImpl vehiculeEntrepriseService;
 
@@ -356,6 +378,8 @@ public class VehiculeEntrepriseServiceTest {
 
         when(vehiculeEntrepriseRepository.findById(1L)).thenReturn(Optional.of(vehiculeFactice));
         when(vehiculeMapper.toDto((VehiculeEntreprise) vehiculeFactice)).thenReturn(dtoMiseAJour);
+        when(annonceCovoiturageRepository.findIdsAVenirParVehiculeService(eq(1L), any(LocalDateTime.class)))
+                .thenReturn(List.of(10L, 11L));
 
         // Act
         VehiculeDTO resultat = vehiculeEntrepriseService.update(1L, dtoMiseAJour);
@@ -364,6 +388,14 @@ public class VehiculeEntrepriseServiceTest {
         assertNotNull(resultat);
         verify(vehiculeEntrepriseRepository, times(1)).findById(1L);
         verify(vehiculeMapper, times(1)).toDto(vehiculeFactice);
+        // La nouvelle capacité est reportée sur les covoiturages du véhicule
+        verify(annonceCovoiturageRepository, times(1)).mettreAJourPlacesTotalesVehiculeService(1L, 4);
+        // Les ETag des listes de véhicules et de covoiturages changent
+        verify(versionsAgregats).incrementer(AgregatVersionne.VEHICULES_ENTREPRISE);
+        verify(versionsAgregats).incrementer(AgregatVersionne.COVOITURAGE);
+        // Les annonces à venir concernées sont rechargées par le modèle de lecture
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(10L, TypeEvenementAnnonce.MODIFICATION));
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(11L, TypeEvenementAnnonce.MODIFICATION));
     }
 
     @Test
@@ -377,6 +409,7 @@ public class VehiculeEntrepriseServiceTest {
 
         assertEquals("Véhicule d'entreprise introuvable: 999", exception.getMessage());
         verify(vehiculeEntrepriseRepository, times(1)).findById(999L);
+        verifyNoInteractions(versionsAgregats);
     }
 
     @Test
@@ -550,12 +583,12 @@ public class VehiculeEntrepriseServiceTest {
         LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
         LocalDateTime dateFin = LocalDateTime.now().plusDays(3);
 
-        List<VehiculeEntreprise> vehiculesEnService = Arrays.asList(vehiculeFactice);
+        List<VehiculeEntreprise> vehiculesDisponibles = Arrays.asList(vehiculeFactice);
         List<VehiculeDTO> vehiculeDtos = Arrays.asList(vehiculeDtoFactice);
 
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(vehiculesEnService);
-        when(reservationVehiculeRepository.findByVehiculeEntrepriseId(1L)).thenReturn(Collections.emptyList());
-        when(vehiculeMapper.toDtoEntrepriseList(anyList())).thenReturn(vehiculeDtos);
+        when(vehiculeEntrepriseRepository.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin)).thenReturn(vehiculesDisponibles);
+        when(planningFlotteJdbcRepository.findVehiculesEnCovoiturage(dateDebut, dateFin)).thenReturn(Set.of());
+        when(vehiculeMapper.toDtoEntrepriseList(vehiculesDisponibles)).thenReturn(vehiculeDtos);
 
         // Act
         List<VehiculeDTO> resultat = vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin);
@@ -563,8 +596,10 @@ public class VehiculeEntrepriseServiceTest {
         // Assert
         assertNotNull(resultat);
         assertEquals(1, resultat.size());
-        verify(vehiculeEntrepriseRepository, times(1)).findByStatut(StatutVehicule.EN_SERVICE);
-        verify(reservationVehiculeRepository, times(1)).findByVehiculeEntrepriseId(1L);
+        verify(vehiculeEntrepriseRepository, times(1)).findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin);
+        verify(planningFlotteJdbcRepository, times(1)).findVehiculesEnCovoiturage(dateDebut, dateFin);
+        // Une seule requête : pas de requête de statut quand des véhicules sont disponibles
+        verify(vehiculeEntrepriseRepository, never()).existsByStatut(any());
     }
 
     @Test
@@ -578,7 +613,7 @@ public class VehiculeEntrepriseServiceTest {
                 () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
 
         assertEquals("DATES INCORRECTES : La date de début doit être antérieure à la date de fin", exception.getMessage());
-        verify(vehiculeEntrepriseRepository, never()).findByStatut(any());
+        verify(vehiculeEntrepriseRepository, never()).findDisponibles(any(), any(), any());
     }
 
     @Test
@@ -591,7 +626,7 @@ public class VehiculeEntrepriseServiceTest {
                 () -> vehiculeEntrepriseService.findByAvailability(date, date));
 
         assertEquals("DATES INCORRECTES : La date de début doit être antérieure à la date de fin", exception.getMessage());
-        verify(vehiculeEntrepriseRepository, never()).findByStatut(any());
+        verify(vehiculeEntrepriseRepository, never()).findDisponibles(any(), any(), any());
     }
 
     @Test
@@ -605,7 +640,7 @@ public class VehiculeEntrepriseServiceTest {
                 () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
 
         assertEquals("DATES INCORRECTES : La date de début doit être dans le futur", exception.getMessage());
-        verify(vehiculeEntrepriseRepository, never()).findByStatut(any());
+        verify(vehiculeEntrepriseRepository, never()).findDisponibles(any(), any(), any());
     }
 
     @Test
@@ -619,7 +654,7 @@ public class VehiculeEntrepriseServiceTest {
                 () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
 
         assertEquals("DATES INCORRECTES : La date de début doit être antérieure à la date de fin", exception.getMessage());
-        verify(vehiculeEntrepriseRepository, never()).findByStatut(any());
+        verify(vehiculeEntrepriseRepository, never()).findDisponibles(any(), any(), any());
     }
 
     @Test
@@ -628,14 +663,15 @@ public class VehiculeEntrepriseServiceTest {
         LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
         LocalDateTime dateFin = LocalDateTime.now().plusDays(3);
 
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(Collections.emptyList());
+        when(vehiculeEntrepriseRepository.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin)).thenReturn(Collections.emptyList());
+        when(vehiculeEntrepriseRepository.existsByStatut(StatutVehicule.EN_SERVICE)).thenReturn(false);
 
         // Act & Assert
         NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
 
         assertEquals("Il n'y a pas de voitures en service", exception.getMessage());
-        verify(vehiculeEntrepriseRepository, times(1)).findByStatut(StatutVehicule.EN_SERVICE);
+        verify(vehiculeEntrepriseRepository, times(1)).existsByStatut(StatutVehicule.EN_SERVICE);
     }
 
     @Test
@@ -644,144 +680,232 @@ public class VehiculeEntrepriseServiceTest {
         LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
         LocalDateTime dateFin = LocalDateTime.now().plusDays(3);
 
-        List<VehiculeEntreprise> vehiculesEnService = Arrays.asList(vehiculeFactice);
-
-        // Créer une réservation qui chevauche complètement la période demandée
-        ReservationVehicule reservation = new ReservationVehicule();
-        reservation.setDateDebut(dateDebut);
-        reservation.setDateFin(dateFin);
-        List<ReservationVehicule> reservations = Arrays.asList(reservation);
-
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(vehiculesEnService);
-        when(reservationVehiculeRepository.findByVehiculeEntrepriseId(1L)).thenReturn(reservations);
+        // Des véhicules en service, mais tous réservés sur la période
+        when(vehiculeEntrepriseRepository.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin)).thenReturn(Collections.emptyList());
+        when(vehiculeEntrepriseRepository.existsByStatut(StatutVehicule.EN_SERVICE)).thenReturn(true);
 
         // Act & Assert
         NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
 
         assertEquals("Aucune voiture disponible pour les dates sélectionnées", exception.getMessage());
-        verify(vehiculeEntrepriseRepository, times(1)).findByStatut(StatutVehicule.EN_SERVICE);
-        verify(reservationVehiculeRepository, times(1)).findByVehiculeEntrepriseId(1L);
+        verify(vehiculeEntrepriseRepository, times(1)).findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin);
     }
 
     @Test
-    void findByAvailability_ShouldDetectOverlapWhenReservationStartsDuringPeriod() {
-        // Arrange - Réservation commence pendant la période demandée
+    void findByAvailability_ShouldExcludeVehiclesUsedByCovoiturageWhenIndexNotLoaded() {
+        // Arrange
         LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
-        LocalDateTime dateFin = LocalDateTime.now().plusDays(5);
+        LocalDateTime dateFin = LocalDateTime.now().plusDays(3);
 
-        List<VehiculeEntreprise> vehiculesEnService = Arrays.asList(vehiculeFactice);
+        VehiculeEntreprise enCovoiturage = vehiculeAttribuable(3L, 5, 0, Motorisation.ELECTRIQUE);
+        when(vehiculeEntrepriseRepository.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin))
+                .thenReturn(List.of(vehiculeFactice, enCovoiturage));
+        when(planningFlotteJdbcRepository.findVehiculesEnCovoiturage(dateDebut, dateFin)).thenReturn(Set.of(3L));
+        when(vehiculeMapper.toDtoEntrepriseList(List.of(vehiculeFactice))).thenReturn(List.of(vehiculeDtoFactice));
 
-        ReservationVehicule reservation = new ReservationVehicule();
-        reservation.setDateDebut(LocalDateTime.now().plusDays(3)); // Commence pendant
-        reservation.setDateFin(LocalDateTime.now().plusDays(7));   // Finit après
-        List<ReservationVehicule> reservations = Arrays.asList(reservation);
+        // Act
+        List<VehiculeDTO> resultat = vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin);
 
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(vehiculesEnService);
-        when(reservationVehiculeRepository.findByVehiculeEntrepriseId(1L)).thenReturn(reservations);
+        // Assert
+        assertEquals(List.of(vehiculeDtoFactice), resultat);
+    }
+
+    @Test
+    void findByAvailability_ShouldNotQueryCovoituragesWhenAllVehiclesReserved() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
+        LocalDateTime dateFin = LocalDateTime.now().plusDays(3);
+
+        when(vehiculeEntrepriseRepository.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin)).thenReturn(Collections.emptyList());
+        when(vehiculeEntrepriseRepository.existsByStatut(StatutVehicule.EN_SERVICE)).thenReturn(true);
 
         // Act & Assert
-        NotFoundException exception = assertThrows(NotFoundException.class,
-                () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
+        assertThrows(NotFoundException.class, () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
+        verify(planningFlotteJdbcRepository, never()).findVehiculesEnCovoiturage(any(), any());
+    }
+
+    @Test
+    @DisplayName("findByAvailability → même résultat index chargé ou non : réservation et trajet de covoiturage excluent le véhicule")
+    void findByAvailability_ShouldReturnSameVehiclesWithAndWithoutIndex() {
+        // Arrange : le véhicule 2 est réservé, le véhicule 3 assure un trajet de covoiturage pendant la période
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(1).withHour(8).withMinute(0).withSecond(0).withNano(0);
+        LocalDateTime dateFin = dateDebut.plusHours(4);
+        VehiculeEntreprise libre = vehiculeAttribuable(1L, 5, 0, Motorisation.ELECTRIQUE);
+        VehiculeEntreprise reserve = vehiculeAttribuable(2L, 5, 0, Motorisation.ELECTRIQUE);
+        VehiculeEntreprise enCovoiturage = vehiculeAttribuable(3L, 5, 0, Motorisation.ELECTRIQUE);
+        when(vehiculeMapper.toDtoEntrepriseList(List.of(libre))).thenReturn(List.of(dtoAttribue(libre)));
+
+        // Index non chargé : les réservations sont exclues en base, puis les trajets de covoiturage
+        when(indexOccupations.estCharge()).thenReturn(false);
+        when(vehiculeEntrepriseRepository.findDisponibles(StatutVehicule.EN_SERVICE, dateDebut, dateFin))
+                .thenReturn(List.of(libre, enCovoiturage));
+        when(planningFlotteJdbcRepository.findVehiculesEnCovoiturage(dateDebut, dateFin)).thenReturn(Set.of(3L));
+        List<VehiculeDTO> sansIndex = vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin);
+
+        // Index chargé avec les mêmes occupations
+        when(planningFlotteJdbcRepository.findOccupationsTerminantApres(any(LocalDateTime.class))).thenReturn(List.of(
+                new OccupationVehiculeDto(TypeOccupationVehicule.RESERVATION, 20L, 2L, dateDebut.plusHours(1), dateDebut.plusHours(2)),
+                new OccupationVehiculeDto(TypeOccupationVehicule.COVOITURAGE, 30L, 3L, dateDebut.minusMinutes(30), dateDebut.plusMinutes(30))));
+        IndexOccupationsVehicules indexCharge = new IndexOccupationsVehicules(planningFlotteJdbcRepository);
+        indexCharge.charger();
+        when(vehiculeEntrepriseRepository.findByStatutOrderById(StatutVehicule.EN_SERVICE)).thenReturn(List.of(libre, reserve, enCovoiturage));
+        VehiculeEntrepriseServiceImpl serviceAvecIndex = new VehiculeEntrepriseServiceImpl(vehiculeEntrepriseRepository,
+                annonceCovoiturageRepository, vehiculeMapper, versionsAgregats, planningFlotteJdbcRepository, indexCharge, evenements);
+        List<VehiculeDTO> avecIndex = serviceAvecIndex.findByAvailability(dateDebut, dateFin);
 
-        assertEquals("Aucune voiture disponible pour les dates sélectionnées", exception.getMessage());
+        // Assert
+        assertEquals(List.of(dtoAttribue(libre)), sansIndex);
+        assertEquals(sansIndex, avecIndex);
     }
 
     @Test
-    void findByAvailability_ShouldDetectOverlapWhenReservationEndsDuringPeriod() {
-        // Arrange - Réservation finit pendant la période demandée
-        LocalDateTime dateDebut = LocalDateTime.now().plusDays(5);
-        LocalDateTime dateFin = LocalDateTime.now().plusDays(10);
+    void findByAvailability_ShouldFilterVehiclesInMemoryWhenIndexLoaded() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
+        LocalDateTime dateFin = LocalDateTime.now().plusDays(3);
+
+        VehiculeEntreprise occupe = vehiculeAttribuable(2L, 5, 0, Motorisation.ELECTRIQUE);
+        when(indexOccupations.estCharge()).thenReturn(true);
+        when(vehiculeEntrepriseRepository.findByStatutOrderById(StatutVehicule.EN_SERVICE)).thenReturn(List.of(vehiculeFactice, occupe));
+        when(indexOccupations.chevauche(1L, dateDebut, dateFin)).thenReturn(false);
+        when(indexOccupations.chevauche(2L, dateDebut, dateFin)).thenReturn(true);
+        when(vehiculeMapper.toDtoEntrepriseList(List.of(vehiculeFactice))).thenReturn(List.of(vehiculeDtoFactice));
+
+        // Act
+        List<VehiculeDTO> resultat = vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin);
 
-        List<VehiculeEntreprise> vehiculesEnService = Arrays.asList(vehiculeFactice);
+        // Assert : aucune requête de réservations, le filtrage se fait dans l'index
+        assertEquals(List.of(vehiculeDtoFactice), resultat);
+        verify(vehiculeEntrepriseRepository, never()).findDisponibles(any(), any(), any());
+    }
 
-        ReservationVehicule reservation = new ReservationVehicule();
-        reservation.setDateDebut(LocalDateTime.now().plusDays(1)); // Commence avant
-        reservation.setDateFin(LocalDateTime.now().plusDays(7));   // Finit pendant
-        List<ReservationVehicule> reservations = Arrays.asList(reservation);
+    @Test
+    void findByAvailability_ShouldThrowNotFoundExceptionWhenIndexLoadedAndNoVehiclesInService() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
+        LocalDateTime dateFin = LocalDateTime.now().plusDays(3);
 
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(vehiculesEnService);
-        when(reservationVehiculeRepository.findByVehiculeEntrepriseId(1L)).thenReturn(reservations);
+        when(indexOccupations.estCharge()).thenReturn(true);
+        when(vehiculeEntrepriseRepository.findByStatutOrderById(StatutVehicule.EN_SERVICE)).thenReturn(List.of());
 
         // Act & Assert
         NotFoundException exception = assertThrows(NotFoundException.class,
                 () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
 
-        assertEquals("Aucune voiture disponible pour les dates sélectionnées", exception.getMessage());
+        assertEquals("Il n'y a pas de voitures en service", exception.getMessage());
+        verify(vehiculeEntrepriseRepository, never()).existsByStatut(any());
     }
 
+// ============================================
+// Tests pour attribuer
+// ============================================
+
     @Test
-    void findByAvailability_ShouldDetectOverlapWhenReservationContainsPeriod() {
-        // Arrange - Réservation englobe toute la période demandée
-        LocalDateTime dateDebut = LocalDateTime.now().plusDays(5);
-        LocalDateTime dateFin = LocalDateTime.now().plusDays(7);
+    void attribuer_ShouldPreferVehicleWhoseFreeSlotFitsTheRequest() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(2).withHour(10).withMinute(0).withSecond(0).withNano(0);
+        LocalDateTime dateFin = dateDebut.plusHours(4);
 
-        List<VehiculeEntreprise> vehiculesEnService = Arrays.asList(vehiculeFactice);
+        VehiculeEntreprise libre = vehiculeAttribuable(1L, 5, 0, Motorisation.ELECTRIQUE);
+        VehiculeEntreprise trouExact = vehiculeAttribuable(2L, 5, 120, Motorisation.THERMIQUE);
+        VehiculeEntreprise occupe = vehiculeAttribuable(3L, 5, 0, Motorisation.ELECTRIQUE);
+        VehiculeEntreprise tropPetit = vehiculeAttribuable(4L, 2, 0, Motorisation.ELECTRIQUE);
+        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE))
+                .thenReturn(List.of(libre, trouExact, occupe, tropPetit));
+        when(planningFlotteJdbcRepository.findUsages(dateDebut.minusHours(24), dateFin.plusHours(24))).thenReturn(List.of(
+                // Réservation et trajet qui se touchent de part et d'autre de la période : trou exact
+                new UsageVehiculeDto(2L, dateDebut.minusHours(3), dateDebut),
+                new UsageVehiculeDto(2L, dateFin, dateFin.plusHours(2)),
+                new UsageVehiculeDto(3L, dateDebut.plusHours(1), dateDebut.plusHours(2))));
+        when(vehiculeMapper.toDto(any(VehiculeEntreprise.class))).thenAnswer(i -> dtoAttribue(i.getArgument(0)));
 
-        ReservationVehicule reservation = new ReservationVehicule();
-        reservation.setDateDebut(LocalDateTime.now().plusDays(1));  // Commence avant
-        reservation.setDateFin(LocalDateTime.now().plusDays(10));   // Finit après
-        List<ReservationVehicule> reservations = Arrays.asList(reservation);
+        // Act
+        VehiculeDTO resultat = vehiculeEntrepriseService.attribuer(4, null, null, dateDebut, dateFin);
 
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(vehiculesEnService);
-        when(reservationVehiculeRepository.findByVehiculeEntrepriseId(1L)).thenReturn(reservations);
+        // Assert : le véhicule entièrement libre est gardé pour une autre demande
+        assertEquals(2L, resultat.id());
+    }
 
-        // Act & Assert
-        NotFoundException exception = assertThrows(NotFoundException.class,
-                () -> vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin));
+    @Test
+    void attribuer_ShouldFavourPreferenceThenLowestCo2() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(2);
+        LocalDateTime dateFin = dateDebut.plusHours(4);
 
-        assertEquals("Aucune voiture disponible pour les dates sélectionnées", exception.getMessage());
+        VehiculeEntreprise thermique = vehiculeAttribuable(1L, 5, 90, Motorisation.THERMIQUE);
+        VehiculeEntreprise hybrideSobre = vehiculeAttribuable(2L, 5, 60, Motorisation.HYBRIDE);
+        VehiculeEntreprise hybride = vehiculeAttribuable(3L, 5, 80, Motorisation.HYBRIDE);
+        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE))
+                .thenReturn(List.of(thermique, hybrideSobre, hybride));
+        when(planningFlotteJdbcRepository.findUsages(any(), any())).thenReturn(List.of());
+        when(vehiculeMapper.toDto(any(VehiculeEntreprise.class))).thenAnswer(i -> dtoAttribue(i.getArgument(0)));
+
+        // Act & Assert
+        assertEquals(2L, vehiculeEntrepriseService.attribuer(2, null, null, dateDebut, dateFin).id());
+        assertEquals(1L, vehiculeEntrepriseService.attribuer(2, null, Motorisation.THERMIQUE, dateDebut, dateFin).id());
+        // Préférence impossible à respecter : le classement habituel s'applique
+        assertEquals(2L, vehiculeEntrepriseService.attribuer(2, null, Motorisation.ELECTRIQUE, dateDebut, dateFin).id());
     }
 
     @Test
-    void findByAvailability_ShouldAllowAdjacentReservationsWhenDateFinEqualsReservationDebut() {
-        // Arrange - La période demandée finit exactement quand une réservation commence (OK)
-        LocalDateTime dateDebut = LocalDateTime.now().plusDays(1);
-        LocalDateTime dateFin = LocalDateTime.now().plusDays(5);
+    void attribuer_ShouldThrowNotFoundExceptionWhenNoVehicleFits() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(2);
+        LocalDateTime dateFin = dateDebut.plusHours(4);
 
-        List<VehiculeEntreprise> vehiculesEnService = Arrays.asList(vehiculeFactice);
-        List<VehiculeDTO> vehiculeDtos = Arrays.asList(vehiculeDtoFactice);
+        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE))
+                .thenReturn(List.of(vehiculeAttribuable(1L, 5, 0, Motorisation.ELECTRIQUE)));
+        when(planningFlotteJdbcRepository.findUsages(any(), any()))
+                .thenReturn(List.of(new UsageVehiculeDto(1L, dateDebut.minusHours(1), dateDebut.plusHours(1))));
 
-        ReservationVehicule reservation = new ReservationVehicule();
-        reservation.setDateDebut(dateFin);                          // Commence exactement quand on finit
-        reservation.setDateFin(LocalDateTime.now().plusDays(10));
-        List<ReservationVehicule> reservations = Arrays.asList(reservation);
+        // Act & Assert
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> vehiculeEntrepriseService.attribuer(3, null, null, dateDebut, dateFin));
 
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(vehiculesEnService);
-        when(reservationVehiculeRepository.findByVehiculeEntrepriseId(1L)).thenReturn(reservations);
-        when(vehiculeMapper.toDtoEntrepriseList(anyList())).thenReturn(vehiculeDtos);
+        assertEquals("Aucune voiture de 3 places ou plus disponible pour les dates sélectionnées", exception.getMessage());
+    }
 
-        // Act
-        List<VehiculeDTO> resultat = vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin);
+    @Test
+    void attribuer_ShouldUseInMemoryIndexWhenLoaded() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(2);
+        LocalDateTime dateFin = dateDebut.plusHours(4);
 
-        // Assert
-        assertNotNull(resultat);
-        assertEquals(1, resultat.size()); // Le véhicule est disponible car pas de chevauchement réel
+        VehiculeEntreprise occupe = vehiculeAttribuable(1L, 5, 0, Motorisation.ELECTRIQUE);
+        VehiculeEntreprise libre = vehiculeAttribuable(2L, 5, 100, Motorisation.THERMIQUE);
+        when(indexOccupations.estCharge()).thenReturn(true);
+        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(List.of(occupe, libre));
+        when(indexOccupations.chevauche(1L, dateDebut, dateFin)).thenReturn(true);
+        when(indexOccupations.chevauche(2L, dateDebut, dateFin)).thenReturn(false);
+        when(vehiculeMapper.toDto(any(VehiculeEntreprise.class))).thenAnswer(i -> dtoAttribue(i.getArgument(0)));
+
+        // Act & Assert
+        assertEquals(2L, vehiculeEntrepriseService.attribuer(4, null, null, dateDebut, dateFin).id());
+        verify(indexOccupations).minutesLibresAutour(2L, dateDebut, dateFin, dateDebut.minusHours(24), dateFin.plusHours(24));
+        verifyNoInteractions(planningFlotteJdbcRepository);
     }
 
     @Test
-    void findByAvailability_ShouldAllowAdjacentReservationsWhenDateDebutEqualsReservationFin() {
-        // Arrange - La période demandée commence exactement quand une réservation finit (OK)
-        LocalDateTime dateDebut = LocalDateTime.now().plusDays(5);
-        LocalDateTime dateFin = LocalDateTime.now().plusDays(10);
-
-        List<VehiculeEntreprise> vehiculesEnService = Arrays.asList(vehiculeFactice);
-        List<VehiculeDTO> vehiculeDtos = Arrays.asList(vehiculeDtoFactice);
+    void attribuer_ShouldThrowBadRequestExceptionWhenNbPlacesInvalid() {
+        // Arrange
+        LocalDateTime dateDebut = LocalDateTime.now().plusDays(2);
 
-        ReservationVehicule reservation = new ReservationVehicule();
-        reservation.setDateDebut(LocalDateTime.now().plusDays(1));
-        reservation.setDateFin(dateDebut);                          // Finit exactement quand on commence
-        List<ReservationVehicule> reservations = Arrays.asList(reservation);
+        // Act & Assert
+        BadRequestException exception = assertThrows(BadRequestException.class,
+                () -> vehiculeEntrepriseService.attribuer(0, null, null, dateDebut, dateDebut.plusHours(1)));
 
-        when(vehiculeEntrepriseRepository.findByStatut(StatutVehicule.EN_SERVICE)).thenReturn(vehiculesEnService);
-        when(reservationVehiculeRepository.findByVehiculeEntrepriseId(1L)).thenReturn(reservations);
-        when(vehiculeMapper.toDtoEntrepriseList(anyList())).thenReturn(vehiculeDtos);
+        assertEquals("nbPlaces doit être >= 1.", exception.getMessage());
+        verifyNoInteractions(planningFlotteJdbcRepository);
+    }
 
-        // Act
-        List<VehiculeDTO> resultat = vehiculeEntrepriseService.findByAvailability(dateDebut, dateFin);
+    private VehiculeEntreprise vehiculeAttribuable(Long id, int nbPlaces, int co2ParKm, Motorisation motorisation) {
+        return new VehiculeEntreprise(id, "AT-" + id, nbPlaces, "Modele", co2ParKm, null, "Marque",
+                motorisation, Categorie.COMPACTE, StatutVehicule.EN_SERVICE);
+    }
 
-        // Assert
-        assertNotNull(resultat);
-        assertEquals(1, resultat.size()); // Le véhicule est disponible car pas de chevauchement réel
+    private VehiculeDTO dtoAttribue(VehiculeEntreprise v) {
+        return new VehiculeDTO(v.getId(), v.getImmatriculation(), v.getMarque(), v.getModele(), v.getNbPlaces(),
+                v.getMotorisation(), v.getCo2ParKm(), v.getPhoto(), v.getCategorie(), v.getStatut(), null);
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,18 @@
 package fr.diginamic.gestiondestransports.unit;
 
 
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
 import fr.diginamic.gestiondestransports.dto.VehiculeDTO;
 import fr.diginamic.gestiondestransports.entites.Utilisateur;
 import fr.diginamic.gestiondestransports.entites.VehiculePersonnel;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
 import fr.diginamic.gestiondestransports.enums.Categorie;
 import fr.diginamic.gestiondestransports.enums.Motorisation;
 import fr.diginamic.gestiondestransports.enums.RoleEnum;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
 import fr.diginamic.gestiondestransports.mapper.VehiculeMapper;
+import fr.diginamic.gestiondestransports.repositories.AnnonceCovoiturageRepository;
 import fr.diginamic.gestiondestransports.repositories.UtilisateurRepository;
 import fr.diginamic.gestiondestransports.repositories.VehiculePersonnelRepository;
 import fr.diginamic.gestiondestransports.services.impl.VehiculePersonnelServiceImpl;
@@ -19,15 +24,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,9 +47,18 @@ public class VehiculePersonnelServiceTest {
     @Mock
     private UtilisateurRepository utilisateurRepository;
 
+    @Mock
+    private AnnonceCovoiturageRepository annonceCovoiturageRepository;
+
     @Mock
     private VehiculeMapper vehiculeMapper;
 
+    @Mock
+    private VersionsAgregats versionsAgregats;
+
+    @Mock
+    private ApplicationEventPublisher evenements;
+
     @InjectMocks
     private VehiculePersonnelServiceImpl vehiculePersonnelService;
 
@@ -263,6 +280,7 @@ public class VehiculePersonnelServiceTest {
         // Assert
         verify(vehiculePersonnelRepository, times(1)).existsById(1L);
         verify(vehiculePersonnelRepository, times(1)).deleteById(1L);
+        verify(versionsAgregats, times(1)).incrementer(AgregatVersionne.COVOITURAGE);
     }
 
     @Test
@@ -281,6 +299,7 @@ public class VehiculePersonnelServiceTest {
 
         verify(vehiculePersonnelRepository, times(1)).existsById(999L);
         verify(vehiculePersonnelRepository, never()).deleteById(anyLong());
+        verify(versionsAgregats, never()).incrementer(any());
     }
     // ========== Tests pour deleteByUtilisateurId ==========
 
@@ -297,6 +316,7 @@ public class VehiculePersonnelServiceTest {
         // Assert
         verify(vehiculePersonnelRepository, times(1)).findFirstByUtilisateurId(1L);
         verify(vehiculePersonnelRepository, times(1)).deleteById(1L);
+        verify(versionsAgregats, times(1)).incrementer(AgregatVersionne.COVOITURAGE);
     }
 
     @Test
@@ -491,6 +511,7 @@ public class VehiculePersonnelServiceTest {
         verify(utilisateurRepository, times(1)).getReferenceById(1L);
         verify(vehiculePersonnelRepository, times(1)).saveAndFlush(any(VehiculePersonnel.class));
         verify(vehiculeMapper, times(1)).toDto(vehiculeSauvegarde);
+        verify(versionsAgregats, times(1)).incrementer(AgregatVersionne.COVOITURAGE);
     }
 
     @Test
@@ -1085,6 +1106,8 @@ public class VehiculePersonnelServiceTest {
 
         when(vehiculePersonnelRepository.findFirstByUtilisateurId(1L)).thenReturn(Optional.of(vehiculePersonnelTest));
         when(vehiculeMapper.toDto(vehiculePersonnelTest)).thenReturn(vehiculeDtoMisAJour);
+        when(annonceCovoiturageRepository.findIdsAVenirSansVehiculeService(eq(1L), any(LocalDateTime.class)))
+                .thenReturn(List.of(10L));
 
         // Act
         VehiculeDTO resultat = vehiculePersonnelService.update(1L, vehiculeModifieDto);
@@ -1102,6 +1125,9 @@ public class VehiculePersonnelServiceTest {
 
         verify(vehiculePersonnelRepository, times(1)).findFirstByUtilisateurId(1L);
         verify(vehiculeMapper, times(1)).toDto(vehiculePersonnelTest);
+        // La nouvelle capacité est reportée et les annonces à venir concernées sont rechargées par le modèle de lecture
+        verify(annonceCovoiturageRepository).mettreAJourPlacesTotalesVehiculePersonnel(1L, 4);
+        verify(evenements).publishEvent(new AnnonceCovoiturageEvenement(10L, TypeEvenementAnnonce.MODIFICATION));
     }
 
     @Test
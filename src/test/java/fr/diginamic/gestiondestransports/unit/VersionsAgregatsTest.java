@@ -0,0 +1,73 @@
+package fr.diginamic.gestiondestransports.unit;
+
+import fr.diginamic.gestiondestransports.cache.VersionsAgregats;
+import fr.diginamic.gestiondestransports.enums.AgregatVersionne;
+import fr.diginamic.gestiondestransports.enums.TypeEvenementAnnonce;
+import fr.diginamic.gestiondestransports.evenements.AnnonceCovoiturageEvenement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VersionsAgregatsTest {
+
+    private final VersionsAgregats versions = new VersionsAgregats();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("etag → OK : ETag fort stable tant qu'aucune écriture, modifié après incrément du seul agrégat concerné")
+    void etag_ok_incrementHorsTransaction() {
+        String annonces = versions.etag(AgregatVersionne.COVOITURAGE);
+        String vehicules = versions.etag(AgregatVersionne.VEHICULES_ENTREPRISE);
+        assertTrue(annonces.startsWith("\"") && annonces.endsWith("\""));
+        assertEquals(annonces, versions.etag(AgregatVersionne.COVOITURAGE));
+
+        versions.incrementer(AgregatVersionne.VEHICULES_ENTREPRISE);
+
+        assertEquals(annonces, versions.etag(AgregatVersionne.COVOITURAGE));
+        assertNotEquals(vehicules, versions.etag(AgregatVersionne.VEHICULES_ENTREPRISE));
+    }
+
+    @Test
+    @DisplayName("incrementer → OK : dans une transaction, la version ne change qu'après validation")
+    void incrementer_ok_apresValidation() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        versions.incrementer(AgregatVersionne.COVOITURAGE);
+        assertEquals(0, versions.version(AgregatVersionne.COVOITURAGE));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(1, versions.version(AgregatVersionne.COVOITURAGE));
+    }
+
+    @Test
+    @DisplayName("surEvenementAnnonce → OK : toute modification d'annonce change la version des covoiturages")
+    void surEvenementAnnonce_ok() {
+        versions.surEvenementAnnonce(new AnnonceCovoiturageEvenement(1L, TypeEvenementAnnonce.RESERVATION));
+
+        assertEquals(1, versions.version(AgregatVersionne.COVOITURAGE));
+        assertEquals(0, versions.version(AgregatVersionne.VEHICULES_ENTREPRISE));
+    }
+
+    @Test
+    @DisplayName("etag → OK : ETag par utilisateur distinct, même pour des identifiants de même hashCode")
+    void etag_ok_parUtilisateur() {
+        // 1L et 4294967296L ont le même Long.hashCode()
+        String premier = versions.etag(AgregatVersionne.COVOITURAGE, 1L);
+        String second = versions.etag(AgregatVersionne.COVOITURAGE, 2L);
+        String collisionHash = versions.etag(AgregatVersionne.COVOITURAGE, 4294967296L);
+
+        assertNotEquals(premier, second);
+        assertNotEquals(premier, collisionHash);
+        assertEquals(premier, versions.etag(AgregatVersionne.COVOITURAGE, 1L));
+    }
+}